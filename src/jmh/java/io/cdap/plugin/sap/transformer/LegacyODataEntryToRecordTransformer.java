@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.transformer;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.format.UnexpectedFormatException;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.sap.odata.ODataEntity;
+import org.apache.olingo.odata2.api.edm.EdmLiteralKind;
+import org.apache.olingo.odata2.api.edm.EdmSimpleTypeException;
+import org.apache.olingo.odata2.core.edm.EdmDateTimeOffset;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Baseline for {@link ODataEntryToRecordTransformerBenchmark}: the per-record schema walk that
+ * {@link ODataEntryToRecordTransformer} used before field converters were compiled. Only primitive types are kept.
+ */
+class LegacyODataEntryToRecordTransformer {
+
+  private final Schema schema;
+
+  LegacyODataEntryToRecordTransformer(Schema schema) {
+    this.schema = schema;
+  }
+
+  StructuredRecord transform(ODataEntity oDataEntity) {
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    for (Schema.Field field : schema.getFields()) {
+      Schema nonNullableSchema = field.getSchema().isNullable() ?
+        field.getSchema().getNonNullable() : field.getSchema();
+      String fieldName = field.getName();
+      Object value = oDataEntity.getProperties().get(fieldName);
+      builder.set(fieldName, extractValue(fieldName, value, nonNullableSchema));
+    }
+    return builder.build();
+  }
+
+  private Object extractValue(String fieldName, Object value, Schema schema) {
+    if (value == null) {
+      return null;
+    }
+
+    Schema.LogicalType fieldLogicalType = schema.getLogicalType();
+    if (fieldLogicalType != null) {
+      switch (fieldLogicalType) {
+        case TIMESTAMP_MICROS:
+          ensureTypeValid(fieldName, value, Calendar.class, Timestamp.class);
+          Instant instant = value instanceof Calendar ? ((Calendar) value).toInstant() :
+            ((Timestamp) value).toInstant();
+          long micros = TimeUnit.SECONDS.toMicros(instant.getEpochSecond());
+          return Math.addExact(micros, TimeUnit.NANOSECONDS.toMicros(instant.getNano()));
+        case TIME_MICROS:
+          ensureTypeValid(fieldName, value, GregorianCalendar.class, Timestamp.class);
+          long nanos = value instanceof GregorianCalendar
+            ? ((GregorianCalendar) value).toZonedDateTime().toLocalTime().toNanoOfDay()
+            : ((Timestamp) value).toLocalDateTime().toLocalTime().toNanoOfDay();
+          return TimeUnit.NANOSECONDS.toMicros(nanos);
+        case DECIMAL:
+          ensureTypeValid(fieldName, value, BigDecimal.class, BigInteger.class, Double.class, Float.class, Byte.class,
+                          Short.class, Integer.class, Long.class);
+          return extractDecimal(fieldName, value, schema);
+        default:
+          throw new UnexpectedFormatException(String.format("Field '%s' is of unsupported type '%s'", fieldName,
+                                                            fieldLogicalType.getToken()));
+      }
+    }
+
+    Schema.Type fieldType = schema.getType();
+    switch (fieldType) {
+      case BOOLEAN:
+        ensureTypeValid(fieldName, value, Boolean.class);
+        return value;
+      case INT:
+        ensureTypeValid(fieldName, value, Short.class, Byte.class, Integer.class, Long.class, BigInteger.class);
+        return ((Number) value).intValue();
+      case FLOAT:
+        ensureTypeValid(fieldName, value, Float.class, Double.class, BigDecimal.class, Byte.class, Short.class,
+                        Integer.class, Long.class);
+        return ((Number) value).floatValue();
+      case DOUBLE:
+        ensureTypeValid(fieldName, value, Double.class, Float.class, BigDecimal.class, Byte.class, Short.class,
+                        Integer.class, Long.class);
+        return ((Number) value).doubleValue();
+      case BYTES:
+        ensureTypeValid(fieldName, value, byte[].class);
+        return value;
+      case LONG:
+        ensureTypeValid(fieldName, value, Long.class, Byte.class, Short.class, Integer.class, BigInteger.class);
+        return ((Number) value).longValue();
+      case STRING:
+        ensureTypeValid(fieldName, value, String.class, UUID.class, Calendar.class, Timestamp.class, BigDecimal.class);
+        if (value instanceof Calendar || value instanceof Timestamp) {
+          try {
+            return EdmDateTimeOffset.getInstance().valueToString(value, EdmLiteralKind.DEFAULT, null);
+          } catch (EdmSimpleTypeException e) {
+            throw new UnexpectedFormatException(e);
+          }
+        }
+        return value.toString();
+      default:
+        throw new UnexpectedFormatException(String.format("Field '%s' is of unsupported type '%s'", fieldName,
+                                                          fieldType.name().toLowerCase()));
+    }
+  }
+
+  private byte[] extractDecimal(String fieldName, Object value, Schema schema) {
+    int schemaPrecision = schema.getPrecision();
+    int schemaScale = schema.getScale();
+    BigDecimal decimal;
+    if (value instanceof BigDecimal) {
+      decimal = (BigDecimal) value;
+    } else if (value instanceof BigInteger) {
+      decimal = new BigDecimal((BigInteger) value);
+    } else if (value instanceof Double || value instanceof Float) {
+      decimal = new BigDecimal(((Number) value).doubleValue(), new MathContext(schemaPrecision))
+        .setScale(schemaScale, BigDecimal.ROUND_HALF_EVEN);
+    } else {
+      decimal = new BigDecimal(((Number) value).longValue());
+    }
+    if (decimal.precision() > schemaPrecision || decimal.scale() > schemaScale) {
+      throw new UnexpectedFormatException(String.format("Field '%s' does not fit the schema.", fieldName));
+    }
+    return decimal.setScale(schemaScale).unscaledValue().toByteArray();
+  }
+
+  private void ensureTypeValid(String fieldName, Object value, Class... expectedTypes) {
+    for (Class expectedType : expectedTypes) {
+      if (expectedType.isInstance(value)) {
+        return;
+      }
+    }
+
+    String expectedTypeNames = Stream.of(expectedTypes)
+      .map(Class::getName)
+      .collect(Collectors.joining(", "));
+    throw new UnexpectedFormatException(
+      String.format("SAP field '%s' is expected to be of type '%s', but found a '%s'.", fieldName,
+                    expectedTypeNames, value.getClass().getSimpleName()));
+  }
+}
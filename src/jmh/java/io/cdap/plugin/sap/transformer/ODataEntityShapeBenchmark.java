@@ -0,0 +1,267 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sap.transformer;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.sap.ODataEntityBuilder;
+import io.cdap.plugin.sap.SapODataConstants;
+import io.cdap.plugin.sap.odata.ODataEntity;
+import io.cdap.plugin.sap.odata.ODataPropertyIndex;
+import io.cdap.plugin.sap.odata.StreamProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ODataEntryToRecordTransformer#transform(ODataEntity)} throughput for representative SAP entity
+ * shapes. Values are built with {@link ODataEntityBuilder}, so they have the same Java types the OData V2 and V4
+ * readers produce, and are held by an array-backed entity in the order of the schema, as the readers hold them.
+ * Allocation rate per record is reported by the GC profiler enabled in the 'benchmark' profile.
+ * <p>
+ * Run with: {@code mvn -Pbenchmark -DskipTests verify -Djmh.args="ODataEntityShapeBenchmark -prof gc"},
+ * or a single shape: {@code -Djmh.args="ODataEntityShapeBenchmark -p shape=WIDE -p storage=ARRAY -prof gc"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ODataEntityShapeBenchmark {
+
+  private static final int WIDE_COLUMNS = 200;
+  private static final int HEAVY_COLUMNS = 20;
+  private static final long TIMESTAMP_MILLIS = 1567087928155L;
+
+  /**
+   * Entity shapes to benchmark.
+   */
+  public enum Shape {
+    /**
+     * A handful of key and text columns, typical for master data lookups.
+     */
+    NARROW,
+    /**
+     * 200 columns of mixed primitive types, typical for SAP table extractions.
+     */
+    WIDE,
+    /**
+     * Amount and quantity columns with 'Edm.Decimal' values.
+     */
+    DECIMAL,
+    /**
+     * 'Edm.DateTime' and 'Edm.Time' columns.
+     */
+    TIMESTAMP,
+    /**
+     * OData V4 geospatial columns mapped to nested records.
+     */
+    GEOSPATIAL,
+    /**
+     * OData V4 'Edm.Stream' columns mapped to nested records.
+     */
+    STREAM
+  }
+
+  /**
+   * Storage of the entity values.
+   */
+  public enum Storage {
+    /**
+     * Values indexed by {@link ODataPropertyIndex}, as produced by the readers.
+     */
+    ARRAY,
+    /**
+     * Values in a map keyed by property name, kept for comparison.
+     */
+    MAP
+  }
+
+  @Param
+  public Shape shape;
+
+  @Param
+  public Storage storage;
+
+  private ODataEntryToRecordTransformer transformer;
+  private ODataEntity entity;
+
+  @Setup
+  public void setup() throws Exception {
+    List<Schema.Field> fields = new ArrayList<>();
+    ODataEntityBuilder builder = ODataEntityBuilder.builder();
+    switch (shape) {
+      case NARROW:
+        narrow(fields, builder);
+        break;
+      case WIDE:
+        wide(fields, builder);
+        break;
+      case DECIMAL:
+        decimal(fields, builder);
+        break;
+      case TIMESTAMP:
+        timestamp(fields, builder);
+        break;
+      case GEOSPATIAL:
+        geospatial(fields, builder);
+        break;
+      case STREAM:
+        stream(fields, builder);
+        break;
+      default:
+        throw new IllegalStateException("Unknown shape: " + shape);
+    }
+    transformer = new ODataEntryToRecordTransformer(Schema.recordOf(shape.name(), fields));
+    entity = storage == Storage.MAP ? builder.build() : toArrayBacked(builder.build(), fields);
+  }
+
+  @Benchmark
+  public StructuredRecord transform() {
+    return transformer.transform(entity);
+  }
+
+  private static void narrow(List<Schema.Field> fields, ODataEntityBuilder builder) {
+    fields.add(Schema.Field.of("ProductId", Schema.of(Schema.Type.STRING)));
+    fields.add(Schema.Field.of("Category", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    fields.add(Schema.Field.of("Name", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    fields.add(Schema.Field.of("WeightMeasure", Schema.nullableOf(Schema.of(Schema.Type.INT))));
+    builder.setString("ProductId", "HT-1000")
+      .setString("Category", "Notebooks")
+      .setString("Name", "Notebook Basic 15")
+      .setInt32("WeightMeasure", 4);
+  }
+
+  private static void wide(List<Schema.Field> fields, ODataEntityBuilder builder) {
+    GregorianCalendar calendar = calendar();
+    for (int i = 0; i < WIDE_COLUMNS; i++) {
+      String name = String.format("Field%03d", i);
+      switch (i % 6) {
+        case 0:
+          fields.add(Schema.Field.of(name, Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+          builder.setString(name, "VALUE" + i);
+          break;
+        case 1:
+          fields.add(Schema.Field.of(name, Schema.nullableOf(Schema.of(Schema.Type.INT))));
+          builder.setInt32(name, i);
+          break;
+        case 2:
+          fields.add(Schema.Field.of(name, Schema.nullableOf(Schema.of(Schema.Type.LONG))));
+          builder.setInt64(name, i * 1000L);
+          break;
+        case 3:
+          fields.add(Schema.Field.of(name, Schema.nullableOf(Schema.decimalOf(16, 3))));
+          builder.setDecimal(name, BigDecimal.valueOf(i * 1000L + 125, 3));
+          break;
+        case 4:
+          fields.add(Schema.Field.of(name, Schema.nullableOf(Schema.of(Schema.Type.BOOLEAN))));
+          builder.setBoolean(name, i % 2 == 0);
+          break;
+        default:
+          fields.add(Schema.Field.of(name, Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))));
+          builder.setDateTime(name, calendar);
+      }
+    }
+  }
+
+  private static void decimal(List<Schema.Field> fields, ODataEntityBuilder builder) {
+    for (int i = 0; i < HEAVY_COLUMNS; i++) {
+      String name = "Amount" + i;
+      fields.add(Schema.Field.of(name, Schema.nullableOf(Schema.decimalOf(23, 4))));
+      builder.setDecimal(name, new BigDecimal("1234567890.1234").add(BigDecimal.valueOf(i)));
+    }
+  }
+
+  private static void timestamp(List<Schema.Field> fields, ODataEntityBuilder builder) {
+    GregorianCalendar calendar = calendar();
+    for (int i = 0; i < HEAVY_COLUMNS; i++) {
+      String name = "Changed" + i;
+      if (i % 4 == 3) {
+        fields.add(Schema.Field.of(name, Schema.nullableOf(Schema.of(Schema.LogicalType.TIME_MICROS))));
+        builder.setTime(name, calendar);
+      } else {
+        fields.add(Schema.Field.of(name, Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))));
+        builder.setDateTime(name, calendar);
+      }
+    }
+  }
+
+  private static void geospatial(List<Schema.Field> fields, ODataEntityBuilder builder) throws Exception {
+    List<List<Double>> exterior = Arrays.asList(Arrays.asList(100.0, 0.0), Arrays.asList(110.0, 0.0),
+                                                Arrays.asList(110.0, 1.0), Arrays.asList(100.0, 1.0),
+                                                Arrays.asList(100.0, 0.0));
+    List<List<Double>> interior = Arrays.asList(Arrays.asList(100.2, 0.2), Arrays.asList(100.8, 0.2),
+                                                Arrays.asList(100.8, 0.8), Arrays.asList(100.2, 0.8),
+                                                Arrays.asList(100.2, 0.2));
+    fields.add(Schema.Field.of("Id", Schema.of(Schema.Type.STRING)));
+    fields.add(Schema.Field.of("Location", Schema.nullableOf(SapODataConstants.Point.SCHEMA)));
+    fields.add(Schema.Field.of("Route", Schema.nullableOf(SapODataConstants.LineString.SCHEMA)));
+    fields.add(Schema.Field.of("Area", Schema.nullableOf(SapODataConstants.Polygon.SCHEMA)));
+    fields.add(Schema.Field.of("Stops", Schema.nullableOf(SapODataConstants.MultiPoint.SCHEMA)));
+    builder.setString("Id", "0500000001")
+      .setGeographyPoint("Location", 100.5, 0.5)
+      .setGeographyLineString("Route", exterior)
+      .setGeographyPolygon("Area", exterior, interior)
+      .setGeographyMultiPoint("Stops", interior);
+  }
+
+  private static void stream(List<Schema.Field> fields, ODataEntityBuilder builder) {
+    fields.add(Schema.Field.of("Id", Schema.of(Schema.Type.STRING)));
+    builder.setString("Id", "0500000001");
+    for (int i = 0; i < 4; i++) {
+      String name = "Attachment" + i;
+      fields.add(Schema.Field.of(name, Schema.nullableOf(SapODataConstants.Stream.SCHEMA)));
+      builder.setStream(name, new StreamProperty("W/\"" + i + "\"", "image/jpeg",
+                                                 "http://placehold.it/10x10.jpg?read",
+                                                 "http://placehold.it/10x10.jpg?edit"));
+    }
+  }
+
+  private static ODataEntity toArrayBacked(ODataEntity entity, List<Schema.Field> fields) {
+    List<String> names = new ArrayList<>(fields.size());
+    Object[] values = new Object[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      String name = fields.get(i).getName();
+      names.add(name);
+      values[i] = entity.get(name);
+    }
+    return new ODataEntity(ODataPropertyIndex.of(names), values);
+  }
+
+  private static GregorianCalendar calendar() {
+    GregorianCalendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+    calendar.setTimeInMillis(TIMESTAMP_MILLIS);
+    return calendar;
+  }
+}
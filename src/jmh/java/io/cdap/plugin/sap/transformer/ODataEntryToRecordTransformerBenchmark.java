@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.transformer;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.sap.ODataEntityBuilder;
+import io.cdap.plugin.sap.odata.ODataEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link ODataEntryToRecordTransformer} against the previous per-record schema walk
+ * ({@link LegacyODataEntryToRecordTransformer}) on a typical SAP sales order item row.
+ * <p>
+ * Run with: {@code mvn -Pbenchmark -DskipTests verify -Djmh.args="ODataEntryToRecordTransformerBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ODataEntryToRecordTransformerBenchmark {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "SalesOrderItem",
+    Schema.Field.of("SoId", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("SoItemPos", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("ProductId", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("Quantity", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+    Schema.Field.of("GrossAmount", Schema.nullableOf(Schema.decimalOf(16, 3))),
+    Schema.Field.of("NetAmount", Schema.nullableOf(Schema.decimalOf(16, 3))),
+    Schema.Field.of("TaxRate", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+    Schema.Field.of("Delivered", Schema.nullableOf(Schema.of(Schema.Type.BOOLEAN))),
+    Schema.Field.of("DeliveryDate", Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))),
+    Schema.Field.of("CreatedBy", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("NoteGuid", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("ChangedAt", Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))));
+
+  private ODataEntryToRecordTransformer compiled;
+  private LegacyODataEntryToRecordTransformer legacy;
+  private ODataEntity entity;
+
+  @Setup
+  public void setup() {
+    compiled = new ODataEntryToRecordTransformer(SCHEMA);
+    legacy = new LegacyODataEntryToRecordTransformer(SCHEMA);
+    GregorianCalendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+    calendar.setTimeInMillis(1567087928155L);
+    entity = ODataEntityBuilder.builder()
+      .setString("SoId", "0500000001")
+      .setInt32("SoItemPos", 10)
+      .setString("ProductId", "HT-1000")
+      .setInt64("Quantity", 4L)
+      .setDecimal("GrossAmount", new BigDecimal("1137.640"))
+      .setDecimal("NetAmount", new BigDecimal("956.000"))
+      .setDouble("TaxRate", 0.19)
+      .setBoolean("Delivered", true)
+      .setDateTime("DeliveryDate", calendar)
+      .setString("CreatedBy", "DEVELOPER")
+      .setGuid("NoteGuid", UUID.fromString("0050568d-393c-1ed4-9d97-e0f7d93f5ed9"))
+      .setDateTime("ChangedAt", calendar)
+      .build();
+  }
+
+  @Benchmark
+  public StructuredRecord compiled() {
+    return compiled.transform(entity);
+  }
+
+  @Benchmark
+  public StructuredRecord legacy() {
+    return legacy.transform(entity);
+  }
+}
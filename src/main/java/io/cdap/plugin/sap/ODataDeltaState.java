@@ -0,0 +1,272 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sap;
+
+import com.google.common.base.Strings;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Delta link or watermark of an entity set, which is kept between the runs in a directory of a Hadoop file system,
+ * such as HDFS or GCS.
+ * <p>
+ * Tasks write the delta link returned along with the last page or the {@link ODataWatermark} of the entities they
+ * read to pending files named after the task attempts, and the pending files are committed by the driver once the
+ * run succeeds, so that the changes of a failed run are read again by the next run. The state is stored along with
+ * the query it was issued for, so that a state of a different query is not used.
+ */
+public class ODataDeltaState {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ODataDeltaState.class);
+  private static final Gson gson = new GsonBuilder().create();
+
+  static final String STATE_FILE = "state.json";
+  static final String PENDING_DIR = "_pending";
+  static final String MERGED_FILE = "_merged";
+
+  private final Path location;
+  private final String source;
+  private final Configuration conf;
+
+  /**
+   * @param location directory of the state.
+   * @param source   identifies the query the state is issued for.
+   * @param conf     configuration of the file system.
+   */
+  public ODataDeltaState(String location, String source, Configuration conf) {
+    this.location = new Path(location);
+    this.source = source;
+    this.conf = conf;
+  }
+
+  /**
+   * Creates the state of the entity set read by the given config.
+   */
+  public static ODataDeltaState of(SapODataConfig config, Configuration conf) {
+    String source = String.format("%s/%s?%s", config.getUrl(), config.getResourcePath(),
+                                  Strings.nullToEmpty(config.getQuery()));
+    return new ODataDeltaState(config.getDeltaStateLocation(), source, conf);
+  }
+
+  /**
+   * Reads the delta link committed by the last successful run.
+   *
+   * @return delta link or {@code null} if there is no link of the query, so that all entities must be read.
+   * @throws IOException if the state cannot be read.
+   */
+  @Nullable
+  public String readDeltaLink() throws IOException {
+    State state = readState();
+    if (state == null || Strings.isNullOrEmpty(state.deltaLink)) {
+      return null;
+    }
+    if (!source.equals(state.source)) {
+      LOG.warn("Delta link of '{}' is issued for a different query '{}', all entities are read.", source,
+               state.source);
+      return null;
+    }
+    return state.deltaLink;
+  }
+
+  /**
+   * Reads the watermark committed by the last successful run.
+   *
+   * @param propertyName name of the watermark property.
+   * @return watermark or {@code null} if there is no watermark of the query and the property, so that all entities
+   * must be read.
+   * @throws IOException if the state cannot be read.
+   */
+  @Nullable
+  public Instant readWatermark(String propertyName) throws IOException {
+    State state = readState();
+    if (state == null || Strings.isNullOrEmpty(state.watermark)) {
+      return null;
+    }
+    if (!source.equals(state.source) || !propertyName.equals(state.watermarkProperty)) {
+      LOG.warn("Watermark of '{}' is issued for a different query '{}' or property '{}', all entities are read.",
+               source, state.source, state.watermarkProperty);
+      return null;
+    }
+    try {
+      return Instant.parse(state.watermark);
+    } catch (DateTimeParseException e) {
+      throw new IOException(String.format("Invalid watermark '%s': %s", state.watermark, e.getMessage()), e);
+    }
+  }
+
+  /**
+   * Writes the delta link returned to a task attempt, which is committed once the run succeeds.
+   *
+   * @param name      unique name of the task attempt.
+   * @param deltaLink delta link returned along with the last page.
+   * @throws IOException if the link cannot be written.
+   */
+  public void writePending(String name, String deltaLink) throws IOException {
+    write(new Path(new Path(location, PENDING_DIR), name), new State(source, deltaLink, null, null));
+  }
+
+  /**
+   * Writes the watermark of the entities read by a task attempt, which is committed once the run succeeds.
+   *
+   * @param name         unique name of the task attempt.
+   * @param propertyName name of the watermark property.
+   * @param watermark    the highest value of the property read by the task attempt.
+   * @throws IOException if the watermark cannot be written.
+   */
+  public void writePendingWatermark(String name, String propertyName, Instant watermark) throws IOException {
+    write(new Path(new Path(location, PENDING_DIR), name),
+          new State(source, null, propertyName, watermark.toString()));
+  }
+
+  /**
+   * Replaces the committed state with the pending one. If several task attempts wrote a delta link, the one written
+   * last is committed. Watermarks written by the tasks of the run are merged, so that the highest one is committed.
+   *
+   * @return {@code false} if there is no pending state.
+   * @throws IOException if the state cannot be committed.
+   */
+  public boolean commit() throws IOException {
+    Path pendingDir = new Path(location, PENDING_DIR);
+    FileSystem fs = pendingDir.getFileSystem(conf);
+    if (!fs.exists(pendingDir)) {
+      return false;
+    }
+    List<FileStatus> pending = new ArrayList<>();
+    FileStatus latest = null;
+    for (FileStatus status : fs.listStatus(pendingDir)) {
+      if (!status.isFile()) {
+        continue;
+      }
+      pending.add(status);
+      if (latest == null || status.getModificationTime() > latest.getModificationTime()) {
+        latest = status;
+      }
+    }
+    if (latest == null) {
+      fs.delete(pendingDir, true);
+      return false;
+    }
+    Path committed = latest.getPath();
+    if (pending.size() > 1) {
+      State merged = read(fs, latest.getPath());
+      for (FileStatus status : pending) {
+        merged = merged.merge(read(fs, status.getPath()));
+      }
+      committed = new Path(pendingDir, MERGED_FILE);
+      write(committed, merged);
+    }
+    Path path = new Path(location, STATE_FILE);
+    fs.delete(path, false);
+    if (!fs.rename(committed, path)) {
+      throw new IOException(String.format("Unable to rename '%s' to '%s'.", committed, path));
+    }
+    fs.delete(pendingDir, true);
+    return true;
+  }
+
+  /**
+   * Discards the pending state, so that the committed one is used by the next run.
+   *
+   * @throws IOException if the pending files cannot be deleted.
+   */
+  public void abort() throws IOException {
+    Path pendingDir = new Path(location, PENDING_DIR);
+    pendingDir.getFileSystem(conf).delete(pendingDir, true);
+  }
+
+  @Nullable
+  private State readState() throws IOException {
+    Path path = new Path(location, STATE_FILE);
+    FileSystem fs = path.getFileSystem(conf);
+    if (!fs.exists(path)) {
+      return null;
+    }
+    return read(fs, path);
+  }
+
+  private State read(FileSystem fs, Path path) throws IOException {
+    try (FSDataInputStream in = fs.open(path);
+         Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+      State state = gson.fromJson(reader, State.class);
+      if (state == null) {
+        throw new IOException(String.format("Delta state '%s' is empty.", path));
+      }
+      return state;
+    } catch (JsonParseException e) {
+      throw new IOException(String.format("Invalid delta state '%s': %s", path, e.getMessage()), e);
+    }
+  }
+
+  private void write(Path path, State state) throws IOException {
+    FileSystem fs = path.getFileSystem(conf);
+    try (FSDataOutputStream out = fs.create(path, true);
+         Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+      gson.toJson(state, writer);
+    }
+  }
+
+  /**
+   * JSON representation of the state.
+   */
+  private static final class State {
+
+    private final String source;
+    private final String deltaLink;
+    private final String watermarkProperty;
+    private final String watermark;
+
+    private State(String source, @Nullable String deltaLink, @Nullable String watermarkProperty,
+                  @Nullable String watermark) {
+      this.source = source;
+      this.deltaLink = deltaLink;
+      this.watermarkProperty = watermarkProperty;
+      this.watermark = watermark;
+    }
+
+    /**
+     * Merges the state of another task attempt, keeping the delta link of this state and the higher watermark.
+     */
+    private State merge(State other) {
+      if (other.watermark == null
+        || (watermark != null && Instant.parse(watermark).compareTo(Instant.parse(other.watermark)) >= 0)) {
+        return this;
+      }
+      return new State(source, deltaLink, other.watermarkProperty, other.watermark);
+    }
+  }
+}
@@ -15,7 +15,11 @@
  */
 package io.cdap.plugin.sap;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.cdap.plugin.sap.odata.GenericODataClient;
 import io.cdap.plugin.sap.odata.ODataEntity;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.InputFormat;
 import org.apache.hadoop.mapreduce.InputSplit;
@@ -23,16 +27,25 @@ import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
- * InputFormat for mapreduce job, which provides a single split of data.
+ * InputFormat for mapreduce job, which splits the entity set according to {@link ODataSplitPlanner}.
  */
 public class ODataEntityInputFormat extends InputFormat {
+
+  private static final Gson gson = new GsonBuilder().create();
+
   @Override
   public List<InputSplit> getSplits(JobContext jobContext) {
-    return Collections.singletonList(new NoOpSplit());
+    Configuration conf = jobContext.getConfiguration();
+    String configJson = conf.get(ODataEntryInputFormatProvider.PROPERTY_CONFIG_JSON);
+    SapODataConfig config = gson.fromJson(configJson, SapODataConfig.class);
+
+    GenericODataClient client = ODataEntryInputFormatProvider.createClient(config, conf);
+    String query = ODataEntryInputFormatProvider.getQuery(config, conf);
+    return new ArrayList<>(new ODataSplitPlanner(config, client, query).plan());
   }
 
   @Override
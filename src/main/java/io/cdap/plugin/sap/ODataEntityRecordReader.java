@@ -15,28 +15,53 @@
  */
 package io.cdap.plugin.sap;
 
+import com.google.common.base.Strings;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import io.cdap.plugin.sap.odata.GenericODataClient;
+import io.cdap.plugin.sap.odata.ODataDeltaIterator;
 import io.cdap.plugin.sap.odata.ODataEntity;
+import io.cdap.plugin.sap.odata.ODataQueryOptions;
+import io.cdap.plugin.sap.odata.ODataRequestGovernor;
+import io.cdap.plugin.sap.odata.ODataTransferStats;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.Iterator;
 
 /**
- * RecordReader implementation, which reads OData entries
+ * RecordReader implementation, which reads OData entries. In delta mode, the delta link returned along with the last
+ * page is written to the pending {@link ODataDeltaState} once all entities are read. In watermark mode, the
+ * {@link ODataWatermark} of the entities read is written instead.
+ * <p>
+ * Progress is reported against the expected number of entities of the split, see {@link ODataReadProgress}. The
+ * read rate and the estimated time remaining are reported in the status of the task. Request, download and parse
+ * metrics are registered as {@link ODataReadMetrics}, which are emitted as the stage metrics by the source.
  */
 public class ODataEntityRecordReader extends RecordReader<NullWritable, ODataEntity> {
 
+  private static final Logger LOG = LoggerFactory.getLogger(ODataEntityRecordReader.class);
   private static final Gson gson = new GsonBuilder().create();
+  private static final long BYTES_PER_MB = 1024 * 1024;
 
+  private TaskAttemptContext context;
+  private SapODataConfig config;
+  private GenericODataClient client;
+  private ODataRequestGovernor.Lease governorLease;
   private Iterator<ODataEntity> iterator;
+  private ODataDeltaIterator deltaIterator;
+  private ODataWatermark watermark;
+  private ODataReadProgress progress;
+  private ODataReadMetrics readMetrics;
   private ODataEntity value;
+  private boolean finished;
 
   /**
    * Initialize an iterator and config.
@@ -46,20 +71,63 @@ public class ODataEntityRecordReader extends RecordReader<NullWritable, ODataEnt
    */
   @Override
   public void initialize(InputSplit inputSplit, TaskAttemptContext taskAttemptContext) {
+    context = taskAttemptContext;
     Configuration conf = taskAttemptContext.getConfiguration();
     String configJson = conf.get(ODataEntryInputFormatProvider.PROPERTY_CONFIG_JSON);
-    SapODataConfig config = gson.fromJson(configJson, SapODataConfig.class);
+    config = gson.fromJson(configJson, SapODataConfig.class);
 
-    GenericODataClient client = new GenericODataClient(config.getUrl(), config.getUser(), config.getPassword());
-    iterator = client.queryEntitySet(config.getResourcePath(), config.getQuery());
+    client = ODataEntryInputFormatProvider.createClient(config, conf);
+    ODataSplit split = (ODataSplit) inputSplit;
+    if (config.isRequestLimited()) {
+      // the split is limited by its share of the run-wide limits, planned once the splits are planned
+      governorLease = ODataRequestGovernor.forService(config.getUrl())
+        .register(config.getMaxConcurrentRequests() * split.getLimitShare(),
+                  config.getMaxRequestsPerSecond() * split.getLimitShare(), config.getThrottlingMode());
+    }
+    String query = ODataEntryInputFormatProvider.getQuery(config, conf);
+    String select = conf.get(ODataEntryInputFormatProvider.PROPERTY_SELECT);
+    if (!Strings.isNullOrEmpty(select)) {
+      query = ODataQueryOptions.parse(query).set(ODataQueryOptions.SELECT, select).toQuery();
+    }
+    // counted once the splits are planned
+    progress = new ODataReadProgress(split.getExpectedSize());
+    if (config.isDeltaEnabled()) {
+      deltaIterator = client.queryEntitySetChanges(config.getResourcePath(), split.toQuery(query),
+                                                   conf.get(ODataEntryInputFormatProvider.PROPERTY_DELTA_LINK));
+      iterator = deltaIterator;
+    } else {
+      iterator = client.queryEntitySet(config.getResourcePath(), split.toQuery(query));
+    }
+    // measured before prefetching, so that the time of the fetcher thread is measured
+    TimedEntityIterator timedIterator = new TimedEntityIterator(iterator);
+    iterator = timedIterator;
+    readMetrics = new ODataReadMetrics(client::getTransferStats, timedIterator::getNanos);
+    ODataReadMetrics.register(config.getReferenceName(), readMetrics);
+    if (config.isWatermarkEnabled()) {
+      watermark = new ODataWatermark(config.getWatermarkProperty());
+    }
+    if (config.getPrefetchDepth() > 0) {
+      iterator = new PrefetchingEntityIterator(iterator, config.getPrefetchDepth(),
+                                               config.getPrefetchMemoryBudget() * BYTES_PER_MB,
+                                               "odata-prefetch-" + taskAttemptContext.getTaskAttemptID());
+    }
   }
 
   @Override
   public boolean nextKeyValue() {
     if (!iterator.hasNext()) {
+      finished = true;
+      progress.finish();
       return false;
     }
     value = iterator.next();
+    if (watermark != null) {
+      watermark.update(value);
+    }
+    progress.advance();
+    if (progress.isReportDue()) {
+      context.setStatus(progress.getStatus());
+    }
     return true;
   }
 
@@ -75,11 +143,70 @@ public class ODataEntityRecordReader extends RecordReader<NullWritable, ODataEnt
 
   @Override
   public float getProgress() {
-    // progress is unknown
-    return 0.0f;
+    return progress.getProgress();
   }
 
   @Override
   public void close() throws IOException {
+    if (iterator instanceof PrefetchingEntityIterator) {
+      PrefetchingEntityIterator prefetchingIterator = (PrefetchingEntityIterator) iterator;
+      for (PrefetchingEntityIterator.Counter counter : PrefetchingEntityIterator.Counter.values()) {
+        context.getCounter(counter).increment(prefetchingIterator.getCounter(counter));
+      }
+    }
+    try {
+      if (iterator instanceof Closeable) {
+        // releases the connection of the current page
+        ((Closeable) iterator).close();
+      }
+    } finally {
+      // the final values are emitted by the source once the stage is destroyed
+      if (readMetrics != null) {
+        readMetrics.close();
+      }
+      if (governorLease != null) {
+        governorLease.close();
+      }
+    }
+    // fields are not set if the initialization failed, the failure is reported as is
+    if (progress != null) {
+      if (progress.getExpected() != ODataReadProgress.UNKNOWN) {
+        context.getCounter(ODataReadProgress.Counter.EXPECTED_ENTITIES).increment(progress.getExpected());
+      }
+      context.getCounter(ODataReadProgress.Counter.READ_ENTITIES).increment(progress.getRead());
+      LOG.info("{} of '{}' entity set.", progress.getStatus(), config.getResourcePath());
+    }
+    if (readMetrics != null) {
+      context.getCounter(ODataReadMetrics.Metric.PARSE_MILLIS)
+        .increment(readMetrics.snapshot()[ODataReadMetrics.Metric.PARSE_MILLIS.ordinal()]);
+    }
+    if (client != null) {
+      ODataTransferStats transferStats = client.getTransferStats();
+      for (ODataTransferStats.Counter counter : ODataTransferStats.Counter.values()) {
+        context.getCounter(counter).increment(transferStats.getCounter(counter));
+      }
+    }
+    if (deltaIterator != null && finished) {
+      writeDeltaLink();
+    }
+    if (watermark != null && finished && watermark.get() != null) {
+      // splits without entities do not raise the watermark
+      ODataDeltaState.of(config, context.getConfiguration())
+        .writePendingWatermark(context.getTaskAttemptID().toString(), config.getWatermarkProperty(), watermark.get());
+    }
+  }
+
+  /**
+   * Writes the delta link of the completely read entity set, which is committed by the driver once the run succeeds.
+   */
+  private void writeDeltaLink() throws IOException {
+    String deltaLink = deltaIterator.getDeltaLink();
+    if (deltaLink == null) {
+      LOG.warn("'{}' entity set did not return a delta link, the next run will read all entities.",
+               config.getResourcePath());
+      return;
+    }
+    ODataDeltaState.of(config, context.getConfiguration())
+      .writePending(context.getTaskAttemptID().toString(), deltaLink);
   }
 }
@@ -20,22 +20,87 @@ import com.google.common.collect.ImmutableMap;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import io.cdap.cdap.api.data.batch.InputFormatProvider;
+import io.cdap.plugin.sap.odata.GenericODataClient;
+import io.cdap.plugin.sap.odata.ODataMetadata;
+import io.cdap.plugin.sap.odata.ODataQueryOptions;
+import org.apache.hadoop.conf.Configuration;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
  * InputFormatProvider used by cdap to provide configurations to mapreduce job
  */
 public class ODataEntryInputFormatProvider implements InputFormatProvider {
   public static final String PROPERTY_CONFIG_JSON = "cdap.sap.odata.config";
+  /**
+   * Comma-separated names of the properties to request using '$select' query option, derived from the output schema.
+   */
+  public static final String PROPERTY_SELECT = "cdap.sap.odata.select";
+  /**
+   * Service metadata fetched in advance, so that the tasks do not request '$metadata' document.
+   */
+  public static final String PROPERTY_METADATA_JSON = "cdap.sap.odata.metadata";
+  /**
+   * Delta link committed by the previous run, which is used to read the changes of the entity set in delta mode.
+   */
+  public static final String PROPERTY_DELTA_LINK = "cdap.sap.odata.delta.link";
+  /**
+   * '$filter' expression, which selects the entities changed after the watermark committed by the previous run.
+   */
+  public static final String PROPERTY_WATERMARK_FILTER = "cdap.sap.odata.watermark.filter";
   private static final Gson gson = new GsonBuilder().create();
 
   private final Map<String, String> conf;
 
-  public ODataEntryInputFormatProvider(SapODataConfig config) {
-    this.conf = new ImmutableMap.Builder<String, String>()
-      .put(PROPERTY_CONFIG_JSON, gson.toJson(config))
-      .build();
+  private ODataEntryInputFormatProvider(Builder builder) {
+    ImmutableMap.Builder<String, String> conf = new ImmutableMap.Builder<String, String>()
+      .put(PROPERTY_CONFIG_JSON, gson.toJson(builder.config));
+    if (!builder.selectProperties.isEmpty()) {
+      conf.put(PROPERTY_SELECT, String.join(",", builder.selectProperties));
+    }
+    if (builder.metadata != null) {
+      conf.put(PROPERTY_METADATA_JSON, gson.toJson(builder.metadata));
+    }
+    if (builder.deltaLink != null) {
+      conf.put(PROPERTY_DELTA_LINK, builder.deltaLink);
+    }
+    if (builder.watermarkFilter != null) {
+      conf.put(PROPERTY_WATERMARK_FILTER, builder.watermarkFilter);
+    }
+    this.conf = conf.build();
+  }
+
+  /**
+   * @param config plugin config.
+   * @return builder of the provider, which reads the entity set as configured unless narrowed by the builder.
+   */
+  public static Builder builder(SapODataConfig config) {
+    return new Builder(config);
+  }
+
+  /**
+   * Creates a client of the tasks, which uses the metadata of the configuration if available.
+   */
+  static GenericODataClient createClient(SapODataConfig config, Configuration conf) {
+    String metadataJson = conf.get(PROPERTY_METADATA_JSON);
+    ODataMetadata metadata = metadataJson == null ? null : gson.fromJson(metadataJson, ODataMetadata.class);
+    return new GenericODataClient(config.getUrl(), config.getUser(), config.getPassword(), config.getClientOptions(),
+                                  metadata);
+  }
+
+  /**
+   * Returns the query of the entity set, which is the user-provided query narrowed by the watermark filter if any.
+   */
+  @Nullable
+  static String getQuery(SapODataConfig config, Configuration conf) {
+    String watermarkFilter = conf.get(PROPERTY_WATERMARK_FILTER);
+    if (watermarkFilter == null) {
+      return config.getQuery();
+    }
+    return ODataQueryOptions.parse(config.getQuery()).andFilter(watermarkFilter).toQuery();
   }
 
   @Override
@@ -47,4 +112,56 @@ public class ODataEntryInputFormatProvider implements InputFormatProvider {
   public Map<String, String> getInputFormatConfiguration() {
     return conf;
   }
+
+  /**
+   * Builder for {@link ODataEntryInputFormatProvider}.
+   */
+  public static class Builder {
+
+    private final SapODataConfig config;
+    private List<String> selectProperties = Collections.emptyList();
+    private ODataMetadata metadata;
+    private String deltaLink;
+    private String watermarkFilter;
+
+    private Builder(SapODataConfig config) {
+      this.config = config;
+    }
+
+    /**
+     * @param selectProperties names of the properties to request, or empty list to request all of them.
+     */
+    public Builder setSelectProperties(List<String> selectProperties) {
+      this.selectProperties = selectProperties;
+      return this;
+    }
+
+    /**
+     * @param metadata metadata of the entity set, so that the tasks do not request '$metadata' document.
+     */
+    public Builder setMetadata(@Nullable ODataMetadata metadata) {
+      this.metadata = metadata;
+      return this;
+    }
+
+    /**
+     * @param deltaLink delta link of the previous run, used in delta mode.
+     */
+    public Builder setDeltaLink(@Nullable String deltaLink) {
+      this.deltaLink = deltaLink;
+      return this;
+    }
+
+    /**
+     * @param watermarkFilter filter of the entities changed after the watermark, used in watermark mode.
+     */
+    public Builder setWatermarkFilter(@Nullable String watermarkFilter) {
+      this.watermarkFilter = watermarkFilter;
+      return this;
+    }
+
+    public ODataEntryInputFormatProvider build() {
+      return new ODataEntryInputFormatProvider(this);
+    }
+  }
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap;
+
+import io.cdap.plugin.sap.odata.ODataTransferStats;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Cumulative metrics of the entities read by an {@link ODataEntityRecordReader}, which are emitted as the stage
+ * metrics by {@link SapODataSource}.
+ * <p>
+ * Record readers register their metrics under the reference name of the stage once they start, and the source takes
+ * the increments of the metrics registered under its reference name whenever it emits them, regardless of the thread
+ * the readers run in. Metrics of a closed reader stay registered until their final increments are taken, so that the
+ * splits, which are read faster than a batch of records is transformed, are reported as well. Increments are taken
+ * once per reader, so that sources running in the same process do not emit the same increments twice. Values are
+ * read from the counters of the client and {@link TimedEntityIterator}, which are updated without locking.
+ */
+public final class ODataReadMetrics {
+
+  /**
+   * Metrics of the read path. Time metrics are in milliseconds.
+   */
+  public enum Metric {
+    /**
+     * Number of requests sent, including the retries and the duplicate requests.
+     */
+    REQUESTS("odata.requests"),
+    /**
+     * Size of the response contents as received over the network.
+     */
+    RESPONSE_BYTES("odata.response.bytes"),
+    /**
+     * Time from sending the requests to receiving the response headers.
+     */
+    FIRST_BYTE_MILLIS("odata.first.byte.millis"),
+    /**
+     * Time spent waiting for the response contents to arrive over the network.
+     */
+    DOWNLOAD_MILLIS("odata.download.millis"),
+    /**
+     * Time spent parsing the response contents into entities, which is the time spent reading the entities, less the
+     * time spent waiting for the service and the network.
+     */
+    PARSE_MILLIS("odata.parse.millis"),
+    /**
+     * Number of retries of the failed requests.
+     */
+    RETRIES("odata.retries");
+
+    private final String metricName;
+
+    Metric(String metricName) {
+      this.metricName = metricName;
+    }
+
+    /**
+     * @return name of the stage metric.
+     */
+    public String getMetricName() {
+      return metricName;
+    }
+  }
+
+  private static final Map<String, Queue<ODataReadMetrics>> REGISTERED = new ConcurrentHashMap<>();
+
+  private final Supplier<ODataTransferStats> transferStats;
+  private final LongSupplier readNanos;
+  // guarded by this
+  private final long[] taken = new long[Metric.values().length];
+  private volatile boolean closed;
+
+  /**
+   * @param transferStats supplier of the stats of the client.
+   * @param readNanos     supplier of the time spent reading the entities, including the requests.
+   */
+  public ODataReadMetrics(Supplier<ODataTransferStats> transferStats, LongSupplier readNanos) {
+    this.transferStats = transferStats;
+    this.readNanos = readNanos;
+  }
+
+  /**
+   * Registers the given metrics, so that they are emitted by the source of the stage.
+   *
+   * @param referenceName reference name of the stage.
+   */
+  static void register(String referenceName, ODataReadMetrics metrics) {
+    REGISTERED.computeIfAbsent(referenceName, name -> new ConcurrentLinkedQueue<>()).add(metrics);
+  }
+
+  /**
+   * @param referenceName reference name of the stage.
+   * @return metrics registered by the readers of the stage, which must be removed once closed and taken.
+   */
+  static Queue<ODataReadMetrics> getRegistered(String referenceName) {
+    return REGISTERED.computeIfAbsent(referenceName, name -> new ConcurrentLinkedQueue<>());
+  }
+
+  /**
+   * Marks the metrics as final once the reader is closed. The metrics stay registered until their final increments
+   * are taken.
+   */
+  void close() {
+    closed = true;
+  }
+
+  boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * @return increments of the metrics since the previous call, indexed by {@link Metric#ordinal()}.
+   */
+  synchronized long[] takeIncrements() {
+    long[] values = snapshot();
+    long[] increments = new long[values.length];
+    for (int i = 0; i < values.length; i++) {
+      // values derived from several counters may decrease between the snapshots
+      if (values[i] > taken[i]) {
+        increments[i] = values[i] - taken[i];
+        taken[i] = values[i];
+      }
+    }
+    return increments;
+  }
+
+  /**
+   * @return cumulative values of the metrics indexed by {@link Metric#ordinal()}.
+   */
+  public long[] snapshot() {
+    ODataTransferStats stats = transferStats.get();
+    long firstByteMillis = stats.getCounter(ODataTransferStats.Counter.FIRST_BYTE_MILLIS);
+    long downloadMillis = stats.getCounter(ODataTransferStats.Counter.DOWNLOAD_MILLIS);
+    long waitMillis = stats.getCounter(ODataTransferStats.Counter.THROTTLE_WAIT_MILLIS)
+      + stats.getCounter(ODataTransferStats.Counter.RETRY_WAIT_MILLIS);
+    long readMillis = TimeUnit.NANOSECONDS.toMillis(readNanos.getAsLong());
+
+    long[] values = new long[Metric.values().length];
+    values[Metric.REQUESTS.ordinal()] = stats.getCounter(ODataTransferStats.Counter.REQUESTS);
+    values[Metric.RESPONSE_BYTES.ordinal()] = stats.getCounter(ODataTransferStats.Counter.RESPONSE_WIRE_BYTES);
+    values[Metric.FIRST_BYTE_MILLIS.ordinal()] = firstByteMillis;
+    values[Metric.DOWNLOAD_MILLIS.ordinal()] = downloadMillis;
+    values[Metric.PARSE_MILLIS.ordinal()] = Math.max(0, readMillis - firstByteMillis - downloadMillis - waitMillis);
+    values[Metric.RETRIES.ordinal()] = stats.getCounter(ODataTransferStats.Counter.RETRIES);
+    return values;
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Progress of an {@link ODataSplit} read by {@link ODataEntityRecordReader}: the fraction of the expected entities
+ * read so far, the read rate and the estimated time remaining. The expected number of entities is known in advance
+ * for '$skip'/'$top' windows and is counted using '$count' request for the other splits. Progress of the splits,
+ * which can not be counted, such as the changes read using a delta link, is unknown until the split is read.
+ */
+public class ODataReadProgress {
+
+  /**
+   * Expected number of entities or time remaining, which is not known.
+   */
+  public static final long UNKNOWN = -1;
+
+  /**
+   * Counters of the task. Sums of the counters over the tasks give the progress of the whole run.
+   */
+  public enum Counter {
+    /**
+     * Number of entities expected to be read by the splits, which were counted.
+     */
+    EXPECTED_ENTITIES,
+    /**
+     * Number of entities read.
+     */
+    READ_ENTITIES
+  }
+
+  private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final long expected;
+  private final LongSupplier nanoClock;
+  private final long startNanos;
+  private long lastReportNanos;
+  private long read;
+  private boolean finished;
+
+  /**
+   * @param expected expected number of entities or {@value #UNKNOWN} if it is not known.
+   */
+  public ODataReadProgress(long expected) {
+    this(expected, System::nanoTime);
+  }
+
+  ODataReadProgress(long expected, LongSupplier nanoClock) {
+    this.expected = expected;
+    this.nanoClock = nanoClock;
+    this.startNanos = nanoClock.getAsLong();
+    this.lastReportNanos = startNanos;
+  }
+
+  /**
+   * Records an entity read.
+   */
+  public void advance() {
+    read++;
+  }
+
+  /**
+   * Records that all entities of the split are read.
+   */
+  public void finish() {
+    finished = true;
+  }
+
+  public long getExpected() {
+    return expected;
+  }
+
+  public long getRead() {
+    return read;
+  }
+
+  /**
+   * @return fraction of the expected entities read, between 0 and 1. Returns 0 until the split is read if the
+   * expected number of entities is not known.
+   */
+  public float getProgress() {
+    if (finished) {
+      return 1.0f;
+    }
+    if (expected <= 0) {
+      return 0.0f;
+    }
+    // entities inserted after the split was counted do not make the progress exceed 1
+    return Math.min(1.0f, (float) read / expected);
+  }
+
+  /**
+   * @return average number of entities read per second since the split was opened.
+   */
+  public double getEntitiesPerSecond() {
+    long elapsedNanos = nanoClock.getAsLong() - startNanos;
+    return elapsedNanos <= 0 ? 0.0 : (double) read * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+  }
+
+  /**
+   * Estimates the time remaining to read the split at the average rate.
+   *
+   * @return milliseconds remaining or {@value #UNKNOWN} if the expected number of entities or the rate is not known.
+   */
+  public long getRemainingMillis() {
+    if (finished) {
+      return 0;
+    }
+    double rate = getEntitiesPerSecond();
+    if (expected == UNKNOWN || rate <= 0) {
+      return UNKNOWN;
+    }
+    long remaining = Math.max(0, expected - read);
+    return (long) (remaining / rate * TimeUnit.SECONDS.toMillis(1));
+  }
+
+  /**
+   * Checks whether the progress should be reported, so that the status of the task is updated at most once per
+   * second.
+   *
+   * @return {@code true} if the progress was not reported during the last second.
+   */
+  public boolean isReportDue() {
+    long now = nanoClock.getAsLong();
+    if (now - lastReportNanos < REPORT_INTERVAL_NANOS) {
+      return false;
+    }
+    lastReportNanos = now;
+    return true;
+  }
+
+  /**
+   * @return human-readable status, such as "Read 1200 of 5000 entities (24.0%), 350.0 entities/s, 11 s remaining".
+   */
+  public String getStatus() {
+    StringBuilder status = new StringBuilder("Read ").append(read);
+    if (expected != UNKNOWN) {
+      status.append(String.format(" of %d entities (%.1f%%)", expected, getProgress() * 100));
+    } else {
+      status.append(" entities");
+    }
+    status.append(String.format(", %.1f entities/s", getEntitiesPerSecond()));
+    long remainingMillis = getRemainingMillis();
+    if (remainingMillis != UNKNOWN && !finished) {
+      status.append(String.format(", %d s remaining", TimeUnit.MILLISECONDS.toSeconds(remainingMillis)));
+    }
+    return status.toString();
+  }
+}
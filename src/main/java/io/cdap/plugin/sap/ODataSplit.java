@@ -0,0 +1,187 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sap;
+
+import io.cdap.plugin.sap.odata.ODataQueryOptions;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.InputSplit;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+/**
+ * A split, which specifies a part of the entity set to be read by a single {@link ODataEntityRecordReader}. The part
+ * is specified either by '$skip'/'$top' window or by '$filter' range. A split without a window and a range reads the
+ * entity set using the user-provided query as is.
+ */
+public class ODataSplit extends InputSplit implements Writable {
+
+  private static final long UNBOUNDED = -1;
+
+  private long skip;
+  private long top;
+  @Nullable
+  private String orderBy;
+  @Nullable
+  private String filter;
+  /**
+   * Share of the run-wide request limits allotted to this split.
+   */
+  private double limitShare = 1.0;
+  /**
+   * Number of entities the split is expected to return, counted once the splits are planned.
+   */
+  private long expectedSize = ODataReadProgress.UNKNOWN;
+
+  /**
+   * Creates a split, which reads the whole entity set. Also used for deserialization.
+   */
+  public ODataSplit() {
+    this(UNBOUNDED, UNBOUNDED, null, null);
+  }
+
+  /**
+   * @param skip    number of entities to skip.
+   * @param top     number of entities to read.
+   * @param orderBy '$orderby' option, which guarantees stable order of entities across the requests.
+   */
+  public ODataSplit(long skip, long top, @Nullable String orderBy) {
+    this(skip, top, orderBy, null);
+    this.expectedSize = top;
+  }
+
+  /**
+   * @param filter filter expression, which selects a range of entities. Combined with the user-provided '$filter'
+   *               using a logical 'and'.
+   */
+  public ODataSplit(String filter) {
+    this(UNBOUNDED, UNBOUNDED, null, filter);
+  }
+
+  private ODataSplit(long skip, long top, @Nullable String orderBy, @Nullable String filter) {
+    this.skip = skip;
+    this.top = top;
+    this.orderBy = orderBy;
+    this.filter = filter;
+  }
+
+  public long getSkip() {
+    return skip;
+  }
+
+  public long getTop() {
+    return top;
+  }
+
+  @Nullable
+  public String getOrderBy() {
+    return orderBy;
+  }
+
+  @Nullable
+  public String getFilter() {
+    return filter;
+  }
+
+  public double getLimitShare() {
+    return limitShare;
+  }
+
+  /**
+   * @param limitShare share of the run-wide request limits allotted to this split, such as 1 / number of concurrent
+   *                   splits.
+   */
+  public void setLimitShare(double limitShare) {
+    this.limitShare = limitShare;
+  }
+
+  /**
+   * @return number of entities the split is expected to return or {@value ODataReadProgress#UNKNOWN} if the split
+   * was not counted.
+   */
+  public long getExpectedSize() {
+    return expectedSize;
+  }
+
+  /**
+   * @param expectedSize number of entities the split is expected to return or {@value ODataReadProgress#UNKNOWN} if
+   *                     the split can not be counted.
+   */
+  public void setExpectedSize(long expectedSize) {
+    this.expectedSize = expectedSize;
+  }
+
+  /**
+   * Applies the window or the range of the split to the given OData query.
+   *
+   * @param query optional user-provided OData query.
+   * @return OData query to read this split.
+   */
+  @Nullable
+  public String toQuery(@Nullable String query) {
+    if (skip == UNBOUNDED && top == UNBOUNDED && orderBy == null && filter == null) {
+      return query;
+    }
+    ODataQueryOptions options = ODataQueryOptions.parse(query);
+    if (filter != null) {
+      options.andFilter(filter);
+    }
+    if (orderBy != null && !options.contains(ODataQueryOptions.ORDER_BY)) {
+      options.set(ODataQueryOptions.ORDER_BY, orderBy);
+    }
+    if (skip != UNBOUNDED) {
+      options.set(ODataQueryOptions.SKIP, String.valueOf(skip));
+    }
+    if (top != UNBOUNDED) {
+      options.set(ODataQueryOptions.TOP, String.valueOf(top));
+    }
+    return options.toQuery();
+  }
+
+  @Override
+  public void readFields(DataInput dataInput) throws IOException {
+    skip = dataInput.readLong();
+    top = dataInput.readLong();
+    orderBy = WritableUtils.readString(dataInput);
+    filter = WritableUtils.readString(dataInput);
+    limitShare = dataInput.readDouble();
+    expectedSize = dataInput.readLong();
+  }
+
+  @Override
+  public void write(DataOutput dataOutput) throws IOException {
+    dataOutput.writeLong(skip);
+    dataOutput.writeLong(top);
+    WritableUtils.writeString(dataOutput, orderBy);
+    WritableUtils.writeString(dataOutput, filter);
+    dataOutput.writeDouble(limitShare);
+    dataOutput.writeLong(expectedSize);
+  }
+
+  @Override
+  public long getLength() {
+    return Math.max(0, expectedSize);
+  }
+
+  @Override
+  public String[] getLocations() {
+    return new String[0];
+  }
+}
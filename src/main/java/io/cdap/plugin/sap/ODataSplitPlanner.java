@@ -0,0 +1,420 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sap;
+
+import com.google.common.base.Strings;
+import io.cdap.plugin.sap.odata.ODataClient;
+import io.cdap.plugin.sap.odata.ODataEntity;
+import io.cdap.plugin.sap.odata.ODataLiterals;
+import io.cdap.plugin.sap.odata.ODataQueryOptions;
+import io.cdap.plugin.sap.odata.ODataVersion;
+import io.cdap.plugin.sap.odata.PropertyMetadata;
+import io.cdap.plugin.sap.odata.exception.ODataException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Plans {@link ODataSplit}s for the entity set specified by {@link SapODataConfig}. If a partition property is
+ * specified, the range of its values is divided into '$filter' ranges of equal size. Otherwise, the number of entities
+ * is obtained using '$count' request and the entity set is divided into windows of equal size, ordered by the entity
+ * key.
+ */
+public class ODataSplitPlanner {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ODataSplitPlanner.class);
+
+  private final SapODataConfig config;
+  private final ODataClient client;
+  private final String query;
+
+  public ODataSplitPlanner(SapODataConfig config, ODataClient client) {
+    this(config, client, config.getQuery());
+  }
+
+  /**
+   * @param query query of the entity set, which is the user-provided query narrowed by the watermark filter in
+   *              watermark mode.
+   */
+  public ODataSplitPlanner(SapODataConfig config, ODataClient client, @Nullable String query) {
+    this.config = config;
+    this.client = client;
+    this.query = query;
+  }
+
+  /**
+   * Plans splits to read the entity set. Request limits of the run are divided equally between the splits expected
+   * to be read at the same time, see {@link #getLimitShare(int, Integer)}. Splits, which are not '$skip'/'$top'
+   * windows, are counted using '$count' request, so that the readers know the expected number of entities without
+   * sending a request of their own.
+   *
+   * @return list of splits. Single split, which reads the whole entity set, is returned if the entity set can not be
+   * split.
+   */
+  public List<ODataSplit> plan() {
+    List<ODataSplit> splits;
+    if (config.getNumSplits() == 1 || config.isDeltaEnabled()) {
+      // changes are read by a single split, since the delta link covers the whole query
+      splits = Collections.singletonList(new ODataSplit());
+    } else {
+      splits = Strings.isNullOrEmpty(config.getPartitionProperty()) ? planWindows() : planRanges();
+    }
+    double limitShare = getLimitShare(splits.size(), config.getConcurrentSplits());
+    for (ODataSplit split : splits) {
+      split.setLimitShare(limitShare);
+      if (!config.isDeltaEnabled() && split.getExpectedSize() == ODataReadProgress.UNKNOWN) {
+        // changes since the delta link can not be counted
+        split.setExpectedSize(countExpected(split));
+      }
+    }
+    return splits;
+  }
+
+  /**
+   * Returns the share of the run-wide request limits allotted to each split. Limits are divided between the splits
+   * read at the same time rather than between all splits, since dividing them between 100 splits read 8 at a time
+   * would keep the run at 8% of its limits. If more splits than expected are read at once, the limits of the run are
+   * exceeded proportionally, which is why all splits are assumed to be read at once unless specified otherwise.
+   *
+   * @param numSplits        number of planned splits.
+   * @param concurrentSplits number of splits expected to be read at the same time or {@code null} if unknown.
+   */
+  static double getLimitShare(int numSplits, @Nullable Integer concurrentSplits) {
+    int concurrent = concurrentSplits == null ? numSplits : Math.min(numSplits, concurrentSplits);
+    return 1.0 / Math.max(1, concurrent);
+  }
+
+  private List<ODataSplit> planWindows() {
+    String orderBy = getOrderBy();
+    if (orderBy == null) {
+      // entities can not be split into windows without a stable order
+      return Collections.singletonList(new ODataSplit());
+    }
+
+    // '$skip' and '$top' of the user-provided query define the boundaries of the data to be read
+    ODataQueryOptions options = ODataQueryOptions.parse(query);
+    long skip = parseLong(options.get(ODataQueryOptions.SKIP), 0);
+    long total = getWindowSize(client.countEntitySet(config.getResourcePath(), query), options);
+
+    int numSplits = getNumSplits(total);
+    if (numSplits <= 1) {
+      ODataSplit split = new ODataSplit();
+      split.setExpectedSize(total);
+      return Collections.singletonList(split);
+    }
+
+    List<ODataSplit> splits = new ArrayList<>(numSplits);
+    long splitSize = (total + numSplits - 1) / numSplits;
+    for (long offset = 0; offset < total; offset += splitSize) {
+      splits.add(new ODataSplit(skip + offset, Math.min(splitSize, total - offset), orderBy));
+    }
+    return splits;
+  }
+
+  private List<ODataSplit> planRanges() {
+    String propertyName = config.getPartitionProperty();
+    PropertyMetadata property = client.getEntitySetType(config.getResourcePath()).getProperties().stream()
+      .filter(p -> p.getName().equals(propertyName))
+      .findFirst()
+      .orElseThrow(() -> new IllegalArgumentException(
+        String.format("Partition property '%s' does not exist in entity set '%s'.", propertyName,
+                      config.getResourcePath())));
+    PartitionType type = PartitionType.of(property);
+
+    String lowerBound = config.getPartitionLowerBound() != null
+      ? config.getPartitionLowerBound() : discoverBound(property, type, "asc");
+    String upperBound = config.getPartitionUpperBound() != null
+      ? config.getPartitionUpperBound() : discoverBound(property, type, "desc");
+    if (lowerBound == null || upperBound == null) {
+      // entity set does not contain non-null values of the partition property
+      return Collections.singletonList(new ODataSplit());
+    }
+
+    BigDecimal lower = type.parse(lowerBound);
+    BigDecimal upper = type.parse(upperBound);
+    if (lower.compareTo(upper) > 0) {
+      throw new IllegalArgumentException(
+        String.format("Lower bound '%s' of partition property '%s' is greater than upper bound '%s'.",
+                      lowerBound, propertyName, upperBound));
+    }
+
+    int numSplits = config.getNumSplits() == SapODataConfig.AUTO_NUM_SPLITS
+      ? getNumSplits(client.countEntitySet(config.getResourcePath(), query))
+      : config.getNumSplits();
+    List<BigDecimal> boundaries = type.getBoundaries(lower, upper, numSplits);
+    if (boundaries.isEmpty()) {
+      return Collections.singletonList(new ODataSplit());
+    }
+
+    // Width of the zero-padded numeric strings, such as SAP document numbers
+    int width = Math.max(lowerBound.trim().length(), upperBound.trim().length());
+    ODataVersion version = client.getVersion();
+    List<String> literals = new ArrayList<>(boundaries.size());
+    for (BigDecimal boundary : boundaries) {
+      literals.add(ODataLiterals.format(version, property.getEdmTypeName(), type.toLiteralValue(boundary, width)));
+    }
+
+    // bounds are only used to compute the ranges, the first and the last ranges are unbounded to read all entities
+    List<ODataSplit> splits = new ArrayList<>(literals.size() + 1);
+    splits.add(new ODataSplit(String.format("(%s lt %s or %s eq null)", propertyName, literals.get(0),
+                                            propertyName)));
+    for (int i = 1; i < literals.size(); i++) {
+      splits.add(new ODataSplit(String.format("%s ge %s and %s lt %s", propertyName, literals.get(i - 1),
+                                              propertyName, literals.get(i))));
+    }
+    splits.add(new ODataSplit(String.format("%s ge %s", propertyName, literals.get(literals.size() - 1))));
+    return splits;
+  }
+
+  /**
+   * Discovers the lowest or the highest value of the partition property by ordering entities by the property.
+   *
+   * @return string representation of the bound or {@code null} if there are no entities with non-null value.
+   */
+  @Nullable
+  private String discoverBound(PropertyMetadata property, PartitionType type, String direction) {
+    String boundQuery = ODataQueryOptions.parse(query)
+      .retainSystemOptions(Arrays.asList(ODataQueryOptions.FILTER, ODataQueryOptions.SEARCH))
+      .andFilter(property.getName() + " ne null")
+      .set(ODataQueryOptions.ORDER_BY, property.getName() + " " + direction)
+      .set(ODataQueryOptions.TOP, "1")
+      .set(ODataQueryOptions.SELECT, property.getName())
+      .toQuery();
+    Iterator<ODataEntity> iterator = client.queryEntitySet(config.getResourcePath(), boundQuery);
+    if (!iterator.hasNext()) {
+      return null;
+    }
+    Object value = iterator.next().get(property.getName());
+    return value == null ? null : type.toBound(value);
+  }
+
+  /**
+   * Returns the number of entities the split is expected to return.
+   *
+   * @return expected number of entities or {@value ODataReadProgress#UNKNOWN} if the split can not be counted.
+   */
+  private long countExpected(ODataSplit split) {
+    String splitQuery = split.toQuery(query);
+    try {
+      long count = client.countEntitySet(config.getResourcePath(), splitQuery);
+      return getWindowSize(count, ODataQueryOptions.parse(splitQuery));
+    } catch (ODataException | IllegalArgumentException e) {
+      LOG.debug("Unable to count entities of '{}' entity set, progress is unknown.", config.getResourcePath(), e);
+      return ODataReadProgress.UNKNOWN;
+    }
+  }
+
+  private int getNumSplits(long total) {
+    long numSplits = config.getNumSplits() == SapODataConfig.AUTO_NUM_SPLITS
+      ? (total + config.getRowsPerSplit() - 1) / config.getRowsPerSplit()
+      : config.getNumSplits();
+    return (int) Math.max(1, Math.min(numSplits, total));
+  }
+
+  @Nullable
+  private String getOrderBy() {
+    String userOrderBy = ODataQueryOptions.parse(query).get(ODataQueryOptions.ORDER_BY);
+    if (userOrderBy != null) {
+      return userOrderBy;
+    }
+    List<String> keyPropertyNames = client.getEntitySetType(config.getResourcePath()).getKeyPropertyNames();
+    return keyPropertyNames.isEmpty() ? null : String.join(",", keyPropertyNames);
+  }
+
+  /**
+   * Applies '$skip' and '$top' options of the query to the number of entities matching the query.
+   *
+   * @param count   number of entities matching the query, which is counted without '$skip' and '$top' options.
+   * @param options query options.
+   * @return number of entities returned by the query.
+   * @throws IllegalArgumentException if '$skip' or '$top' value is not a number.
+   */
+  static long getWindowSize(long count, ODataQueryOptions options) {
+    long skip = parseLong(options.get(ODataQueryOptions.SKIP), 0);
+    long top = parseLong(options.get(ODataQueryOptions.TOP), Long.MAX_VALUE);
+    return Math.min(Math.max(0, count - skip), top);
+  }
+
+  private static long parseLong(@Nullable String value, long defaultValue) {
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(String.format("Invalid query option value: '%s'.", value), e);
+    }
+  }
+
+  /**
+   * Types of the properties, which can be used for partitioning. Values of all types are represented as
+   * {@link BigDecimal}. Date and time values are represented as milliseconds since the epoch.
+   */
+  private enum PartitionType {
+    INTEGER(true, 1),
+    DECIMAL(false, 1),
+    TIMESTAMP(true, 1),
+    DATE(true, TimeUnit.DAYS.toMillis(1)),
+    NUMERIC_STRING(true, 1);
+
+    private final boolean integral;
+    private final BigDecimal unit;
+
+    PartitionType(boolean integral, long unit) {
+      this.integral = integral;
+      this.unit = BigDecimal.valueOf(unit);
+    }
+
+    static PartitionType of(PropertyMetadata property) {
+      switch (property.getEdmTypeName()) {
+        case "Byte":
+        case "SByte":
+        case "Int16":
+        case "Int32":
+        case "Int64":
+          return INTEGER;
+        case "Decimal":
+        case "Double":
+        case "Single":
+          return DECIMAL;
+        case "DateTime":
+        case "DateTimeOffset":
+          return TIMESTAMP;
+        case "Date":
+          return DATE;
+        case "String":
+          return NUMERIC_STRING;
+        default:
+          throw new IllegalArgumentException(
+            String.format("Partition property '%s' is of unsupported type '%s'. Supported types are: numeric, " +
+                            "date, time and string containing numbers.", property.getName(),
+                          property.getEdmTypeName()));
+      }
+    }
+
+    /**
+     * Parses user-provided or discovered bound.
+     */
+    BigDecimal parse(String bound) {
+      String trimmed = bound.trim();
+      try {
+        if (this == TIMESTAMP || this == DATE) {
+          return BigDecimal.valueOf(parseInstant(trimmed).toEpochMilli());
+        }
+        return new BigDecimal(trimmed);
+      } catch (NumberFormatException | DateTimeParseException e) {
+        throw new IllegalArgumentException(String.format("Invalid partition bound: '%s'.", bound), e);
+      }
+    }
+
+    /**
+     * Converts the value of the partition property to a string bound.
+     */
+    String toBound(Object value) {
+      if (value instanceof Calendar) {
+        return Instant.ofEpochMilli(((Calendar) value).getTimeInMillis()).toString();
+      }
+      if (value instanceof Date) {
+        // java.sql.Timestamp is used by Olingo V4 for date and time values
+        return Instant.ofEpochMilli(((Date) value).getTime()).toString();
+      }
+      return value.toString();
+    }
+
+    /**
+     * Computes boundaries of the ranges. The first range starts with the lower bound and the last range ends with the
+     * upper bound, so the boundaries between the ranges are returned.
+     *
+     * @return strictly increasing boundaries, at most {@code numSplits - 1}.
+     */
+    List<BigDecimal> getBoundaries(BigDecimal lower, BigDecimal upper, int numSplits) {
+      List<BigDecimal> boundaries = new ArrayList<>();
+      if (numSplits <= 1) {
+        return boundaries;
+      }
+      BigDecimal splits = BigDecimal.valueOf(numSplits);
+      if (integral) {
+        BigDecimal lowerUnits = lower.divide(unit, 0, RoundingMode.FLOOR);
+        BigDecimal upperUnits = upper.divide(unit, 0, RoundingMode.FLOOR);
+        BigDecimal stride = upperUnits.subtract(lowerUnits).add(BigDecimal.ONE).divide(splits, 0, RoundingMode.CEILING);
+        for (int i = 1; i < numSplits; i++) {
+          BigDecimal boundary = lowerUnits.add(stride.multiply(BigDecimal.valueOf(i)));
+          if (boundary.compareTo(upperUnits) > 0) {
+            break;
+          }
+          boundaries.add(boundary.multiply(unit));
+        }
+        return boundaries;
+      }
+      BigDecimal stride = upper.subtract(lower).divide(splits, MathContext.DECIMAL64);
+      if (stride.signum() == 0) {
+        return boundaries;
+      }
+      for (int i = 1; i < numSplits; i++) {
+        boundaries.add(lower.add(stride.multiply(BigDecimal.valueOf(i))));
+      }
+      return boundaries;
+    }
+
+    /**
+     * Converts the boundary to the value accepted by {@link ODataLiterals#format(ODataVersion, String, Object)}.
+     */
+    Object toLiteralValue(BigDecimal boundary, int width) {
+      switch (this) {
+        case TIMESTAMP:
+        case DATE:
+          return Instant.ofEpochMilli(boundary.longValueExact());
+        case NUMERIC_STRING:
+          return Strings.padStart(boundary.toPlainString(), width, '0');
+        default:
+          return boundary;
+      }
+    }
+
+    private static Instant parseInstant(String value) {
+      try {
+        return OffsetDateTime.parse(value).toInstant();
+      } catch (DateTimeParseException e) {
+        // value without offset
+      }
+      try {
+        return LocalDateTime.parse(value).toInstant(ZoneOffset.UTC);
+      } catch (DateTimeParseException e) {
+        // value without time
+      }
+      return LocalDate.parse(value).atStartOfDay().toInstant(ZoneOffset.UTC);
+    }
+  }
+}
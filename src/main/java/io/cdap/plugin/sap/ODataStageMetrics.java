@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap;
+
+import io.cdap.cdap.etl.api.StageMetrics;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Emits the {@link ODataReadMetrics} registered by the record readers of the stage and the time spent transforming
+ * the entities as the stage metrics, once per batch of records and once the stage is destroyed. Transform time is
+ * accumulated in plain fields between the batches, since the transform of a stage instance runs in a single thread.
+ */
+final class ODataStageMetrics {
+
+  static final String TRANSFORM_MILLIS = "odata.transform.millis";
+
+  /**
+   * Number of records transformed between the emissions.
+   */
+  static final int BATCH_SIZE = 1000;
+
+  private final StageMetrics metrics;
+  private final Queue<ODataReadMetrics> readMetrics;
+  private long transformNanos;
+  private int records;
+
+  /**
+   * @param metrics       metrics of the stage.
+   * @param referenceName reference name of the stage, under which the readers register their metrics.
+   */
+  ODataStageMetrics(StageMetrics metrics, String referenceName) {
+    this.metrics = metrics;
+    this.readMetrics = ODataReadMetrics.getRegistered(referenceName);
+  }
+
+  /**
+   * Records the time spent transforming a record and emits the metrics once the batch is complete.
+   */
+  void recordTransform(long nanos) {
+    transformNanos += nanos;
+    if (++records >= BATCH_SIZE) {
+      emit();
+    }
+  }
+
+  /**
+   * Emits the increments of the metrics since the previous emission.
+   */
+  void emit() {
+    for (ODataReadMetrics reader : readMetrics) {
+      // checked first, so that the increments made before closing are taken before the reader is removed
+      boolean closed = reader.isClosed();
+      emitReadMetrics(reader.takeIncrements());
+      if (closed) {
+        readMetrics.remove(reader);
+      }
+    }
+
+    long transformMillis = TimeUnit.NANOSECONDS.toMillis(transformNanos);
+    count(TRANSFORM_MILLIS, transformMillis);
+    // the remainder is carried over, so that short batches are not rounded down to zero
+    transformNanos -= TimeUnit.MILLISECONDS.toNanos(transformMillis);
+    records = 0;
+  }
+
+  private void emitReadMetrics(long[] increments) {
+    for (ODataReadMetrics.Metric metric : ODataReadMetrics.Metric.values()) {
+      count(metric.getMetricName(), increments[metric.ordinal()]);
+    }
+  }
+
+  private void count(String name, long delta) {
+    // metrics are counted in int increments
+    for (long remaining = delta; remaining > 0; remaining -= Integer.MAX_VALUE) {
+      metrics.count(name, (int) Math.min(remaining, Integer.MAX_VALUE));
+    }
+  }
+}
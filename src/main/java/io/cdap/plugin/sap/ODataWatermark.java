@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap;
+
+import io.cdap.plugin.sap.odata.ODataEntity;
+import io.cdap.plugin.sap.odata.ODataLiterals;
+import io.cdap.plugin.sap.odata.ODataVersion;
+import io.cdap.plugin.sap.odata.PropertyMetadata;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.Date;
+import javax.annotation.Nullable;
+
+/**
+ * High-water mark of a 'DateTime' or 'DateTimeOffset' property, which is used to read the entities changed since the
+ * previous run by services that do not support delta links.
+ * <p>
+ * Each task tracks the highest value of the entities it reads. The values of the tasks are merged by
+ * {@link ODataDeltaState} once the run succeeds and the next run reads the entities with greater values only.
+ */
+public class ODataWatermark {
+
+  private final String propertyName;
+  private Instant value;
+
+  public ODataWatermark(String propertyName) {
+    this.propertyName = propertyName;
+  }
+
+  /**
+   * Raises the watermark to the value of the entity property, if it is greater.
+   */
+  public void update(ODataEntity entity) {
+    Object propertyValue = entity.get(propertyName);
+    if (propertyValue == null) {
+      return;
+    }
+    Instant instant = toInstant(propertyValue);
+    if (value == null || instant.isAfter(value)) {
+      value = instant;
+    }
+  }
+
+  /**
+   * @return the highest value of the property or {@code null} if no entity has a value.
+   */
+  @Nullable
+  public Instant get() {
+    return value;
+  }
+
+  /**
+   * Builds a '$filter' expression, which selects the entities changed after the given watermark, such as
+   * "ChangedAt gt datetime'2019-08-29T14:52:08.155'" in OData V2 or "ChangedAt gt 2019-08-29T14:52:08.155Z" in
+   * OData V4. Values are formatted with millisecond precision, so that the entities with the same millisecond as the
+   * watermark may be read again, but no changes are missed.
+   *
+   * @param version   OData protocol version.
+   * @param property  watermark property.
+   * @param watermark watermark committed by the previous run.
+   * @return filter expression.
+   * @throws IllegalArgumentException if the property is not of 'DateTime' or 'DateTimeOffset' type.
+   */
+  public static String toFilter(ODataVersion version, PropertyMetadata property, Instant watermark) {
+    checkSupported(property);
+    return String.format("%s gt %s", property.getName(),
+                         ODataLiterals.format(version, property.getEdmTypeName(), watermark));
+  }
+
+  /**
+   * @throws IllegalArgumentException if the property is not of 'DateTime' or 'DateTimeOffset' type.
+   */
+  public static void checkSupported(PropertyMetadata property) {
+    if (!"DateTime".equals(property.getEdmTypeName()) && !"DateTimeOffset".equals(property.getEdmTypeName())) {
+      throw new IllegalArgumentException(
+        String.format("Watermark property '%s' is of unsupported type '%s'. Supported types are: 'DateTime' and " +
+                        "'DateTimeOffset'.", property.getName(), property.getEdmTypeName()));
+    }
+  }
+
+  private Instant toInstant(Object propertyValue) {
+    if (propertyValue instanceof Calendar) {
+      // Olingo V2 uses Calendar for both 'Edm.DateTime' and 'Edm.DateTimeOffset'
+      return ((Calendar) propertyValue).toInstant();
+    }
+    if (propertyValue instanceof Timestamp) {
+      // Olingo V4 uses Timestamp for 'Edm.DateTimeOffset'
+      return ((Timestamp) propertyValue).toInstant();
+    }
+    if (propertyValue instanceof Date) {
+      return Instant.ofEpochMilli(((Date) propertyValue).getTime());
+    }
+    throw new IllegalArgumentException(String.format("Watermark property '%s' has unsupported value: '%s'.",
+                                                     propertyName, propertyValue));
+  }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sap;
+
+import io.cdap.plugin.sap.odata.ODataEntity;
+import io.cdap.plugin.sap.odata.ODataPropertyIndex;
+import io.cdap.plugin.sap.odata.exception.ODataException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An iterator, which fetches and decodes entities of the given iterator in a background thread, while the entities
+ * fetched before are consumed. Entities are passed to the consumer in batches through a bounded queue. The fetcher
+ * blocks once either the queue depth or the memory budget is exhausted.
+ * Wait times of both sides show whether the pipeline is network-bound (the consumer waits for entities) or CPU-bound
+ * (the fetcher waits for free space).
+ */
+public class PrefetchingEntityIterator implements Iterator<ODataEntity>, Closeable {
+
+  /**
+   * Counters of the prefetch pipeline.
+   */
+  public enum Counter {
+    /**
+     * Time the fetcher waited for free space in the queue, the pipeline is CPU-bound if it is high.
+     */
+    FETCHER_WAIT_MILLIS,
+    /**
+     * Time the consumer waited for entities, the pipeline is network-bound if it is high.
+     */
+    CONSUMER_WAIT_MILLIS,
+    PREFETCHED_BATCHES,
+    PREFETCHED_BYTES,
+    /**
+     * Maximum estimated size of the entities buffered in the queue.
+     */
+    PEAK_BUFFERED_BYTES
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(PrefetchingEntityIterator.class);
+  private static final int BATCH_SIZE = 1000;
+  private static final long CLOSE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  private static final Batch END = new Batch(Collections.emptyList(), 0);
+
+  private final Iterator<ODataEntity> source;
+  private final BlockingQueue<Batch> queue;
+  private final long memoryBudget;
+  private final Thread fetcher;
+  private final Object budgetLock = new Object();
+  private final AtomicLong fetcherWaitNanos = new AtomicLong();
+  private final AtomicLong prefetchedBatches = new AtomicLong();
+  private final AtomicLong prefetchedBytes = new AtomicLong();
+  private final AtomicBoolean sourceClosed = new AtomicBoolean();
+
+  /**
+   * Estimated size of the batches in the queue, guarded by {@link #budgetLock}.
+   */
+  private long bufferedBytes;
+  private volatile long peakBufferedBytes;
+  private long consumerWaitNanos;
+
+  private volatile Throwable failure;
+  private volatile boolean closed;
+
+  private Iterator<ODataEntity> current = Collections.emptyIterator();
+  private boolean finished;
+
+  /**
+   * @param source       iterator, which fetches the entities.
+   * @param depth        maximum number of batches in the queue.
+   * @param memoryBudget maximum estimated size of the entities in the queue, in bytes. A single batch is queued even
+   *                     if it exceeds the budget.
+   * @param name         name of the fetcher thread.
+   */
+  public PrefetchingEntityIterator(Iterator<ODataEntity> source, int depth, long memoryBudget, String name) {
+    this.source = source;
+    this.queue = new ArrayBlockingQueue<>(depth);
+    this.memoryBudget = memoryBudget;
+    this.fetcher = new Thread(this::fetch, name);
+    this.fetcher.setDaemon(true);
+    this.fetcher.start();
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!current.hasNext()) {
+      if (finished) {
+        return false;
+      }
+      Batch batch = take();
+      if (batch == END) {
+        finished = true;
+        rethrowFailure();
+        return false;
+      }
+      current = batch.entities.iterator();
+    }
+    return true;
+  }
+
+  @Override
+  public ODataEntity next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return current.next();
+  }
+
+  /**
+   * Stops the fetcher and waits until it stops, so that no requests are sent once the iterator is closed. The source
+   * is closed to abort the request in progress, since an interrupt does not stop a blocking socket read.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    fetcher.interrupt();
+    closeSource();
+    queue.clear();
+    synchronized (budgetLock) {
+      bufferedBytes = 0;
+      budgetLock.notifyAll();
+    }
+    try {
+      fetcher.join(CLOSE_TIMEOUT_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (fetcher.isAlive()) {
+      LOG.warn("Prefetch thread '{}' did not stop within {} ms.", fetcher.getName(), CLOSE_TIMEOUT_MILLIS);
+    }
+  }
+
+  public long getCounter(Counter counter) {
+    switch (counter) {
+      case FETCHER_WAIT_MILLIS:
+        return TimeUnit.NANOSECONDS.toMillis(fetcherWaitNanos.get());
+      case CONSUMER_WAIT_MILLIS:
+        return TimeUnit.NANOSECONDS.toMillis(consumerWaitNanos);
+      case PREFETCHED_BATCHES:
+        return prefetchedBatches.get();
+      case PREFETCHED_BYTES:
+        return prefetchedBytes.get();
+      case PEAK_BUFFERED_BYTES:
+        return peakBufferedBytes;
+      default:
+        throw new IllegalArgumentException("Unknown counter: " + counter);
+    }
+  }
+
+  private void fetch() {
+    try {
+      List<ODataEntity> entities = new ArrayList<>(BATCH_SIZE);
+      long batchBytes = 0;
+      while (!closed && source.hasNext()) {
+        ODataEntity entity = source.next();
+        entities.add(entity);
+        batchBytes += estimateSize(entity);
+        if (entities.size() >= BATCH_SIZE) {
+          put(new Batch(entities, batchBytes));
+          entities = new ArrayList<>(BATCH_SIZE);
+          batchBytes = 0;
+        }
+      }
+      if (!entities.isEmpty()) {
+        put(new Batch(entities, batchBytes));
+      }
+    } catch (InterruptedException e) {
+      // closed by the consumer
+      return;
+    } catch (Throwable t) {
+      failure = t;
+    } finally {
+      closeSource();
+    }
+    try {
+      queue.put(END);
+    } catch (InterruptedException e) {
+      // closed by the consumer
+    }
+  }
+
+  private void put(Batch batch) throws InterruptedException {
+    long start = System.nanoTime();
+    synchronized (budgetLock) {
+      while (bufferedBytes > 0 && bufferedBytes + batch.bytes > memoryBudget) {
+        budgetLock.wait();
+      }
+      bufferedBytes += batch.bytes;
+      peakBufferedBytes = Math.max(peakBufferedBytes, bufferedBytes);
+    }
+    queue.put(batch);
+    fetcherWaitNanos.addAndGet(System.nanoTime() - start);
+    prefetchedBatches.incrementAndGet();
+    prefetchedBytes.addAndGet(batch.bytes);
+  }
+
+  private Batch take() {
+    long start = System.nanoTime();
+    try {
+      Batch batch = queue.take();
+      releaseBudget(batch.bytes);
+      return batch;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ODataException("Interrupted while waiting for prefetched entities.", e);
+    } finally {
+      consumerWaitNanos += System.nanoTime() - start;
+    }
+  }
+
+  private void releaseBudget(long bytes) {
+    synchronized (budgetLock) {
+      bufferedBytes -= bytes;
+      budgetLock.notifyAll();
+    }
+  }
+
+  private void rethrowFailure() {
+    if (failure == null) {
+      return;
+    }
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+    throw new ODataException("Unable to prefetch entities: " + failure.getMessage(), failure);
+  }
+
+  /**
+   * Closes the source once, either by the fetcher once it is done, or by the consumer to abort the fetcher.
+   */
+  private void closeSource() {
+    if (!sourceClosed.compareAndSet(false, true)) {
+      return;
+    }
+    if (source instanceof Closeable) {
+      try {
+        ((Closeable) source).close();
+      } catch (IOException e) {
+        // response is already consumed or abandoned
+      }
+    }
+  }
+
+  /**
+   * Roughly estimates the heap size of the entity, which is used to stay within the memory budget.
+   */
+  static long estimateSize(ODataEntity entity) {
+    ODataPropertyIndex index = entity.getIndex();
+    if (index == null) {
+      return 16 + estimateSize(entity.getProperties());
+    }
+    // entity and values array
+    long size = 40;
+    for (int i = 0; i < index.size(); i++) {
+      size += estimateSize(entity.get(i));
+    }
+    return size;
+  }
+
+  private static long estimateSize(Object value) {
+    if (value == null) {
+      return 8;
+    }
+    if (value instanceof CharSequence) {
+      return 48 + 2L * ((CharSequence) value).length();
+    }
+    if (value instanceof byte[]) {
+      return 24 + ((byte[]) value).length;
+    }
+    if (value instanceof Map) {
+      long size = 48;
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        // keys are shared between entities
+        size += 40 + estimateSize(entry.getValue());
+      }
+      return size;
+    }
+    if (value instanceof Collection) {
+      long size = 32;
+      for (Object element : (Collection<?>) value) {
+        size += 8 + estimateSize(element);
+      }
+      return size;
+    }
+    return 32;
+  }
+
+  /**
+   * Entities passed to the consumer at once along with their estimated size.
+   */
+  private static class Batch {
+    private final List<ODataEntity> entities;
+    private final long bytes;
+
+    Batch(List<ODataEntity> entities, long bytes) {
+      this.entities = entities;
+      this.bytes = bytes;
+    }
+  }
+}
@@ -27,6 +27,11 @@ import io.cdap.cdap.api.plugin.PluginConfig;
 import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.plugin.common.Constants;
 import io.cdap.plugin.common.IdUtils;
+import io.cdap.plugin.sap.odata.ODataClientOptions;
+import io.cdap.plugin.sap.odata.ODataQueryOptions;
+import io.cdap.plugin.sap.odata.ODataRequestGovernor;
+import io.cdap.plugin.sap.odata.ODataThrottlingMode;
+import io.cdap.plugin.sap.odata.ODataWireFormat;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -42,7 +47,16 @@ import javax.annotation.Nullable;
  */
 public class SapODataConfig extends PluginConfig {
 
+  /**
+   * Number of splits value, which indicates that the number of splits must be computed automatically.
+   */
+  public static final int AUTO_NUM_SPLITS = 0;
+
   private static final String QUESTION_MARK = "?";
+  private static final int DEFAULT_NUM_SPLITS = 1;
+  private static final long DEFAULT_ROWS_PER_SPLIT = 100000;
+  private static final int DEFAULT_PREFETCH_DEPTH = 0;
+  private static final int DEFAULT_PREFETCH_MEMORY_BUDGET_MB = 64;
 
   private static final Set<Schema.Type> SUPPORTED_SIMPLE_TYPES = ImmutableSet.of(Schema.Type.BOOLEAN, Schema.Type.INT,
                                                                                  Schema.Type.FLOAT, Schema.Type.DOUBLE,
@@ -91,8 +105,163 @@ public class SapODataConfig extends PluginConfig {
   @Nullable
   private String schema;
 
+  @Name(SapODataConstants.NUM_SPLITS)
+  @Description("Number of splits used to read the entity set in parallel. If set to 0, the number of splits is " +
+    "computed from the number of entities and 'Rows Per Split'.")
+  @Macro
+  @Nullable
+  private Integer numSplits;
+
+  @Name(SapODataConstants.ROWS_PER_SPLIT)
+  @Description("Target number of entities per split, used when the number of splits is computed automatically.")
+  @Macro
+  @Nullable
+  private Long rowsPerSplit;
+
+  @Name(SapODataConstants.PARTITION_PROPERTY)
+  @Description("Numeric, date or time property used to split the entity set into ranges of values. Each split " +
+    "reads its own range using '$filter' option, so that no '$skip' is used.")
+  @Macro
+  @Nullable
+  private String partitionProperty;
+
+  @Name(SapODataConstants.PARTITION_LOWER_BOUND)
+  @Description("Lower bound of the partition property values. Discovered automatically if not specified.")
+  @Macro
+  @Nullable
+  private String partitionLowerBound;
+
+  @Name(SapODataConstants.PARTITION_UPPER_BOUND)
+  @Description("Upper bound of the partition property values. Discovered automatically if not specified.")
+  @Macro
+  @Nullable
+  private String partitionUpperBound;
+
+  @Name(SapODataConstants.PAGE_SIZE)
+  @Description("Maximum number of entities requested at once. If set, entities are requested page by page using " +
+    "'$skip' and '$top' options. If set to 0 or not specified, server-driven paging is used.")
+  @Macro
+  @Nullable
+  private Integer pageSize;
+
+  @Name(SapODataConstants.WIRE_FORMAT)
+  @Description("Format of the OData V2 responses: 'atom' or 'json'. JSON responses are smaller and faster to parse. " +
+    "Atom format is used if the service rejects JSON format. OData V4 services are always consumed in JSON format.")
+  @Macro
+  @Nullable
+  private String wireFormat;
+
+  @Name(SapODataConstants.PREFETCH_DEPTH)
+  @Description("Number of entity batches fetched in background while the previous ones are processed. If set to 0, " +
+    "entities are fetched only when they are processed.")
+  @Macro
+  @Nullable
+  private Integer prefetchDepth;
+
+  @Name(SapODataConstants.PREFETCH_MEMORY_BUDGET)
+  @Description("Maximum estimated size of the prefetched entities, in megabytes.")
+  @Macro
+  @Nullable
+  private Integer prefetchMemoryBudget;
+
+  @Name(SapODataConstants.MAX_CONNECTIONS_PER_HOST)
+  @Description("Maximum number of keep-alive connections to the service host, shared by the splits read by the same " +
+    "process.")
+  @Macro
+  @Nullable
+  private Integer maxConnectionsPerHost;
+
+  @Name(SapODataConstants.IDLE_CONNECTION_TIMEOUT)
+  @Description("Time in seconds after which idle keep-alive connections are closed.")
+  @Macro
+  @Nullable
+  private Integer idleConnectionTimeout;
+
+  @Name(SapODataConstants.MAX_RETRIES)
+  @Description("Maximum number of retries of a request, which failed due to a network failure or a temporarily " +
+    "unavailable service. A failed page is requested again and the read resumes from the failed page. If set to 0, " +
+    "failed requests are not retried.")
+  @Macro
+  @Nullable
+  private Integer maxRetries;
+
+  @Name(SapODataConstants.MAX_RETRY_DELAY)
+  @Description("Maximum delay in seconds before a retry. Delays grow exponentially up to this value, unless the " +
+    "service requests a longer one using 'Retry-After' header.")
+  @Macro
+  @Nullable
+  private Integer maxRetryDelay;
+
+  @Name(SapODataConstants.MAX_CONCURRENT_REQUESTS)
+  @Description("Maximum number of concurrent requests to the service, shared by all splits of the run. If not " +
+    "specified, requests are not limited.")
+  @Macro
+  @Nullable
+  private Integer maxConcurrentRequests;
+
+  @Name(SapODataConstants.MAX_REQUESTS_PER_SECOND)
+  @Description("Maximum number of requests per second to the service, shared by all splits of the run. If not " +
+    "specified, requests are not limited.")
+  @Macro
+  @Nullable
+  private Double maxRequestsPerSecond;
+
+  @Name(SapODataConstants.CONCURRENT_SPLITS)
+  @Description("Number of splits expected to be read at the same time, such as the number of executor cores. The " +
+    "request limits are divided between this number of splits. If not specified, the limits are divided between all " +
+    "splits, which keeps them even if all splits are read at once, but slows down the reads if fewer are.")
+  @Macro
+  @Nullable
+  private Integer concurrentSplits;
+
+  @Name(SapODataConstants.THROTTLING_MODE)
+  @Description("Throttling mode of the request limits: 'fixed' or 'adaptive'. In 'adaptive' mode, the limits are " +
+    "lowered once the service responds slower or with server errors, and are raised back once it recovers.")
+  @Macro
+  @Nullable
+  private String throttlingMode;
+
+  @Name(SapODataConstants.PAGES_PER_BATCH)
+  @Description("Number of pages requested at once using a single OData V2 '$batch' request, which saves a round " +
+    "trip per page. Requires 'Page Size' to be set. If set to 1 or not specified, each page is requested separately.")
+  @Macro
+  @Nullable
+  private Integer pagesPerBatch;
+
+  @Name(SapODataConstants.HEDGING_PERCENTILE)
+  @Description("Percentile of the observed response latencies, such as 95, after which a duplicate request is sent " +
+    "and the response received first is used. If not specified, requests are not hedged.")
+  @Macro
+  @Nullable
+  private Double hedgingPercentile;
+
+  @Name(SapODataConstants.DELTA_STATE_LOCATION)
+  @Description("Directory where the delta link of the entity set is kept between the runs, such as " +
+    "'gs://bucket/sap/sales-orders'. If specified, the first run reads all entities and the following runs read only " +
+    "the entities changed or deleted since the previous successful run. The entity set must be delta-enabled, " +
+    "unless 'Watermark Property' is specified.")
+  @Macro
+  @Nullable
+  private String deltaStateLocation;
+
+  @Name(SapODataConstants.WATERMARK_PROPERTY)
+  @Description("Name of the 'DateTime' or 'DateTimeOffset' property, such as 'ChangedAt', which is used instead of " +
+    "delta links to read the entities changed since the previous run. The highest value read by a successful run " +
+    "is kept in 'Delta State Location' and the next run reads the entities with greater values only. Deleted " +
+    "entities are not read.")
+  @Macro
+  @Nullable
+  private String watermarkProperty;
+
   public SapODataConfig(String referenceName, String url, String resourcePath, String query, String user,
-                        String password, String schema) {
+                        String password, String schema, Integer numSplits, Long rowsPerSplit,
+                        String partitionProperty, String partitionLowerBound, String partitionUpperBound,
+                        Integer pageSize, String wireFormat, Integer prefetchDepth,
+                        Integer prefetchMemoryBudget, Integer maxConnectionsPerHost,
+                        Integer idleConnectionTimeout, Integer maxRetries, Integer maxRetryDelay,
+                        Integer maxConcurrentRequests, Double maxRequestsPerSecond, String throttlingMode,
+                        Integer pagesPerBatch, Double hedgingPercentile, String deltaStateLocation,
+                        String watermarkProperty, Integer concurrentSplits) {
     this.referenceName = referenceName;
     this.url = url;
     this.resourcePath = resourcePath;
@@ -100,6 +269,27 @@ public class SapODataConfig extends PluginConfig {
     this.user = user;
     this.password = password;
     this.schema = schema;
+    this.numSplits = numSplits;
+    this.rowsPerSplit = rowsPerSplit;
+    this.partitionProperty = partitionProperty;
+    this.partitionLowerBound = partitionLowerBound;
+    this.partitionUpperBound = partitionUpperBound;
+    this.pageSize = pageSize;
+    this.wireFormat = wireFormat;
+    this.prefetchDepth = prefetchDepth;
+    this.prefetchMemoryBudget = prefetchMemoryBudget;
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+    this.idleConnectionTimeout = idleConnectionTimeout;
+    this.maxRetries = maxRetries;
+    this.maxRetryDelay = maxRetryDelay;
+    this.maxConcurrentRequests = maxConcurrentRequests;
+    this.maxRequestsPerSecond = maxRequestsPerSecond;
+    this.throttlingMode = throttlingMode;
+    this.pagesPerBatch = pagesPerBatch;
+    this.hedgingPercentile = hedgingPercentile;
+    this.deltaStateLocation = deltaStateLocation;
+    this.watermarkProperty = watermarkProperty;
+    this.concurrentSplits = concurrentSplits;
   }
 
   public String getReferenceName() {
@@ -169,6 +359,204 @@ public class SapODataConfig extends PluginConfig {
     return schema;
   }
 
+  /**
+   * Returns the number of splits. {@value #AUTO_NUM_SPLITS} indicates that the number of splits must be computed
+   * from the number of entities and {@link #getRowsPerSplit()}.
+   */
+  public int getNumSplits() {
+    return numSplits == null ? DEFAULT_NUM_SPLITS : numSplits;
+  }
+
+  public long getRowsPerSplit() {
+    return rowsPerSplit == null ? DEFAULT_ROWS_PER_SPLIT : rowsPerSplit;
+  }
+
+  @Nullable
+  public String getPartitionProperty() {
+    return partitionProperty;
+  }
+
+  @Nullable
+  public String getPartitionLowerBound() {
+    return Strings.isNullOrEmpty(partitionLowerBound) ? null : partitionLowerBound;
+  }
+
+  @Nullable
+  public String getPartitionUpperBound() {
+    return Strings.isNullOrEmpty(partitionUpperBound) ? null : partitionUpperBound;
+  }
+
+  /**
+   * Returns the client page size. {@value ODataClientOptions#NO_PAGING} indicates that only server-driven paging is
+   * used.
+   */
+  public int getPageSize() {
+    return pageSize == null ? ODataClientOptions.NO_PAGING : pageSize;
+  }
+
+  /**
+   * Returns the format requested from OData V2 services.
+   *
+   * @throws IllegalArgumentException if the format is not supported.
+   */
+  public ODataWireFormat getWireFormat() {
+    if (Strings.isNullOrEmpty(wireFormat)) {
+      return ODataWireFormat.ATOM;
+    }
+    ODataWireFormat format = ODataWireFormat.fromName(wireFormat);
+    if (format == null) {
+      throw new IllegalArgumentException(String.format("Unsupported wire format: '%s'.", wireFormat));
+    }
+    return format;
+  }
+
+  /**
+   * Returns the number of batches fetched in background. 0 indicates that prefetching is disabled.
+   */
+  public int getPrefetchDepth() {
+    return prefetchDepth == null ? DEFAULT_PREFETCH_DEPTH : prefetchDepth;
+  }
+
+  /**
+   * Returns the maximum estimated size of the prefetched entities, in megabytes.
+   */
+  public int getPrefetchMemoryBudget() {
+    return prefetchMemoryBudget == null ? DEFAULT_PREFETCH_MEMORY_BUDGET_MB : prefetchMemoryBudget;
+  }
+
+  /**
+   * Returns the maximum number of pooled connections to a single host.
+   */
+  public int getMaxConnectionsPerHost() {
+    return maxConnectionsPerHost == null ? ODataClientOptions.DEFAULT_MAX_CONNECTIONS_PER_HOST : maxConnectionsPerHost;
+  }
+
+  /**
+   * Returns the time in seconds after which idle pooled connections are closed.
+   */
+  public int getIdleConnectionTimeout() {
+    return idleConnectionTimeout == null ? ODataClientOptions.DEFAULT_IDLE_CONNECTION_TIMEOUT_SECONDS
+      : idleConnectionTimeout;
+  }
+
+  /**
+   * Returns the maximum number of retries of a failed request.
+   */
+  public int getMaxRetries() {
+    return maxRetries == null ? ODataClientOptions.DEFAULT_MAX_RETRIES : maxRetries;
+  }
+
+  /**
+   * Returns the maximum delay in seconds before a retry.
+   */
+  public int getMaxRetryDelay() {
+    return maxRetryDelay == null ? ODataClientOptions.DEFAULT_MAX_RETRY_DELAY_SECONDS : maxRetryDelay;
+  }
+
+  /**
+   * Returns the maximum number of concurrent requests of all splits or {@value ODataRequestGovernor#UNLIMITED} if
+   * requests are not limited.
+   */
+  public int getMaxConcurrentRequests() {
+    return maxConcurrentRequests == null ? ODataRequestGovernor.UNLIMITED : maxConcurrentRequests;
+  }
+
+  /**
+   * Returns the maximum request rate of all splits or {@value ODataRequestGovernor#UNLIMITED} if requests are not
+   * limited.
+   */
+  public double getMaxRequestsPerSecond() {
+    return maxRequestsPerSecond == null ? ODataRequestGovernor.UNLIMITED : maxRequestsPerSecond;
+  }
+
+  /**
+   * Returns the number of splits expected to be read at the same time or {@code null} if not specified.
+   */
+  @Nullable
+  public Integer getConcurrentSplits() {
+    return concurrentSplits;
+  }
+
+  /**
+   * Returns the throttling mode of the request limits.
+   *
+   * @throws IllegalArgumentException if the mode is not supported.
+   */
+  public ODataThrottlingMode getThrottlingMode() {
+    if (Strings.isNullOrEmpty(throttlingMode)) {
+      return ODataThrottlingMode.FIXED;
+    }
+    ODataThrottlingMode mode = ODataThrottlingMode.fromName(throttlingMode);
+    if (mode == null) {
+      throw new IllegalArgumentException(String.format("Unsupported throttling mode: '%s'.", throttlingMode));
+    }
+    return mode;
+  }
+
+  /**
+   * Returns the number of pages requested at once using a '$batch' request.
+   */
+  public int getPagesPerBatch() {
+    return pagesPerBatch == null ? ODataClientOptions.NO_BATCHING : pagesPerBatch;
+  }
+
+  /**
+   * Returns the latency percentile, after which a request is hedged, or {@value ODataClientOptions#NO_HEDGING} if
+   * requests are not hedged.
+   */
+  public double getHedgingPercentile() {
+    return hedgingPercentile == null ? ODataClientOptions.NO_HEDGING : hedgingPercentile;
+  }
+
+  @Nullable
+  public String getDeltaStateLocation() {
+    return Strings.isNullOrEmpty(deltaStateLocation) ? null : deltaStateLocation;
+  }
+
+  @Nullable
+  public String getWatermarkProperty() {
+    return Strings.isNullOrEmpty(watermarkProperty) ? null : watermarkProperty;
+  }
+
+  /**
+   * @return {@code true} if the changes of the entity set are read using delta links.
+   */
+  public boolean isDeltaEnabled() {
+    return getDeltaStateLocation() != null && getWatermarkProperty() == null;
+  }
+
+  /**
+   * @return {@code true} if the changes of the entity set are read using the high-water mark of the watermark
+   * property.
+   */
+  public boolean isWatermarkEnabled() {
+    return getDeltaStateLocation() != null && getWatermarkProperty() != null;
+  }
+
+  /**
+   * @return {@code true} if the number or the rate of the requests is limited.
+   */
+  public boolean isRequestLimited() {
+    return getMaxConcurrentRequests() != ODataRequestGovernor.UNLIMITED
+      || getMaxRequestsPerSecond() != ODataRequestGovernor.UNLIMITED;
+  }
+
+  /**
+   * @return options of the client used to read the entity set.
+   */
+  public ODataClientOptions getClientOptions() {
+    return ODataClientOptions.builder()
+      .setPageSize(getPageSize())
+      .setWireFormat(getWireFormat())
+      .setMaxConnectionsPerHost(getMaxConnectionsPerHost())
+      .setIdleConnectionTimeout(getIdleConnectionTimeout())
+      .setMaxRetries(getMaxRetries())
+      .setMaxRetryDelay(getMaxRetryDelay())
+      .setPagesPerBatch(getPagesPerBatch())
+      .setHedgingPercentile(getHedgingPercentile())
+      .build();
+  }
+
   /**
    * Parses the json representation into a schema object.
    *
@@ -212,6 +600,168 @@ public class SapODataConfig extends PluginConfig {
         .withConfigProperty(SapODataConstants.RESOURCE_PATH);
     }
 
+    if (!containsMacro(SapODataConstants.NUM_SPLITS) && numSplits != null && numSplits < 0) {
+      collector.addFailure("Number of splits must not be negative",
+                           String.format("Specify a positive value or %d to compute it automatically",
+                                         AUTO_NUM_SPLITS))
+        .withConfigProperty(SapODataConstants.NUM_SPLITS);
+    }
+    if (!containsMacro(SapODataConstants.ROWS_PER_SPLIT) && rowsPerSplit != null && rowsPerSplit <= 0) {
+      collector.addFailure("Rows per split must be positive", "Specify a positive value")
+        .withConfigProperty(SapODataConstants.ROWS_PER_SPLIT);
+    }
+
+    if (!containsMacro(SapODataConstants.PARTITION_PROPERTY) && Strings.isNullOrEmpty(partitionProperty)) {
+      if (!Strings.isNullOrEmpty(partitionLowerBound)) {
+        collector.addFailure("Partition lower bound is specified without partition property",
+                             "Specify partition property or remove the lower bound")
+          .withConfigProperty(SapODataConstants.PARTITION_LOWER_BOUND);
+      }
+      if (!Strings.isNullOrEmpty(partitionUpperBound)) {
+        collector.addFailure("Partition upper bound is specified without partition property",
+                             "Specify partition property or remove the upper bound")
+          .withConfigProperty(SapODataConstants.PARTITION_UPPER_BOUND);
+      }
+    }
+    if (!containsMacro(SapODataConstants.PARTITION_PROPERTY) && !Strings.isNullOrEmpty(partitionProperty)
+      && !containsMacro(SapODataConstants.QUERY)) {
+      ODataQueryOptions options = ODataQueryOptions.parse(getQuery());
+      if (options.contains(ODataQueryOptions.SKIP) || options.contains(ODataQueryOptions.TOP)) {
+        collector.addFailure("Query options '$skip' and '$top' can not be used along with partition property",
+                             "Remove '$skip' and '$top' query options or partition property")
+          .withConfigProperty(SapODataConstants.QUERY);
+      }
+    }
+
+    if (!containsMacro(SapODataConstants.PAGE_SIZE) && pageSize != null && pageSize < 0) {
+      collector.addFailure("Page size must not be negative",
+                           String.format("Specify a positive value or %d to use server-driven paging",
+                                         ODataClientOptions.NO_PAGING))
+        .withConfigProperty(SapODataConstants.PAGE_SIZE);
+    }
+
+    if (!containsMacro(SapODataConstants.PREFETCH_DEPTH) && prefetchDepth != null && prefetchDepth < 0) {
+      collector.addFailure("Prefetch depth must not be negative",
+                           "Specify a positive value or 0 to disable prefetching")
+        .withConfigProperty(SapODataConstants.PREFETCH_DEPTH);
+    }
+    if (!containsMacro(SapODataConstants.PREFETCH_MEMORY_BUDGET) && prefetchMemoryBudget != null
+      && prefetchMemoryBudget <= 0) {
+      collector.addFailure("Prefetch memory budget must be positive", "Specify a positive value")
+        .withConfigProperty(SapODataConstants.PREFETCH_MEMORY_BUDGET);
+    }
+
+    if (!containsMacro(SapODataConstants.MAX_CONNECTIONS_PER_HOST) && maxConnectionsPerHost != null
+      && maxConnectionsPerHost <= 0) {
+      collector.addFailure("Maximum number of connections per host must be positive", "Specify a positive value")
+        .withConfigProperty(SapODataConstants.MAX_CONNECTIONS_PER_HOST);
+    }
+    if (!containsMacro(SapODataConstants.IDLE_CONNECTION_TIMEOUT) && idleConnectionTimeout != null
+      && idleConnectionTimeout <= 0) {
+      collector.addFailure("Idle connection timeout must be positive", "Specify a positive value")
+        .withConfigProperty(SapODataConstants.IDLE_CONNECTION_TIMEOUT);
+    }
+
+    if (!containsMacro(SapODataConstants.MAX_RETRIES) && maxRetries != null && maxRetries < 0) {
+      collector.addFailure("Maximum number of retries must not be negative",
+                           "Specify a positive value or 0 to disable retries")
+        .withConfigProperty(SapODataConstants.MAX_RETRIES);
+    }
+    if (!containsMacro(SapODataConstants.MAX_RETRY_DELAY) && maxRetryDelay != null && maxRetryDelay <= 0) {
+      collector.addFailure("Maximum retry delay must be positive", "Specify a positive value")
+        .withConfigProperty(SapODataConstants.MAX_RETRY_DELAY);
+    }
+
+    if (!containsMacro(SapODataConstants.MAX_CONCURRENT_REQUESTS) && maxConcurrentRequests != null
+      && maxConcurrentRequests <= 0) {
+      collector.addFailure("Maximum number of concurrent requests must be positive",
+                           "Specify a positive value or remove the value to not limit the requests")
+        .withConfigProperty(SapODataConstants.MAX_CONCURRENT_REQUESTS);
+    }
+    if (!containsMacro(SapODataConstants.MAX_REQUESTS_PER_SECOND) && maxRequestsPerSecond != null
+      && maxRequestsPerSecond <= 0) {
+      collector.addFailure("Maximum number of requests per second must be positive",
+                           "Specify a positive value or remove the value to not limit the requests")
+        .withConfigProperty(SapODataConstants.MAX_REQUESTS_PER_SECOND);
+    }
+    if (!containsMacro(SapODataConstants.CONCURRENT_SPLITS) && concurrentSplits != null && concurrentSplits <= 0) {
+      collector.addFailure("Number of concurrent splits must be positive",
+                           "Specify a positive value or remove the value to divide the limits between all splits")
+        .withConfigProperty(SapODataConstants.CONCURRENT_SPLITS);
+    }
+    if (!containsMacro(SapODataConstants.THROTTLING_MODE) && !Strings.isNullOrEmpty(throttlingMode)) {
+      ODataThrottlingMode mode = ODataThrottlingMode.fromName(throttlingMode);
+      if (mode == null) {
+        collector.addFailure(String.format("Unsupported throttling mode '%s'", throttlingMode),
+                             String.format("Specify '%s' or '%s'", ODataThrottlingMode.FIXED.getName(),
+                                           ODataThrottlingMode.ADAPTIVE.getName()))
+          .withConfigProperty(SapODataConstants.THROTTLING_MODE);
+      } else if (mode == ODataThrottlingMode.ADAPTIVE && !containsMacro(SapODataConstants.MAX_CONCURRENT_REQUESTS)
+        && !containsMacro(SapODataConstants.MAX_REQUESTS_PER_SECOND) && maxConcurrentRequests == null
+        && maxRequestsPerSecond == null) {
+        collector.addFailure("Adaptive throttling requires request limits",
+                             "Specify maximum number of concurrent requests or requests per second")
+          .withConfigProperty(SapODataConstants.THROTTLING_MODE);
+      }
+    }
+
+    if (!containsMacro(SapODataConstants.PAGES_PER_BATCH) && pagesPerBatch != null) {
+      if (pagesPerBatch <= 0) {
+        collector.addFailure("Number of pages per batch must be positive",
+                             "Specify a positive value or 1 to request each page separately")
+          .withConfigProperty(SapODataConstants.PAGES_PER_BATCH);
+      } else if (pagesPerBatch > ODataClientOptions.NO_BATCHING && !containsMacro(SapODataConstants.PAGE_SIZE)
+        && (pageSize == null || pageSize == ODataClientOptions.NO_PAGING)) {
+        collector.addFailure("Batch requests require client-side paging",
+                             "Specify page size or set number of pages per batch to 1")
+          .withConfigProperty(SapODataConstants.PAGES_PER_BATCH);
+      }
+    }
+
+    if (!containsMacro(SapODataConstants.HEDGING_PERCENTILE) && hedgingPercentile != null
+      && (hedgingPercentile <= 0 || hedgingPercentile >= 100)) {
+      collector.addFailure("Hedging percentile must be between 0 and 100",
+                           "Specify a value such as 95 or remove the value to not hedge the requests")
+        .withConfigProperty(SapODataConstants.HEDGING_PERCENTILE);
+    }
+
+    if (!containsMacro(SapODataConstants.DELTA_STATE_LOCATION) && !Strings.isNullOrEmpty(deltaStateLocation)
+      && !containsMacro(SapODataConstants.WATERMARK_PROPERTY) && Strings.isNullOrEmpty(watermarkProperty)) {
+      // the delta link covers the whole query, so that the changes are read by a single split page by page
+      if (!containsMacro(SapODataConstants.NUM_SPLITS) && getNumSplits() != 1) {
+        collector.addFailure("Delta extraction requires a single split",
+                             "Set number of splits to 1 or remove the delta state location")
+          .withConfigProperty(SapODataConstants.NUM_SPLITS);
+      }
+      if (!containsMacro(SapODataConstants.PAGE_SIZE) && getPageSize() != ODataClientOptions.NO_PAGING) {
+        collector.addFailure("Delta extraction requires server-driven paging",
+                             "Remove page size or the delta state location")
+          .withConfigProperty(SapODataConstants.PAGE_SIZE);
+      }
+    }
+
+    if (!containsMacro(SapODataConstants.WATERMARK_PROPERTY) && !Strings.isNullOrEmpty(watermarkProperty)) {
+      if (!containsMacro(SapODataConstants.DELTA_STATE_LOCATION) && Strings.isNullOrEmpty(deltaStateLocation)) {
+        collector.addFailure("Watermark property is specified without delta state location",
+                             "Specify delta state location to keep the watermark between the runs")
+          .withConfigProperty(SapODataConstants.DELTA_STATE_LOCATION);
+      }
+      if (!containsMacro(SapODataConstants.QUERY) && !getSelectProperties().isEmpty()
+        && !getSelectProperties().contains(watermarkProperty)) {
+        collector.addFailure(String.format("Watermark property '%s' is not selected", watermarkProperty),
+                             "Add the watermark property to '$select' query option")
+          .withConfigProperty(SapODataConstants.QUERY);
+      }
+    }
+
+    if (!containsMacro(SapODataConstants.WIRE_FORMAT) && !Strings.isNullOrEmpty(wireFormat)
+      && ODataWireFormat.fromName(wireFormat) == null) {
+      collector.addFailure(String.format("Unsupported wire format '%s'", wireFormat),
+                           String.format("Specify '%s' or '%s'", ODataWireFormat.ATOM.getName(),
+                                         ODataWireFormat.JSON.getName()))
+        .withConfigProperty(SapODataConstants.WIRE_FORMAT);
+    }
+
     if (!Strings.isNullOrEmpty(schema) && !containsMacro(SapODataConstants.SCHEMA)) {
       Schema parsedSchema = getParsedSchema();
       validateSchema(parsedSchema, collector);
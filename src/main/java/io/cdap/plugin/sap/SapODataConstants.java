@@ -62,6 +62,119 @@ public class SapODataConstants {
    */
   public static final String SCHEMA = "schema";
 
+  /**
+   * Configuration property name used to specify the number of splits to read the entity set in parallel.
+   */
+  public static final String NUM_SPLITS = "numSplits";
+
+  /**
+   * Configuration property name used to specify the target number of rows per split when the number of splits is
+   * computed automatically.
+   */
+  public static final String ROWS_PER_SPLIT = "rowsPerSplit";
+
+  /**
+   * Configuration property name used to specify the property, which values are used to partition the entity set.
+   */
+  public static final String PARTITION_PROPERTY = "partitionProperty";
+
+  /**
+   * Configuration property name used to specify the lower bound of the partition property values.
+   */
+  public static final String PARTITION_LOWER_BOUND = "partitionLowerBound";
+
+  /**
+   * Configuration property name used to specify the upper bound of the partition property values.
+   */
+  public static final String PARTITION_UPPER_BOUND = "partitionUpperBound";
+
+  /**
+   * Configuration property name used to specify the maximum number of entities requested at once.
+   */
+  public static final String PAGE_SIZE = "pageSize";
+
+  /**
+   * Configuration property name used to specify the format of the OData V2 responses.
+   */
+  public static final String WIRE_FORMAT = "wireFormat";
+
+  /**
+   * Configuration property name used to specify the number of entity batches fetched in background.
+   */
+  public static final String PREFETCH_DEPTH = "prefetchDepth";
+
+  /**
+   * Configuration property name used to specify the maximum estimated size of the prefetched entities.
+   */
+  public static final String PREFETCH_MEMORY_BUDGET = "prefetchMemoryBudget";
+
+  /**
+   * Configuration property name used to specify the maximum number of pooled connections to a single host.
+   */
+  public static final String MAX_CONNECTIONS_PER_HOST = "maxConnectionsPerHost";
+
+  /**
+   * Configuration property name used to specify the time after which idle pooled connections are closed.
+   */
+  public static final String IDLE_CONNECTION_TIMEOUT = "idleConnectionTimeout";
+
+  /**
+   * Configuration property name used to specify the maximum number of retries of a failed request.
+   */
+  public static final String MAX_RETRIES = "maxRetries";
+
+  /**
+   * Configuration property name used to specify the maximum delay before a retry.
+   */
+  public static final String MAX_RETRY_DELAY = "maxRetryDelay";
+
+  /**
+   * Configuration property name used to specify the maximum number of concurrent requests of all splits.
+   */
+  public static final String MAX_CONCURRENT_REQUESTS = "maxConcurrentRequests";
+
+  /**
+   * Configuration property name used to specify the maximum request rate of all splits.
+   */
+  public static final String MAX_REQUESTS_PER_SECOND = "maxRequestsPerSecond";
+
+  /**
+   * Configuration property name used to specify the number of splits, which are expected to be read at the same time.
+   */
+  public static final String CONCURRENT_SPLITS = "concurrentSplits";
+
+  /**
+   * Configuration property name used to specify whether the request limits are adapted to the service load.
+   */
+  public static final String THROTTLING_MODE = "throttlingMode";
+
+  /**
+   * Configuration property name used to specify the number of pages requested at once using a '$batch' request.
+   */
+  public static final String PAGES_PER_BATCH = "pagesPerBatch";
+
+  /**
+   * Configuration property name used to specify the latency percentile, after which a request is hedged.
+   */
+  public static final String HEDGING_PERCENTILE = "hedgingPercentile";
+
+  /**
+   * Configuration property name used to specify the location of the delta link kept between the runs.
+   */
+  public static final String DELTA_STATE_LOCATION = "deltaStateLocation";
+
+  /**
+   * Configuration property name used to specify the date and time property, whose high-water mark is used to read
+   * the entities changed since the previous run.
+   */
+  public static final String WATERMARK_PROPERTY = "watermarkProperty";
+
+  /**
+   * Name of the output field, which contains the type of the change of the entity in delta mode: "upsert" or
+   * "delete".
+   */
+  public static final String CHANGE_TYPE_FIELD_NAME = "_change_type";
+
   /**
    * OData 4 geospatial data types are mapped to CDAP record with fields
    * "{@value SapODataConstants.Geospatial#DIMENSION_FIELD_NAME}" for dimension.
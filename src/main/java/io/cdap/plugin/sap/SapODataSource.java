@@ -35,24 +35,48 @@ import io.cdap.plugin.common.LineageRecorder;
 import io.cdap.plugin.sap.odata.EntityType;
 import io.cdap.plugin.sap.odata.GenericODataClient;
 import io.cdap.plugin.sap.odata.ODataEntity;
+import io.cdap.plugin.sap.odata.ODataMetadata;
+import io.cdap.plugin.sap.odata.ODataVersion;
 import io.cdap.plugin.sap.odata.PropertyMetadata;
 import io.cdap.plugin.sap.odata.exception.ODataException;
 import io.cdap.plugin.sap.transformer.ODataEntryToRecordTransformer;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 
 /**
  * Plugin returns records from SAP OData service specified by URL.
+ * <p>
+ * In delta mode, the delta link of the entity set is read from {@link ODataDeltaState} before the run and is committed
+ * once the run succeeds. Output records contain the
+ * "{@value SapODataConstants#CHANGE_TYPE_FIELD_NAME}" field, and non-key fields are nullable, since deleted entities
+ * contain key properties only.
+ * <p>
+ * In watermark mode, the entities are filtered by the {@link ODataWatermark} committed by the previous run, and the
+ * highest value read by the tasks is committed once the run succeeds.
+ * <p>
+ * Request, download, parse and transform metrics of the read path are emitted as the stage metrics, see
+ * {@link ODataStageMetrics}.
  */
 @Plugin(type = BatchSource.PLUGIN_TYPE)
 @Name(SapODataConstants.PLUGIN_NAME)
 @Description("Read data from SAP OData service.")
 public class SapODataSource extends BatchSource<NullWritable, ODataEntity, StructuredRecord> {
 
+  private static final Logger LOG = LoggerFactory.getLogger(SapODataSource.class);
+
   private final SapODataConfig config;
   private ODataEntryToRecordTransformer transformer;
+  private ODataStageMetrics stageMetrics;
 
   public SapODataSource(SapODataConfig config) {
     this.config = config;
@@ -88,10 +112,16 @@ public class SapODataSource extends BatchSource<NullWritable, ODataEntity, Struc
   public void prepareRun(BatchSourceContext context) {
     FailureCollector collector = context.getFailureCollector();
     config.validate(collector);
+    EntityType entityType = null;
+    ODataMetadata metadata = null;
+    ODataVersion version = null;
     try {
-      // API call validation
-      new GenericODataClient(config.getUrl(), config.getUser(), config.getPassword())
-        .getEntitySetType(config.getResourcePath());
+      // API call validation. Metadata is fetched once and shipped to the tasks
+      GenericODataClient client = new GenericODataClient(config.getUrl(), config.getUser(), config.getPassword(),
+                                                         config.getClientOptions());
+      metadata = client.fetchMetadata(config.getResourcePath());
+      entityType = client.getEntitySetType(config.getResourcePath());
+      version = client.getVersion();
     } catch (ODataException e) {
       collector.addFailure("Unable to connect to OData Service: " + e.getMessage(), null)
         .withStacktrace(e.getStackTrace());
@@ -107,39 +137,186 @@ public class SapODataSource extends BatchSource<NullWritable, ODataEntity, Struc
                                  .map(Schema.Field::getName)
                                  .collect(Collectors.toList()));
 
-    context.setInput(Input.of(config.getReferenceName(), new ODataEntryInputFormatProvider(config)));
+    String deltaLink = null;
+    if (config.isDeltaEnabled()) {
+      try {
+        ODataDeltaState state = ODataDeltaState.of(config, new Configuration());
+        // pending links of the interrupted runs
+        state.abort();
+        deltaLink = state.readDeltaLink();
+      } catch (IOException e) {
+        collector.addFailure("Unable to read delta state: " + e.getMessage(), null)
+          .withConfigProperty(SapODataConstants.DELTA_STATE_LOCATION)
+          .withStacktrace(e.getStackTrace());
+        collector.getOrThrowException();
+      }
+    }
+
+    String watermarkFilter = null;
+    if (config.isWatermarkEnabled()) {
+      watermarkFilter = getWatermarkFilter(entityType, version, collector);
+    }
+
+    List<String> selectProperties = getSelectProperties(entityType, schema);
+    ODataEntryInputFormatProvider inputFormatProvider = ODataEntryInputFormatProvider.builder(config)
+      .setSelectProperties(selectProperties)
+      .setMetadata(metadata)
+      .setDeltaLink(deltaLink)
+      .setWatermarkFilter(watermarkFilter)
+      .build();
+    context.setInput(Input.of(config.getReferenceName(), inputFormatProvider));
+  }
+
+  @Override
+  public void onRunFinish(boolean succeeded, BatchSourceContext context) {
+    super.onRunFinish(succeeded, context);
+    if (!config.isDeltaEnabled() && !config.isWatermarkEnabled()) {
+      return;
+    }
+    ODataDeltaState state = ODataDeltaState.of(config, new Configuration());
+    try {
+      if (!succeeded) {
+        state.abort();
+      } else if (state.commit()) {
+        return;
+      } else if (config.isDeltaEnabled()) {
+        LOG.warn("'{}' entity set did not return a delta link, the next run will read all entities.",
+                 config.getResourcePath());
+      } else {
+        LOG.info("No entities of '{}' entity set changed since the previous run, the watermark is kept.",
+                 config.getResourcePath());
+      }
+    } catch (IOException e) {
+      // the changes are read again from the previous delta link by the next run
+      LOG.error("Unable to update delta state of '{}' entity set.", config.getResourcePath(), e);
+    }
   }
 
   @Override
   public void initialize(BatchRuntimeContext context) throws Exception {
     super.initialize(context);
     Schema schema = context.getOutputSchema();
-    this.transformer = new ODataEntryToRecordTransformer(schema);
+    this.transformer = new ODataEntryToRecordTransformer(
+      schema, isDeltaMode() ? SapODataConstants.CHANGE_TYPE_FIELD_NAME : null);
+    this.stageMetrics = new ODataStageMetrics(context.getMetrics(), config.getReferenceName());
   }
 
   @Override
   public void transform(KeyValue<NullWritable, ODataEntity> input, Emitter<StructuredRecord> emitter) {
     ODataEntity entity = input.getValue();
-    emitter.emit(transformer.transform(entity));
+    long start = System.nanoTime();
+    StructuredRecord record = transformer.transform(entity);
+    stageMetrics.recordTransform(System.nanoTime() - start);
+    emitter.emit(record);
+  }
+
+  @Override
+  public void destroy() {
+    if (stageMetrics != null) {
+      // metrics of the last batch
+      stageMetrics.emit();
+    }
+    super.destroy();
   }
 
   public Schema getSchema() {
     GenericODataClient oDataClient = new GenericODataClient(config.getUrl(), config.getUser(), config.getPassword());
     try {
       EntityType entityType = oDataClient.getEntitySetType(config.getResourcePath());
+      boolean deltaMode = isDeltaMode();
       List<Schema.Field> fields = entityType.getProperties().stream()
         .filter(p -> config.getSelectProperties().isEmpty() || config.getSelectProperties().contains(p.getName()))
-        .map(this::getSchemaField)
-        .collect(Collectors.toList());
+        .map(p -> getSchemaField(p, deltaMode && !entityType.getKeyPropertyNames().contains(p.getName())))
+        .collect(Collectors.toCollection(ArrayList::new));
+      if (deltaMode) {
+        fields.add(Schema.Field.of(SapODataConstants.CHANGE_TYPE_FIELD_NAME, Schema.of(Schema.Type.STRING)));
+      }
       return Schema.recordOf("output", fields);
     } catch (ODataException e) {
       throw new InvalidStageException("Unable to get details about the entity type: " + e.getMessage(), e);
     }
   }
 
-  private Schema.Field getSchemaField(PropertyMetadata propertyMetadata) {
+  /**
+   * Reads the watermark committed by the previous run and builds the filter of the entities changed after it.
+   *
+   * @return filter expression or {@code null} if there is no watermark, so that all entities are read.
+   */
+  @Nullable
+  private String getWatermarkFilter(EntityType entityType, ODataVersion version, FailureCollector collector) {
+    String propertyName = config.getWatermarkProperty();
+    PropertyMetadata property = entityType.getProperties().stream()
+      .filter(p -> p.getName().equals(propertyName))
+      .findFirst()
+      .orElse(null);
+    if (property == null) {
+      collector.addFailure(String.format("Watermark property '%s' does not exist in entity set '%s'", propertyName,
+                                         config.getResourcePath()), "Specify an existing property")
+        .withConfigProperty(SapODataConstants.WATERMARK_PROPERTY);
+      collector.getOrThrowException();
+    }
+    try {
+      ODataWatermark.checkSupported(property);
+    } catch (IllegalArgumentException e) {
+      collector.addFailure(e.getMessage(), "Specify a 'DateTime' or 'DateTimeOffset' property")
+        .withConfigProperty(SapODataConstants.WATERMARK_PROPERTY);
+      collector.getOrThrowException();
+    }
+    try {
+      ODataDeltaState state = ODataDeltaState.of(config, new Configuration());
+      // pending watermarks of the interrupted runs
+      state.abort();
+      Instant watermark = state.readWatermark(propertyName);
+      return watermark == null ? null : ODataWatermark.toFilter(version, property, watermark);
+    } catch (IOException e) {
+      collector.addFailure("Unable to read delta state: " + e.getMessage(), null)
+        .withConfigProperty(SapODataConstants.DELTA_STATE_LOCATION)
+        .withStacktrace(e.getStackTrace());
+    }
+    collector.getOrThrowException();
+    return null;
+  }
+
+  /**
+   * Returns names of the entity properties to request using '$select' query option, so that the properties removed
+   * from the output schema are not transferred. '$select' query option specified by the user takes precedence.
+   *
+   * @return property names in the order of the metadata or empty list if all the properties must be requested.
+   */
+  private List<String> getSelectProperties(EntityType entityType, Schema schema) {
+    if (!config.getSelectProperties().isEmpty() || schema.getFields() == null) {
+      return Collections.emptyList();
+    }
+    List<String> selectProperties = entityType.getProperties().stream()
+      .map(PropertyMetadata::getName)
+      // watermark property is requested even if it is removed from the output schema
+      .filter(name -> schema.getField(name) != null || name.equals(config.getWatermarkProperty()))
+      .collect(Collectors.toList());
+    if (selectProperties.isEmpty() || selectProperties.size() == entityType.getProperties().size()) {
+      return Collections.emptyList();
+    }
+    return selectProperties;
+  }
+
+  /**
+   * Delta state location is usually specified using a macro, which is not evaluated at configure time, so that the
+   * change type field is added to the schema once the location is specified either way.
+   */
+  private boolean isDeltaMode() {
+    if (config.getWatermarkProperty() != null || config.containsMacro(SapODataConstants.WATERMARK_PROPERTY)) {
+      // deleted entities are not read in watermark mode
+      return false;
+    }
+    return config.isDeltaEnabled() || config.containsMacro(SapODataConstants.DELTA_STATE_LOCATION);
+  }
+
+  /**
+   * @param forceNullable whether the field is nullable regardless of the property metadata.
+   */
+  private Schema.Field getSchemaField(PropertyMetadata propertyMetadata, boolean forceNullable) {
     Schema nonNullableSchema = convertPropertyType(propertyMetadata);
-    Schema schema = propertyMetadata.isNullable() ? Schema.nullableOf(nonNullableSchema) : nonNullableSchema;
+    Schema schema = propertyMetadata.isNullable() || forceNullable
+      ? Schema.nullableOf(nonNullableSchema) : nonNullableSchema;
     return Schema.Field.of(propertyMetadata.getName(), schema);
   }
 
@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap;
+
+import io.cdap.plugin.sap.odata.ODataEntity;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * An iterator, which measures the time spent reading the entities of the given iterator, including the requests of
+ * the pages and parsing of the responses. The iterator is used by a single thread, which may differ from the thread
+ * reading the measured time if the entities are prefetched, so that the time is published to a volatile field once
+ * per {@value #PUBLISH_INTERVAL} entities and once all entities are read.
+ */
+public class TimedEntityIterator implements Iterator<ODataEntity>, Closeable {
+
+  static final int PUBLISH_INTERVAL = 1024;
+
+  private final Iterator<ODataEntity> delegate;
+  private long nanos;
+  private int unpublished;
+  private volatile long publishedNanos;
+
+  public TimedEntityIterator(Iterator<ODataEntity> delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public boolean hasNext() {
+    long start = System.nanoTime();
+    boolean hasNext = delegate.hasNext();
+    nanos += System.nanoTime() - start;
+    if (!hasNext) {
+      publishedNanos = nanos;
+    }
+    return hasNext;
+  }
+
+  @Override
+  public ODataEntity next() {
+    long start = System.nanoTime();
+    ODataEntity entity = delegate.next();
+    nanos += System.nanoTime() - start;
+    if (++unpublished == PUBLISH_INTERVAL) {
+      publishedNanos = nanos;
+      unpublished = 0;
+    }
+    return entity;
+  }
+
+  /**
+   * @return time spent reading the entities as of the last publication.
+   */
+  public long getNanos() {
+    return publishedNanos;
+  }
+
+  @Override
+  public void close() throws IOException {
+    publishedNanos = nanos;
+    if (delegate instanceof Closeable) {
+      ((Closeable) delegate).close();
+    }
+  }
+}
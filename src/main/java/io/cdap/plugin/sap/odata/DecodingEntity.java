@@ -0,0 +1,202 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.LongConsumer;
+import javax.annotation.Nullable;
+
+/**
+ * Response entity, which decompresses 'gzip' and 'deflate' content encodings while the content is streamed to the
+ * parser, and counts the wire and decoded sizes of the content in {@link ODataTransferStats}, as well as the time spent
+ * waiting for the wire content to arrive.
+ */
+final class DecodingEntity extends HttpEntityWrapper {
+
+  static final String GZIP = "gzip";
+  static final String X_GZIP = "x-gzip";
+  static final String DEFLATE = "deflate";
+
+  @Nullable
+  private final String encoding;
+  private final ODataTransferStats stats;
+  private InputStream content;
+
+  /**
+   * @param entity   response entity.
+   * @param encoding 'gzip', 'x-gzip' or 'deflate' content encoding, or {@code null} if the content is not encoded.
+   * @param stats    stats to count the content sizes.
+   */
+  DecodingEntity(HttpEntity entity, @Nullable String encoding, ODataTransferStats stats) {
+    super(entity);
+    this.encoding = encoding;
+    this.stats = stats;
+  }
+
+  /**
+   * @return {@code true} if the given content encoding is decompressed by this entity.
+   */
+  static boolean isSupported(String encoding) {
+    return GZIP.equalsIgnoreCase(encoding) || X_GZIP.equalsIgnoreCase(encoding) || DEFLATE.equalsIgnoreCase(encoding);
+  }
+
+  @Override
+  public InputStream getContent() throws IOException {
+    if (content != null) {
+      return content;
+    }
+    InputStream wireContent = new TimingInputStream(wrappedEntity.getContent(), stats::addDownload);
+    if (encoding == null) {
+      content = new CountingInputStream(wireContent, bytes -> {
+        stats.addWireBytes(bytes);
+        stats.addDecodedBytes(bytes);
+      });
+      return content;
+    }
+    InputStream countedWireContent = new CountingInputStream(wireContent, stats::addWireBytes);
+    InputStream decodedContent = DEFLATE.equalsIgnoreCase(encoding)
+      ? InflatingInputStream.deflate(countedWireContent)
+      : InflatingInputStream.gzip(countedWireContent);
+    content = new CountingInputStream(decodedContent, stats::addDecodedBytes);
+    return content;
+  }
+
+  @Override
+  public long getContentLength() {
+    return encoding == null ? super.getContentLength() : -1;
+  }
+
+  @Override
+  public Header getContentEncoding() {
+    return encoding == null ? super.getContentEncoding() : null;
+  }
+
+  @Override
+  public boolean isRepeatable() {
+    return false;
+  }
+
+  @Override
+  public void writeTo(OutputStream outStream) throws IOException {
+    try (InputStream inStream = getContent()) {
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = inStream.read(buffer)) != -1) {
+        outStream.write(buffer, 0, read);
+      }
+    }
+  }
+
+  /**
+   * Reports the time spent in the reads from the underlying stream.
+   */
+  private static class TimingInputStream extends FilterInputStream {
+
+    private final LongConsumer timer;
+
+    TimingInputStream(InputStream in, LongConsumer timer) {
+      super(in);
+      this.timer = timer;
+    }
+
+    @Override
+    public int read() throws IOException {
+      long start = System.nanoTime();
+      try {
+        return in.read();
+      } finally {
+        timer.accept(System.nanoTime() - start);
+      }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      long start = System.nanoTime();
+      try {
+        return in.read(b, off, len);
+      } finally {
+        timer.accept(System.nanoTime() - start);
+      }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long start = System.nanoTime();
+      try {
+        return in.skip(n);
+      } finally {
+        timer.accept(System.nanoTime() - start);
+      }
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+  }
+
+  /**
+   * Reports the number of bytes read from the underlying stream.
+   */
+  private static class CountingInputStream extends FilterInputStream {
+
+    private final LongConsumer counter;
+
+    CountingInputStream(InputStream in, LongConsumer counter) {
+      super(in);
+      this.counter = counter;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = in.read();
+      if (b != -1) {
+        counter.accept(1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = in.read(b, off, len);
+      if (read > 0) {
+        counter.accept(read);
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = in.skip(n);
+      counter.accept(skipped);
+      return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import io.cdap.plugin.sap.odata.exception.ODataException;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads parts of EDMX document of OData V2 or V4 service using streaming passes, without building the model of the
+ * whole document. SAP Gateway services often describe hundreds of entity types, while reading an entity set requires
+ * only one of them. Reading stops as soon as the required part is found.
+ */
+public final class EdmxReader {
+
+  private static final String EDMX = "Edmx";
+  private static final String VERSION = "Version";
+  private static final String SCHEMA = "Schema";
+  private static final String NAMESPACE = "Namespace";
+  private static final String ALIAS = "Alias";
+  private static final String ENTITY_TYPE = "EntityType";
+  private static final String ENTITY_SET = "EntitySet";
+  private static final String BASE_TYPE = "BaseType";
+  private static final String PROPERTY = "Property";
+  private static final String PROPERTY_REF = "PropertyRef";
+  private static final String NAME = "Name";
+  private static final String TYPE = "Type";
+  private static final String NULLABLE = "Nullable";
+  private static final String PRECISION = "Precision";
+  private static final String SCALE = "Scale";
+  private static final String COLLECTION_PREFIX = "Collection(";
+
+  private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+  private EdmxReader() {
+    throw new AssertionError("Should not instantiate static utility class.");
+  }
+
+  /**
+   * Reads EDM version from the root 'Edmx' element, so that only the head of the document is read.
+   *
+   * @param document EDMX document.
+   * @return EDM version, such as "1.0" for OData V2 or "4.0" for OData V4, or {@code null} if the version is not
+   * specified.
+   * @throws ODataException if the document cannot be read or is not an EDMX document.
+   */
+  @Nullable
+  public static String readEdmVersion(byte[] document) {
+    try {
+      XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(document));
+      try {
+        while (reader.hasNext()) {
+          if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+            continue;
+          }
+          if (!EDMX.equals(reader.getLocalName())) {
+            throw new ODataException(String.format("Unable to read metadata: unexpected root element '%s'.",
+                                                   reader.getLocalName()));
+          }
+          return reader.getAttributeValue(null, VERSION);
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException e) {
+      throw new ODataException("Unable to read metadata: " + e.getMessage(), e);
+    }
+    throw new ODataException("Unable to read metadata: the document is empty.");
+  }
+
+  /**
+   * Reads the entity type of the given entity set. The first pass finds the entity type name and the names of the
+   * base types, the second pass reads properties and keys of these types only. Properties of the base types come
+   * first, as in Olingo models.
+   *
+   * @param document      EDMX document.
+   * @param entitySetName entity set name.
+   * @return entity type of the entity set.
+   * @throws ODataException if the document cannot be read or the entity set does not exist.
+   */
+  public static EntityType readEntitySetType(byte[] document, String entitySetName) {
+    try {
+      Outline outline = readOutline(document, entitySetName);
+      if (outline.entityTypeName == null) {
+        throw new ODataException(String.format("Entity set '%s' does not exist.", entitySetName));
+      }
+      // base types go first
+      LinkedList<String> hierarchy = new LinkedList<>();
+      String typeName = outline.resolve(outline.entityTypeName);
+      while (typeName != null && !hierarchy.contains(typeName)) {
+        hierarchy.addFirst(typeName);
+        String baseType = outline.baseTypes.get(typeName);
+        typeName = baseType == null ? null : outline.resolve(baseType);
+      }
+      Map<String, Definition> definitions = readDefinitions(document, new HashSet<>(hierarchy));
+
+      List<PropertyMetadata> properties = new ArrayList<>();
+      List<String> keyPropertyNames = Collections.emptyList();
+      for (String name : hierarchy) {
+        Definition definition = definitions.get(name);
+        if (definition == null) {
+          throw new ODataException(String.format("Entity type '%s' does not exist.", name));
+        }
+        properties.addAll(definition.properties);
+        if (keyPropertyNames.isEmpty()) {
+          keyPropertyNames = definition.keyPropertyNames;
+        }
+      }
+      return new EntityType(simpleName(hierarchy.getLast()), properties, keyPropertyNames);
+    } catch (XMLStreamException e) {
+      throw new ODataException("Unable to read metadata: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Finds the entity type of the entity set, base types of all entity types and schema aliases.
+   */
+  private static Outline readOutline(byte[] document, String entitySetName) throws XMLStreamException {
+    Outline outline = new Outline();
+    XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(document));
+    try {
+      String namespace = null;
+      while (reader.hasNext()) {
+        if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+          continue;
+        }
+        String localName = reader.getLocalName();
+        if (SCHEMA.equals(localName)) {
+          namespace = reader.getAttributeValue(null, NAMESPACE);
+          String alias = reader.getAttributeValue(null, ALIAS);
+          if (alias != null) {
+            outline.aliases.put(alias, namespace);
+          }
+        } else if (ENTITY_TYPE.equals(localName)) {
+          String baseType = reader.getAttributeValue(null, BASE_TYPE);
+          if (baseType != null) {
+            outline.baseTypes.put(namespace + '.' + reader.getAttributeValue(null, NAME), baseType);
+          }
+        } else if (ENTITY_SET.equals(localName) && outline.entityTypeName == null
+          && entitySetName.equals(reader.getAttributeValue(null, NAME))) {
+          outline.entityTypeName = reader.getAttributeValue(null, ENTITY_TYPE);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return outline;
+  }
+
+  /**
+   * Reads properties and keys of the given entity types, skipping the rest of the document.
+   */
+  private static Map<String, Definition> readDefinitions(byte[] document, Set<String> entityTypeNames)
+    throws XMLStreamException {
+    Map<String, Definition> definitions = new HashMap<>();
+    XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(document));
+    try {
+      String namespace = null;
+      Definition definition = null;
+      int remaining = entityTypeNames.size();
+      while (reader.hasNext() && remaining > 0) {
+        int event = reader.next();
+        if (event == XMLStreamConstants.END_ELEMENT && definition != null
+          && ENTITY_TYPE.equals(reader.getLocalName())) {
+          definition = null;
+          remaining--;
+          continue;
+        }
+        if (event != XMLStreamConstants.START_ELEMENT) {
+          continue;
+        }
+        String localName = reader.getLocalName();
+        if (SCHEMA.equals(localName)) {
+          namespace = reader.getAttributeValue(null, NAMESPACE);
+        } else if (ENTITY_TYPE.equals(localName)) {
+          String name = namespace + '.' + reader.getAttributeValue(null, NAME);
+          if (entityTypeNames.contains(name)) {
+            definition = new Definition();
+            definitions.put(name, definition);
+          }
+        } else if (definition != null && PROPERTY.equals(localName)) {
+          definition.properties.add(readProperty(reader));
+        } else if (definition != null && PROPERTY_REF.equals(localName)) {
+          // OData V4 key properties can be referred to by alias
+          String alias = reader.getAttributeValue(null, ALIAS);
+          definition.keyPropertyNames.add(alias == null ? reader.getAttributeValue(null, NAME) : alias);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return definitions;
+  }
+
+  private static PropertyMetadata readProperty(XMLStreamReader reader) {
+    String type = reader.getAttributeValue(null, TYPE);
+    if (type.startsWith(COLLECTION_PREFIX)) {
+      // item type name is used for collections, as in Olingo models
+      type = type.substring(COLLECTION_PREFIX.length(), type.length() - 1);
+    }
+    boolean nullable = !Boolean.FALSE.toString().equals(reader.getAttributeValue(null, NULLABLE));
+    return new PropertyMetadata(reader.getAttributeValue(null, NAME), simpleName(type), nullable,
+                                readInteger(reader, PRECISION), readInteger(reader, SCALE), null);
+  }
+
+  /**
+   * @return integer value of the attribute or {@code null} if the attribute is absent or is not a number, such as
+   * "variable" scale of OData V4.
+   */
+  @Nullable
+  private static Integer readInteger(XMLStreamReader reader, String name) {
+    String value = reader.getAttributeValue(null, name);
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Integer.valueOf(value);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return name of the type without namespace or alias, e.g. "SalesOrder" for "ZGW100_XX_S2_SRV.SalesOrder".
+   */
+  private static String simpleName(String qualifiedName) {
+    return qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+  }
+
+  /**
+   * @return factory of the readers, which never resolve external entities to prevent XXE attacks.
+   */
+  static XMLInputFactory createInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    return factory;
+  }
+
+  /**
+   * Parts of the document, which determine the entity types to read.
+   */
+  private static class Outline {
+    private String entityTypeName;
+    private final Map<String, String> baseTypes = new HashMap<>();
+    private final Map<String, String> aliases = new HashMap<>();
+
+    /**
+     * @return name of the type qualified by the schema namespace, e.g. "ZGW100_XX_S2_SRV.SalesOrder" for
+     * "Alias.SalesOrder".
+     */
+    private String resolve(String qualifiedName) {
+      int separatorIndex = qualifiedName.lastIndexOf('.');
+      if (separatorIndex == -1) {
+        return qualifiedName;
+      }
+      String qualifier = qualifiedName.substring(0, separatorIndex);
+      return aliases.getOrDefault(qualifier, qualifier) + qualifiedName.substring(separatorIndex);
+    }
+  }
+
+  /**
+   * Properties and keys declared by an entity type.
+   */
+  private static class Definition {
+    private final List<PropertyMetadata> properties = new ArrayList<>();
+    private final List<String> keyPropertyNames = new ArrayList<>();
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import io.cdap.plugin.sap.odata.exception.ODataException;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Trims EDMX document of OData V2 or V4 service to the metadata required to read a single entity set: the entity set
+ * itself, its entity type along with the base types, complex and enum types. The rest of the entity types and
+ * containers entries, associations, navigation properties, functions, actions and annotations are removed. SAP Gateway
+ * services often describe hundreds of entity types, so the trimmed document is much smaller than the original one.
+ */
+final class EdmxTrimmer {
+
+  private static final String EDMX = "Edmx";
+  private static final String VERSION = "Version";
+  private static final String ENTITY_TYPE = "EntityType";
+  private static final String ENTITY_SET = "EntitySet";
+  private static final String NAME = "Name";
+  private static final String BASE_TYPE = "BaseType";
+
+  /**
+   * Elements, which are not required to read entities and are removed along with their content.
+   */
+  private static final List<String> REMOVED_ELEMENTS = Arrays.asList(
+    "Association", "AssociationSet", "NavigationProperty", "NavigationPropertyBinding", "FunctionImport",
+    "Function", "Action", "ActionImport", "Singleton", "Term", "Annotations", "Annotation");
+
+  private static final XMLInputFactory XML_INPUT_FACTORY = EdmxReader.createInputFactory();
+  private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+  private EdmxTrimmer() {
+    throw new AssertionError("Should not instantiate static utility class.");
+  }
+
+  /**
+   * Trims the given EDMX document to the metadata of the given entity set.
+   *
+   * @param document      EDMX document.
+   * @param entitySetName entity set name.
+   * @return trimmed metadata.
+   * @throws ODataException if the document cannot be read, EDM version is not supported or the entity set does not
+   *                        exist.
+   */
+  static ODataMetadata trim(byte[] document, String entitySetName) {
+    try {
+      Outline outline = readOutline(document, entitySetName);
+      ODataVersion version = ODataVersion.fromEdmVersion(outline.edmVersion);
+      if (version == null) {
+        throw new ODataException(String.format("Unsupported EDM version: '%s'.", outline.edmVersion));
+      }
+      if (outline.entityTypeName == null) {
+        throw new ODataException(String.format("Entity set '%s' does not exist.", entitySetName));
+      }
+      // base types are required to read inherited properties
+      Set<String> entityTypeNames = new HashSet<>();
+      String name = outline.entityTypeName;
+      while (name != null && entityTypeNames.add(name)) {
+        name = outline.baseTypes.get(name);
+      }
+      return new ODataMetadata(version, write(document, entitySetName, entityTypeNames));
+    } catch (XMLStreamException e) {
+      throw new ODataException("Unable to read metadata: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Finds EDM version, the entity type of the entity set and base types of all entity types.
+   */
+  private static Outline readOutline(byte[] document, String entitySetName) throws XMLStreamException {
+    Outline outline = new Outline();
+    XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(document));
+    try {
+      while (reader.hasNext()) {
+        if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+          continue;
+        }
+        String localName = reader.getLocalName();
+        if (EDMX.equals(localName)) {
+          outline.edmVersion = reader.getAttributeValue(null, VERSION);
+        } else if (ENTITY_TYPE.equals(localName)) {
+          String baseType = reader.getAttributeValue(null, BASE_TYPE);
+          outline.baseTypes.put(reader.getAttributeValue(null, NAME), baseType == null ? null : simpleName(baseType));
+        } else if (ENTITY_SET.equals(localName) && entitySetName.equals(reader.getAttributeValue(null, NAME))) {
+          outline.entityTypeName = simpleName(reader.getAttributeValue(null, ENTITY_TYPE));
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return outline;
+  }
+
+  private static String write(byte[] document, String entitySetName, Set<String> entityTypeNames)
+    throws XMLStreamException {
+    StringWriter result = new StringWriter();
+    XMLEventReader reader = XML_INPUT_FACTORY.createXMLEventReader(new ByteArrayInputStream(document));
+    XMLEventWriter writer = XML_OUTPUT_FACTORY.createXMLEventWriter(result);
+    try {
+      int removedDepth = 0;
+      while (reader.hasNext()) {
+        XMLEvent event = reader.nextEvent();
+        if (removedDepth > 0) {
+          if (event.isStartElement()) {
+            removedDepth++;
+          } else if (event.isEndElement()) {
+            removedDepth--;
+          }
+          continue;
+        }
+        if (event.isStartElement() && isRemoved(event.asStartElement(), entitySetName, entityTypeNames)) {
+          removedDepth = 1;
+          continue;
+        }
+        writer.add(event);
+      }
+      writer.flush();
+    } finally {
+      writer.close();
+      reader.close();
+    }
+    return result.toString();
+  }
+
+  private static boolean isRemoved(StartElement element, String entitySetName, Set<String> entityTypeNames) {
+    String localName = element.getName().getLocalPart();
+    if (REMOVED_ELEMENTS.contains(localName)) {
+      return true;
+    }
+    if (ENTITY_TYPE.equals(localName)) {
+      return !entityTypeNames.contains(getAttribute(element, NAME));
+    }
+    if (ENTITY_SET.equals(localName)) {
+      return !entitySetName.equals(getAttribute(element, NAME));
+    }
+    return false;
+  }
+
+  @Nullable
+  private static String getAttribute(StartElement element, String name) {
+    Attribute attribute = element.getAttributeByName(new QName(name));
+    return attribute == null ? null : attribute.getValue();
+  }
+
+  /**
+   * @return name of the type without namespace or alias, e.g. "SalesOrder" for "ZGW100_XX_S2_SRV.SalesOrder".
+   */
+  private static String simpleName(String qualifiedName) {
+    return qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+  }
+
+  /**
+   * Parts of the document, which determine the metadata to keep.
+   */
+  private static class Outline {
+    private String edmVersion;
+    private String entityTypeName;
+    private final Map<String, String> baseTypes = new HashMap<>();
+  }
+}
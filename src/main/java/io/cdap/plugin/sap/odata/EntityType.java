@@ -16,6 +16,7 @@
 
 package io.cdap.plugin.sap.odata;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -25,10 +26,16 @@ public class EntityType {
 
   private final String name;
   private final List<PropertyMetadata> properties;
+  private final List<String> keyPropertyNames;
 
   public EntityType(String name, List<PropertyMetadata> properties) {
+    this(name, properties, Collections.emptyList());
+  }
+
+  public EntityType(String name, List<PropertyMetadata> properties, List<String> keyPropertyNames) {
     this.name = name;
     this.properties = properties;
+    this.keyPropertyNames = keyPropertyNames;
   }
 
   public String getName() {
@@ -38,4 +45,11 @@ public class EntityType {
   public List<PropertyMetadata> getProperties() {
     return properties;
   }
+
+  /**
+   * @return names of the properties that compose the entity key, in the order they are declared in the metadata.
+   */
+  public List<String> getKeyPropertyNames() {
+    return keyPropertyNames;
+  }
 }
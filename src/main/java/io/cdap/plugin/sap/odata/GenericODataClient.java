@@ -19,23 +19,26 @@ package io.cdap.plugin.sap.odata;
 import io.cdap.plugin.sap.odata.exception.ODataException;
 import io.cdap.plugin.sap.odata.odata2.OData2Client;
 import io.cdap.plugin.sap.odata.odata4.OData4Client;
-import org.apache.olingo.client.api.communication.request.retrieve.XMLMetadataRequest;
-import org.apache.olingo.client.api.communication.response.ODataRetrieveResponse;
-import org.apache.olingo.client.api.edm.xml.XMLMetadata;
-import org.apache.olingo.client.core.ODataClientFactory;
-import org.apache.olingo.client.core.http.BasicAuthHttpClientFactory;
 
 import java.util.Iterator;
 import javax.annotation.Nullable;
-import javax.ws.rs.core.MediaType;
 
 /**
  * Provides handy methods to consume OData v2 and OData v4 services transparently using Apache Olingo Client Libraries.
  */
 public class GenericODataClient extends ODataClient {
 
+  private static final String EDM_VERSION_KEY = "EdmVersion";
+  private static final String METADATA_KEY = "ODataMetadata:";
+
   private ODataClient oDataClient;
 
+  /**
+   * Metadata fetched in advance, which is used instead of requesting '$metadata' document.
+   */
+  @Nullable
+  private final ODataMetadata metadata;
+
   /**
    * @param rootUrl  URL of the OData service. The URL must end with an external service name
    *                 (e.g., http://eccsvrname:8000/sap/opu/odata/sap/zgw100_dd02l_so_srv/).
@@ -43,7 +46,46 @@ public class GenericODataClient extends ODataClient {
    * @param password password for basic authentication.
    */
   public GenericODataClient(String rootUrl, String username, String password) {
-    super(rootUrl, username, password);
+    this(rootUrl, username, password, ODataClientOptions.defaults());
+  }
+
+  /**
+   * @param rootUrl  URL of the OData service. The URL must end with an external service name
+   *                 (e.g., http://eccsvrname:8000/sap/opu/odata/sap/zgw100_dd02l_so_srv/).
+   * @param username username for basic authentication.
+   * @param password password for basic authentication.
+   * @param options  client options.
+   */
+  public GenericODataClient(String rootUrl, String username, String password, ODataClientOptions options) {
+    this(rootUrl, username, password, options, null);
+  }
+
+  /**
+   * @param rootUrl  URL of the OData service. The URL must end with an external service name
+   *                 (e.g., http://eccsvrname:8000/sap/opu/odata/sap/zgw100_dd02l_so_srv/).
+   * @param username username for basic authentication.
+   * @param password password for basic authentication.
+   * @param options  client options.
+   * @param metadata optional metadata fetched in advance by {@link #fetchMetadata(String)}. The client does not
+   *                 request '$metadata' document if the metadata is specified.
+   */
+  public GenericODataClient(String rootUrl, String username, String password, ODataClientOptions options,
+                            @Nullable ODataMetadata metadata) {
+    super(rootUrl, username, password, options);
+    this.metadata = metadata;
+  }
+
+  /**
+   * Fetches service metadata, which is trimmed to the metadata of the specified entity set, so that it can be passed
+   * to the clients of other processes.
+   *
+   * @param entitySetName entity set name.
+   * @return metadata of the entity set.
+   * @throws ODataException if the metadata cannot be fetched or the entity set does not exist.
+   */
+  public ODataMetadata fetchMetadata(String entitySetName) {
+    return getMetadataEntry().getParsed(METADATA_KEY + entitySetName,
+                                        document -> EdmxTrimmer.trim(document, entitySetName));
   }
 
   @Override
@@ -51,11 +93,36 @@ public class GenericODataClient extends ODataClient {
     return getClient().queryEntitySet(entitySetName, query);
   }
 
+  @Override
+  public ODataDeltaIterator queryEntitySetChanges(String entitySetName, @Nullable String query,
+                                                  @Nullable String deltaLink) {
+    return getClient().queryEntitySetChanges(entitySetName, query, deltaLink);
+  }
+
   @Override
   public EntityType getEntitySetType(String entitySetName) {
     return getClient().getEntitySetType(entitySetName);
   }
 
+  @Override
+  public long countEntitySet(String entitySetName, @Nullable String query) {
+    return getClient().countEntitySet(entitySetName, query);
+  }
+
+  @Override
+  public ODataVersion getVersion() {
+    return getClient().getVersion();
+  }
+
+  /**
+   * @return statistics of the requests sent by this client, including the ones sent by the versioned client.
+   */
+  @Override
+  public ODataTransferStats getTransferStats() {
+    ODataTransferStats stats = super.getTransferStats();
+    return oDataClient == null ? stats : stats.plus(oDataClient.getTransferStats());
+  }
+
   private ODataClient getClient() {
     if (oDataClient == null) {
       initClient();
@@ -64,30 +131,30 @@ public class GenericODataClient extends ODataClient {
   }
 
   private void initClient() {
-    String edmVersion = getEdmVersion();
-    ODataVersion version = ODataVersion.fromEdmVersion(edmVersion);
+    ODataVersion version = metadata != null ? metadata.getVersion() : null;
     if (version == null) {
-      throw new ODataException(String.format("Unsupported EDM version: '%s'.", edmVersion));
+      String edmVersion = getEdmVersion();
+      version = ODataVersion.fromEdmVersion(edmVersion);
+      if (version == null) {
+        throw new ODataException(String.format("Unsupported EDM version: '%s'.", edmVersion));
+      }
     }
     switch (version) {
       case V2:
-        oDataClient = new OData2Client(rootUrl, username, password);
+        oDataClient = new OData2Client(rootUrl, username, password, options, metadata);
         break;
       case V4:
-        oDataClient = new OData4Client(rootUrl, username, password);
+        oDataClient = new OData4Client(rootUrl, username, password, options, metadata);
         break;
     }
   }
 
+  /**
+   * EDM version is read from the head of the cached '$metadata' document, which is later parsed by the versioned
+   * client.
+   */
+  @Nullable
   private String getEdmVersion() {
-    org.apache.olingo.client.api.ODataClient client = ODataClientFactory.getClient();
-    if (isAuthRequired()) {
-      client.getConfiguration().setHttpClientFactory(new BasicAuthHttpClientFactory(username, password));
-    }
-    XMLMetadataRequest request = client.getRetrieveRequestFactory().getXMLMetadataRequest(rootUrl);
-    request.setAccept(MediaType.APPLICATION_XML);
-    ODataRetrieveResponse<XMLMetadata> response = request.execute();
-
-    return response.getBody().getEdmVersion();
+    return getMetadataEntry().getParsed(EDM_VERSION_KEY, EdmxReader::readEdmVersion);
   }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends each request within the limits of {@link ODataRequestGovernor} and reports the latency of the response to
+ * it. Time spent waiting for a permit is counted in {@link ODataTransferStats}, as well as the requests, their time to
+ * the first byte and the requests sent with credentials, including the ones answering an authentication challenge.
+ * The time to the first byte is also kept in the context of the request, see {@link #FIRST_BYTE_NANOS}.
+ */
+final class GovernedRequestExecutor extends HttpRequestExecutor {
+
+  /**
+   * Context attribute, which holds {@link System#nanoTime()} of the moment the last request was sent.
+   */
+  static final String REQUEST_START_NANOS = "io.cdap.plugin.sap.odata.request-start-nanos";
+  /**
+   * Context attribute, which holds the time to the first byte of the last response in nanoseconds. Unlike the time
+   * measured by the caller, it does not include the time spent waiting for a permit and before the retries.
+   */
+  static final String FIRST_BYTE_NANOS = "io.cdap.plugin.sap.odata.first-byte-nanos";
+
+  private final ODataRequestGovernor governor;
+  private final ODataTransferStats stats;
+
+  GovernedRequestExecutor(ODataRequestGovernor governor, ODataTransferStats stats) {
+    this.governor = governor;
+    this.stats = stats;
+  }
+
+  @Override
+  public HttpResponse execute(HttpRequest request, HttpClientConnection conn, HttpContext context)
+    throws IOException, HttpException {
+    long waitStart = System.nanoTime();
+    governor.acquire();
+    long start = System.nanoTime();
+    stats.addThrottleWait(TimeUnit.NANOSECONDS.toMillis(start - waitStart));
+    context.setAttribute(REQUEST_START_NANOS, start);
+    if (request.containsHeader(HttpHeaders.AUTHORIZATION)) {
+      stats.addLogon();
+    }
+    int statusCode = -1;
+    try {
+      HttpResponse response = super.execute(request, conn, context);
+      // the response is returned once its headers are received, the content is streamed afterwards
+      long firstByteNanos = System.nanoTime() - start;
+      stats.addRequest(firstByteNanos);
+      context.setAttribute(FIRST_BYTE_NANOS, firstByteNanos);
+      statusCode = response.getStatusLine().getStatusCode();
+      return response;
+    } finally {
+      governor.release(System.nanoTime() - start, statusCode);
+    }
+  }
+}
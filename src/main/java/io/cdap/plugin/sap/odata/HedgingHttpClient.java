@@ -0,0 +1,261 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * HTTP client, which hedges GET requests according to {@link ODataHedgingPolicy}. GET requests of the OData services
+ * are idempotent, so once the response headers of a request are not received in time, a duplicate request is sent and
+ * the response received first is used, while the other request is aborted. Both requests are sent by the wrapped
+ * client, so that they are retried and kept within the limits of {@link ODataRequestGovernor} as any other request.
+ * The rest of the requests are sent as is.
+ * <p>
+ * The policy observes the time to the first byte of the responses, which is measured by
+ * {@link GovernedRequestExecutor} without the time spent waiting for a permit. Requests abandoned in favor of their
+ * hedges are observed as well, using the time they were waited for.
+ */
+final class HedgingHttpClient extends CloseableHttpClient {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HedgingHttpClient.class);
+
+  private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("odata-hedging-%d").build());
+
+  private final CloseableHttpClient client;
+  private final ODataHedgingPolicy policy;
+  private final ODataTransferStats stats;
+
+  HedgingHttpClient(CloseableHttpClient client, ODataHedgingPolicy policy, ODataTransferStats stats) {
+    this.client = client;
+    this.policy = policy;
+    this.stats = stats;
+  }
+
+  @Override
+  protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, @Nullable HttpContext context)
+    throws IOException {
+    if (!(request instanceof HttpGet)) {
+      return client.execute(target, request, context);
+    }
+    // latency of the request is kept in its context
+    HttpContext requestContext = context == null ? HttpClientContext.create() : context;
+    long delayNanos = policy.getDelayNanos();
+    if (delayNanos < 0) {
+      clearLatency(requestContext);
+      long start = System.nanoTime();
+      CloseableHttpResponse response = client.execute(target, request, requestContext);
+      policy.record(getLatencyNanos(requestContext, System.nanoTime() - start));
+      return response;
+    }
+
+    BlockingQueue<Attempt> completed = new LinkedBlockingQueue<>();
+    Attempt primary = new Attempt(target, (HttpGet) request, requestContext, completed);
+    primary.start();
+    Attempt hedge = null;
+    try {
+      Attempt first = completed.poll(delayNanos, TimeUnit.NANOSECONDS);
+      if (first == null) {
+        if (policy.tryHedge()) {
+          hedge = new Attempt(target, copy((HttpGet) request), HttpClientContext.create(), completed);
+          hedge.start();
+          stats.addHedge();
+        }
+        first = completed.take();
+      }
+      Attempt other = first == primary ? hedge : primary;
+      if (first.response == null && other != null) {
+        // the other request may still succeed
+        LOG.debug("Hedged request to '{}' failed, waiting for the other one.", request.getRequestLine().getUri(),
+                  first.failure);
+        Attempt second = completed.take();
+        if (second.response != null) {
+          first = second;
+          other = null;
+        }
+      }
+      if (other != null) {
+        if (other == primary && first.response != null) {
+          // latency of the abandoned request is at least the time it was waited for
+          long elapsedNanos = primary.getElapsedNanos();
+          if (elapsedNanos >= 0) {
+            policy.recordCensored(elapsedNanos);
+          }
+        }
+        other.abandon();
+      }
+      if (first.response == null) {
+        throw first.failure;
+      }
+      if (first == hedge) {
+        stats.addHedgeWin();
+      }
+      policy.record(first.latencyNanos);
+      return first.response;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      primary.abandon();
+      if (hedge != null) {
+        hedge.abandon();
+      }
+      throw new InterruptedIOException("Interrupted while waiting for the response.");
+    }
+  }
+
+  private static void clearLatency(HttpContext context) {
+    context.removeAttribute(GovernedRequestExecutor.REQUEST_START_NANOS);
+    context.removeAttribute(GovernedRequestExecutor.FIRST_BYTE_NANOS);
+  }
+
+  /**
+   * Returns the time to the first byte of the response measured by {@link GovernedRequestExecutor} or the given
+   * elapsed time if the request was sent without it.
+   */
+  private static long getLatencyNanos(HttpContext context, long elapsedNanos) {
+    Object firstByteNanos = context.getAttribute(GovernedRequestExecutor.FIRST_BYTE_NANOS);
+    return firstByteNanos instanceof Long ? (Long) firstByteNanos : elapsedNanos;
+  }
+
+  private static HttpGet copy(HttpGet request) {
+    HttpGet copy = new HttpGet(request.getURI());
+    copy.setHeaders(request.getAllHeaders());
+    copy.setConfig(request.getConfig());
+    return copy;
+  }
+
+  @Override
+  public void close() throws IOException {
+    client.close();
+  }
+
+  @Override
+  @SuppressWarnings("deprecation")
+  public HttpParams getParams() {
+    return client.getParams();
+  }
+
+  @Override
+  @SuppressWarnings("deprecation")
+  public ClientConnectionManager getConnectionManager() {
+    return client.getConnectionManager();
+  }
+
+  /**
+   * Request sent in background, which reports its completion to the given queue.
+   */
+  private final class Attempt implements Runnable {
+
+    private final HttpHost target;
+    private final HttpGet request;
+    private final HttpContext context;
+    private final BlockingQueue<Attempt> completed;
+    private Future<?> future;
+    private volatile boolean abandoned;
+    @Nullable
+    private volatile CloseableHttpResponse response;
+    private volatile IOException failure;
+    private volatile long latencyNanos;
+
+    private Attempt(HttpHost target, HttpGet request, HttpContext context, BlockingQueue<Attempt> completed) {
+      this.target = target;
+      this.request = request;
+      this.context = context;
+      this.completed = completed;
+    }
+
+    private void start() {
+      // the context of the original request may hold the latency of the previous one
+      clearLatency(context);
+      future = EXECUTOR.submit(this);
+    }
+
+    @Override
+    public void run() {
+      long start = System.nanoTime();
+      try {
+        CloseableHttpResponse received = client.execute(target, request, context);
+        latencyNanos = getLatencyNanos(context, System.nanoTime() - start);
+        response = received;
+        if (abandoned) {
+          closeQuietly(received);
+        }
+      } catch (IOException e) {
+        failure = e;
+      } catch (RuntimeException e) {
+        failure = new ClientProtocolException(e);
+      } finally {
+        completed.add(this);
+      }
+    }
+
+    /**
+     * @return time to the first byte of the response if it is received, time elapsed since the request was sent if
+     * it is still waited for or -1 if the request was not sent yet.
+     */
+    private long getElapsedNanos() {
+      if (response != null) {
+        return latencyNanos;
+      }
+      Object startNanos = context.getAttribute(GovernedRequestExecutor.REQUEST_START_NANOS);
+      return startNanos instanceof Long ? System.nanoTime() - (Long) startNanos : -1;
+    }
+
+    /**
+     * Aborts the request, which is no longer needed, and closes its response if it was already received.
+     */
+    private void abandon() {
+      abandoned = true;
+      request.abort();
+      future.cancel(true);
+      CloseableHttpResponse received = response;
+      if (received != null) {
+        closeQuietly(received);
+      }
+    }
+
+    private void closeQuietly(CloseableHttpResponse received) {
+      try {
+        received.close();
+      } catch (IOException e) {
+        LOG.debug("Unable to close the response of the hedged request.", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Inflater;
+
+/**
+ * Pool of {@link Inflater} instances. Each inflater holds native memory, which is only released once the inflater is
+ * ended or garbage collected, so that creating an inflater per response churns native memory.
+ */
+final class InflaterPool {
+
+  private static final int MAX_POOLED = 64;
+
+  /**
+   * Inflaters of raw deflate data, which is used by 'gzip' encoding and by some of the 'deflate' implementations.
+   */
+  private static final BlockingQueue<Inflater> RAW = new ArrayBlockingQueue<>(MAX_POOLED);
+  /**
+   * Inflaters of zlib-wrapped deflate data, which is used by 'deflate' encoding.
+   */
+  private static final BlockingQueue<Inflater> ZLIB = new ArrayBlockingQueue<>(MAX_POOLED);
+
+  private InflaterPool() {
+    throw new AssertionError("Should not instantiate static utility class.");
+  }
+
+  /**
+   * @param nowrap {@code true} for raw deflate data, {@code false} for zlib-wrapped data.
+   * @return pooled or new inflater, which must be returned using {@link #release(Inflater, boolean)}.
+   */
+  static Inflater borrow(boolean nowrap) {
+    Inflater inflater = (nowrap ? RAW : ZLIB).poll();
+    return inflater == null ? new Inflater(nowrap) : inflater;
+  }
+
+  static void release(Inflater inflater, boolean nowrap) {
+    inflater.reset();
+    if (!(nowrap ? RAW : ZLIB).offer(inflater)) {
+      inflater.end();
+    }
+  }
+}
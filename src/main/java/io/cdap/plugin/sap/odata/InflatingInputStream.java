@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.util.zip.CRC32;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses 'gzip' or 'deflate' content encoding using an inflater of {@link InflaterPool}, which is returned to
+ * the pool once the stream is closed. Once the compressed data ends, the rest of the underlying stream is read, so
+ * that the HTTP connection is released for reuse.
+ */
+final class InflatingInputStream extends InflaterInputStream {
+
+  private static final int BUFFER_SIZE = 8192;
+  private static final int GZIP_MAGIC = 0x8b1f;
+  private static final int DEFLATE_METHOD = 8;
+  private static final int FHCRC = 2;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+
+  private final boolean nowrap;
+  /**
+   * Checksum of the decompressed data, which is verified against the trailer for 'gzip' encoding only.
+   */
+  private final CRC32 crc;
+  private boolean eof;
+  private boolean released;
+
+  private InflatingInputStream(InputStream in, boolean nowrap, boolean gzip) {
+    super(in, InflaterPool.borrow(nowrap), BUFFER_SIZE);
+    this.nowrap = nowrap;
+    this.crc = gzip ? new CRC32() : null;
+  }
+
+  /**
+   * @return stream, which decompresses 'gzip' content encoding.
+   * @throws IOException if the GZIP header cannot be read.
+   */
+  static InflatingInputStream gzip(InputStream in) throws IOException {
+    readGzipHeader(in);
+    return new InflatingInputStream(in, true, true);
+  }
+
+  /**
+   * @return stream, which decompresses 'deflate' content encoding. Both zlib-wrapped data, as required by HTTP, and
+   * raw deflate data sent by some of the servers are supported.
+   * @throws IOException if the head of the content cannot be read.
+   */
+  static InflatingInputStream deflate(InputStream in) throws IOException {
+    PushbackInputStream pushback = new PushbackInputStream(in, 2);
+    int cmf = pushback.read();
+    int flg = pushback.read();
+    if (flg != -1) {
+      pushback.unread(flg);
+    }
+    if (cmf != -1) {
+      pushback.unread(cmf);
+    }
+    boolean zlib = flg != -1 && (cmf & 0x0F) == DEFLATE_METHOD && ((cmf << 8) | flg) % 31 == 0;
+    return new InflatingInputStream(pushback, !zlib, false);
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (eof) {
+      return -1;
+    }
+    int read = super.read(b, off, len);
+    if (read == -1) {
+      eof = true;
+      if (crc != null) {
+        readGzipTrailer();
+      }
+      drain();
+      return -1;
+    }
+    if (crc != null) {
+      crc.update(b, off, read);
+    }
+    return read;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      super.close();
+    } finally {
+      if (!released) {
+        released = true;
+        InflaterPool.release(inf, nowrap);
+      }
+    }
+  }
+
+  private void readGzipTrailer() throws IOException {
+    // the trailer may be partially buffered already
+    int remaining = inf.getRemaining();
+    InputStream trailer = remaining == 0 ? in
+      : new SequenceInputStream(new ByteArrayInputStream(buf, len - remaining, remaining), in);
+    long expectedCrc = readUnsignedInt(trailer);
+    long expectedSize = readUnsignedInt(trailer);
+    if (expectedCrc != crc.getValue() || expectedSize != (inf.getBytesWritten() & 0xFFFFFFFFL)) {
+      throw new ZipException("Corrupt GZIP trailer");
+    }
+  }
+
+  private void drain() throws IOException {
+    byte[] skipped = new byte[BUFFER_SIZE];
+    while (in.read(skipped) != -1) {
+      // trailing data is ignored
+    }
+  }
+
+  private static void readGzipHeader(InputStream in) throws IOException {
+    if (readUnsignedShort(in) != GZIP_MAGIC) {
+      throw new ZipException("Not in GZIP format");
+    }
+    if (readUnsignedByte(in) != DEFLATE_METHOD) {
+      throw new ZipException("Unsupported GZIP compression method");
+    }
+    int flags = readUnsignedByte(in);
+    // modification time, extra flags and operating system
+    skipBytes(in, 6);
+    if ((flags & FEXTRA) == FEXTRA) {
+      skipBytes(in, readUnsignedShort(in));
+    }
+    if ((flags & FNAME) == FNAME) {
+      skipZeroTerminated(in);
+    }
+    if ((flags & FCOMMENT) == FCOMMENT) {
+      skipZeroTerminated(in);
+    }
+    if ((flags & FHCRC) == FHCRC) {
+      skipBytes(in, 2);
+    }
+  }
+
+  private static long readUnsignedInt(InputStream in) throws IOException {
+    return ((long) readUnsignedShort(in)) | ((long) readUnsignedShort(in) << 16);
+  }
+
+  private static int readUnsignedShort(InputStream in) throws IOException {
+    return readUnsignedByte(in) | (readUnsignedByte(in) << 8);
+  }
+
+  private static int readUnsignedByte(InputStream in) throws IOException {
+    int b = in.read();
+    if (b == -1) {
+      throw new EOFException("Unexpected end of GZIP stream");
+    }
+    return b;
+  }
+
+  private static void skipBytes(InputStream in, int count) throws IOException {
+    for (int i = 0; i < count; i++) {
+      readUnsignedByte(in);
+    }
+  }
+
+  private static void skipZeroTerminated(InputStream in) throws IOException {
+    while (readUnsignedByte(in) != 0) {
+      // skipping the field
+    }
+  }
+}
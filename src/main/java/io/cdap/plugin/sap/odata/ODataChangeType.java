@@ -14,36 +14,32 @@
  * the License.
  */
 
-package io.cdap.plugin.sap;
-
-import org.apache.hadoop.io.Writable;
-import org.apache.hadoop.mapreduce.InputSplit;
-
-import java.io.DataInput;
-import java.io.DataOutput;
+package io.cdap.plugin.sap.odata;
 
 /**
- * A no-op split.
+ * Type of the change of an entity read from a delta-enabled entity set.
  */
-public class NoOpSplit extends InputSplit implements Writable {
-  public NoOpSplit() {
-  }
-
-  @Override
-  public void readFields(DataInput dataInput) {
-  }
-
-  @Override
-  public void write(DataOutput dataOutput) {
-  }
-
-  @Override
-  public long getLength() {
-    return 0;
+public enum ODataChangeType {
+
+  /**
+   * The entity was created or updated. Entities read without a delta link are reported as upserts as well.
+   */
+  UPSERT("upsert"),
+  /**
+   * The entity was deleted. Deleted entities contain key properties only.
+   */
+  DELETE("delete");
+
+  private final String name;
+
+  /**
+   * @param name value of the change type field of the output records.
+   */
+  ODataChangeType(String name) {
+    this.name = name;
   }
 
-  @Override
-  public String[] getLocations() {
-    return new String[0];
+  public String getName() {
+    return name;
   }
 }
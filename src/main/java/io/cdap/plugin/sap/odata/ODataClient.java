@@ -17,14 +17,37 @@
 package io.cdap.plugin.sap.odata;
 
 import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
 import io.cdap.plugin.sap.odata.exception.ODataException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.util.EntityUtils;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 
 /**
  * Abstract OData service client.
@@ -32,12 +55,43 @@ import javax.annotation.Nullable;
 public abstract class ODataClient {
 
   protected static final String METADATA = "$metadata";
+  protected static final String COUNT = "$count";
+  protected static final String BATCH = "$batch";
   protected static final String SEPARATOR = "/";
   protected static final String QUERY_SEPARATOR = "?";
+  /**
+   * Prefix of the keys of {@link EntityType} objects parsed from the cached '$metadata' document.
+   */
+  protected static final String ENTITY_TYPE_KEY = "EntityType:";
 
   protected final String rootUrl;
   protected final String username;
   protected final String password;
+  protected final ODataClientOptions options;
+  protected final ODataHttpTransport transport;
+  /**
+   * Sizes of the responses received by this client.
+   */
+  protected final ODataTransferStats transferStats = new ODataTransferStats();
+  protected final ODataRetryPolicy retryPolicy;
+  /**
+   * Session shared by all clients of the service with the same credentials.
+   */
+  protected final ODataSession session;
+  /**
+   * HTTP client of the pooled {@link ODataHttpTransport}, which authenticates the requests within the {@link #session}.
+   */
+  protected final CloseableHttpClient httpClient;
+
+  /**
+   * Property indexes of the entity sets, shared by all entities read by this client.
+   */
+  private final Map<String, ODataPropertyIndex> propertyIndexes = new ConcurrentHashMap<>();
+
+  /**
+   * Entity types of the entity sets, resolved once and shared by all entities read by this client.
+   */
+  private final Map<String, EntityType> resolvedEntityTypes = new ConcurrentHashMap<>();
 
   /**
    * @param rootUrl  URL of the OData service. The URL must end with an external service name
@@ -46,13 +100,34 @@ public abstract class ODataClient {
    * @param password password for basic authentication.
    */
   public ODataClient(String rootUrl, String username, String password) {
+    this(rootUrl, username, password, ODataClientOptions.defaults());
+  }
+
+  /**
+   * @param rootUrl  URL of the OData service. The URL must end with an external service name
+   *                 (e.g., http://eccsvrname:8000/sap/opu/odata/sap/zgw100_dd02l_so_srv/).
+   * @param username username for basic authentication.
+   * @param password password for basic authentication.
+   * @param options  client options.
+   */
+  public ODataClient(String rootUrl, String username, String password, ODataClientOptions options) {
     this.rootUrl = rootUrl;
     this.username = username;
     this.password = password;
+    this.options = options;
+    this.transport = ODataHttpTransport.getShared(options);
+    this.session = ODataSession.forService(rootUrl, username, password);
+    this.retryPolicy = new ODataRetryPolicy(options.getMaxRetries(),
+                                            TimeUnit.SECONDS.toMillis(options.getMaxRetryDelay()), transferStats);
+    this.httpClient = transport.createHttpClient(session, transferStats, retryPolicy,
+                                                 ODataRequestGovernor.forService(rootUrl),
+                                                 options.getHedgingPercentile());
   }
 
   /**
-   * Query the specified entity set using OData query.
+   * Query the specified entity set using OData query. Entities are fetched lazily page by page: server-driven pages
+   * are followed using next links and client-side pages are requested according to
+   * {@link ODataClientOptions#getPageSize()}.
    *
    * @param entitySetName entity set name.
    * @param query         optional query such as "$top=2&$select=BuyerName&$filter=BuyerName eq 'TECUM'".
@@ -61,6 +136,21 @@ public abstract class ODataClient {
    */
   public abstract Iterator<ODataEntity> queryEntitySet(String entitySetName, @Nullable String query);
 
+  /**
+   * Query changes of the specified delta-enabled entity set. If the delta link is not specified, all entities are
+   * read and the delta link returned along with the last page can be used to read the changes made afterwards.
+   * Otherwise, only the entities changed or deleted since the delta link was issued are read. Pages are always
+   * server-driven, since the delta link covers the whole query.
+   *
+   * @param entitySetName entity set name.
+   * @param query         optional query such as "$select=BuyerName&$filter=BuyerName eq 'TECUM'".
+   * @param deltaLink     optional absolute delta link returned by the previous query of the changes.
+   * @return {@link ODataDeltaIterator} over the changes of the specified entity set.
+   * @throws ODataException if the specified entity set cannot be read.
+   */
+  public abstract ODataDeltaIterator queryEntitySetChanges(String entitySetName, @Nullable String query,
+                                                           @Nullable String deltaLink);
+
   /**
    * Get {@link EntityType} info for the specified entity set name.
    *
@@ -70,6 +160,51 @@ public abstract class ODataClient {
    */
   public abstract EntityType getEntitySetType(String entitySetName);
 
+  /**
+   * Get {@link ODataPropertyIndex} for the specified entity set name. The index is computed once per entity set.
+   *
+   * @param entitySetName entity set name.
+   * @return index of the entity type properties.
+   * @throws ODataException if the entity type does not exist or cannot be fetched.
+   */
+  public ODataPropertyIndex getPropertyIndex(String entitySetName) {
+    return propertyIndexes.computeIfAbsent(entitySetName,
+                                           name -> ODataPropertyIndex.of(getResolvedEntitySetType(name)));
+  }
+
+  /**
+   * Get {@link EntityType} of the entity set read by this client. Unlike {@link #getEntitySetType(String)}, which
+   * looks the entity type up in the metadata cache and may revalidate the '$metadata' document, the entity type is
+   * resolved once per entity set, so that it can be used for each entity read.
+   *
+   * @param entitySetName entity set name.
+   * @return {@link EntityType} for the specified entity set name.
+   * @throws ODataException if the entity type does not exist or cannot be fetched.
+   */
+  protected EntityType getResolvedEntitySetType(String entitySetName) {
+    return resolvedEntityTypes.computeIfAbsent(entitySetName, this::getEntitySetType);
+  }
+
+  /**
+   * Count entities of the specified entity set that match the given OData query. Only '$filter', '$search' and
+   * custom query options are taken into account, since the rest of the system query options such as '$top' and
+   * '$skip' are not applicable to the '$count' segment.
+   *
+   * @param entitySetName entity set name.
+   * @param query         optional query such as "$top=2&$select=BuyerName&$filter=BuyerName eq 'TECUM'".
+   * @return number of entities that match the given query.
+   * @throws ODataException if the specified entity set cannot be counted.
+   */
+  public abstract long countEntitySet(String entitySetName, @Nullable String query);
+
+  /**
+   * Get OData protocol version of the service.
+   *
+   * @return OData protocol version.
+   * @throws ODataException if the version cannot be determined.
+   */
+  public abstract ODataVersion getVersion();
+
   /**
    * Constructs a query URI according to the given entity set name and optional OData query.
    *
@@ -89,28 +224,166 @@ public abstract class ODataClient {
     }
   }
 
+  /**
+   * Constructs a '$count' URI according to the given entity set name and optional OData query.
+   *
+   * @param entitySetName entity set name.
+   * @param query         optional OData query string.
+   * @return '$count' URI.
+   */
+  protected URI getCountURI(String entitySetName, @Nullable String query) {
+    return getQueryURI(entitySetName + SEPARATOR + COUNT, getCountQuery(query));
+  }
+
+  /**
+   * Removes all system query options that can not be applied to count entities from the given OData query.
+   *
+   * @param query optional OData query string.
+   * @return query, which contains only '$filter', '$search' and custom query options.
+   */
+  @Nullable
+  protected static String getCountQuery(@Nullable String query) {
+    return ODataQueryOptions.parse(query)
+      .retainSystemOptions(Arrays.asList(ODataQueryOptions.FILTER, ODataQueryOptions.SEARCH))
+      .toQuery();
+  }
+
   /**
    * Constructs metadata URI.
    *
    * @return metadata URI.
    */
   protected URI getMetadataURI() {
-    String metadataUrl = rootUrl + SEPARATOR + METADATA;
+    return toURI(rootUrl + SEPARATOR + METADATA);
+  }
+
+  /**
+   * Constructs '$batch' URI.
+   *
+   * @return '$batch' URI.
+   */
+  protected URI getBatchURI() {
+    return toURI(rootUrl + SEPARATOR + BATCH);
+  }
+
+  /**
+   * Constructs the URI of the service document, which is the root URL of the service.
+   *
+   * @return service document URI.
+   */
+  protected URI getServiceURI() {
+    return toURI(rootUrl);
+  }
+
+  private static URI toURI(String serviceUrl) {
     try {
-      URL url = new URL(metadataUrl);
+      URL url = new URL(serviceUrl);
       return new URI(url.getProtocol(), url.getUserInfo(), url.getHost(), url.getPort(), url.getPath(), url.getQuery(),
                      url.getRef());
     } catch (MalformedURLException | URISyntaxException e) {
-      throw new ODataException(String.format("Invalid URL: '%s'", metadataUrl), e);
+      throw new ODataException(String.format("Invalid URL: '%s'", serviceUrl), e);
     }
   }
 
   /**
-   * Indicates whether basic auth is required.
+   * Get '$metadata' document of the service from {@link ODataMetadataCache}, which revalidates the cached document
+   * using a conditional request.
    *
-   * @return {@code true} if basic auth is required, {@code false} otherwise.
+   * @return cache entry of the '$metadata' document.
+   * @throws ODataException if the metadata cannot be fetched.
    */
-  protected boolean isAuthRequired() {
-    return !Strings.isNullOrEmpty(username) || !Strings.isNullOrEmpty(password);
+  protected ODataMetadataCache.Entry getMetadataEntry() {
+    return ODataMetadataCache.getDefault().get(getMetadataURI().toString(), username, password, this::requestMetadata);
+  }
+
+  private ODataMetadataCache.Response requestMetadata(@Nullable String etag, @Nullable String lastModified)
+    throws IOException {
+    List<Header> headers = new ArrayList<>();
+    if (etag != null) {
+      headers.add(new BasicHeader(HttpHeaders.IF_NONE_MATCH, etag));
+    }
+    if (lastModified != null) {
+      headers.add(new BasicHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified));
+    }
+    try (CloseableHttpResponse response = get(getMetadataURI(), MediaType.APPLICATION_XML, headers)) {
+      if (response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+        return ODataMetadataCache.Response.notModified();
+      }
+      try (InputStream content = getContent(response)) {
+        return ODataMetadataCache.Response.of(ByteStreams.toByteArray(content),
+                                              getHeaderValue(response, HttpHeaders.ETAG),
+                                              getHeaderValue(response, HttpHeaders.LAST_MODIFIED));
+      }
+    }
+  }
+
+  /**
+   * @return statistics of the requests sent by this client.
+   */
+  public ODataTransferStats getTransferStats() {
+    return transferStats;
+  }
+
+  /**
+   * @return policy of the retries of the failed requests.
+   */
+  public ODataRetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+
+  /**
+   * Sends a GET request using the pooled {@link ODataHttpTransport} within the session of the service.
+   *
+   * @param uri       request URI.
+   * @param mediaType accepted media type.
+   * @param headers   additional request headers.
+   * @return response, which must be closed to return the connection to the pool.
+   * @throws IOException if the request cannot be sent.
+   */
+  protected CloseableHttpResponse get(URI uri, String mediaType, Collection<? extends Header> headers)
+    throws IOException {
+    HttpGet request = new HttpGet(uri.toASCIIString());
+    request.setHeader(HttpHeaders.ACCEPT, mediaType);
+    headers.forEach(request::addHeader);
+    return httpClient.execute(request);
+  }
+
+  /**
+   * Sends a POST request using the pooled {@link ODataHttpTransport} within the session of the service.
+   *
+   * @param uri     request URI.
+   * @param entity  request body, which must be repeatable, so that the request can be retried.
+   * @param headers additional request headers.
+   * @return response, which must be closed to return the connection to the pool.
+   * @throws IOException if the request cannot be sent.
+   */
+  protected CloseableHttpResponse post(URI uri, HttpEntity entity, Collection<? extends Header> headers)
+    throws IOException {
+    HttpPost request = new HttpPost(uri.toASCIIString());
+    request.setEntity(entity);
+    headers.forEach(request::addHeader);
+    return httpClient.execute(request);
+  }
+
+  /**
+   * @return content of the successful response.
+   * @throws HttpResponseException if the service responded with an error status.
+   * @throws IOException           if the content cannot be read.
+   */
+  protected static InputStream getContent(HttpResponse response) throws IOException {
+    int statusCode = response.getStatusLine().getStatusCode();
+    if (statusCode >= HttpStatus.SC_BAD_REQUEST || response.getEntity() == null) {
+      EntityUtils.consumeQuietly(response.getEntity());
+      throw new HttpResponseException(statusCode, String.format("Server returned HTTP response code: %d, %s",
+                                                                statusCode,
+                                                                response.getStatusLine().getReasonPhrase()));
+    }
+    return response.getEntity().getContent();
+  }
+
+  @Nullable
+  protected static String getHeaderValue(HttpResponse response, String name) {
+    Header header = response.getFirstHeader(name);
+    return header == null ? null : header.getValue();
   }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sap.odata;
+
+/**
+ * Options, which control how {@link ODataClient} communicates with the OData service.
+ */
+public class ODataClientOptions {
+
+  /**
+   * Page size value, which indicates that client-side paging is disabled. Server-driven paging is followed anyway.
+   */
+  public static final int NO_PAGING = 0;
+  /**
+   * Number of pages per '$batch' request, which indicates that each page is requested separately.
+   */
+  public static final int NO_BATCHING = 1;
+  /**
+   * Hedging percentile value, which indicates that requests are not hedged.
+   */
+  public static final double NO_HEDGING = 0;
+
+  public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 8;
+  public static final int DEFAULT_IDLE_CONNECTION_TIMEOUT_SECONDS = 60;
+  public static final int DEFAULT_MAX_RETRIES = 5;
+  public static final int DEFAULT_MAX_RETRY_DELAY_SECONDS = 60;
+
+  private static final ODataClientOptions DEFAULT = builder().build();
+
+  private final int pageSize;
+  private final ODataWireFormat wireFormat;
+  private final int maxConnectionsPerHost;
+  private final int idleConnectionTimeout;
+  private final int maxRetries;
+  private final int maxRetryDelay;
+  private final int pagesPerBatch;
+  private final double hedgingPercentile;
+
+  private ODataClientOptions(int pageSize, ODataWireFormat wireFormat, int maxConnectionsPerHost,
+                             int idleConnectionTimeout, int maxRetries, int maxRetryDelay, int pagesPerBatch,
+                             double hedgingPercentile) {
+    this.pageSize = pageSize;
+    this.wireFormat = wireFormat;
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+    this.idleConnectionTimeout = idleConnectionTimeout;
+    this.maxRetries = maxRetries;
+    this.maxRetryDelay = maxRetryDelay;
+    this.pagesPerBatch = pagesPerBatch;
+    this.hedgingPercentile = hedgingPercentile;
+  }
+
+  public static ODataClientOptions defaults() {
+    return DEFAULT;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns the maximum number of entities requested at once using '$top' and '$skip' query options or
+   * {@value #NO_PAGING} if all entities are requested at once.
+   */
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  /**
+   * Returns the format requested from OData V2 services.
+   */
+  public ODataWireFormat getWireFormat() {
+    return wireFormat;
+  }
+
+  /**
+   * Returns the maximum number of pooled connections to a single host, shared by all clients with the same options.
+   */
+  public int getMaxConnectionsPerHost() {
+    return maxConnectionsPerHost;
+  }
+
+  /**
+   * Returns the time in seconds after which idle pooled connections are closed.
+   */
+  public int getIdleConnectionTimeout() {
+    return idleConnectionTimeout;
+  }
+
+  /**
+   * Returns the maximum number of retries of a failed request. If set to 0, failed requests are not retried.
+   */
+  public int getMaxRetries() {
+    return maxRetries;
+  }
+
+  /**
+   * Returns the maximum delay in seconds before a retry, unless the service requests a longer one.
+   */
+  public int getMaxRetryDelay() {
+    return maxRetryDelay;
+  }
+
+  /**
+   * Returns the number of client-side pages requested at once using a single OData V2 '$batch' request or
+   * {@value #NO_BATCHING} if each page is requested separately.
+   */
+  public int getPagesPerBatch() {
+    return pagesPerBatch;
+  }
+
+  /**
+   * Returns the percentile of the observed latencies, after which a GET request is hedged by a duplicate one, or
+   * {@value #NO_HEDGING} if requests are not hedged.
+   */
+  public double getHedgingPercentile() {
+    return hedgingPercentile;
+  }
+
+  /**
+   * Builder for {@link ODataClientOptions}.
+   */
+  public static class Builder {
+
+    private int pageSize = NO_PAGING;
+    private ODataWireFormat wireFormat = ODataWireFormat.ATOM;
+    private int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+    private int idleConnectionTimeout = DEFAULT_IDLE_CONNECTION_TIMEOUT_SECONDS;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private int maxRetryDelay = DEFAULT_MAX_RETRY_DELAY_SECONDS;
+    private int pagesPerBatch = NO_BATCHING;
+    private double hedgingPercentile = NO_HEDGING;
+
+    private Builder() {
+    }
+
+    public Builder setPageSize(int pageSize) {
+      this.pageSize = pageSize;
+      return this;
+    }
+
+    public Builder setWireFormat(ODataWireFormat wireFormat) {
+      this.wireFormat = wireFormat;
+      return this;
+    }
+
+    public Builder setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+      this.maxConnectionsPerHost = maxConnectionsPerHost;
+      return this;
+    }
+
+    public Builder setIdleConnectionTimeout(int idleConnectionTimeout) {
+      this.idleConnectionTimeout = idleConnectionTimeout;
+      return this;
+    }
+
+    public Builder setMaxRetries(int maxRetries) {
+      this.maxRetries = maxRetries;
+      return this;
+    }
+
+    public Builder setMaxRetryDelay(int maxRetryDelay) {
+      this.maxRetryDelay = maxRetryDelay;
+      return this;
+    }
+
+    public Builder setPagesPerBatch(int pagesPerBatch) {
+      this.pagesPerBatch = pagesPerBatch;
+      return this;
+    }
+
+    public Builder setHedgingPercentile(double hedgingPercentile) {
+      this.hedgingPercentile = hedgingPercentile;
+      return this;
+    }
+
+    public ODataClientOptions build() {
+      return new ODataClientOptions(pageSize, wireFormat, maxConnectionsPerHost, idleConnectionTimeout, maxRetries,
+                                    maxRetryDelay, pagesPerBatch, hedgingPercentile);
+    }
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sap.odata;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import javax.annotation.Nullable;
+
+/**
+ * Iterator over the changes of an entity set, which provides the delta link to read the changes made after the
+ * iteration. Deleted entities are returned along with the changed ones and have {@link ODataChangeType#DELETE}
+ * change type.
+ */
+public interface ODataDeltaIterator extends Iterator<ODataEntity>, Closeable {
+
+  /**
+   * Returns the delta link returned along with the last page of the entity set. Must be called once all entities are
+   * read, since the link is placed at the end of the last page.
+   *
+   * @return absolute delta link or {@code null} if the entity set does not track changes.
+   */
+  @Nullable
+  String getDeltaLink();
+}
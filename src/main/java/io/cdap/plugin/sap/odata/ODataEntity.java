@@ -23,23 +23,63 @@ import org.apache.olingo.client.api.domain.ClientProperty;
 import org.apache.olingo.odata2.api.ep.entry.ODataEntry;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
 /**
  * OData entity data. Common model for both Olingo V2 and V4 clients.
+ * <p>
+ * Entities read by the clients are backed by an array of property values, which are indexed by the
+ * {@link ODataPropertyIndex} shared by all entities of the entity set. Entities created from a map of properties
+ * are backed by the map.
+ * <p>
+ * Entities read from the changes of a delta-enabled entity set have a {@link ODataChangeType}, deleted entities
+ * contain key properties only.
  */
 public class ODataEntity {
 
-  private final Map<String, Object> properties;
+  @Nullable
+  private final ODataPropertyIndex index;
+  @Nullable
+  private final Object[] values;
+  @Nullable
+  private Map<String, Object> properties;
+  private final ODataChangeType changeType;
 
   public ODataEntity() {
-    this.properties = new HashMap<>();
+    this(new HashMap<>());
   }
 
   public ODataEntity(Map<String, Object> properties) {
+    this(properties, ODataChangeType.UPSERT);
+  }
+
+  public ODataEntity(Map<String, Object> properties, ODataChangeType changeType) {
+    this.index = null;
+    this.values = null;
     this.properties = properties;
+    this.changeType = changeType;
+  }
+
+  /**
+   * @param index  index of the entity type properties.
+   * @param values property values in the order of the index.
+   */
+  public ODataEntity(ODataPropertyIndex index, Object[] values) {
+    this(index, values, ODataChangeType.UPSERT);
+  }
+
+  /**
+   * @param index      index of the entity type properties.
+   * @param values     property values in the order of the index.
+   * @param changeType type of the change of the entity.
+   */
+  public ODataEntity(ODataPropertyIndex index, Object[] values, ODataChangeType changeType) {
+    this.index = index;
+    this.values = values;
+    this.changeType = changeType;
   }
 
   public static ODataEntity valueOf(ODataEntry oDataEntry) {
@@ -58,6 +98,31 @@ public class ODataEntity {
     return new ODataEntity(properties);
   }
 
+  /**
+   * Creates array-backed entity. Values of the properties, which are not known to the given index, are skipped.
+   */
+  public static ODataEntity valueOf(ClientEntity clientEntity, ODataPropertyIndex index) {
+    Object[] values = new Object[index.size()];
+    List<ClientProperty> clientProperties = clientEntity.getProperties();
+    for (int i = 0; i < clientProperties.size(); i++) {
+      ClientProperty property = clientProperties.get(i);
+      int ordinal = index.ordinalOf(property.getName(), i);
+      if (ordinal >= 0) {
+        values[ordinal] = getClientPropertyValue(property);
+      }
+    }
+    if (clientEntity.getMediaEditLinks() != null && !clientEntity.getMediaEditLinks().isEmpty()) {
+      extractStreamProperties(clientEntity).forEach((name, value) -> {
+        int ordinal = index.ordinalOf(name);
+        if (ordinal >= 0) {
+          values[ordinal] = value;
+        }
+      });
+    }
+
+    return new ODataEntity(index, values);
+  }
+
   /**
    * Single 'Edm.Stream' property annotated with both 'mediaReadLink' and 'mediaEditLink' will be represented as two
    * separate instances of Olingo {@link ClientLink}. This method maps such links to single {@link StreamProperty}
@@ -105,7 +170,51 @@ public class ODataEntity {
                                                      property.getName(), property.getValue()));
   }
 
+  /**
+   * @return type of the change of the entity, which is {@link ODataChangeType#UPSERT} unless the entity was deleted.
+   */
+  public ODataChangeType getChangeType() {
+    return changeType;
+  }
+
+  /**
+   * @return property index if the entity is array-backed, {@code null} otherwise.
+   */
+  @Nullable
+  public ODataPropertyIndex getIndex() {
+    return index;
+  }
+
+  /**
+   * Returns value of the property at the given ordinal of the {@link #getIndex() index}. Applicable to array-backed
+   * entities only.
+   */
+  @Nullable
+  public Object get(int ordinal) {
+    return values[ordinal];
+  }
+
+  @Nullable
+  public Object get(String name) {
+    if (index == null) {
+      return properties.get(name);
+    }
+    int ordinal = index.ordinalOf(name);
+    return ordinal < 0 ? null : values[ordinal];
+  }
+
+  /**
+   * Returns properties mapped by names. The map of array-backed entity is created on the first call, so
+   * {@link #get(String)} is preferred for reading single values.
+   */
   public Map<String, Object> getProperties() {
+    if (properties == null) {
+      Map<String, Object> map = new HashMap<>();
+      for (int i = 0; i < values.length; i++) {
+        map.put(index.getName(i), values[i]);
+      }
+      properties = map;
+    }
     return properties;
   }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import java.util.Arrays;
+
+/**
+ * Decides when a request is hedged. If the response headers are not received within the given percentile of the
+ * recently observed latencies, a duplicate request is sent and the response received first is used, so that a single
+ * request, which landed on a busy application server, does not stall the whole read. Requests are not hedged until
+ * enough latencies are observed. At most {@code 1 - percentile / 100} of the requests are hedged, so that the
+ * duplicates do not add to the load of a service, which became slow as a whole, faster than the percentile follows
+ * its latencies.
+ */
+final class ODataHedgingPolicy {
+
+  /**
+   * Number of the most recent latencies the percentile is computed from.
+   */
+  static final int WINDOW = 256;
+  static final int MIN_SAMPLES = 20;
+  /**
+   * Price of a hedge in the units of {@link #hedgeCredit}.
+   */
+  private static final double HEDGE_PRICE = 100;
+
+  private final double percentile;
+  private final long[] latencies = new long[WINDOW];
+  private int count;
+  private int next;
+  /**
+   * Each observed request earns {@code 100 - percentile} of the credit and each hedge costs {@link #HEDGE_PRICE}.
+   * Credit is kept in these units, so that the hedge earned by the requests is not lost to rounding.
+   */
+  private double hedgeCredit;
+
+  /**
+   * @param percentile percentile of the observed latencies, after which a request is hedged, between 0 and 100.
+   */
+  ODataHedgingPolicy(double percentile) {
+    this.percentile = percentile;
+  }
+
+  /**
+   * Records the time it took to receive the response headers.
+   */
+  synchronized void record(long latencyNanos) {
+    add(latencyNanos);
+    // credit is limited to the hedges earned within the window, so that a long run of fast requests is not followed
+    // by a burst of hedges
+    hedgeCredit = Math.min(hedgeCredit + 100 - percentile, (100 - percentile) * WINDOW);
+  }
+
+  /**
+   * Records the time a request was waited for before it was abandoned in favor of its hedge. The latency of the
+   * request is at least the elapsed time, which is recorded as is, so that the percentile is not computed from the
+   * latencies of the requests, which won, only.
+   */
+  synchronized void recordCensored(long elapsedNanos) {
+    add(elapsedNanos);
+  }
+
+  /**
+   * Takes a hedge from the credit earned by the observed requests.
+   *
+   * @return {@code true} if the request can be hedged.
+   */
+  synchronized boolean tryHedge() {
+    if (hedgeCredit < HEDGE_PRICE) {
+      return false;
+    }
+    hedgeCredit -= HEDGE_PRICE;
+    return true;
+  }
+
+  /**
+   * @return time in nanoseconds after which the request is hedged or -1 if not enough latencies are observed yet.
+   */
+  synchronized long getDelayNanos() {
+    if (count < MIN_SAMPLES) {
+      return -1;
+    }
+    long[] sorted = Arrays.copyOf(latencies, count);
+    Arrays.sort(sorted);
+    int index = (int) Math.ceil(percentile / 100 * count) - 1;
+    return sorted[Math.max(0, Math.min(count - 1, index))];
+  }
+
+  private void add(long latencyNanos) {
+    latencies[next] = latencyNanos;
+    next = (next + 1) % WINDOW;
+    count = Math.min(count + 1, WINDOW);
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import com.google.common.base.Strings;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of keep-alive HTTP connections shared by all clients with the same {@link ODataClientOptions}. Connections and
+ * their TLS sessions are reused across pages, splits and clients, so that requests do not pay for TCP and TLS
+ * handshakes. Connections that stay idle longer than {@link ODataClientOptions#getIdleConnectionTimeout()} are closed
+ * in background.
+ * <p>
+ * Connections are returned to the pool once the response content is fully read or closed, so the content of every
+ * response must be closed.
+ */
+public final class ODataHttpTransport {
+
+  /**
+   * Upper bound of the connections to all hosts, unless a single host is allowed to use more.
+   */
+  private static final int MAX_TOTAL_CONNECTIONS = 64;
+  /**
+   * Time to wait for a pooled connection before failing the request, which prevents hanging if the pool is exhausted.
+   */
+  private static final int CONNECTION_REQUEST_TIMEOUT_MILLIS = (int) TimeUnit.MINUTES.toMillis(5);
+
+  private static final String ACCEPT_ENCODING = DecodingEntity.GZIP + ", " + DecodingEntity.DEFLATE;
+  private static final String IDENTITY = "identity";
+
+  private static final Map<String, ODataHttpTransport> TRANSPORTS = new ConcurrentHashMap<>();
+
+  private final PoolingHttpClientConnectionManager connectionManager;
+  private final RequestConfig requestConfig;
+  /**
+   * Client, which owns the pool. It is never closed, so that idle connections are evicted by its background thread.
+   */
+  private final CloseableHttpClient evictingClient;
+
+  private ODataHttpTransport(int maxConnectionsPerHost, int idleConnectionTimeout) {
+    // system socket factory honors 'javax.net.ssl' properties and caches TLS sessions for the new connections
+    Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory>create()
+      .register("http", PlainConnectionSocketFactory.getSocketFactory())
+      .register("https", SSLConnectionSocketFactory.getSystemSocketFactory())
+      .build();
+    this.connectionManager = new PoolingHttpClientConnectionManager(socketFactories);
+    connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+    connectionManager.setMaxTotal(Math.max(MAX_TOTAL_CONNECTIONS, maxConnectionsPerHost));
+    this.requestConfig = RequestConfig.custom()
+      .setConnectionRequestTimeout(CONNECTION_REQUEST_TIMEOUT_MILLIS)
+      .build();
+    this.evictingClient = newHttpClientBuilder()
+      .setConnectionManagerShared(false)
+      .evictExpiredConnections()
+      .evictIdleConnections(idleConnectionTimeout, TimeUnit.SECONDS)
+      .build();
+  }
+
+  /**
+   * @return transport shared by all clients with the same connection options.
+   */
+  public static ODataHttpTransport getShared(ODataClientOptions options) {
+    String key = options.getMaxConnectionsPerHost() + ":" + options.getIdleConnectionTimeout();
+    return TRANSPORTS.computeIfAbsent(key, k -> new ODataHttpTransport(options.getMaxConnectionsPerHost(),
+                                                                       options.getIdleConnectionTimeout()));
+  }
+
+  /**
+   * Creates HTTP client, which authenticates the requests within the given session. The client uses connections of the
+   * pool, which is kept open once the client is closed.
+   * <p>
+   * The client requests compressed responses, which are decompressed while the content is read using pooled
+   * inflaters, and counts the wire and decoded sizes of the responses in the given stats. Responses with a retryable
+   * status are retried according to the given retry policy. Requests are sent within the limits of the given governor
+   * and GET requests are hedged according to the given hedging percentile.
+   *
+   * @param session           session of the requests to the service.
+   * @param stats             stats to count the response sizes.
+   * @param retryPolicy       policy of the retries.
+   * @param governor          governor of the requests to the service.
+   * @param hedgingPercentile latency percentile, after which a request is hedged, or
+   *                          {@link ODataClientOptions#NO_HEDGING}.
+   * @return HTTP client of the pool.
+   */
+  public CloseableHttpClient createHttpClient(ODataSession session, ODataTransferStats stats,
+                                              ODataRetryPolicy retryPolicy, ODataRequestGovernor governor,
+                                              double hedgingPercentile) {
+    HttpClientBuilder builder = newHttpClientBuilder()
+      .setDefaultCookieStore(session.getCookieStore());
+    if (session.getCredentialsProvider() != null) {
+      builder.setDefaultCredentialsProvider(session.getCredentialsProvider());
+    }
+    CloseableHttpClient client = builder
+      .setRequestExecutor(new GovernedRequestExecutor(governor, stats))
+      .setServiceUnavailableRetryStrategy(new ODataRetryStrategy(retryPolicy))
+      .addInterceptorLast((HttpRequestInterceptor) (request, context) -> {
+        session.authenticate(request);
+        if (!request.containsHeader(HttpHeaders.ACCEPT_ENCODING)) {
+          request.addHeader(HttpHeaders.ACCEPT_ENCODING, ACCEPT_ENCODING);
+        }
+      })
+      .addInterceptorLast((HttpResponseInterceptor) (response, context) -> decode(response, stats))
+      .build();
+    if (hedgingPercentile <= ODataClientOptions.NO_HEDGING) {
+      return client;
+    }
+    return new HedgingHttpClient(client, new ODataHedgingPolicy(hedgingPercentile), stats);
+  }
+
+  private static void decode(HttpResponse response, ODataTransferStats stats) {
+    HttpEntity entity = response.getEntity();
+    if (entity == null) {
+      return;
+    }
+    Header contentEncoding = entity.getContentEncoding();
+    String encoding = contentEncoding == null ? null : contentEncoding.getValue().trim();
+    if (Strings.isNullOrEmpty(encoding) || IDENTITY.equalsIgnoreCase(encoding)) {
+      response.setEntity(new DecodingEntity(entity, null, stats));
+      return;
+    }
+    if (!DecodingEntity.isSupported(encoding)) {
+      // the parser reports the content it is unable to read
+      return;
+    }
+    response.setEntity(new DecodingEntity(entity, encoding, stats));
+    // headers describe the encoded content
+    response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+    response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+    response.removeHeaders(HttpHeaders.CONTENT_MD5);
+  }
+
+  private HttpClientBuilder newHttpClientBuilder() {
+    return HttpClients.custom()
+      .setConnectionManager(connectionManager)
+      .setConnectionManagerShared(true)
+      .setDefaultRequestConfig(requestConfig)
+      // responses are decompressed by DecodingEntity, which uses pooled inflaters
+      .disableContentCompression()
+      // I/O failures are retried by ODataRetryPolicy, which counts and spaces out the retries
+      .disableAutomaticRetries()
+      .useSystemProperties();
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sap.odata;
+
+import io.cdap.plugin.sap.odata.exception.ODataException;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses the key predicate of an entity URI, such as "SalesOrderCollection('0500000001')" or
+ * "SalesOrderItemCollection(SoId='0500000001',SoItemPos='0000000010')". Delta responses identify deleted entities by
+ * their URIs, so that key property values are parsed from the predicate. Literals are returned as they are written in
+ * the URI, such as "'0500000001'" or "datetime'2019-08-29T14:52:08'", and are converted according to the EDM types of
+ * the key properties by the versioned clients.
+ */
+public final class ODataKeyPredicate {
+
+  private static final char QUOTE = '\'';
+  private static final char KEY_SEPARATOR = ',';
+  private static final char VALUE_SEPARATOR = '=';
+
+  private ODataKeyPredicate() {
+    throw new AssertionError("Should not instantiate static utility class.");
+  }
+
+  /**
+   * Parses the key predicate of the given entity URI.
+   *
+   * @param entityUri        absolute or relative URI of the entity.
+   * @param keyPropertyNames names of the key properties, used to name the value of a single-property key.
+   * @return URI literals of the key properties mapped by the property names.
+   * @throws ODataException if the URI does not end with a valid key predicate.
+   */
+  public static Map<String, String> parse(String entityUri, List<String> keyPropertyNames) {
+    String path = entityUri;
+    int queryIndex = path.indexOf('?');
+    if (queryIndex >= 0) {
+      path = path.substring(0, queryIndex);
+    }
+    int start = path.indexOf('(', path.lastIndexOf('/') + 1);
+    if (start < 0 || !path.endsWith(")")) {
+      throw new ODataException(String.format("Entity URI '%s' does not contain a key predicate.", entityUri));
+    }
+    Map<String, String> literals = new LinkedHashMap<>();
+    List<String> keys = split(decode(path.substring(start + 1, path.length() - 1)));
+    for (String key : keys) {
+      int separatorIndex = indexOfSeparator(key);
+      if (separatorIndex >= 0) {
+        literals.put(key.substring(0, separatorIndex).trim(), key.substring(separatorIndex + 1).trim());
+      } else if (keys.size() == 1 && keyPropertyNames.size() == 1) {
+        literals.put(keyPropertyNames.get(0), key.trim());
+      } else {
+        throw new ODataException(String.format("Entity URI '%s' contains an unnamed value of a composite key.",
+                                               entityUri));
+      }
+    }
+    if (!literals.keySet().containsAll(keyPropertyNames)) {
+      throw new ODataException(String.format("Entity URI '%s' does not contain all key properties: %s.", entityUri,
+                                             keyPropertyNames));
+    }
+    return literals;
+  }
+
+  /**
+   * Splits the predicate by the separators, which are not enclosed into quotes. Quotes within string literals are
+   * escaped by doubling, so that the enclosure is preserved by toggling on every quote.
+   */
+  private static List<String> split(String predicate) {
+    List<String> keys = new ArrayList<>();
+    boolean quoted = false;
+    int start = 0;
+    for (int i = 0; i < predicate.length(); i++) {
+      char c = predicate.charAt(i);
+      if (c == QUOTE) {
+        quoted = !quoted;
+      } else if (c == KEY_SEPARATOR && !quoted) {
+        keys.add(predicate.substring(start, i));
+        start = i + 1;
+      }
+    }
+    keys.add(predicate.substring(start));
+    return keys;
+  }
+
+  /**
+   * @return index of the name-value separator, which precedes the literal, or {@code -1} if the key is not named.
+   */
+  private static int indexOfSeparator(String key) {
+    for (int i = 0; i < key.length(); i++) {
+      char c = key.charAt(i);
+      if (c == VALUE_SEPARATOR) {
+        return i;
+      }
+      if (c == QUOTE) {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  private static String decode(String value) {
+    try {
+      // '+' is not a space in URI paths
+      return URLDecoder.decode(value.replace("+", "%2B"), StandardCharsets.UTF_8.name());
+    } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+      throw new ODataException(String.format("Invalid key predicate: '%s'.", value), e);
+    }
+  }
+}
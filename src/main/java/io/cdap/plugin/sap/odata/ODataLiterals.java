@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sap.odata;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Formats values as OData URI literals, which can be used in '$filter' expressions. Literal syntax differs between
+ * OData V2 and OData V4. For example, 'Edm.Int64' value is formatted as "42L" in OData V2 and as "42" in OData V4,
+ * 'Edm.DateTime' value is formatted as "datetime'2019-08-29T14:52:08.155'" in OData V2.
+ * See:
+ * <a href="https://www.odata.org/documentation/odata-version-2-0/overview/">OData V2 Primitive Data Types</a>
+ */
+public final class ODataLiterals {
+
+  private static final DateTimeFormatter DATE_TIME_FORMATTER =
+    DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
+  private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+  private ODataLiterals() {
+    throw new AssertionError("Should not instantiate static utility class.");
+  }
+
+  /**
+   * Formats the given value as a literal of the given EDM type.
+   *
+   * @param version     OData protocol version.
+   * @param edmTypeName EDM type name, such as "Int32" or "DateTime".
+   * @param value       {@link BigDecimal} value for numeric types, {@link Instant} value for date and time types and
+   *                    {@link String} value for "String" type.
+   * @return URI literal.
+   * @throws IllegalArgumentException if the EDM type is not supported.
+   */
+  public static String format(ODataVersion version, String edmTypeName, Object value) {
+    boolean v2 = version == ODataVersion.V2;
+    switch (edmTypeName) {
+      case "Byte":
+      case "SByte":
+      case "Int16":
+      case "Int32":
+        return ((BigDecimal) value).toPlainString();
+      case "Int64":
+        return ((BigDecimal) value).toPlainString() + (v2 ? "L" : "");
+      case "Decimal":
+        return ((BigDecimal) value).toPlainString() + (v2 ? "M" : "");
+      case "Double":
+        return ((BigDecimal) value).toPlainString() + (v2 ? "d" : "");
+      case "Single":
+        return ((BigDecimal) value).toPlainString() + (v2 ? "f" : "");
+      case "DateTime":
+        return String.format("datetime'%s'", formatDateTime((Instant) value));
+      case "DateTimeOffset":
+        String dateTimeOffset = formatDateTime((Instant) value) + "Z";
+        return v2 ? String.format("datetimeoffset'%s'", dateTimeOffset) : dateTimeOffset;
+      case "Date":
+        return DATE_FORMATTER.format(LocalDateTime.ofInstant((Instant) value, ZoneOffset.UTC));
+      case "String":
+        return "'" + value.toString().replace("'", "''") + "'";
+      default:
+        throw new IllegalArgumentException(String.format("Literals of type '%s' are not supported.", edmTypeName));
+    }
+  }
+
+  private static String formatDateTime(Instant instant) {
+    return DATE_TIME_FORMATTER.format(LocalDateTime.ofInstant(instant, ZoneOffset.UTC));
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+/**
+ * Service metadata, which is fetched once and shipped to the tasks, so that the clients of the tasks do not request
+ * '$metadata' document. The document is trimmed to the metadata of a single entity set by {@link EdmxTrimmer}.
+ */
+public class ODataMetadata {
+
+  private final ODataVersion version;
+  private final String edmx;
+
+  public ODataMetadata(ODataVersion version, String edmx) {
+    this.version = version;
+    this.edmx = edmx;
+  }
+
+  public ODataVersion getVersion() {
+    return version;
+  }
+
+  /**
+   * @return EDMX document, which can be read by Olingo.
+   */
+  public String getEdmx() {
+    return edmx;
+  }
+}
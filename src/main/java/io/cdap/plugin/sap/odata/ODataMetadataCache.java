@@ -0,0 +1,352 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import io.cdap.plugin.sap.odata.exception.ODataException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+
+/**
+ * Cache of '$metadata' documents keyed by the service URL and credentials. Documents are stored on local disk along
+ * with their 'ETag' and 'Last-Modified' validators and kept in memory along with the objects parsed from them.
+ * Documents stored on disk are keyed by the service URL and username only, so that file names can not be used to
+ * verify password guesses, and are only readable by the owner of the process. Since the documents loaded from disk are
+ * revalidated by the service, they are never used without the service accepting the credentials.
+ * <p>
+ * A document kept in memory is used as is until its time to live expires. After that, as well as for the documents
+ * loaded from disk, the service is asked whether the document has changed using 'If-None-Match' and
+ * 'If-Modified-Since' headers, so that unchanged documents are not transferred again. The cache is best-effort:
+ * disk failures are logged and the document is requested from the service.
+ */
+public final class ODataMetadataCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ODataMetadataCache.class);
+
+  private static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+  private static final int DEFAULT_MAX_ENTRIES = 32;
+  private static final long DEFAULT_MAX_BYTES = 128L * 1024 * 1024;
+  private static final String DEFAULT_DIRECTORY = "cdap-sap-odata-metadata";
+
+  private static final String DOCUMENT_EXTENSION = ".edmx";
+  private static final String VALIDATORS_EXTENSION = ".properties";
+  private static final String ETAG = "etag";
+  private static final String LAST_MODIFIED = "lastModified";
+  private static final Set<PosixFilePermission> DIRECTORY_PERMISSIONS = PosixFilePermissions.fromString("rwx------");
+  /**
+   * Secret of the process, which keys the hashes of the credentials of the documents kept in memory.
+   */
+  private static final byte[] SECRET = newSecret();
+
+  private static final ODataMetadataCache DEFAULT = new ODataMetadataCache(
+    Paths.get(System.getProperty("java.io.tmpdir"), DEFAULT_DIRECTORY), DEFAULT_TTL_MILLIS, DEFAULT_MAX_ENTRIES,
+    DEFAULT_MAX_BYTES);
+
+  @Nullable
+  private final Path directory;
+  private final long ttlMillis;
+  private final int maxEntries;
+  private final long maxBytes;
+  /**
+   * Entries in the access order, so that the least recently used entry is evicted first.
+   */
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String, Object> fetchLocks = new ConcurrentHashMap<>();
+  private long totalBytes;
+
+  /**
+   * @param directory  directory to store the documents, or {@code null} to keep the documents in memory only.
+   * @param ttlMillis  time to live of the documents kept in memory, after which the documents are revalidated.
+   * @param maxEntries maximum number of the documents kept in memory.
+   * @param maxBytes   maximum total size of the documents kept in memory.
+   */
+  public ODataMetadataCache(@Nullable Path directory, long ttlMillis, int maxEntries, long maxBytes) {
+    this.directory = directory;
+    this.ttlMillis = ttlMillis;
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * @return cache shared by all clients of the JVM, which stores the documents in the temporary directory.
+   */
+  public static ODataMetadataCache getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Returns the document of the given service, which is fetched or revalidated if required.
+   *
+   * @param url      URL of the '$metadata' document.
+   * @param username username used to fetch the document.
+   * @param password password used to fetch the document.
+   * @param fetcher  fetches the document from the service.
+   * @return cache entry of the document.
+   * @throws ODataException if the document cannot be fetched.
+   */
+  public Entry get(String url, @Nullable String username, @Nullable String password, Fetcher fetcher) {
+    String fileKey = Hashing.sha256()
+      .hashString(url + '\n' + username, StandardCharsets.UTF_8)
+      .toString();
+    String key = fileKey + ':' + Hashing.sha256().newHasher()
+      .putBytes(SECRET)
+      .putString(Strings.nullToEmpty(password), StandardCharsets.UTF_8)
+      .hash();
+    synchronized (fetchLocks.computeIfAbsent(key, k -> new Object())) {
+      Entry cached = getEntry(key);
+      if (cached != null && System.currentTimeMillis() - cached.validatedMillis < ttlMillis) {
+        return cached;
+      }
+      if (cached == null) {
+        cached = load(fileKey);
+      }
+
+      Response response;
+      try {
+        response = cached == null ? fetcher.fetch(null, null) : fetcher.fetch(cached.etag, cached.lastModified);
+      } catch (IOException e) {
+        throw new ODataException("Unable to get metadata: " + e.getMessage(), e);
+      }
+      Entry entry;
+      if (response.document == null && cached != null) {
+        // not modified
+        entry = cached;
+        entry.validatedMillis = System.currentTimeMillis();
+      } else if (response.document != null) {
+        entry = new Entry(response.document, response.etag, response.lastModified);
+        store(fileKey, entry);
+      } else {
+        throw new ODataException("Unable to get metadata: the service responded 'Not Modified' to a request without "
+                                   + "validators.");
+      }
+      putEntry(key, entry);
+      return entry;
+    }
+  }
+
+  @Nullable
+  private Entry getEntry(String key) {
+    synchronized (entries) {
+      return entries.get(key);
+    }
+  }
+
+  private void putEntry(String key, Entry entry) {
+    synchronized (entries) {
+      Entry previous = entries.put(key, entry);
+      if (previous != null) {
+        totalBytes -= previous.document.length;
+      }
+      totalBytes += entry.document.length;
+      Iterator<Entry> iterator = entries.values().iterator();
+      while ((entries.size() > maxEntries || totalBytes > maxBytes) && iterator.hasNext()) {
+        Entry eldest = iterator.next();
+        if (eldest == entry) {
+          // a single document larger than the limit is still kept
+          break;
+        }
+        totalBytes -= eldest.document.length;
+        iterator.remove();
+      }
+    }
+  }
+
+  @Nullable
+  private Entry load(String key) {
+    if (directory == null) {
+      return null;
+    }
+    Path documentPath = directory.resolve(key + DOCUMENT_EXTENSION);
+    Path validatorsPath = directory.resolve(key + VALIDATORS_EXTENSION);
+    if (!Files.exists(documentPath) || !Files.exists(validatorsPath)) {
+      return null;
+    }
+    try (InputStream validatorsStream = Files.newInputStream(validatorsPath)) {
+      Properties validators = new Properties();
+      validators.load(validatorsStream);
+      String etag = validators.getProperty(ETAG);
+      String lastModified = validators.getProperty(LAST_MODIFIED);
+      if (etag == null && lastModified == null) {
+        // the document can not be revalidated
+        return null;
+      }
+      Entry entry = new Entry(Files.readAllBytes(documentPath), etag, lastModified);
+      // documents loaded from disk are always revalidated
+      entry.validatedMillis = Long.MIN_VALUE;
+      return entry;
+    } catch (IOException e) {
+      LOG.warn("Unable to read cached metadata from '{}': {}", documentPath, e.getMessage());
+      return null;
+    }
+  }
+
+  private void store(String key, Entry entry) {
+    if (directory == null || (entry.etag == null && entry.lastModified == null)) {
+      return;
+    }
+    try {
+      createDirectory(directory);
+      Properties validators = new Properties();
+      if (entry.etag != null) {
+        validators.setProperty(ETAG, entry.etag);
+      }
+      if (entry.lastModified != null) {
+        validators.setProperty(LAST_MODIFIED, entry.lastModified);
+      }
+      Path validatorsTemp = Files.createTempFile(directory, key, VALIDATORS_EXTENSION);
+      try (OutputStream validatorsStream = Files.newOutputStream(validatorsTemp)) {
+        validators.store(validatorsStream, null);
+      }
+      Path documentTemp = Files.createTempFile(directory, key, DOCUMENT_EXTENSION);
+      Files.write(documentTemp, entry.document);
+      // the document is replaced first, so that stale validators never match a new document
+      Files.move(documentTemp, directory.resolve(key + DOCUMENT_EXTENSION), StandardCopyOption.REPLACE_EXISTING,
+                 StandardCopyOption.ATOMIC_MOVE);
+      Files.move(validatorsTemp, directory.resolve(key + VALIDATORS_EXTENSION), StandardCopyOption.REPLACE_EXISTING,
+                 StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOG.warn("Unable to cache metadata in '{}': {}", directory, e.getMessage());
+    }
+  }
+
+  private static byte[] newSecret() {
+    byte[] secret = new byte[32];
+    new SecureRandom().nextBytes(secret);
+    return secret;
+  }
+
+  /**
+   * Creates the directory readable by the owner only, unless the file system does not support POSIX permissions.
+   */
+  private static void createDirectory(Path directory) throws IOException {
+    if (Files.isDirectory(directory)) {
+      return;
+    }
+    if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(DIRECTORY_PERMISSIONS));
+    } else {
+      Files.createDirectories(directory);
+    }
+  }
+
+  /**
+   * Fetches '$metadata' document from the service.
+   */
+  @FunctionalInterface
+  public interface Fetcher {
+
+    /**
+     * @param etag         'ETag' of the cached document to send in 'If-None-Match' header, if any.
+     * @param lastModified 'Last-Modified' of the cached document to send in 'If-Modified-Since' header, if any.
+     * @return fetched document or {@link Response#notModified()} if the cached document is up to date.
+     */
+    Response fetch(@Nullable String etag, @Nullable String lastModified) throws IOException;
+  }
+
+  /**
+   * Response of the service to the '$metadata' request.
+   */
+  public static final class Response {
+
+    private static final Response NOT_MODIFIED = new Response(null, null, null);
+
+    @Nullable
+    private final byte[] document;
+    @Nullable
+    private final String etag;
+    @Nullable
+    private final String lastModified;
+
+    private Response(@Nullable byte[] document, @Nullable String etag, @Nullable String lastModified) {
+      this.document = document;
+      this.etag = etag;
+      this.lastModified = lastModified;
+    }
+
+    public static Response of(byte[] document, @Nullable String etag, @Nullable String lastModified) {
+      return new Response(document, etag, lastModified);
+    }
+
+    public static Response notModified() {
+      return NOT_MODIFIED;
+    }
+  }
+
+  /**
+   * Cached document along with the objects parsed from it.
+   */
+  public static final class Entry {
+
+    private final byte[] document;
+    @Nullable
+    private final String etag;
+    @Nullable
+    private final String lastModified;
+    private final Map<String, Object> parsed = new ConcurrentHashMap<>();
+    private volatile long validatedMillis;
+
+    private Entry(byte[] document, @Nullable String etag, @Nullable String lastModified) {
+      this.document = document;
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.validatedMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * @return '$metadata' document, which must not be modified.
+     */
+    public byte[] getDocument() {
+      return document;
+    }
+
+    /**
+     * Returns an object parsed from the document, which is parsed once per document. Parsed objects are shared by
+     * all clients, so they must be immutable.
+     *
+     * @param key    key of the parsed object, such as "EntityType:SalesOrderCollection".
+     * @param parser parses the document.
+     * @return parsed object.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getParsed(String key, Function<byte[], T> parser) {
+      return (T) parsed.computeIfAbsent(key, k -> parser.apply(document));
+    }
+  }
+}
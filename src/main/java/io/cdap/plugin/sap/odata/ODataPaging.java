@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sap.odata;
+
+import io.cdap.plugin.sap.odata.exception.ODataException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+
+/**
+ * Tracks client-side paging of an entity set query. If page size is specified, entities are requested in pages of at
+ * most page size entities using '$skip' and '$top' query options, within the boundaries defined by '$skip' and '$top'
+ * of the original query. Each client page may in turn be divided by the service into server-driven pages linked by
+ * next links, which are followed by the iterators until the client page is complete.
+ */
+public class ODataPaging {
+
+  @Nullable
+  private final String query;
+  private final int pageSize;
+  private final Supplier<List<String>> keyPropertyNames;
+  private final long skip;
+  private final long limit;
+  /**
+   * Order of the entities derived from the key properties, resolved once the first page is requested.
+   */
+  private String orderBy;
+
+  /**
+   * Number of entities read so far.
+   */
+  private long read;
+  /**
+   * Number of entities requested and read within the current client page.
+   */
+  private long pageTop;
+  private long pageRead;
+
+  /**
+   * @param query            optional query such as "$top=2&$select=BuyerName&$filter=BuyerName eq 'TECUM'".
+   * @param pageSize         maximum number of entities per client page or {@link ODataClientOptions#NO_PAGING}.
+   * @param keyPropertyNames supplies key property names, which are used to order the entities if the query does not
+   *                         specify '$orderby' option, since pages can not be requested without a stable order.
+   */
+  public ODataPaging(@Nullable String query, int pageSize, Supplier<List<String>> keyPropertyNames) {
+    this.query = query;
+    this.pageSize = pageSize;
+    this.keyPropertyNames = keyPropertyNames;
+    ODataQueryOptions options = ODataQueryOptions.parse(query);
+    this.skip = parseLong(options.get(ODataQueryOptions.SKIP), 0);
+    this.limit = parseLong(options.get(ODataQueryOptions.TOP), Long.MAX_VALUE);
+  }
+
+  /**
+   * @return query of the first page. The original query is returned if client-side paging is disabled.
+   */
+  @Nullable
+  public String firstQuery() {
+    return isEnabled() ? pageQuery() : query;
+  }
+
+  /**
+   * Must be called for each entity read.
+   */
+  public void onEntity() {
+    read++;
+    pageRead++;
+  }
+
+  /**
+   * Must be called once the current client page is read completely, including all server-driven pages.
+   *
+   * @return query of the next page or {@code null} if there are no more entities to read.
+   */
+  @Nullable
+  public String nextQuery() {
+    // a page, which is smaller than requested, is the last one
+    if (!isEnabled() || pageRead < pageTop || read >= limit) {
+      return null;
+    }
+    return pageQuery();
+  }
+
+  /**
+   * Returns queries of the client pages, which follow the current one, assuming that the pages are read completely.
+   * Used to request several pages at once. The queries are valid as long as the current page is full, which is the
+   * case if {@link #nextQuery()} returns the first of them.
+   *
+   * @param count maximum number of pages.
+   * @return queries of at most the given number of pages, or empty list if client-side paging is disabled.
+   */
+  public List<String> lookaheadQueries(int count) {
+    List<String> queries = new ArrayList<>(count);
+    if (!isEnabled()) {
+      return queries;
+    }
+    long offset = read - pageRead + pageTop;
+    while (queries.size() < count && offset < limit) {
+      long top = Math.min(pageSize, limit - offset);
+      queries.add(pageQuery(offset, top));
+      offset += top;
+    }
+    return queries;
+  }
+
+  private boolean isEnabled() {
+    return pageSize > ODataClientOptions.NO_PAGING;
+  }
+
+  private String pageQuery() {
+    pageTop = Math.min(pageSize, limit - read);
+    pageRead = 0;
+    return pageQuery(read, pageTop);
+  }
+
+  private String pageQuery(long offset, long top) {
+    ODataQueryOptions options = ODataQueryOptions.parse(query);
+    if (!options.contains(ODataQueryOptions.ORDER_BY)) {
+      if (orderBy == null) {
+        orderBy = String.join(",", keyPropertyNames.get());
+      }
+      if (!orderBy.isEmpty()) {
+        options.set(ODataQueryOptions.ORDER_BY, orderBy);
+      }
+    }
+    if (skip + offset > 0 || options.contains(ODataQueryOptions.SKIP)) {
+      options.set(ODataQueryOptions.SKIP, String.valueOf(skip + offset));
+    }
+    return options.set(ODataQueryOptions.TOP, String.valueOf(top)).toQuery();
+  }
+
+  private static long parseLong(@Nullable String value, long defaultValue) {
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      throw new ODataException(String.format("Invalid query option value: '%s'.", value), e);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps property names of an entity type to ordinals of the values in array-backed {@link ODataEntity}. Ordinals
+ * follow the order of {@link EntityType#getProperties()}. A single instance is shared by all entities of an entity
+ * set, so that an entity holds its values only.
+ */
+public final class ODataPropertyIndex {
+
+  private final String[] names;
+  private final Map<String, Integer> ordinals;
+
+  private ODataPropertyIndex(String[] names) {
+    this.names = names;
+    this.ordinals = new HashMap<>();
+    for (int i = 0; i < names.length; i++) {
+      ordinals.put(names[i], i);
+    }
+  }
+
+  public static ODataPropertyIndex of(List<String> names) {
+    return new ODataPropertyIndex(names.toArray(new String[0]));
+  }
+
+  public static ODataPropertyIndex of(EntityType entityType) {
+    return new ODataPropertyIndex(entityType.getProperties().stream()
+                                    .map(PropertyMetadata::getName)
+                                    .toArray(String[]::new));
+  }
+
+  public int size() {
+    return names.length;
+  }
+
+  public String getName(int ordinal) {
+    return names[ordinal];
+  }
+
+  /**
+   * @return ordinal of the given property or {@code -1} if the entity type does not have such property.
+   */
+  public int ordinalOf(String name) {
+    Integer ordinal = ordinals.get(name);
+    return ordinal == null ? -1 : ordinal;
+  }
+
+  /**
+   * Same as {@link #ordinalOf(String)}, but checks the expected ordinal first. Services usually write properties in
+   * the order of the metadata, so passing the ordinal that follows the previous property avoids the hash lookup.
+   *
+   * @param name         property name.
+   * @param expectedHint expected ordinal of the property.
+   * @return ordinal of the given property or {@code -1} if the entity type does not have such property.
+   */
+  public int ordinalOf(String name, int expectedHint) {
+    if (expectedHint >= 0 && expectedHint < names.length && names[expectedHint].equals(name)) {
+      return expectedHint;
+    }
+    return ordinalOf(name);
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sap.odata;
+
+import com.google.common.base.Strings;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import javax.annotation.Nullable;
+
+/**
+ * Ordered set of OData query options, such as "$top=2&$select=BuyerName&$filter=BuyerName eq 'TECUM'". Used to
+ * derive queries from the user-provided one without altering options that are not explicitly overridden.
+ */
+public class ODataQueryOptions {
+
+  public static final String FILTER = "$filter";
+  public static final String TOP = "$top";
+  public static final String SKIP = "$skip";
+  public static final String ORDER_BY = "$orderby";
+  public static final String SELECT = "$select";
+  public static final String EXPAND = "$expand";
+  public static final String FORMAT = "$format";
+  public static final String INLINE_COUNT = "$inlinecount";
+  public static final String COUNT = "$count";
+  public static final String SEARCH = "$search";
+  public static final String SKIP_TOKEN = "$skiptoken";
+
+  private static final String OPTION_SEPARATOR = "&";
+  private static final String VALUE_SEPARATOR = "=";
+
+  /**
+   * Option values mapped by option names. A {@code null} value corresponds to an option specified without '='.
+   */
+  private final Map<String, String> options;
+
+  private ODataQueryOptions(Map<String, String> options) {
+    this.options = options;
+  }
+
+  /**
+   * Parses the given OData query.
+   *
+   * @param query optional query such as "$top=2&$select=BuyerName&$filter=BuyerName eq 'TECUM'".
+   * @return parsed query options.
+   */
+  public static ODataQueryOptions parse(@Nullable String query) {
+    Map<String, String> options = new LinkedHashMap<>();
+    if (Strings.isNullOrEmpty(query)) {
+      return new ODataQueryOptions(options);
+    }
+    for (String option : query.split(OPTION_SEPARATOR)) {
+      if (option.isEmpty()) {
+        continue;
+      }
+      int separatorIndex = option.indexOf(VALUE_SEPARATOR);
+      if (separatorIndex == -1) {
+        options.put(option, null);
+      } else {
+        options.put(option.substring(0, separatorIndex), option.substring(separatorIndex + 1));
+      }
+    }
+    return new ODataQueryOptions(options);
+  }
+
+  @Nullable
+  public String get(String name) {
+    return options.get(name);
+  }
+
+  public boolean contains(String name) {
+    return options.containsKey(name);
+  }
+
+  /**
+   * Sets the value of the given option. Value of the existing option is replaced in-place, new options are appended.
+   */
+  public ODataQueryOptions set(String name, String value) {
+    options.put(name, value);
+    return this;
+  }
+
+  public ODataQueryOptions remove(String name) {
+    options.remove(name);
+    return this;
+  }
+
+  /**
+   * Removes all system query options (the ones starting with '$') except the given ones. Custom query options, such
+   * as SAP "sap-client", are kept since they affect the data returned by the service.
+   */
+  public ODataQueryOptions retainSystemOptions(Collection<String> names) {
+    options.keySet().removeIf(name -> name.startsWith("$") && !names.contains(name));
+    return this;
+  }
+
+  /**
+   * Adds the given filter expression to the existing '$filter' option using a logical 'and'.
+   */
+  public ODataQueryOptions andFilter(String filter) {
+    String existing = options.get(FILTER);
+    String combined = Strings.isNullOrEmpty(existing) ? filter : String.format("(%s) and (%s)", existing, filter);
+    return set(FILTER, combined);
+  }
+
+  public boolean isEmpty() {
+    return options.isEmpty();
+  }
+
+  /**
+   * @return query string or {@code null} if there are no options.
+   */
+  @Nullable
+  public String toQuery() {
+    if (options.isEmpty()) {
+      return null;
+    }
+    StringJoiner joiner = new StringJoiner(OPTION_SEPARATOR);
+    options.forEach((name, value) -> joiner.add(value == null ? name : name + VALUE_SEPARATOR + value));
+    return joiner.toString();
+  }
+
+  @Override
+  public String toString() {
+    return Strings.nullToEmpty(toQuery());
+  }
+}
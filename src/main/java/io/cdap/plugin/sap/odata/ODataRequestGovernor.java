@@ -0,0 +1,251 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import java.io.Closeable;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of concurrent requests and the request rate to a single OData service, shared by all clients of
+ * the process. Run-wide limits are divided between the splits expected to be read at the same time when the splits
+ * are planned, and each split registers its share using {@link #register(double, double, ODataThrottlingMode)} while
+ * it is read, so that the limits of the process are the sum of the shares of the splits read by the process. Requests
+ * are not limited while no shares are registered, such as the requests sent to plan the splits.
+ * <p>
+ * A request holds a permit until the response headers are received, since SAP Gateway occupies a work process while
+ * the response is produced, rather than while it is streamed. A share of concurrency lower than one request is
+ * enforced on average, by pausing after each request in proportion to its latency.
+ * <p>
+ * In {@link ODataThrottlingMode#ADAPTIVE} mode, the limits are halved once the service responds with 5xx or 429
+ * status, fails, or responds more than {@value #LATENCY_DEGRADATION} times slower than its best average latency, and
+ * are raised back gradually while the service responds normally.
+ */
+public final class ODataRequestGovernor {
+
+  /**
+   * Limit value, which indicates that the requests are not limited.
+   */
+  public static final int UNLIMITED = 0;
+  static final double LATENCY_DEGRADATION = 2.0;
+  /**
+   * Lowest fraction of the configured limits, which is used once the service is overloaded.
+   */
+  static final double MIN_THROTTLE = 0.1;
+  /**
+   * Fraction of the configured limits restored per normal response.
+   */
+  private static final double THROTTLE_INCREASE = 0.02;
+  /**
+   * Weight of the latest latency in the moving average.
+   */
+  private static final double LATENCY_WEIGHT = 0.2;
+  private static final long MIN_DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+  private static final int HTTP_SERVER_ERROR = 500;
+
+  private static final Map<String, ODataRequestGovernor> GOVERNORS = new ConcurrentHashMap<>();
+
+  // the fields are guarded by this
+  private int leases;
+  private int adaptiveLeases;
+  private double concurrencyShares;
+  private double rateShares;
+  private int inFlight;
+  /**
+   * Time after which the next request may start, used to enforce the rate and fractional concurrency.
+   */
+  private long nextStartNanos;
+  /**
+   * Fraction of the configured limits, which is lowered in adaptive mode once the service is overloaded.
+   */
+  private double throttle = 1.0;
+  private double averageLatencyNanos;
+  private double bestLatencyNanos;
+  private long lastDecreaseNanos;
+
+  ODataRequestGovernor() {
+  }
+
+  /**
+   * @param serviceUrl URL of the OData service.
+   * @return governor of the requests to the service, shared by the clients of the process.
+   */
+  public static ODataRequestGovernor forService(String serviceUrl) {
+    return GOVERNORS.computeIfAbsent(serviceUrl, url -> new ODataRequestGovernor());
+  }
+
+  /**
+   * Registers the request limits of a split, which are enforced until the returned lease is closed.
+   *
+   * @param maxConcurrentRequests maximum number of concurrent requests of the split, fractional values are enforced
+   *                              on average. Not limited if set to {@value #UNLIMITED}.
+   * @param maxRequestsPerSecond  maximum request rate of the split. Not limited if set to {@value #UNLIMITED}.
+   * @param mode                  throttling mode.
+   * @return lease, which must be closed once the split is read.
+   */
+  public synchronized Lease register(double maxConcurrentRequests, double maxRequestsPerSecond,
+                                     ODataThrottlingMode mode) {
+    leases++;
+    adaptiveLeases += mode == ODataThrottlingMode.ADAPTIVE ? 1 : 0;
+    concurrencyShares += maxConcurrentRequests;
+    rateShares += maxRequestsPerSecond;
+    return new Lease(maxConcurrentRequests, maxRequestsPerSecond, mode);
+  }
+
+  /**
+   * Waits until a request can be sent within the limits.
+   *
+   * @throws InterruptedIOException if the thread is interrupted while waiting.
+   */
+  void acquire() throws InterruptedIOException {
+    long delayNanos;
+    synchronized (this) {
+      try {
+        while (inFlight >= getMaxInFlight()) {
+          wait();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a request permit.");
+      }
+      inFlight++;
+      long now = System.nanoTime();
+      long start = Math.max(now, nextStartNanos);
+      double rate = getLimit(rateShares);
+      if (rate > 0) {
+        nextStartNanos = start + (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+      }
+      delayNanos = start - now;
+    }
+    if (delayNanos > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(delayNanos);
+      } catch (InterruptedException e) {
+        abandon();
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a request permit.");
+      }
+    }
+  }
+
+  /**
+   * Releases the permit of a request once its response is received.
+   *
+   * @param latencyNanos time until the response headers were received.
+   * @param statusCode   response status or -1 if the request failed.
+   */
+  synchronized void release(long latencyNanos, int statusCode) {
+    inFlight--;
+    double concurrency = getLimit(concurrencyShares);
+    if (concurrency > 0 && concurrency < 1) {
+      // a request per 1 / concurrency of the time
+      nextStartNanos = Math.max(nextStartNanos, System.nanoTime() + (long) (latencyNanos * (1 / concurrency - 1)));
+    }
+    if (adaptiveLeases > 0) {
+      adapt(latencyNanos, statusCode);
+    }
+    notifyAll();
+  }
+
+  private synchronized void abandon() {
+    inFlight--;
+    notifyAll();
+  }
+
+  synchronized double getThrottle() {
+    return throttle;
+  }
+
+  private void adapt(long latencyNanos, int statusCode) {
+    boolean failed = statusCode < 0 || statusCode >= HTTP_SERVER_ERROR || statusCode == HTTP_TOO_MANY_REQUESTS;
+    if (!failed) {
+      averageLatencyNanos = averageLatencyNanos == 0 ? latencyNanos
+        : (1 - LATENCY_WEIGHT) * averageLatencyNanos + LATENCY_WEIGHT * latencyNanos;
+      bestLatencyNanos = bestLatencyNanos == 0 ? averageLatencyNanos : Math.min(bestLatencyNanos, averageLatencyNanos);
+    }
+    if (failed || averageLatencyNanos > LATENCY_DEGRADATION * bestLatencyNanos) {
+      long now = System.nanoTime();
+      // responses of the requests sent before the decrease do not reflect it yet
+      if (now - lastDecreaseNanos >= Math.max(MIN_DECREASE_INTERVAL_NANOS, (long) averageLatencyNanos)) {
+        throttle = Math.max(MIN_THROTTLE, throttle / 2);
+        lastDecreaseNanos = now;
+      }
+      return;
+    }
+    throttle = Math.min(1.0, throttle + THROTTLE_INCREASE);
+  }
+
+  private int getMaxInFlight() {
+    double concurrency = getLimit(concurrencyShares);
+    return concurrency > 0 ? Math.max(1, (int) concurrency) : Integer.MAX_VALUE;
+  }
+
+  /**
+   * @return limit of the process lowered according to the throttle, or 0 if not limited.
+   */
+  private double getLimit(double shares) {
+    if (leases == 0 || shares <= 0) {
+      return 0;
+    }
+    return adaptiveLeases > 0 ? shares * throttle : shares;
+  }
+
+  private synchronized void unregister(Lease lease) {
+    leases--;
+    adaptiveLeases -= lease.mode == ODataThrottlingMode.ADAPTIVE ? 1 : 0;
+    concurrencyShares -= lease.maxConcurrentRequests;
+    rateShares -= lease.maxRequestsPerSecond;
+    if (leases == 0) {
+      // guards against accumulated rounding errors
+      concurrencyShares = 0;
+      rateShares = 0;
+    }
+    notifyAll();
+  }
+
+  /**
+   * Share of the limits registered by a split.
+   */
+  public final class Lease implements Closeable {
+
+    private final double maxConcurrentRequests;
+    private final double maxRequestsPerSecond;
+    private final ODataThrottlingMode mode;
+    private boolean closed;
+
+    private Lease(double maxConcurrentRequests, double maxRequestsPerSecond, ODataThrottlingMode mode) {
+      this.maxConcurrentRequests = maxConcurrentRequests;
+      this.maxRequestsPerSecond = maxRequestsPerSecond;
+      this.mode = mode;
+    }
+
+    @Override
+    public void close() {
+      synchronized (ODataRequestGovernor.this) {
+        if (closed) {
+          return;
+        }
+        closed = true;
+        unregister(this);
+      }
+    }
+  }
+}
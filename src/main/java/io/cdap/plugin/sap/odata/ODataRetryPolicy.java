@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import com.google.common.base.Strings;
+import com.google.gson.stream.MalformedJsonException;
+import io.cdap.plugin.sap.odata.exception.ODataException;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.utils.DateUtils;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Retry policy of {@link ODataClient} requests. Delays grow exponentially from {@value #INITIAL_DELAY_MILLIS}
+ * milliseconds up to {@link ODataClientOptions#getMaxRetryDelay()} and are randomized using "full jitter", so that
+ * the splits failed at the same time do not retry at the same time. 'Retry-After' header of the response is honored
+ * if specified. Retries and the time spent waiting are counted in {@link ODataTransferStats}.
+ * <p>
+ * Responses with 429, 502, 503 and 504 status codes are retried by the HTTP client of {@link ODataHttpTransport}.
+ * Network failures, which occur while a page is read, are retried by the entity iterators, which request the same
+ * page again and skip the entities read before the failure.
+ */
+public final class ODataRetryPolicy {
+
+  static final long INITIAL_DELAY_MILLIS = 1000;
+  /**
+   * Upper bound of the delay requested by the service, so that a misconfigured service does not hang the task.
+   */
+  private static final long MAX_RETRY_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(10);
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+  private final int maxRetries;
+  private final long maxDelayMillis;
+  private final ODataTransferStats stats;
+
+  /**
+   * @param maxRetries     maximum number of retries of a single request.
+   * @param maxDelayMillis maximum delay before a retry, unless the service requested a longer one.
+   * @param stats          stats to count the retries.
+   */
+  public ODataRetryPolicy(int maxRetries, long maxDelayMillis, ODataTransferStats stats) {
+    this.maxRetries = maxRetries;
+    this.maxDelayMillis = maxDelayMillis;
+    this.stats = stats;
+  }
+
+  /**
+   * @param retry number of retries made so far.
+   * @param e     failure of the last attempt.
+   * @return {@code true} if the failed request can be sent once again.
+   */
+  public boolean shouldRetry(int retry, Throwable e) {
+    return retry < maxRetries && isRetryable(e);
+  }
+
+  /**
+   * Waits before the next retry and counts it.
+   *
+   * @param retry number of retries made so far.
+   * @throws ODataException if the thread is interrupted.
+   */
+  public void backoff(int retry) {
+    long delay = getDelayMillis(retry, null);
+    onRetry(delay);
+    try {
+      TimeUnit.MILLISECONDS.sleep(delay);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ODataException("Interrupted while waiting to retry the request.", e);
+    }
+  }
+
+  boolean canRetry(int retry) {
+    return retry < maxRetries;
+  }
+
+  /**
+   * @param retry           number of retries made so far.
+   * @param retryAfterMillis delay requested by the service or {@code null} if not specified.
+   * @return delay before the next retry.
+   */
+  long getDelayMillis(int retry, @Nullable Long retryAfterMillis) {
+    if (retryAfterMillis != null) {
+      return Math.min(retryAfterMillis, MAX_RETRY_AFTER_MILLIS);
+    }
+    // shift is bounded to prevent overflow, the delay is capped anyway
+    long ceiling = Math.min(maxDelayMillis, INITIAL_DELAY_MILLIS << Math.min(retry, 30));
+    return ThreadLocalRandom.current().nextLong(ceiling + 1);
+  }
+
+  void onRetry(long delayMillis) {
+    stats.addRetry(delayMillis);
+  }
+
+  /**
+   * @return {@code true} if the response status indicates that the service is temporarily unable to respond.
+   */
+  static boolean isRetryableStatus(int statusCode) {
+    return statusCode == HTTP_TOO_MANY_REQUESTS
+      || statusCode == HttpStatus.SC_BAD_GATEWAY
+      || statusCode == HttpStatus.SC_SERVICE_UNAVAILABLE
+      || statusCode == HttpStatus.SC_GATEWAY_TIMEOUT;
+  }
+
+  /**
+   * Parses 'Retry-After' header value, which is either a number of seconds or an HTTP date.
+   *
+   * @return delay in milliseconds or {@code null} if the value is not specified or is invalid.
+   */
+  @Nullable
+  static Long parseRetryAfter(@Nullable String value) {
+    if (Strings.isNullOrEmpty(value)) {
+      return null;
+    }
+    try {
+      return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(value.trim())));
+    } catch (NumberFormatException e) {
+      Date date = DateUtils.parseDate(value.trim());
+      return date == null ? null : Math.max(0, date.getTime() - System.currentTimeMillis());
+    }
+  }
+
+  /**
+   * Network failures are retryable, while malformed responses and error statuses are not, since the statuses worth
+   * retrying are retried by the HTTP client already.
+   */
+  private static boolean isRetryable(Throwable e) {
+    if (Thread.currentThread().isInterrupted()) {
+      return false;
+    }
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof HttpResponseException || cause instanceof MalformedJsonException) {
+        return false;
+      }
+      if (cause instanceof IOException) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
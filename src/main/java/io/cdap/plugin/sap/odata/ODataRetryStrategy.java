@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ServiceUnavailableRetryStrategy;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Retries requests, which failed with a retryable status, according to {@link ODataRetryPolicy}. The delay is
+ * computed once the response is received and is kept per thread, since the client is shared by the threads of a task.
+ */
+final class ODataRetryStrategy implements ServiceUnavailableRetryStrategy {
+
+  private final ODataRetryPolicy policy;
+  private final ThreadLocal<Long> delayMillis = ThreadLocal.withInitial(() -> 0L);
+
+  ODataRetryStrategy(ODataRetryPolicy policy) {
+    this.policy = policy;
+  }
+
+  @Override
+  public boolean retryRequest(HttpResponse response, int executionCount, HttpContext context) {
+    // execution count includes the first attempt
+    int retry = executionCount - 1;
+    if (!ODataRetryPolicy.isRetryableStatus(response.getStatusLine().getStatusCode()) || !policy.canRetry(retry)) {
+      return false;
+    }
+    String retryAfter = response.containsHeader(HttpHeaders.RETRY_AFTER)
+      ? response.getFirstHeader(HttpHeaders.RETRY_AFTER).getValue()
+      : null;
+    long delay = policy.getDelayMillis(retry, ODataRetryPolicy.parseRetryAfter(retryAfter));
+    delayMillis.set(delay);
+    policy.onRetry(delay);
+    return true;
+  }
+
+  @Override
+  public long getRetryInterval() {
+    return delayMillis.get();
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+
+/**
+ * Session of the requests to an OData service, shared by all clients of the same service and credentials within the
+ * process. SAP Gateway performs a full logon check for each request, which carries basic auth credentials, while
+ * requests, which carry a session cookie ("SAP_SESSIONID_&lt;SID&gt;_&lt;client&gt;" or "MYSAPSSO2" logon ticket),
+ * reuse the logon of the session. Therefore, credentials are sent only until the service issues a session cookie.
+ * Once the session expires, the service challenges the request, which is then sent again with the credentials and
+ * starts a new session.
+ * <p>
+ * The session also keeps the CSRF token, which SAP Gateway requires for modifying requests such as '$batch' and which
+ * is bound to the session cookie.
+ */
+public final class ODataSession {
+
+  public static final String CSRF_TOKEN_HEADER = "x-csrf-token";
+  /**
+   * Value of the {@value #CSRF_TOKEN_HEADER} request header, which requests the token of the session.
+   */
+  public static final String CSRF_TOKEN_FETCH = "Fetch";
+  /**
+   * Value of the {@value #CSRF_TOKEN_HEADER} response header, which indicates that the token is missing or expired.
+   */
+  public static final String CSRF_TOKEN_REQUIRED = "Required";
+
+  private static final String SESSION_ID_COOKIE_PREFIX = "SAP_SESSIONID_";
+  private static final String LOGON_TICKET_COOKIE = "MYSAPSSO2";
+
+  private static final Map<String, ODataSession> SESSIONS = new ConcurrentHashMap<>();
+
+  private final CookieStore cookieStore = new BasicCookieStore();
+  @Nullable
+  private final CredentialsProvider credentialsProvider;
+  @Nullable
+  private final String authorization;
+  @Nullable
+  private volatile String csrfToken;
+
+  /**
+   * @param username username for basic authentication.
+   * @param password password for basic authentication.
+   */
+  ODataSession(@Nullable String username, @Nullable String password) {
+    if (Strings.isNullOrEmpty(username) && Strings.isNullOrEmpty(password)) {
+      this.credentialsProvider = null;
+      this.authorization = null;
+      return;
+    }
+    this.credentialsProvider = new BasicCredentialsProvider();
+    credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(Strings.nullToEmpty(username),
+                                                                                      Strings.nullToEmpty(password)));
+    String credentials = Strings.nullToEmpty(username) + ":" + Strings.nullToEmpty(password);
+    this.authorization = "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Returns the session shared by all clients of the given service and credentials.
+   *
+   * @param rootUrl  URL of the OData service.
+   * @param username username for basic authentication.
+   * @param password password for basic authentication.
+   * @return session of the service.
+   */
+  public static ODataSession forService(String rootUrl, @Nullable String username, @Nullable String password) {
+    String key = Hashing.sha256()
+      .hashString(rootUrl + '\n' + username + '\n' + password, StandardCharsets.UTF_8)
+      .toString();
+    return SESSIONS.computeIfAbsent(key, k -> new ODataSession(username, password));
+  }
+
+  /**
+   * @return CSRF token of the session or {@code null} if it was not fetched yet.
+   */
+  @Nullable
+  public String getCsrfToken() {
+    return csrfToken;
+  }
+
+  /**
+   * Sets the CSRF token fetched from the service, which is sent with each modifying request of the session.
+   */
+  public void setCsrfToken(@Nullable String csrfToken) {
+    this.csrfToken = csrfToken;
+  }
+
+  CookieStore getCookieStore() {
+    return cookieStore;
+  }
+
+  /**
+   * @return credentials used to answer the authentication challenge of the service once the session expires.
+   */
+  @Nullable
+  CredentialsProvider getCredentialsProvider() {
+    return credentialsProvider;
+  }
+
+  /**
+   * Adds basic auth credentials to the given request unless the session is already established, and the CSRF token to
+   * the modifying requests.
+   */
+  void authenticate(HttpRequest request) {
+    if (authorization != null && !request.containsHeader(HttpHeaders.AUTHORIZATION) && !isEstablished()) {
+      request.addHeader(HttpHeaders.AUTHORIZATION, authorization);
+    }
+    String method = request.getRequestLine().getMethod();
+    String token = csrfToken;
+    if (token != null && !HttpGet.METHOD_NAME.equals(method) && !HttpHead.METHOD_NAME.equals(method)
+      && !request.containsHeader(CSRF_TOKEN_HEADER)) {
+      request.addHeader(CSRF_TOKEN_HEADER, token);
+    }
+  }
+
+  /**
+   * @return {@code true} if the service issued a session cookie, which has not expired yet.
+   */
+  boolean isEstablished() {
+    Date now = new Date();
+    for (Cookie cookie : cookieStore.getCookies()) {
+      String name = cookie.getName();
+      if ((name.startsWith(SESSION_ID_COOKIE_PREFIX) || LOGON_TICKET_COOKIE.equals(name)) && !cookie.isExpired(now)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+
+/**
+ * Mode of {@link ODataRequestGovernor}, which enforces the request limits of the service.
+ */
+public enum ODataThrottlingMode {
+
+  /**
+   * Requests are sent at the configured limits.
+   */
+  FIXED("fixed"),
+  /**
+   * Limits are lowered once the service responds slower or fails with 5xx statuses, and are raised back to the
+   * configured ones once it recovers.
+   */
+  ADAPTIVE("adaptive");
+
+  private static final Map<String, ODataThrottlingMode> byName = Arrays.stream(values())
+    .collect(Collectors.toMap(ODataThrottlingMode::getName, Function.identity()));
+
+  private final String name;
+
+  /**
+   * @param name value of the plugin property.
+   */
+  ODataThrottlingMode(String name) {
+    this.name = name;
+  }
+
+  @Nullable
+  public static ODataThrottlingMode fromName(String name) {
+    return byName.get(name);
+  }
+
+  public String getName() {
+    return name;
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of the requests sent by {@link ODataClient}: the number of requests, sizes of the received response
+ * contents, time to the first byte and time spent downloading the contents, retries of the failed requests, time
+ * spent waiting for the request limits, the number of logons and hedged requests. The wire size differs from the
+ * decoded size if the service compresses the responses.
+ */
+public final class ODataTransferStats {
+
+  /**
+   * Counters of the sent requests and received responses.
+   */
+  public enum Counter {
+    /**
+     * Number of requests sent, including the retries and the duplicate requests.
+     */
+    REQUESTS,
+    /**
+     * Time from sending the requests to receiving the response headers, which is the time the service spends
+     * processing the requests plus the network latency.
+     */
+    FIRST_BYTE_MILLIS,
+    /**
+     * Time spent waiting for the response contents to arrive over the network.
+     */
+    DOWNLOAD_MILLIS,
+    /**
+     * Size of the response contents as received over the network, compressed or not.
+     */
+    RESPONSE_WIRE_BYTES,
+    /**
+     * Size of the response contents after decompression.
+     */
+    RESPONSE_DECODED_BYTES,
+    /**
+     * Number of retries of the failed requests, see {@link ODataRetryPolicy}.
+     */
+    RETRIES,
+    /**
+     * Time spent waiting before the retries.
+     */
+    RETRY_WAIT_MILLIS,
+    /**
+     * Time spent waiting for the request limits of the service, see {@link ODataRequestGovernor}.
+     */
+    THROTTLE_WAIT_MILLIS,
+    /**
+     * Number of requests sent with basic auth credentials, each of which costs a logon check on SAP Gateway, see
+     * {@link ODataSession}.
+     */
+    LOGONS,
+    /**
+     * Number of duplicate requests sent for the requests, which did not respond in time, see
+     * {@link ODataHedgingPolicy}.
+     */
+    HEDGES,
+    /**
+     * Number of duplicate requests, which responded before the original ones.
+     */
+    HEDGE_WINS
+  }
+
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong firstByteNanos = new AtomicLong();
+  private final AtomicLong downloadNanos = new AtomicLong();
+  private final AtomicLong wireBytes = new AtomicLong();
+  private final AtomicLong decodedBytes = new AtomicLong();
+  private final AtomicLong retries = new AtomicLong();
+  private final AtomicLong retryWaitMillis = new AtomicLong();
+  private final AtomicLong throttleWaitMillis = new AtomicLong();
+  private final AtomicLong logons = new AtomicLong();
+  private final AtomicLong hedges = new AtomicLong();
+  private final AtomicLong hedgeWins = new AtomicLong();
+
+  void addRequest(long firstByteNanos) {
+    requests.incrementAndGet();
+    this.firstByteNanos.addAndGet(firstByteNanos);
+  }
+
+  void addDownload(long nanos) {
+    downloadNanos.addAndGet(nanos);
+  }
+
+  void addWireBytes(long bytes) {
+    wireBytes.addAndGet(bytes);
+  }
+
+  void addDecodedBytes(long bytes) {
+    decodedBytes.addAndGet(bytes);
+  }
+
+  void addRetry(long waitMillis) {
+    retries.incrementAndGet();
+    retryWaitMillis.addAndGet(waitMillis);
+  }
+
+  void addThrottleWait(long waitMillis) {
+    throttleWaitMillis.addAndGet(waitMillis);
+  }
+
+  void addLogon() {
+    logons.incrementAndGet();
+  }
+
+  void addHedge() {
+    hedges.incrementAndGet();
+  }
+
+  void addHedgeWin() {
+    hedgeWins.incrementAndGet();
+  }
+
+  public long getCounter(Counter counter) {
+    switch (counter) {
+      case REQUESTS:
+        return requests.get();
+      case FIRST_BYTE_MILLIS:
+        return TimeUnit.NANOSECONDS.toMillis(firstByteNanos.get());
+      case DOWNLOAD_MILLIS:
+        return TimeUnit.NANOSECONDS.toMillis(downloadNanos.get());
+      case RESPONSE_WIRE_BYTES:
+        return wireBytes.get();
+      case RESPONSE_DECODED_BYTES:
+        return decodedBytes.get();
+      case RETRIES:
+        return retries.get();
+      case RETRY_WAIT_MILLIS:
+        return retryWaitMillis.get();
+      case THROTTLE_WAIT_MILLIS:
+        return throttleWaitMillis.get();
+      case LOGONS:
+        return logons.get();
+      case HEDGES:
+        return hedges.get();
+      case HEDGE_WINS:
+        return hedgeWins.get();
+      default:
+        throw new IllegalArgumentException("Unknown counter: " + counter);
+    }
+  }
+
+  /**
+   * @return snapshot of the sums of this and the given stats.
+   */
+  public ODataTransferStats plus(ODataTransferStats other) {
+    ODataTransferStats sum = new ODataTransferStats();
+    sum.requests.set(requests.get() + other.requests.get());
+    sum.firstByteNanos.set(firstByteNanos.get() + other.firstByteNanos.get());
+    sum.downloadNanos.set(downloadNanos.get() + other.downloadNanos.get());
+    sum.addWireBytes(wireBytes.get() + other.wireBytes.get());
+    sum.addDecodedBytes(decodedBytes.get() + other.decodedBytes.get());
+    sum.retries.set(retries.get() + other.retries.get());
+    sum.retryWaitMillis.set(retryWaitMillis.get() + other.retryWaitMillis.get());
+    sum.throttleWaitMillis.set(throttleWaitMillis.get() + other.throttleWaitMillis.get());
+    sum.logons.set(logons.get() + other.logons.get());
+    sum.hedges.set(hedges.get() + other.hedges.get());
+    sum.hedgeWins.set(hedgeWins.get() + other.hedgeWins.get());
+    return sum;
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sap.odata;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Format of the OData V2 entity set responses. OData V4 services are always consumed using JSON format.
+ */
+public enum ODataWireFormat {
+
+  ATOM("atom", MediaType.APPLICATION_ATOM_XML),
+  JSON("json", MediaType.APPLICATION_JSON);
+
+  private static final Map<String, ODataWireFormat> byName = Arrays.stream(values())
+    .collect(Collectors.toMap(ODataWireFormat::getName, Function.identity()));
+
+  private final String name;
+  private final String mediaType;
+
+  /**
+   * @param name      value of the '$format' query option and of the plugin property.
+   * @param mediaType media type requested using 'Accept' header.
+   */
+  ODataWireFormat(String name, String mediaType) {
+    this.name = name;
+    this.mediaType = mediaType;
+  }
+
+  @Nullable
+  public static ODataWireFormat fromName(String name) {
+    return byName.get(name);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getMediaType() {
+    return mediaType;
+  }
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sap.odata.odata2;
+
+import com.google.common.base.Strings;
+import io.cdap.plugin.sap.odata.ODataChangeType;
+import io.cdap.plugin.sap.odata.ODataEntity;
+import io.cdap.plugin.sap.odata.ODataPropertyIndex;
+import io.cdap.plugin.sap.odata.exception.ODataException;
+import org.apache.olingo.odata2.api.edm.Edm;
+import org.apache.olingo.odata2.api.edm.EdmEntitySet;
+import org.apache.olingo.odata2.api.edm.EdmException;
+import org.apache.olingo.odata2.api.edm.EdmLiteralKind;
+import org.apache.olingo.odata2.api.edm.EdmProperty;
+import org.apache.olingo.odata2.api.edm.EdmSimpleType;
+import org.apache.olingo.odata2.api.edm.EdmStructuralType;
+import org.apache.olingo.odata2.api.edm.EdmTypeKind;
+import org.apache.olingo.odata2.api.edm.EdmTyped;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads Atom XML feed incrementally using StAX, so that a single entity is kept in memory at a time, unlike
+ * {@link org.apache.olingo.odata2.api.ep.EntityProvider#readFeed}, which builds the whole feed. Property values are
+ * converted by the EDM simple types of the entity set metadata, so they are the same as the ones read by Olingo.
+ * Inline entries of expanded navigation properties are skipped.
+ * <p>
+ * Deleted entities of delta responses are read from Atom tombstones, which contain the URI of the entity in the 'ref'
+ * attribute, so that the key properties are parsed from the URI unless the tombstone contains the properties.
+ */
+class OData2AtomFeedReader implements OData2FeedReader {
+
+  private static final String FEED = "feed";
+  private static final String ENTRY = "entry";
+  private static final String LINK = "link";
+  private static final String CONTENT = "content";
+  private static final String PROPERTIES = "properties";
+  private static final String NULL = "null";
+  private static final String REL = "rel";
+  private static final String HREF = "href";
+  private static final String NEXT = "next";
+  private static final String DELTA = "delta";
+  private static final String NAMESPACE_TOMBSTONES = "http://purl.org/atompub/tombstones/1.0";
+  private static final String DELETED_ENTRY = "deleted-entry";
+  private static final String REF = "ref";
+  private static final String XML_NAMESPACE = "http://www.w3.org/XML/1998/namespace";
+  private static final String BASE = "base";
+
+  private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+  private final XMLStreamReader reader;
+  private final InputStream content;
+  private final Closeable connection;
+  private final EdmEntitySet entitySet;
+  private final ODataPropertyIndex index;
+  /**
+   * Entity type properties in the order of the index.
+   */
+  private final EdmProperty[] indexedProperties;
+  private final URI requestURI;
+
+  /**
+   * Base URI of the feed, which is used to resolve relative links.
+   */
+  @Nullable
+  private String xmlBase;
+  @Nullable
+  private String nextLink;
+  @Nullable
+  private String deltaLink;
+  private boolean feedStarted;
+  private boolean finished;
+
+  /**
+   * @param content    Atom XML response.
+   * @param entitySet  metadata of the entity set.
+   * @param index      index of the entity type properties.
+   * @param requestURI URI of the request, used to resolve relative links along with xml:base of the feed.
+   * @param connection closed along with the reader.
+   */
+  OData2AtomFeedReader(InputStream content, EdmEntitySet entitySet, ODataPropertyIndex index, URI requestURI,
+                       Closeable connection) throws EdmException {
+    this.content = content;
+    this.connection = connection;
+    this.entitySet = entitySet;
+    this.index = index;
+    this.requestURI = requestURI;
+    this.indexedProperties = OData2Client.getIndexedProperties(entitySet.getEntityType(), index);
+    try {
+      this.reader = XML_INPUT_FACTORY.createXMLStreamReader(content);
+    } catch (XMLStreamException e) {
+      throw new ODataException("Unable to read Atom feed: " + e.getMessage(), e);
+    }
+  }
+
+  @Nullable
+  @Override
+  public ODataEntity read() {
+    if (finished) {
+      return null;
+    }
+    try {
+      if (!feedStarted) {
+        startFeed();
+      }
+      while (reader.hasNext()) {
+        int event = reader.next();
+        if (event == XMLStreamConstants.END_ELEMENT) {
+          // end of the feed
+          finished = true;
+          return null;
+        }
+        if (event != XMLStreamConstants.START_ELEMENT) {
+          continue;
+        }
+        if (isElement(Edm.NAMESPACE_ATOM_2005, ENTRY)) {
+          return readEntry();
+        }
+        if (isElement(NAMESPACE_TOMBSTONES, DELETED_ENTRY)) {
+          return readDeletedEntry();
+        }
+        if (isElement(Edm.NAMESPACE_ATOM_2005, LINK)) {
+          String rel = reader.getAttributeValue(null, REL);
+          if (NEXT.equals(rel)) {
+            nextLink = Strings.emptyToNull(reader.getAttributeValue(null, HREF));
+          } else if (DELTA.equals(rel)) {
+            deltaLink = Strings.emptyToNull(reader.getAttributeValue(null, HREF));
+          }
+        }
+        skipElement();
+      }
+      finished = true;
+      return null;
+    } catch (XMLStreamException | EdmException e) {
+      throw new ODataException(String.format("Unable to read '%s' entity set: %s", getEntitySetName(), e.getMessage()),
+                               e);
+    }
+  }
+
+  @Nullable
+  @Override
+  public String getNextLink() {
+    return resolve(nextLink, NEXT);
+  }
+
+  @Nullable
+  @Override
+  public String getDeltaLink() {
+    return resolve(deltaLink, DELTA);
+  }
+
+  @Nullable
+  private String resolve(@Nullable String link, String relation) {
+    if (link == null) {
+      return null;
+    }
+    try {
+      URI base = xmlBase == null ? requestURI : requestURI.resolve(xmlBase);
+      return base.resolve(link).toString();
+    } catch (IllegalArgumentException e) {
+      throw new ODataException(String.format("Invalid %s link: '%s'.", relation, link), e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      reader.close();
+    } catch (XMLStreamException e) {
+      // closing the underlying stream anyway
+    } finally {
+      try {
+        content.close();
+      } finally {
+        connection.close();
+      }
+    }
+  }
+
+  private void startFeed() throws XMLStreamException {
+    feedStarted = true;
+    reader.nextTag();
+    if (!isElement(Edm.NAMESPACE_ATOM_2005, FEED)) {
+      throw new XMLStreamException(String.format("Expected Atom feed, but found '%s' element.", reader.getName()));
+    }
+    xmlBase = reader.getAttributeValue(XML_NAMESPACE, BASE);
+  }
+
+  private ODataEntity readEntry() throws XMLStreamException, EdmException {
+    Object[] values = new Object[index.size()];
+    while (true) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.END_ELEMENT) {
+        // end of the entry
+        break;
+      }
+      if (event != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+      if (isElement(Edm.NAMESPACE_ATOM_2005, CONTENT)) {
+        readContent(values);
+      } else if (isElement(Edm.NAMESPACE_M_2007_08, PROPERTIES)) {
+        // properties of media link entries are placed outside of the content
+        readEntityProperties(values);
+      } else {
+        skipElement();
+      }
+    }
+    return new ODataEntity(index, values);
+  }
+
+  /**
+   * Reads Atom tombstone of a deleted entity.
+   */
+  private ODataEntity readDeletedEntry() throws XMLStreamException, EdmException {
+    String ref = Strings.emptyToNull(reader.getAttributeValue(null, REF));
+    Object[] values = new Object[index.size()];
+    while (true) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.END_ELEMENT) {
+        // end of the tombstone
+        break;
+      }
+      if (event != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+      if (isElement(Edm.NAMESPACE_ATOM_2005, CONTENT)) {
+        readContent(values);
+      } else if (isElement(Edm.NAMESPACE_M_2007_08, PROPERTIES)) {
+        readEntityProperties(values);
+      } else {
+        skipElement();
+      }
+    }
+    if (ref == null) {
+      throw new ODataException(String.format("Deleted entry of '%s' entity set does not have a reference.",
+                                             getEntitySetName()));
+    }
+    for (Map.Entry<String, Object> key : OData2Client.getKeyValues(entitySet.getEntityType(), ref).entrySet()) {
+      int ordinal = index.ordinalOf(key.getKey());
+      if (ordinal >= 0 && values[ordinal] == null) {
+        values[ordinal] = key.getValue();
+      }
+    }
+    return new ODataEntity(index, values, ODataChangeType.DELETE);
+  }
+
+  private void readContent(Object[] values) throws XMLStreamException, EdmException {
+    int depth = 1;
+    while (depth > 0) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        if (isElement(Edm.NAMESPACE_M_2007_08, PROPERTIES)) {
+          readEntityProperties(values);
+        } else {
+          depth++;
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+
+  /**
+   * Reads properties of the entity type until the end of the current element.
+   */
+  private void readEntityProperties(Object[] values) throws XMLStreamException, EdmException {
+    int expectedOrdinal = 0;
+    while (true) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.END_ELEMENT) {
+        return;
+      }
+      if (event != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+      int ordinal = Edm.NAMESPACE_D_2007_08.equals(reader.getNamespaceURI())
+        ? index.ordinalOf(reader.getLocalName(), expectedOrdinal) : -1;
+      if (ordinal < 0) {
+        skipElement();
+        continue;
+      }
+      values[ordinal] = readPropertyValue(indexedProperties[ordinal]);
+      expectedOrdinal = ordinal + 1;
+    }
+  }
+
+  /**
+   * Reads properties of the given complex type until the end of the current element.
+   */
+  private void readProperties(EdmStructuralType type, Map<String, Object> properties)
+    throws XMLStreamException, EdmException {
+    while (true) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.END_ELEMENT) {
+        return;
+      }
+      if (event != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+      EdmTyped typed = Edm.NAMESPACE_D_2007_08.equals(reader.getNamespaceURI())
+        ? type.getProperty(reader.getLocalName()) : null;
+      if (!(typed instanceof EdmProperty)) {
+        skipElement();
+        continue;
+      }
+      EdmProperty property = (EdmProperty) typed;
+      // EDM property name is used as a key to avoid keeping a copy of the name for each value
+      properties.put(property.getName(), readPropertyValue(property));
+    }
+  }
+
+  @Nullable
+  private Object readPropertyValue(EdmProperty property) throws XMLStreamException, EdmException {
+    if (Boolean.parseBoolean(reader.getAttributeValue(Edm.NAMESPACE_M_2007_08, NULL))) {
+      skipElement();
+      return null;
+    }
+    if (property.getType().getKind() == EdmTypeKind.COMPLEX) {
+      Map<String, Object> value = new HashMap<>();
+      readProperties((EdmStructuralType) property.getType(), value);
+      return value;
+    }
+    EdmSimpleType type = (EdmSimpleType) property.getType();
+    String text = reader.getElementText();
+    return type.valueOfString(text, EdmLiteralKind.DEFAULT, property.getFacets(), type.getDefaultType());
+  }
+
+  private void skipElement() throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+
+  private boolean isElement(String namespace, String localName) {
+    return localName.equals(reader.getLocalName()) && namespace.equals(reader.getNamespaceURI());
+  }
+
+  private String getEntitySetName() {
+    try {
+      return entitySet.getName();
+    } catch (EdmException e) {
+      return "";
+    }
+  }
+
+  private static XMLInputFactory createInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    // external entities are never resolved to prevent XXE attacks
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    return factory;
+  }
+}
@@ -16,33 +16,69 @@
 
 package io.cdap.plugin.sap.odata.odata2;
 
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CharStreams;
+import io.cdap.plugin.sap.odata.EdmxReader;
 import io.cdap.plugin.sap.odata.EntityType;
 import io.cdap.plugin.sap.odata.ODataClient;
+import io.cdap.plugin.sap.odata.ODataClientOptions;
+import io.cdap.plugin.sap.odata.ODataDeltaIterator;
 import io.cdap.plugin.sap.odata.ODataEntity;
-import io.cdap.plugin.sap.odata.PropertyMetadata;
+import io.cdap.plugin.sap.odata.ODataKeyPredicate;
+import io.cdap.plugin.sap.odata.ODataMetadata;
+import io.cdap.plugin.sap.odata.ODataPaging;
+import io.cdap.plugin.sap.odata.ODataPropertyIndex;
+import io.cdap.plugin.sap.odata.ODataQueryOptions;
+import io.cdap.plugin.sap.odata.ODataSession;
+import io.cdap.plugin.sap.odata.ODataVersion;
+import io.cdap.plugin.sap.odata.ODataWireFormat;
 import io.cdap.plugin.sap.odata.exception.ODataException;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.util.EntityUtils;
+import org.apache.olingo.odata2.api.batch.BatchException;
+import org.apache.olingo.odata2.api.client.batch.BatchPart;
+import org.apache.olingo.odata2.api.client.batch.BatchQueryPart;
+import org.apache.olingo.odata2.api.client.batch.BatchSingleResponse;
 import org.apache.olingo.odata2.api.edm.Edm;
 import org.apache.olingo.odata2.api.edm.EdmEntitySet;
 import org.apache.olingo.odata2.api.edm.EdmEntityType;
 import org.apache.olingo.odata2.api.edm.EdmException;
+import org.apache.olingo.odata2.api.edm.EdmLiteralKind;
 import org.apache.olingo.odata2.api.edm.EdmProperty;
+import org.apache.olingo.odata2.api.edm.EdmSimpleType;
+import org.apache.olingo.odata2.api.edm.EdmTypeKind;
+import org.apache.olingo.odata2.api.edm.EdmTyped;
 import org.apache.olingo.odata2.api.ep.EntityProvider;
 import org.apache.olingo.odata2.api.ep.EntityProviderException;
 import org.apache.olingo.odata2.api.ep.EntityProviderReadProperties;
+import org.apache.olingo.odata2.api.ep.feed.ODataDeltaFeed;
 import org.apache.olingo.odata2.api.ep.feed.ODataFeed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
+import java.io.InputStreamReader;
 import java.net.URI;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nullable;
-import javax.ws.rs.HttpMethod;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 
@@ -56,11 +92,33 @@ public class OData2Client extends ODataClient {
    */
   private static final EntityProviderReadProperties READ_PROPERTIES = EntityProviderReadProperties.init().build();
 
+  private static final Logger LOG = LoggerFactory.getLogger(OData2Client.class);
+
+  private static final String BATCH_BOUNDARY_PREFIX = "batch_";
+  private static final String MULTIPART_MIXED = "multipart/mixed";
+
   /**
    * Cache metadata to avoid repetitive API calls.
    */
   private Edm metadata;
 
+  /**
+   * Metadata fetched in advance, which is used instead of requesting '$metadata' document.
+   */
+  @Nullable
+  private final ODataMetadata shippedMetadata;
+
+  /**
+   * Entity types parsed from the shipped metadata, so that the document is parsed once per entity set as well as the
+   * cached one.
+   */
+  private final Map<String, EntityType> shippedEntityTypes = new ConcurrentHashMap<>();
+
+  /**
+   * Indicates that the service rejected JSON format, so that Atom format is used for the rest of the requests.
+   */
+  private boolean jsonRejected;
+
   /**
    * @param rootUrl  URL of the OData service. The URL must end with an external service name
    *                 (e.g., http://eccsvrname:8000/sap/opu/odata/sap/zgw100_dd02l_so_srv/).
@@ -68,7 +126,32 @@ public class OData2Client extends ODataClient {
    * @param password password for basic authentication.
    */
   public OData2Client(String rootUrl, String username, String password) {
-    super(rootUrl, username, password);
+    this(rootUrl, username, password, ODataClientOptions.defaults());
+  }
+
+  /**
+   * @param rootUrl  URL of the OData service. The URL must end with an external service name
+   *                 (e.g., http://eccsvrname:8000/sap/opu/odata/sap/zgw100_dd02l_so_srv/).
+   * @param username username for basic authentication.
+   * @param password password for basic authentication.
+   * @param options  client options.
+   */
+  public OData2Client(String rootUrl, String username, String password, ODataClientOptions options) {
+    this(rootUrl, username, password, options, null);
+  }
+
+  /**
+   * @param rootUrl  URL of the OData service. The URL must end with an external service name
+   *                 (e.g., http://eccsvrname:8000/sap/opu/odata/sap/zgw100_dd02l_so_srv/).
+   * @param username username for basic authentication.
+   * @param password password for basic authentication.
+   * @param options  client options.
+   * @param metadata optional metadata fetched in advance.
+   */
+  public OData2Client(String rootUrl, String username, String password, ODataClientOptions options,
+                      @Nullable ODataMetadata metadata) {
+    super(rootUrl, username, password, options);
+    this.shippedMetadata = metadata;
   }
 
   /**
@@ -86,78 +169,381 @@ public class OData2Client extends ODataClient {
 
   @Override
   public Iterator<ODataEntity> queryEntitySet(String entitySetName, @Nullable String query) {
+    ODataPaging paging = new ODataPaging(query, options.getPageSize(),
+                                         () -> getEntitySetType(entitySetName).getKeyPropertyNames());
+    return new OData2EntityIterator(this, entitySetName, paging, options.getPagesPerBatch());
+  }
+
+  /**
+   * SAP Gateway returns the delta link along with the last page of delta-enabled entity sets, so that neither
+   * 'odata.track-changes' preference nor '!deltatoken' custom query option must be specified explicitly.
+   */
+  @Override
+  public ODataDeltaIterator queryEntitySetChanges(String entitySetName, @Nullable String query,
+                                                  @Nullable String deltaLink) {
+    ODataPaging paging = new ODataPaging(query, ODataClientOptions.NO_PAGING, Collections::emptyList);
+    return new OData2EntityIterator(this, entitySetName, paging, ODataClientOptions.NO_BATCHING, deltaLink);
+  }
+
+  @Override
+  public long countEntitySet(String entitySetName, @Nullable String query) {
+    String countQuery = getCountQuery(query);
+    URI countURI = getCountURI(entitySetName, countQuery);
+    try (CloseableHttpResponse response = connect(countURI, MediaType.TEXT_PLAIN);
+         InputStream content = getContent(response)) {
+      String count = CharStreams.toString(new InputStreamReader(content, StandardCharsets.UTF_8));
+      return Long.parseLong(count.trim());
+    } catch (IOException | NumberFormatException e) {
+      // '$count' segment is optional for OData V2 and is not implemented by some of SAP Gateway services
+      return inlineCountEntitySet(entitySetName, countQuery);
+    }
+  }
+
+  private long inlineCountEntitySet(String entitySetName, @Nullable String countQuery) {
+    String query = ODataQueryOptions.parse(countQuery)
+      .set(ODataQueryOptions.INLINE_COUNT, "allpages")
+      .set(ODataQueryOptions.TOP, "0")
+      .toQuery();
+    Integer inlineCount = readFeed(entitySetName, query).getFeedMetadata().getInlineCount();
+    if (inlineCount == null) {
+      throw new ODataException(String.format("Unable to count '%s' entity set.", entitySetName));
+    }
+    return inlineCount;
+  }
+
+  private ODataFeed readFeed(String entitySetName, @Nullable String query) {
     Edm metadata = getMetadata();
     URI queryURI = getQueryURI(entitySetName, query);
-    HttpURLConnection connection = connect(queryURI.toASCIIString(), MediaType.APPLICATION_ATOM_XML);
-    try (InputStream content = (InputStream) connection.getContent()) {
+    try (CloseableHttpResponse response = connect(queryURI, MediaType.APPLICATION_ATOM_XML);
+         InputStream content = getContent(response)) {
       EdmEntitySet entitySet = metadata.getDefaultEntityContainer().getEntitySet(entitySetName);
-      ODataFeed feed = EntityProvider.readFeed(connection.getContentType(), entitySet, content, READ_PROPERTIES);
-
-      return new OData2EntityIterator(feed.getEntries().iterator());
+      return EntityProvider.readFeed(getContentType(response), entitySet, content, READ_PROPERTIES);
     } catch (IOException | EdmException | EntityProviderException e) {
       throw new ODataException(String.format("Unable to read '%s' entity set.", entitySetName), e);
-    } finally {
-      // will close the content InputStream
-      connection.disconnect();
     }
   }
 
-  @Override
-  public EntityType getEntitySetType(String entitySetName) {
+  /**
+   * Opens a single page of the entity set in the configured wire format. Falls back to Atom format if the service
+   * rejects JSON format.
+   *
+   * @return reader of the page, which must be closed once the entities are read.
+   */
+  OData2FeedReader openFeed(String entitySetName, @Nullable String query) {
+    if (getWireFormat() == ODataWireFormat.JSON) {
+      URI queryURI = getQueryURI(entitySetName, getFormatQuery(query));
+      CloseableHttpResponse response = connect(queryURI, MediaType.APPLICATION_JSON);
+      int statusCode = response.getStatusLine().getStatusCode();
+      String errorBody = statusCode == HttpStatus.SC_BAD_REQUEST ? getErrorBody(response) : null;
+      if (!isFormatRejected(statusCode, errorBody)) {
+        return openFeed(entitySetName, queryURI, response);
+      }
+      closeQuietly(response);
+      jsonRejected = true;
+      LOG.warn("JSON format is not supported by the '{}' entity set, falling back to Atom format.", entitySetName);
+    }
+    URI queryURI = getQueryURI(entitySetName, query);
+    return openFeed(entitySetName, queryURI, connect(queryURI, ODataWireFormat.ATOM.getMediaType()));
+  }
+
+  /**
+   * Opens a single page of the entity set using the given absolute next link of the previous page.
+   *
+   * @return reader of the page, which must be closed once the entities are read.
+   */
+  OData2FeedReader openFeed(String entitySetName, URI nextLink) {
+    return openFeed(entitySetName, nextLink, connect(nextLink, getWireFormat().getMediaType()));
+  }
+
+  /**
+   * Requests several client-side pages of the entity set at once using a single '$batch' request, which saves a round
+   * trip per page. Responses of the pages are kept in memory until they are read. Falls back to Atom format if the
+   * service rejects JSON format.
+   *
+   * @param queries queries of the pages.
+   * @return readers of the pages in the order of the queries, which must be closed once the entities are read.
+   */
+  List<OData2FeedReader> openFeeds(String entitySetName, List<String> queries) {
+    ODataWireFormat format = getWireFormat();
+    List<URI> queryURIs = new ArrayList<>(queries.size());
+    List<BatchPart> parts = new ArrayList<>(queries.size());
+    for (String query : queries) {
+      URI queryURI = getQueryURI(entitySetName, format == ODataWireFormat.JSON ? getFormatQuery(query) : query);
+      String rawQuery = queryURI.getRawQuery();
+      queryURIs.add(queryURI);
+      // URIs of the batch parts are relative to the service root
+      parts.add(BatchQueryPart.method(HttpGet.METHOD_NAME)
+                  .uri(rawQuery == null ? entitySetName : entitySetName + QUERY_SEPARATOR + rawQuery)
+                  .headers(Collections.singletonMap(HttpHeaders.ACCEPT, format.getMediaType()))
+                  .build());
+    }
+    List<BatchSingleResponse> responses = executeBatch(entitySetName, parts);
+    if (format == ODataWireFormat.JSON && responses.stream()
+      .anyMatch(r -> isFormatRejected(getStatusCode(r), r.getBody()))) {
+      jsonRejected = true;
+      LOG.warn("JSON format is not supported by the '{}' entity set, falling back to Atom format.", entitySetName);
+      return openFeeds(entitySetName, queries);
+    }
+    List<OData2FeedReader> readers = new ArrayList<>(responses.size());
+    for (int i = 0; i < responses.size(); i++) {
+      BatchSingleResponse response = responses.get(i);
+      int statusCode = getStatusCode(response);
+      if (statusCode >= HttpStatus.SC_BAD_REQUEST) {
+        throw new ODataException(String.format("Unable to read '%s' entity set. Server returned HTTP response code: " +
+                                                 "%d, %s", entitySetName, statusCode, response.getStatusInfo()));
+      }
+      String contentType = Strings.nullToEmpty(getPartHeaderValue(response, HttpHeaders.CONTENT_TYPE));
+      InputStream content = new ByteArrayInputStream(
+        Strings.nullToEmpty(response.getBody()).getBytes(StandardCharsets.UTF_8));
+      readers.add(openFeed(entitySetName, queryURIs.get(i), contentType, content, content));
+    }
+    return readers;
+  }
+
+  /**
+   * Sends the given parts using a single '$batch' request. SAP Gateway requires a CSRF token for '$batch' requests,
+   * since they are sent using POST method. The token is fetched once the service requires it and is reused by all
+   * clients of the session until it expires along with the session.
+   *
+   * @return responses of the parts in the order of the parts.
+   */
+  private List<BatchSingleResponse> executeBatch(String entitySetName, List<BatchPart> parts) {
+    String boundary = BATCH_BOUNDARY_PREFIX + UUID.randomUUID();
+    ByteArrayEntity entity;
+    try (InputStream content = EntityProvider.writeBatchRequest(parts, boundary)) {
+      entity = new ByteArrayEntity(ByteStreams.toByteArray(content));
+    } catch (IOException e) {
+      throw new ODataException(String.format("Unable to write '%s' entity set batch request.", entitySetName), e);
+    }
+    entity.setContentType(MULTIPART_MIXED + "; boundary=" + boundary);
+    URI batchURI = getBatchURI();
+    boolean tokenFetched = false;
+    while (true) {
+      try (CloseableHttpResponse response = post(batchURI, entity, Collections.emptyList())) {
+        if (!tokenFetched && isCsrfTokenRequired(response)) {
+          EntityUtils.consumeQuietly(response.getEntity());
+          session.setCsrfToken(fetchCsrfToken());
+          tokenFetched = true;
+          continue;
+        }
+        try (InputStream content = getContent(response)) {
+          List<BatchSingleResponse> responses = EntityProvider.parseBatchResponse(content, getContentType(response));
+          if (responses.size() != parts.size()) {
+            throw new ODataException(String.format("Unable to read '%s' entity set. Expected %d batch responses, " +
+                                                     "but received %d.", entitySetName, parts.size(),
+                                                   responses.size()));
+          }
+          return responses;
+        }
+      } catch (IOException | BatchException e) {
+        throw new ODataException(String.format("Unable to read '%s' entity set.", entitySetName), e);
+      }
+    }
+  }
+
+  @Nullable
+  private String fetchCsrfToken() throws IOException {
+    List<Header> headers = Collections.singletonList(new BasicHeader(ODataSession.CSRF_TOKEN_HEADER,
+                                                                     ODataSession.CSRF_TOKEN_FETCH));
+    try (CloseableHttpResponse response = get(getServiceURI(), MediaType.APPLICATION_XML, headers)) {
+      EntityUtils.consumeQuietly(response.getEntity());
+      return getHeaderValue(response, ODataSession.CSRF_TOKEN_HEADER);
+    }
+  }
+
+  private static boolean isCsrfTokenRequired(HttpResponse response) {
+    return response.getStatusLine().getStatusCode() == HttpStatus.SC_FORBIDDEN
+      && ODataSession.CSRF_TOKEN_REQUIRED.equalsIgnoreCase(getHeaderValue(response, ODataSession.CSRF_TOKEN_HEADER));
+  }
+
+  private OData2FeedReader openFeed(String entitySetName, URI queryURI, CloseableHttpResponse response) {
+    InputStream content;
     try {
-      EdmEntitySet entitySet = getMetadata().getDefaultEntityContainer().getEntitySet(entitySetName);
-      EdmEntityType edmEntityType = entitySet.getEntityType();
-      List<PropertyMetadata> properties = new ArrayList<>();
-      for (String propertyName : edmEntityType.getPropertyNames()) {
-        EdmProperty property = (EdmProperty) edmEntityType.getProperty(propertyName);
-        properties.add(edmToProperty(property));
+      content = getContent(response);
+    } catch (IOException e) {
+      closeQuietly(response);
+      throw new ODataException(String.format("Unable to read '%s' entity set.", entitySetName), e);
+    }
+    return openFeed(entitySetName, queryURI, getContentType(response), content, response);
+  }
+
+  /**
+   * Atom and JSON responses are read incrementally, while the rest of the formats are read by {@link EntityProvider}
+   * at once.
+   */
+  private OData2FeedReader openFeed(String entitySetName, URI queryURI, String contentType, InputStream content,
+                                    Closeable connection) {
+    try {
+      Edm metadata = getMetadata();
+      EdmEntitySet entitySet = metadata.getDefaultEntityContainer().getEntitySet(entitySetName);
+      if (contentType.startsWith(MediaType.APPLICATION_ATOM_XML) || contentType.startsWith(MediaType.APPLICATION_XML)) {
+        return new OData2AtomFeedReader(content, entitySet, getPropertyIndex(entitySetName), queryURI, connection);
+      }
+      if (contentType.startsWith(MediaType.APPLICATION_JSON)) {
+        return new OData2JsonFeedReader(content, entitySet, getPropertyIndex(entitySetName), queryURI, connection);
       }
+      try (InputStream feedContent = content) {
+        ODataDeltaFeed feed = EntityProvider.readDeltaFeed(contentType, entitySet, feedContent, READ_PROPERTIES);
+        return new OData2ProviderFeedReader(feed, entitySet, queryURI);
+      } finally {
+        closeQuietly(connection);
+      }
+    } catch (IOException | EdmException | EntityProviderException e) {
+      // will close the content InputStream
+      closeQuietly(connection);
+      throw new ODataException(String.format("Unable to read '%s' entity set.", entitySetName), e);
+    } catch (ODataException e) {
+      closeQuietly(connection);
+      throw e;
+    }
+  }
+
+  /**
+   * @return properties of the entity type in the order of the given index.
+   */
+  static EdmProperty[] getIndexedProperties(EdmEntityType entityType, ODataPropertyIndex index) throws EdmException {
+    EdmProperty[] properties = new EdmProperty[index.size()];
+    for (int i = 0; i < properties.length; i++) {
+      properties[i] = (EdmProperty) entityType.getProperty(index.getName(i));
+    }
+    return properties;
+  }
+
+  /**
+   * Parses key property values of a deleted entity from its URI.
+   *
+   * @param entityUri URI of the deleted entity, such as the 'ref' attribute of an Atom tombstone.
+   * @return values of the key properties mapped by the property names.
+   * @throws ODataException if the URI does not contain a valid key predicate.
+   */
+  static Map<String, Object> getKeyValues(EdmEntityType entityType, String entityUri) throws EdmException {
+    Map<String, Object> values = new HashMap<>();
+    for (Map.Entry<String, String> literal : ODataKeyPredicate.parse(entityUri, entityType.getKeyPropertyNames())
+      .entrySet()) {
+      EdmTyped typed = entityType.getProperty(literal.getKey());
+      if (!(typed instanceof EdmProperty) || typed.getType().getKind() != EdmTypeKind.SIMPLE) {
+        throw new ODataException(String.format("Entity URI '%s' contains unknown key property '%s'.", entityUri,
+                                               literal.getKey()));
+      }
+      EdmProperty property = (EdmProperty) typed;
+      EdmSimpleType type = (EdmSimpleType) property.getType();
+      values.put(property.getName(), type.valueOfString(literal.getValue(), EdmLiteralKind.URI, property.getFacets(),
+                                                        type.getDefaultType()));
+    }
+    return values;
+  }
+
+  private ODataWireFormat getWireFormat() {
+    return jsonRejected ? ODataWireFormat.ATOM : options.getWireFormat();
+  }
 
-      return new EntityType(edmEntityType.getName(), properties);
-    } catch (EdmException e) {
-      throw new ODataException("Unable to get entity set type: " + e.getMessage(), e);
+  /**
+   * Requests JSON format using '$format' query option unless the format is specified in the query explicitly.
+   */
+  @Nullable
+  private static String getFormatQuery(@Nullable String query) {
+    ODataQueryOptions options = ODataQueryOptions.parse(query);
+    if (options.contains(ODataQueryOptions.FORMAT)) {
+      return query;
     }
+    return options.set(ODataQueryOptions.FORMAT, ODataWireFormat.JSON.getName()).toQuery();
   }
 
-  private PropertyMetadata edmToProperty(EdmProperty property) throws EdmException {
-    String type = property.getType().getName();
-    boolean nullable = property.getFacets().isNullable();
-    Integer precision = property.getFacets().getPrecision();
-    Integer scale = property.getFacets().getScale();
+  /**
+   * Services respond with 400 status to invalid queries as well, so it is treated as a rejected format only if the
+   * error refers to the '$format' query option.
+   *
+   * @param errorBody body of the error response, which is only required for 400 status.
+   */
+  static boolean isFormatRejected(int statusCode, @Nullable String errorBody) {
+    if (statusCode == HttpStatus.SC_BAD_REQUEST) {
+      return errorBody != null && errorBody.contains(ODataQueryOptions.FORMAT);
+    }
+    return statusCode == HttpStatus.SC_NOT_ACCEPTABLE
+      || statusCode == HttpStatus.SC_UNSUPPORTED_MEDIA_TYPE
+      || statusCode == HttpStatus.SC_NOT_IMPLEMENTED;
+  }
 
-    return new PropertyMetadata(property.getName(), type, nullable, precision, scale, null);
+  /**
+   * Reads the body of the error response. The response status is still reported once the response is read.
+   */
+  @Nullable
+  private static String getErrorBody(HttpResponse response) {
+    try {
+      return response.getEntity() == null ? null : EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      LOG.debug("Unable to read the error response.", e);
+      return null;
+    }
+  }
+
+  private static String getContentType(HttpResponse response) {
+    return Strings.nullToEmpty(getHeaderValue(response, HttpHeaders.CONTENT_TYPE));
+  }
+
+  private static int getStatusCode(BatchSingleResponse response) {
+    String statusCode = Strings.nullToEmpty(response.getStatusCode()).trim();
+    try {
+      return Integer.parseInt(statusCode);
+    } catch (NumberFormatException e) {
+      throw new ODataException(String.format("Invalid batch response status code: '%s'.", statusCode), e);
+    }
+  }
+
+  /**
+   * Header names of the batch responses are case-insensitive as well.
+   */
+  @Nullable
+  private static String getPartHeaderValue(BatchSingleResponse response, String name) {
+    for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+      if (name.equalsIgnoreCase(header.getKey())) {
+        return header.getValue();
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public ODataVersion getVersion() {
+    return ODataVersion.V2;
+  }
+
+  @Override
+  public EntityType getEntitySetType(String entitySetName) {
+    if (shippedMetadata != null) {
+      return shippedEntityTypes.computeIfAbsent(entitySetName, name -> EdmxReader.readEntitySetType(
+        shippedMetadata.getEdmx().getBytes(StandardCharsets.UTF_8), name));
+    }
+    // parsed entity types are shared by the clients until the '$metadata' document changes
+    return getMetadataEntry().getParsed(ENTITY_TYPE_KEY + entitySetName,
+                                        document -> EdmxReader.readEntitySetType(document, entitySetName));
   }
 
   private void initMetadata() {
-    HttpURLConnection connection = connect(getMetadataURI().toASCIIString(), MediaType.APPLICATION_XML);
-    try (InputStream content = connection.getInputStream()) {
+    byte[] edmx = shippedMetadata == null
+      ? getMetadataEntry().getDocument()
+      : shippedMetadata.getEdmx().getBytes(StandardCharsets.UTF_8);
+    try (InputStream content = new ByteArrayInputStream(edmx)) {
       metadata = EntityProvider.readMetadata(content, false);
     } catch (IOException | EntityProviderException e) {
-      throw new ODataException("Unable to get metadata: " + e.getMessage(), e);
-    } finally {
-      // will close the content InputStream
-      connection.disconnect();
+      throw new ODataException("Unable to read metadata: " + e.getMessage(), e);
     }
   }
 
-  private HttpURLConnection connect(String url, String medialType) {
+  private CloseableHttpResponse connect(URI uri, String medialType) {
     try {
-      HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
-      connection.setRequestMethod(HttpMethod.GET);
-      connection.setRequestProperty(HttpHeaders.ACCEPT, medialType);
-      if (isAuthRequired()) {
-        connection.setRequestProperty(HttpHeaders.AUTHORIZATION, getAuthHeaderValue());
-      }
-      connection.connect();
-      return connection;
+      return get(uri, medialType, Collections.emptyList());
     } catch (IOException e) {
-      throw new ODataException(String.format("Unable to connect to '%s': %s", url, e.getMessage()), e);
+      throw new ODataException(String.format("Unable to connect to '%s': %s", uri, e.getMessage()), e);
     }
   }
 
-  private String getAuthHeaderValue() {
-    byte[] credentials = (username + ":" + password).getBytes(StandardCharsets.UTF_8);
-    String encoded = Base64.getEncoder().encodeToString(credentials);
-    return "Basic " + encoded;
+  private static void closeQuietly(Closeable connection) {
+    try {
+      // the connection is closed rather than returned to the pool if the content is not fully read
+      connection.close();
+    } catch (IOException e) {
+      LOG.debug("Unable to close the response.", e);
+    }
   }
 }
@@ -16,30 +16,293 @@
 
 package io.cdap.plugin.sap.odata.odata2;
 
+import io.cdap.plugin.sap.odata.ODataClientOptions;
+import io.cdap.plugin.sap.odata.ODataDeltaIterator;
 import io.cdap.plugin.sap.odata.ODataEntity;
-import org.apache.olingo.odata2.api.ep.entry.ODataEntry;
+import io.cdap.plugin.sap.odata.ODataPaging;
+import io.cdap.plugin.sap.odata.ODataRetryPolicy;
+import io.cdap.plugin.sap.odata.exception.ODataException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.Iterator;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import javax.annotation.Nullable;
 
 /**
- * An iterator which iterates over every {@link ODataEntity} element, which is created from corresponding OData 2
- * {@link ODataEntry} instance of the given iterator.
+ * An iterator which iterates over every {@link ODataEntity} element of the OData 2 entity set. Pages of the feed are
+ * fetched lazily and read incrementally, so that only a single entity is kept in memory for Atom responses.
+ * Server-driven pages are followed using the next link of the feed, client-side pages are requested according to
+ * the given {@link ODataPaging}.
+ * <p>
+ * If a page fails to be read due to a network failure, the page is requested once again according to the
+ * {@link ODataRetryPolicy} of the client, and the entities read before the failure are skipped, so that the read
+ * resumes from the failed page rather than from the first one.
+ * <p>
+ * If several pages per batch are requested, client-side pages are requested in advance along with the current one
+ * using a single '$batch' request, while server-driven pages are still followed one by one.
+ * <p>
+ * The delta link of the last page is kept, so that the changes made after the iteration can be read by an iterator
+ * starting from the link.
  */
-public class OData2EntityIterator implements Iterator<ODataEntity> {
+public class OData2EntityIterator implements ODataDeltaIterator {
 
-  private final Iterator<ODataEntry> oDataEntryIterator;
+  private static final Logger LOG = LoggerFactory.getLogger(OData2EntityIterator.class);
 
-  public OData2EntityIterator(Iterator<ODataEntry> oDataEntryIterator) {
-    this.oDataEntryIterator = oDataEntryIterator;
+  private final OData2Client client;
+  private final String entitySetName;
+  private final ODataPaging paging;
+  private final int pagesPerBatch;
+  /**
+   * Client-side pages following the current one, which were requested in advance using a '$batch' request.
+   */
+  private final Deque<BatchedPage> batchedPages = new ArrayDeque<>();
+
+  @Nullable
+  private OData2FeedReader feedReader;
+  @Nullable
+  private ODataEntity nextEntity;
+  @Nullable
+  private String deltaLink;
+  private boolean started;
+  private boolean finished;
+
+  /**
+   * Next link or start link of the current server-driven page or {@code null} if the page is requested using
+   * {@link #pageQuery}.
+   */
+  @Nullable
+  private URI pageLink;
+  @Nullable
+  private String pageQuery;
+  /**
+   * Number of entities of the current page returned so far and the number of them left to skip once the page is
+   * requested again.
+   */
+  private long pageRead;
+  private long skip;
+  /**
+   * Number of consecutive retries, which is reset once an entity is read.
+   */
+  private int retries;
+
+  public OData2EntityIterator(OData2Client client, String entitySetName, ODataPaging paging) {
+    this(client, entitySetName, paging, ODataClientOptions.NO_BATCHING);
+  }
+
+  /**
+   * @param pagesPerBatch number of client-side pages requested at once or {@link ODataClientOptions#NO_BATCHING}.
+   */
+  public OData2EntityIterator(OData2Client client, String entitySetName, ODataPaging paging, int pagesPerBatch) {
+    this(client, entitySetName, paging, pagesPerBatch, null);
+  }
+
+  /**
+   * @param pagesPerBatch number of client-side pages requested at once or {@link ODataClientOptions#NO_BATCHING}.
+   * @param startLink     optional absolute link of the first page, such as the delta link of the previous iteration,
+   *                      which is requested instead of the first query of the paging.
+   */
+  public OData2EntityIterator(OData2Client client, String entitySetName, ODataPaging paging, int pagesPerBatch,
+                              @Nullable String startLink) {
+    this.client = client;
+    this.entitySetName = entitySetName;
+    this.paging = paging;
+    this.pagesPerBatch = pagesPerBatch;
+    this.pageLink = startLink == null ? null : toURI(startLink);
   }
 
   @Override
   public boolean hasNext() {
-    return oDataEntryIterator.hasNext();
+    while (nextEntity == null && !finished) {
+      try {
+        advance();
+      } catch (ODataException e) {
+        ODataRetryPolicy retryPolicy = client.getRetryPolicy();
+        if (!retryPolicy.shouldRetry(retries, e)) {
+          throw e;
+        }
+        LOG.warn("Unable to read '{}' entity set, retrying the page after {} entities: {}", entitySetName, pageRead,
+                 e.getMessage());
+        closePageQuietly();
+        retryPolicy.backoff(retries++);
+      }
+    }
+    return nextEntity != null;
   }
 
   @Override
   public ODataEntity next() {
-    return ODataEntity.valueOf(oDataEntryIterator.next());
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    ODataEntity entity = nextEntity;
+    nextEntity = null;
+    paging.onEntity();
+    return entity;
+  }
+
+  @Nullable
+  @Override
+  public String getDeltaLink() {
+    return deltaLink;
+  }
+
+  @Override
+  public void close() throws IOException {
+    finished = true;
+    discardBatchedPages();
+    if (feedReader != null) {
+      feedReader.close();
+      feedReader = null;
+    }
+  }
+
+  private void advance() {
+    if (feedReader == null) {
+      openPage();
+      return;
+    }
+    ODataEntity entity = feedReader.read();
+    if (entity == null) {
+      openNextPage();
+      return;
+    }
+    if (skip > 0) {
+      // the entity was returned before the page was requested again
+      skip--;
+      return;
+    }
+    nextEntity = entity;
+    pageRead++;
+    retries = 0;
+  }
+
+  /**
+   * Opens the current page, skipping the entities returned before.
+   */
+  private void openPage() {
+    if (!started) {
+      pageQuery = paging.firstQuery();
+      started = true;
+    }
+    skip = pageRead;
+    if (pageLink != null) {
+      feedReader = client.openFeed(entitySetName, pageLink);
+    } else if (pagesPerBatch > ODataClientOptions.NO_BATCHING) {
+      feedReader = openBatchedPage();
+    } else {
+      feedReader = client.openFeed(entitySetName, pageQuery);
+    }
+  }
+
+  /**
+   * Opens the current client page if it was requested in advance, otherwise requests it along with the following
+   * pages using a single '$batch' request. Pages requested in advance are discarded once the paging diverges from
+   * them, which happens if a page turns out to be smaller than requested.
+   */
+  private OData2FeedReader openBatchedPage() {
+    while (!batchedPages.isEmpty()) {
+      BatchedPage page = batchedPages.poll();
+      if (Objects.equals(page.query, pageQuery)) {
+        return page.reader;
+      }
+      closeQuietly(page.reader);
+    }
+    List<String> queries = new ArrayList<>(pagesPerBatch);
+    queries.add(pageQuery);
+    queries.addAll(paging.lookaheadQueries(pagesPerBatch - 1));
+    if (queries.size() == 1) {
+      return client.openFeed(entitySetName, pageQuery);
+    }
+    List<OData2FeedReader> readers = client.openFeeds(entitySetName, queries);
+    for (int i = 1; i < readers.size(); i++) {
+      batchedPages.add(new BatchedPage(queries.get(i), readers.get(i)));
+    }
+    return readers.get(0);
+  }
+
+  private void discardBatchedPages() {
+    while (!batchedPages.isEmpty()) {
+      closeQuietly(batchedPages.poll().reader);
+    }
+  }
+
+  /**
+   * Opens the next server-driven or client-side page once the current one is read.
+   */
+  private void openNextPage() {
+    String nextLink = feedReader.getNextLink();
+    String pageDeltaLink = feedReader.getDeltaLink();
+    if (pageDeltaLink != null) {
+      deltaLink = pageDeltaLink;
+    }
+    closePage();
+    pageRead = 0;
+    if (nextLink != null) {
+      pageLink = toURI(nextLink);
+    } else {
+      pageLink = null;
+      pageQuery = paging.nextQuery();
+      if (pageQuery == null) {
+        finished = true;
+        return;
+      }
+    }
+    openPage();
+  }
+
+  private void closePage() {
+    try {
+      feedReader.close();
+    } catch (IOException e) {
+      throw new ODataException(String.format("Unable to close '%s' entity set response.", entitySetName), e);
+    } finally {
+      feedReader = null;
+    }
+  }
+
+  private void closePageQuietly() {
+    if (feedReader == null) {
+      return;
+    }
+    closeQuietly(feedReader);
+    feedReader = null;
+  }
+
+  private void closeQuietly(OData2FeedReader reader) {
+    try {
+      reader.close();
+    } catch (IOException e) {
+      LOG.debug("Unable to close '{}' entity set response.", entitySetName, e);
+    }
+  }
+
+  private static URI toURI(String link) {
+    try {
+      return URI.create(link);
+    } catch (IllegalArgumentException e) {
+      throw new ODataException(String.format("Invalid link: '%s'.", link), e);
+    }
+  }
+
+  /**
+   * Client-side page requested in advance.
+   */
+  private static final class BatchedPage {
+
+    @Nullable
+    private final String query;
+    private final OData2FeedReader reader;
+
+    private BatchedPage(@Nullable String query, OData2FeedReader reader) {
+      this.query = query;
+      this.reader = reader;
+    }
   }
 }
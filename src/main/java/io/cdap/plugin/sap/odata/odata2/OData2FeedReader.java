@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sap.odata.odata2;
+
+import io.cdap.plugin.sap.odata.ODataEntity;
+
+import java.io.Closeable;
+import javax.annotation.Nullable;
+
+/**
+ * Reads entities of a single page of OData V2 feed one by one. Deleted entities of delta responses are read along
+ * with the changed ones.
+ */
+interface OData2FeedReader extends Closeable {
+
+  /**
+   * Reads the next entity of the page.
+   *
+   * @return the next entity or {@code null} if there are no more entities.
+   * @throws io.cdap.plugin.sap.odata.exception.ODataException if the response cannot be read.
+   */
+  @Nullable
+  ODataEntity read();
+
+  /**
+   * Returns the next link of the feed, which can be used to get the next server-driven page. Must be called once all
+   * entities are read, since the link can be placed at the end of the response.
+   *
+   * @return absolute next link or {@code null} if this is the last page.
+   */
+  @Nullable
+  String getNextLink();
+
+  /**
+   * Returns the delta link of the feed, which can be used to read the changes made after this response. The link is
+   * returned along with the last page of delta-enabled entity sets only. Must be called once all entities are read.
+   *
+   * @return absolute delta link or {@code null} if the page does not contain it.
+   */
+  @Nullable
+  String getDeltaLink();
+}
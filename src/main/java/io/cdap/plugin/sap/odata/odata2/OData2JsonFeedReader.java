@@ -0,0 +1,347 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sap.odata.odata2;
+
+import com.google.common.base.Strings;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import io.cdap.plugin.sap.odata.ODataChangeType;
+import io.cdap.plugin.sap.odata.ODataEntity;
+import io.cdap.plugin.sap.odata.ODataPropertyIndex;
+import io.cdap.plugin.sap.odata.exception.ODataException;
+import org.apache.olingo.odata2.api.edm.EdmEntitySet;
+import org.apache.olingo.odata2.api.edm.EdmException;
+import org.apache.olingo.odata2.api.edm.EdmLiteralKind;
+import org.apache.olingo.odata2.api.edm.EdmProperty;
+import org.apache.olingo.odata2.api.edm.EdmSimpleType;
+import org.apache.olingo.odata2.api.edm.EdmStructuralType;
+import org.apache.olingo.odata2.api.edm.EdmTypeKind;
+import org.apache.olingo.odata2.api.edm.EdmTyped;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Reads OData V2 JSON feed incrementally using streaming {@link JsonReader}, so that a single entity is kept in memory
+ * at a time. Both "{"d": {"results": [...], "__next": "..."}}" and OData V1 "{"d": [...]}" feeds are supported.
+ * Property values are converted by the EDM simple types of the entity set metadata, so they are the same as the ones
+ * read by Olingo. Deferred and expanded navigation properties are skipped.
+ * <p>
+ * Deleted entities of delta responses are listed in the "__deleted" array of the "d" object, which can precede the
+ * results, so that they are kept in memory and returned once the results are read. Key properties of the deleted
+ * entities are parsed from their URIs unless they are specified explicitly.
+ */
+class OData2JsonFeedReader implements OData2FeedReader {
+
+  private static final String DATA = "d";
+  private static final String RESULTS = "results";
+  private static final String NEXT = "__next";
+  private static final String DELTA = "__delta";
+  private static final String DELETED = "__deleted";
+  private static final String METADATA = "__metadata";
+  private static final String METADATA_URI = "uri";
+  private static final String METADATA_ID = "id";
+
+  private final JsonReader reader;
+  private final Closeable connection;
+  private final EdmEntitySet entitySet;
+  private final ODataPropertyIndex index;
+  /**
+   * Entity type properties in the order of the index.
+   */
+  private final EdmProperty[] indexedProperties;
+  private final URI requestURI;
+  private final Deque<ODataEntity> deletedEntities = new ArrayDeque<>();
+
+  @Nullable
+  private String nextLink;
+  @Nullable
+  private String deltaLink;
+  /**
+   * Indicates whether the results array is wrapped into the "d" object, which can contain the next link.
+   */
+  private boolean wrapped;
+  private boolean started;
+  /**
+   * Indicates whether the reader is positioned within the results array.
+   */
+  private boolean inResults;
+  private boolean finished;
+
+  /**
+   * @param content    JSON response.
+   * @param entitySet  metadata of the entity set.
+   * @param index      index of the entity type properties.
+   * @param requestURI URI of the request, used to resolve relative links.
+   * @param connection closed along with the reader.
+   */
+  OData2JsonFeedReader(InputStream content, EdmEntitySet entitySet, ODataPropertyIndex index, URI requestURI,
+                       Closeable connection) throws EdmException {
+    this.reader = new JsonReader(new InputStreamReader(content, StandardCharsets.UTF_8));
+    this.entitySet = entitySet;
+    this.index = index;
+    this.indexedProperties = OData2Client.getIndexedProperties(entitySet.getEntityType(), index);
+    this.requestURI = requestURI;
+    this.connection = connection;
+  }
+
+  @Nullable
+  @Override
+  public ODataEntity read() {
+    if (finished) {
+      return null;
+    }
+    try {
+      if (!started) {
+        started = true;
+        inResults = startResults();
+      }
+      if (inResults) {
+        if (reader.hasNext()) {
+          return readEntity(ODataChangeType.UPSERT);
+        }
+        reader.endArray();
+        inResults = false;
+        if (wrapped) {
+          readDataMembers();
+        }
+      }
+      ODataEntity deletedEntity = deletedEntities.poll();
+      if (deletedEntity == null) {
+        finished = true;
+      }
+      return deletedEntity;
+    } catch (IOException | IllegalStateException | EdmException e) {
+      throw new ODataException(String.format("Unable to read '%s' entity set: %s", getEntitySetName(), e.getMessage()),
+                               e);
+    }
+  }
+
+  @Nullable
+  @Override
+  public String getNextLink() {
+    return resolve(nextLink, "next");
+  }
+
+  @Nullable
+  @Override
+  public String getDeltaLink() {
+    return resolve(deltaLink, "delta");
+  }
+
+  @Nullable
+  private String resolve(@Nullable String link, String relation) {
+    if (link == null) {
+      return null;
+    }
+    try {
+      return requestURI.resolve(link).toString();
+    } catch (IllegalArgumentException e) {
+      throw new ODataException(String.format("Invalid %s link: '%s'.", relation, link), e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      // will close the content InputStream
+      reader.close();
+    } finally {
+      connection.close();
+    }
+  }
+
+  /**
+   * Positions the reader at the first entity of the results array.
+   *
+   * @return {@code false} if the response does not contain results.
+   */
+  private boolean startResults() throws IOException, EdmException {
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if (!DATA.equals(reader.nextName())) {
+        reader.skipValue();
+        continue;
+      }
+      if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+        reader.beginArray();
+        return true;
+      }
+      reader.beginObject();
+      wrapped = true;
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (RESULTS.equals(name)) {
+          reader.beginArray();
+          return true;
+        }
+        readDataMember(name);
+      }
+      return false;
+    }
+    return false;
+  }
+
+  /**
+   * Reads the rest of the "d" object members, which follow the results array.
+   */
+  private void readDataMembers() throws IOException, EdmException {
+    while (reader.hasNext()) {
+      readDataMember(reader.nextName());
+    }
+    reader.endObject();
+  }
+
+  private void readDataMember(String name) throws IOException, EdmException {
+    if (NEXT.equals(name) && reader.peek() == JsonToken.STRING) {
+      nextLink = Strings.emptyToNull(reader.nextString());
+    } else if (DELTA.equals(name) && reader.peek() == JsonToken.STRING) {
+      deltaLink = Strings.emptyToNull(reader.nextString());
+    } else if (DELETED.equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+      reader.beginArray();
+      while (reader.hasNext()) {
+        deletedEntities.add(readEntity(ODataChangeType.DELETE));
+      }
+      reader.endArray();
+    } else {
+      reader.skipValue();
+    }
+  }
+
+  /**
+   * Reads properties of the entity type. Members, which are not properties of the type, such as "__metadata" and
+   * navigation properties, are skipped, except for the "__metadata" of the deleted entities, which contains the URI
+   * of the entity.
+   */
+  private ODataEntity readEntity(ODataChangeType changeType) throws IOException, EdmException {
+    Object[] values = new Object[index.size()];
+    String entityUri = null;
+    int expectedOrdinal = 0;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      int ordinal = index.ordinalOf(name, expectedOrdinal);
+      if (ordinal >= 0) {
+        values[ordinal] = readPropertyValue(indexedProperties[ordinal]);
+        expectedOrdinal = ordinal + 1;
+      } else if (changeType == ODataChangeType.DELETE && METADATA.equals(name)
+        && reader.peek() == JsonToken.BEGIN_OBJECT) {
+        entityUri = readEntityUri();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    if (entityUri != null) {
+      for (Map.Entry<String, Object> key : OData2Client.getKeyValues(entitySet.getEntityType(), entityUri)
+        .entrySet()) {
+        int ordinal = index.ordinalOf(key.getKey());
+        if (ordinal >= 0 && values[ordinal] == null) {
+          values[ordinal] = key.getValue();
+        }
+      }
+    }
+    return new ODataEntity(index, values, changeType);
+  }
+
+  /**
+   * Reads the URI of the entity from the "__metadata" object.
+   */
+  @Nullable
+  private String readEntityUri() throws IOException {
+    String uri = null;
+    String id = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (METADATA_URI.equals(name) && reader.peek() == JsonToken.STRING) {
+        uri = reader.nextString();
+      } else if (METADATA_ID.equals(name) && reader.peek() == JsonToken.STRING) {
+        id = reader.nextString();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return Strings.isNullOrEmpty(uri) ? Strings.emptyToNull(id) : uri;
+  }
+
+  /**
+   * Reads properties of the given complex type. Members, which are not properties of the type, such as
+   * "__metadata" and navigation properties, are skipped.
+   */
+  private Map<String, Object> readObject(EdmStructuralType type) throws IOException, EdmException {
+    Map<String, Object> properties = new HashMap<>();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      EdmTyped typed = type.getProperty(reader.nextName());
+      if (!(typed instanceof EdmProperty)) {
+        reader.skipValue();
+        continue;
+      }
+      EdmProperty property = (EdmProperty) typed;
+      // EDM property name is used as a key to avoid keeping a copy of the name for each value
+      properties.put(property.getName(), readPropertyValue(property));
+    }
+    reader.endObject();
+    return properties;
+  }
+
+  @Nullable
+  private Object readPropertyValue(EdmProperty property) throws IOException, EdmException {
+    JsonToken token = reader.peek();
+    if (token == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+    if (property.getType().getKind() == EdmTypeKind.COMPLEX) {
+      return readObject((EdmStructuralType) property.getType());
+    }
+    String text;
+    switch (token) {
+      case STRING:
+      case NUMBER:
+        // numbers are read as strings to keep the precision
+        text = reader.nextString();
+        break;
+      case BOOLEAN:
+        text = String.valueOf(reader.nextBoolean());
+        break;
+      default:
+        throw new ODataException(String.format("Unexpected value of '%s' property: %s", property.getName(), token));
+    }
+    EdmSimpleType type = (EdmSimpleType) property.getType();
+    return type.valueOfString(text, EdmLiteralKind.JSON, property.getFacets(), type.getDefaultType());
+  }
+
+  private String getEntitySetName() {
+    try {
+      return entitySet.getName();
+    } catch (EdmException e) {
+      return "";
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sap.odata.odata2;
+
+import com.google.common.base.Strings;
+import io.cdap.plugin.sap.odata.ODataChangeType;
+import io.cdap.plugin.sap.odata.ODataEntity;
+import io.cdap.plugin.sap.odata.exception.ODataException;
+import org.apache.olingo.odata2.api.edm.EdmEntitySet;
+import org.apache.olingo.odata2.api.edm.EdmException;
+import org.apache.olingo.odata2.api.ep.EntityProvider;
+import org.apache.olingo.odata2.api.ep.entry.DeletedEntryMetadata;
+import org.apache.olingo.odata2.api.ep.entry.ODataEntry;
+import org.apache.olingo.odata2.api.ep.feed.ODataDeltaFeed;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * {@link OData2FeedReader} over the feed, which is completely read by {@link EntityProvider}. Used for the response
+ * formats, which can not be read incrementally. Deleted entities of delta responses follow the changed ones.
+ */
+class OData2ProviderFeedReader implements OData2FeedReader {
+
+  private final ODataDeltaFeed feed;
+  private final EdmEntitySet entitySet;
+  private final Iterator<ODataEntry> entries;
+  private final Iterator<DeletedEntryMetadata> deletedEntries;
+  private final URI requestURI;
+
+  /**
+   * @param feed       feed read by {@link EntityProvider}.
+   * @param entitySet  metadata of the entity set, used to read the keys of the deleted entities.
+   * @param requestURI URI of the request, used to resolve relative links.
+   */
+  OData2ProviderFeedReader(ODataDeltaFeed feed, EdmEntitySet entitySet, URI requestURI) {
+    this.feed = feed;
+    this.entitySet = entitySet;
+    this.requestURI = requestURI;
+    this.entries = feed.getEntries().iterator();
+    List<DeletedEntryMetadata> deleted = feed.getDeletedEntries();
+    this.deletedEntries = deleted == null ? Collections.emptyIterator() : deleted.iterator();
+  }
+
+  @Nullable
+  @Override
+  public ODataEntity read() {
+    if (entries.hasNext()) {
+      return ODataEntity.valueOf(entries.next());
+    }
+    if (!deletedEntries.hasNext()) {
+      return null;
+    }
+    String uri = deletedEntries.next().getUri();
+    try {
+      return new ODataEntity(OData2Client.getKeyValues(entitySet.getEntityType(), uri), ODataChangeType.DELETE);
+    } catch (EdmException e) {
+      throw new ODataException(String.format("Unable to read deleted entity '%s': %s", uri, e.getMessage()), e);
+    }
+  }
+
+  @Nullable
+  @Override
+  public String getNextLink() {
+    return resolve(feed.getFeedMetadata().getNextLink(), "next");
+  }
+
+  @Nullable
+  @Override
+  public String getDeltaLink() {
+    return resolve(feed.getFeedMetadata().getDeltaLink(), "delta");
+  }
+
+  @Nullable
+  private String resolve(@Nullable String link, String relation) {
+    if (Strings.isNullOrEmpty(link)) {
+      return null;
+    }
+    try {
+      return requestURI.resolve(link).toString();
+    } catch (IllegalArgumentException e) {
+      throw new ODataException(String.format("Invalid %s link: '%s'.", relation, link), e);
+    }
+  }
+
+  @Override
+  public void close() {
+    // response is already consumed
+  }
+}
@@ -16,26 +16,44 @@
 
 package io.cdap.plugin.sap.odata.odata4;
 
+import com.google.common.io.CharStreams;
+import io.cdap.plugin.sap.odata.EdmxReader;
 import io.cdap.plugin.sap.odata.EntityType;
+import io.cdap.plugin.sap.odata.ODataChangeType;
 import io.cdap.plugin.sap.odata.ODataClient;
+import io.cdap.plugin.sap.odata.ODataClientOptions;
+import io.cdap.plugin.sap.odata.ODataDeltaIterator;
 import io.cdap.plugin.sap.odata.ODataEntity;
+import io.cdap.plugin.sap.odata.ODataKeyPredicate;
+import io.cdap.plugin.sap.odata.ODataMetadata;
+import io.cdap.plugin.sap.odata.ODataPaging;
+import io.cdap.plugin.sap.odata.ODataPropertyIndex;
+import io.cdap.plugin.sap.odata.ODataVersion;
 import io.cdap.plugin.sap.odata.PropertyMetadata;
-import org.apache.olingo.client.api.communication.request.retrieve.EdmMetadataRequest;
+import io.cdap.plugin.sap.odata.exception.ODataException;
+import org.apache.olingo.client.api.communication.request.retrieve.ODataDeltaRequest;
 import org.apache.olingo.client.api.communication.request.retrieve.ODataEntitySetIteratorRequest;
+import org.apache.olingo.client.api.communication.request.retrieve.ODataRawRequest;
+import org.apache.olingo.client.api.communication.response.ODataRawResponse;
 import org.apache.olingo.client.api.communication.response.ODataRetrieveResponse;
+import org.apache.olingo.client.api.domain.ClientDelta;
 import org.apache.olingo.client.api.domain.ClientEntity;
 import org.apache.olingo.client.api.domain.ClientEntitySet;
 import org.apache.olingo.client.api.domain.ClientEntitySetIterator;
 import org.apache.olingo.client.core.ODataClientFactory;
-import org.apache.olingo.client.core.http.BasicAuthHttpClientFactory;
-import org.apache.olingo.commons.api.edm.Edm;
-import org.apache.olingo.commons.api.edm.EdmEntityType;
-import org.apache.olingo.commons.api.edm.EdmProperty;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveType;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeException;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeKind;
+import org.apache.olingo.commons.core.edm.primitivetype.EdmPrimitiveTypeFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nullable;
 import javax.ws.rs.core.MediaType;
 
@@ -46,6 +64,18 @@ public class OData4Client extends ODataClient {
 
   private org.apache.olingo.client.api.ODataClient client;
 
+  /**
+   * Metadata fetched in advance, which is used instead of requesting '$metadata' document.
+   */
+  @Nullable
+  private final ODataMetadata shippedMetadata;
+
+  /**
+   * Entity types parsed from the shipped metadata, so that the document is parsed once per entity set as well as the
+   * cached one.
+   */
+  private final Map<String, EntityType> shippedEntityTypes = new ConcurrentHashMap<>();
+
   /**
    * @param rootUrl  URL of the OData service. The URL must end with an external service name
    *                 (e.g., http://eccsvrname:8000/sap/opu/odata/sap/zgw100_dd02l_so_srv/).
@@ -53,48 +83,154 @@ public class OData4Client extends ODataClient {
    * @param password password for basic authentication.
    */
   public OData4Client(String rootUrl, String username, String password) {
-    super(rootUrl, username, password);
+    this(rootUrl, username, password, ODataClientOptions.defaults());
+  }
+
+  /**
+   * @param rootUrl  URL of the OData service. The URL must end with an external service name
+   *                 (e.g., http://eccsvrname:8000/sap/opu/odata/sap/zgw100_dd02l_so_srv/).
+   * @param username username for basic authentication.
+   * @param password password for basic authentication.
+   * @param options  client options.
+   */
+  public OData4Client(String rootUrl, String username, String password, ODataClientOptions options) {
+    this(rootUrl, username, password, options, null);
+  }
+
+  /**
+   * @param rootUrl  URL of the OData service. The URL must end with an external service name
+   *                 (e.g., http://eccsvrname:8000/sap/opu/odata/sap/zgw100_dd02l_so_srv/).
+   * @param username username for basic authentication.
+   * @param password password for basic authentication.
+   * @param options  client options.
+   * @param metadata optional metadata fetched in advance.
+   */
+  public OData4Client(String rootUrl, String username, String password, ODataClientOptions options,
+                      @Nullable ODataMetadata metadata) {
+    super(rootUrl, username, password, options);
+    this.shippedMetadata = metadata;
     this.client = ODataClientFactory.getClient();
-    if (isAuthRequired()) {
-      client.getConfiguration().setHttpClientFactory(new BasicAuthHttpClientFactory(username, password));
-    }
+    // requests are authenticated within the session shared with the rest of the clients of the service
+    client.getConfiguration().setHttpClientFactory(new OData4HttpClientFactory(httpClient));
   }
 
   @Override
   public Iterator<ODataEntity> queryEntitySet(String entitySetName, @Nullable String query) {
-    URI queryURI = getQueryURI(entitySetName, query);
+    ODataPaging paging = new ODataPaging(query, options.getPageSize(),
+                                         () -> getEntitySetType(entitySetName).getKeyPropertyNames());
+    return new OData4EntityIterator(this, entitySetName, paging);
+  }
+
+  @Override
+  public ODataDeltaIterator queryEntitySetChanges(String entitySetName, @Nullable String query,
+                                                  @Nullable String deltaLink) {
+    URI firstPageURI;
+    try {
+      firstPageURI = deltaLink == null ? getQueryURI(entitySetName, query) : URI.create(deltaLink);
+    } catch (IllegalArgumentException e) {
+      throw new ODataException(String.format("Invalid delta link: '%s'.", deltaLink), e);
+    }
+    return new OData4DeltaIterator(this, entitySetName, firstPageURI);
+  }
+
+  URI getPageURI(String entitySetName, @Nullable String query) {
+    return getQueryURI(entitySetName, query);
+  }
+
+  /**
+   * Reads a single page of the entity set using the given URI, such as the next link of the previous page.
+   */
+  ClientEntitySetIterator<ClientEntitySet, ClientEntity> readPage(URI queryURI) {
     ODataEntitySetIteratorRequest<ClientEntitySet, ClientEntity> request = client
       .getRetrieveRequestFactory()
       .getEntitySetIteratorRequest(queryURI);
     request.setAccept(MediaType.APPLICATION_JSON);
 
     ODataRetrieveResponse<ClientEntitySetIterator<ClientEntitySet, ClientEntity>> response = request.execute();
-    return new OData4EntityIterator(response.getBody());
+    return response.getBody();
   }
 
-  @Override
-  public EntityType getEntitySetType(String entitySetName) {
-    EdmMetadataRequest request = client.getRetrieveRequestFactory().getMetadataRequest(rootUrl);
-    request.setAccept(MediaType.APPLICATION_XML);
-
-    ODataRetrieveResponse<Edm> response = request.execute();
-    Edm edm = response.getBody();
-    EdmEntityType entityType = edm.getEntityContainer().getEntitySet(entitySetName).getEntityType();
-    List<PropertyMetadata> properties = new ArrayList<>();
-    for (String propertyName : entityType.getPropertyNames()) {
-      EdmProperty property = (EdmProperty) entityType.getProperty(propertyName);
-      properties.add(edmToProperty(property));
+  /**
+   * Reads a single page of the changes of the entity set using the given URI, such as the query URI, the next link of
+   * the previous page or a delta link. Changes are tracked using 'odata.track-changes' preference, so that the last
+   * page of the query contains the delta link.
+   */
+  ClientDelta readDeltaPage(URI pageURI) {
+    ODataDeltaRequest request = client.getRetrieveRequestFactory().getDeltaRequest(pageURI);
+    request.setAccept(MediaType.APPLICATION_JSON);
+    request.setPrefer(client.newPreferences().trackChanges());
+
+    ODataRetrieveResponse<ClientDelta> response = request.execute();
+    try {
+      return response.getBody();
+    } finally {
+      response.close();
+    }
+  }
+
+  /**
+   * Creates a deleted entity, which contains the key properties parsed from the id of the entity.
+   *
+   * @param id id of the deleted entity, such as "Customers('ALFKI')".
+   * @throws ODataException if the id does not contain a valid key predicate.
+   */
+  ODataEntity toDeletedEntity(String entitySetName, URI id) {
+    EntityType entityType = getResolvedEntitySetType(entitySetName);
+    ODataPropertyIndex index = getPropertyIndex(entitySetName);
+    Map<String, String> literals = ODataKeyPredicate.parse(id.toString(), entityType.getKeyPropertyNames());
+    Object[] values = new Object[index.size()];
+    for (PropertyMetadata property : entityType.getProperties()) {
+      String literal = literals.get(property.getName());
+      int ordinal = index.ordinalOf(property.getName());
+      if (literal != null && ordinal >= 0) {
+        values[ordinal] = parseLiteral(property, literal);
+      }
     }
+    return new ODataEntity(index, values, ODataChangeType.DELETE);
+  }
+
+  /**
+   * Converts URI literal of a key property to the value of the same type as the one read by Olingo.
+   */
+  private static Object parseLiteral(PropertyMetadata property, String literal) {
+    try {
+      EdmPrimitiveType type = EdmPrimitiveTypeFactory.getInstance(
+        EdmPrimitiveTypeKind.valueOf(property.getEdmTypeName()));
+      return type.valueOfString(type.fromUriLiteral(literal), true, null, null, null, true, type.getDefaultType());
+    } catch (IllegalArgumentException | EdmPrimitiveTypeException e) {
+      throw new ODataException(String.format("Invalid value of '%s' key property: '%s'.", property.getName(),
+                                             literal), e);
+    }
+  }
 
-    return new EntityType(entityType.getName(), properties);
+  @Override
+  public ODataVersion getVersion() {
+    return ODataVersion.V4;
   }
 
-  private PropertyMetadata edmToProperty(EdmProperty property) {
-    String type = property.getType().getName();
-    boolean nullable = property.isNullable();
-    Integer precision = property.getPrecision();
-    Integer scale = property.getScale();
+  @Override
+  public EntityType getEntitySetType(String entitySetName) {
+    if (shippedMetadata != null) {
+      return shippedEntityTypes.computeIfAbsent(entitySetName, name -> EdmxReader.readEntitySetType(
+        shippedMetadata.getEdmx().getBytes(StandardCharsets.UTF_8), name));
+    }
+    // parsed entity types are shared by the clients until the '$metadata' document changes
+    return getMetadataEntry().getParsed(ENTITY_TYPE_KEY + entitySetName,
+                                        document -> EdmxReader.readEntitySetType(document, entitySetName));
+  }
 
-    return new PropertyMetadata(property.getName(), type, nullable, precision, scale, null);
+  @Override
+  public long countEntitySet(String entitySetName, @Nullable String query) {
+    ODataRawRequest request = client.getRetrieveRequestFactory().getRawRequest(getCountURI(entitySetName, query));
+    request.setAccept(MediaType.TEXT_PLAIN);
+    ODataRawResponse response = request.execute();
+    try (InputStream content = response.getRawResponse()) {
+      String count = CharStreams.toString(new InputStreamReader(content, StandardCharsets.UTF_8));
+      return Long.parseLong(count.trim());
+    } catch (IOException | NumberFormatException e) {
+      throw new ODataException(String.format("Unable to count '%s' entity set.", entitySetName), e);
+    } finally {
+      response.close();
+    }
   }
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sap.odata.odata4;
+
+import io.cdap.plugin.sap.odata.ODataDeltaIterator;
+import io.cdap.plugin.sap.odata.ODataEntity;
+import io.cdap.plugin.sap.odata.ODataPropertyIndex;
+import io.cdap.plugin.sap.odata.ODataRetryPolicy;
+import org.apache.olingo.client.api.domain.ClientDeletedEntity;
+import org.apache.olingo.client.api.domain.ClientDelta;
+import org.apache.olingo.client.api.domain.ClientEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.NoSuchElementException;
+import javax.annotation.Nullable;
+
+/**
+ * An iterator which iterates over the changes of OData 4 entity set. Pages are requested using delta requests with
+ * 'odata.track-changes' preference, so that the last page contains the delta link. Delta responses are read by
+ * Olingo page by page, changed entities of a page are followed by the deleted ones.
+ * <p>
+ * If a page fails to be read due to a network failure, the page is requested once again according to the
+ * {@link ODataRetryPolicy} of the client.
+ */
+public class OData4DeltaIterator implements ODataDeltaIterator {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OData4DeltaIterator.class);
+
+  private final OData4Client client;
+  private final String entitySetName;
+  /**
+   * Entities of the current page, which are not returned yet.
+   */
+  private final Deque<ODataEntity> pageEntities = new ArrayDeque<>();
+
+  @Nullable
+  private ODataPropertyIndex index;
+  /**
+   * URI of the page to request next or {@code null} once the last page is read.
+   */
+  @Nullable
+  private URI pageURI;
+  @Nullable
+  private String deltaLink;
+  /**
+   * Number of consecutive retries, which is reset once a page is read.
+   */
+  private int retries;
+
+  /**
+   * @param firstPageURI URI of the first page, such as the query URI or the delta link of the previous iteration.
+   */
+  public OData4DeltaIterator(OData4Client client, String entitySetName, URI firstPageURI) {
+    this.client = client;
+    this.entitySetName = entitySetName;
+    this.pageURI = firstPageURI;
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (pageEntities.isEmpty() && pageURI != null) {
+      fetchPage();
+    }
+    return !pageEntities.isEmpty();
+  }
+
+  @Override
+  public ODataEntity next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return pageEntities.poll();
+  }
+
+  @Nullable
+  @Override
+  public String getDeltaLink() {
+    return deltaLink;
+  }
+
+  @Override
+  public void close() {
+    pageEntities.clear();
+    pageURI = null;
+  }
+
+  private void fetchPage() {
+    ClientDelta delta;
+    try {
+      delta = client.readDeltaPage(pageURI);
+    } catch (RuntimeException e) {
+      ODataRetryPolicy retryPolicy = client.getRetryPolicy();
+      if (!retryPolicy.shouldRetry(retries, e)) {
+        throw e;
+      }
+      LOG.warn("Unable to read '{}' entity set changes, retrying the page: {}", entitySetName, e.getMessage());
+      retryPolicy.backoff(retries++);
+      return;
+    }
+    retries = 0;
+    if (index == null) {
+      index = client.getPropertyIndex(entitySetName);
+    }
+    for (ClientEntity entity : delta.getEntities()) {
+      pageEntities.add(ODataEntity.valueOf(entity, index));
+    }
+    for (ClientDeletedEntity deletedEntity : delta.getDeletedEntities()) {
+      pageEntities.add(client.toDeletedEntity(entitySetName, deletedEntity.getId()));
+    }
+    if (delta.getDeltaLink() != null) {
+      deltaLink = pageURI.resolve(delta.getDeltaLink()).toString();
+    }
+    pageURI = delta.getNext() == null ? null : pageURI.resolve(delta.getNext());
+  }
+}
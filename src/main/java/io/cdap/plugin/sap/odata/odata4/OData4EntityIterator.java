@@ -17,31 +17,138 @@
 package io.cdap.plugin.sap.odata.odata4;
 
 import io.cdap.plugin.sap.odata.ODataEntity;
+import io.cdap.plugin.sap.odata.ODataPaging;
+import io.cdap.plugin.sap.odata.ODataPropertyIndex;
+import io.cdap.plugin.sap.odata.ODataRetryPolicy;
 import org.apache.olingo.client.api.domain.ClientEntity;
 import org.apache.olingo.client.api.domain.ClientEntitySet;
 import org.apache.olingo.client.api.domain.ClientEntitySetIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
+import java.net.URI;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.annotation.Nullable;
 
 /**
  * An iterator which iterates over every {@link ODataEntity} element, which is created from corresponding OData 4
- * {@link ClientEntity} instance of the given iterator.
+ * {@link ClientEntity} instance. Pages of the entity set are fetched lazily. Server-driven pages are followed using
+ * the next link of the entity set, client-side pages are requested according to the given {@link ODataPaging}.
+ * <p>
+ * If a page fails to be read due to a network failure, the page is requested once again according to the
+ * {@link ODataRetryPolicy} of the client, and the entities read before the failure are skipped.
  */
-public class OData4EntityIterator implements Iterator<ODataEntity> {
+public class OData4EntityIterator implements Iterator<ODataEntity>, Closeable {
 
-  private final ClientEntitySetIterator<ClientEntitySet, ClientEntity> clientEntityIterator;
+  private static final Logger LOG = LoggerFactory.getLogger(OData4EntityIterator.class);
 
-  public OData4EntityIterator(ClientEntitySetIterator<ClientEntitySet, ClientEntity> clientEntityIterator) {
-    this.clientEntityIterator = clientEntityIterator;
+  private final OData4Client client;
+  private final String entitySetName;
+  private final ODataPaging paging;
+
+  @Nullable
+  private ODataPropertyIndex index;
+  @Nullable
+  private ClientEntitySetIterator<ClientEntitySet, ClientEntity> clientEntityIterator;
+  /**
+   * URI of the current server-driven page, used to resolve relative next links and to request the page again.
+   */
+  private URI pageURI;
+  /**
+   * Number of entities of the current page returned so far.
+   */
+  private long pageRead;
+  /**
+   * Number of consecutive retries, which is reset once an entity is read.
+   */
+  private int retries;
+  private boolean finished;
+
+  public OData4EntityIterator(OData4Client client, String entitySetName, ODataPaging paging) {
+    this.client = client;
+    this.entitySetName = entitySetName;
+    this.paging = paging;
   }
 
   @Override
   public boolean hasNext() {
-    return clientEntityIterator.hasNext();
+    while (true) {
+      try {
+        while (!finished && (clientEntityIterator == null || !clientEntityIterator.hasNext())) {
+          fetchNextPage();
+        }
+        return !finished;
+      } catch (RuntimeException e) {
+        retryPage(e);
+      }
+    }
   }
 
   @Override
   public ODataEntity next() {
-    return ODataEntity.valueOf(clientEntityIterator.next());
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    paging.onEntity();
+    pageRead++;
+    retries = 0;
+    return ODataEntity.valueOf(clientEntityIterator.next(), index);
+  }
+
+  @Override
+  public void close() {
+    finished = true;
+    if (clientEntityIterator != null) {
+      clientEntityIterator.close();
+      clientEntityIterator = null;
+    }
+  }
+
+  private void fetchNextPage() {
+    if (pageURI == null) {
+      index = client.getPropertyIndex(entitySetName);
+      pageURI = client.getPageURI(entitySetName, paging.firstQuery());
+    } else if (clientEntityIterator != null) {
+      // next link is available once the page is iterated completely
+      URI nextLink = clientEntityIterator.getNext();
+      clientEntityIterator.close();
+      clientEntityIterator = null;
+      String nextQuery = nextLink == null ? paging.nextQuery() : null;
+      if (nextLink == null && nextQuery == null) {
+        finished = true;
+        return;
+      }
+      pageURI = nextLink != null ? pageURI.resolve(nextLink) : client.getPageURI(entitySetName, nextQuery);
+      pageRead = 0;
+    }
+    clientEntityIterator = client.readPage(pageURI);
+    // the entities were returned before the page was requested again
+    for (long i = 0; i < pageRead && clientEntityIterator.hasNext(); i++) {
+      clientEntityIterator.next();
+    }
+  }
+
+  /**
+   * Closes the failed page, so that it is requested again by {@link #fetchNextPage()}, or rethrows the failure if it
+   * is not retryable.
+   */
+  private void retryPage(RuntimeException e) {
+    ODataRetryPolicy retryPolicy = client.getRetryPolicy();
+    if (pageURI == null || !retryPolicy.shouldRetry(retries, e)) {
+      throw e;
+    }
+    LOG.warn("Unable to read '{}' entity set, retrying the page after {} entities: {}", entitySetName, pageRead,
+             e.getMessage());
+    if (clientEntityIterator != null) {
+      try {
+        clientEntityIterator.close();
+      } catch (RuntimeException closeException) {
+        LOG.debug("Unable to close '{}' entity set response.", entitySetName, closeException);
+      }
+      clientEntityIterator = null;
+    }
+    retryPolicy.backoff(retries++);
   }
 }
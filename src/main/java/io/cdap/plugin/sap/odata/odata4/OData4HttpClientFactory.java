@@ -0,0 +1,47 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata.odata4;
+
+import org.apache.http.client.HttpClient;
+import org.apache.olingo.client.api.http.HttpClientFactory;
+import org.apache.olingo.commons.api.http.HttpMethod;
+
+import java.net.URI;
+
+/**
+ * Provides Olingo with a single HTTP client of {@link io.cdap.plugin.sap.odata.ODataHttpTransport} pool instead of
+ * creating a new client along with a new connection for each request.
+ */
+class OData4HttpClientFactory implements HttpClientFactory {
+
+  private final HttpClient httpClient;
+
+  OData4HttpClientFactory(HttpClient httpClient) {
+    this.httpClient = httpClient;
+  }
+
+  @Override
+  public HttpClient create(HttpMethod method, URI uri) {
+    return httpClient;
+  }
+
+  @Override
+  public void close(HttpClient httpClient) {
+    // connections are returned to the pool once the response content is read or closed
+  }
+}
@@ -21,6 +21,7 @@ import io.cdap.cdap.api.data.format.UnexpectedFormatException;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.sap.SapODataConstants;
 import io.cdap.plugin.sap.odata.ODataEntity;
+import io.cdap.plugin.sap.odata.ODataPropertyIndex;
 import io.cdap.plugin.sap.odata.StreamProperty;
 import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeException;
 import org.apache.olingo.commons.api.edm.geo.ComposedGeospatial;
@@ -48,20 +49,76 @@ import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
 
 /**
  * Transforms {@link ODataEntity} to {@link StructuredRecord}.
+ * <p>
+ * Field converters are compiled once per schema, so that transforming a record does not require schema lookups or
+ * type dispatch.
  */
 public class ODataEntryToRecordTransformer {
 
+  private static final Class<?>[] TIMESTAMP_TYPES = {Calendar.class, Timestamp.class};
+  private static final Class<?>[] TIME_TYPES = {GregorianCalendar.class, Timestamp.class};
+  private static final Class<?>[] DECIMAL_TYPES = {BigDecimal.class, BigInteger.class, Double.class, Float.class,
+    Byte.class, Short.class, Integer.class, Long.class};
+  private static final Class<?>[] BOOLEAN_TYPES = {Boolean.class};
+  private static final Class<?>[] INT_TYPES = {Short.class, Byte.class, Integer.class, Long.class, BigInteger.class};
+  private static final Class<?>[] FLOAT_TYPES = {Float.class, Double.class, BigDecimal.class, Byte.class, Short.class,
+    Integer.class, Long.class};
+  private static final Class<?>[] DOUBLE_TYPES = {Double.class, Float.class, BigDecimal.class, Byte.class, Short.class,
+    Integer.class, Long.class};
+  private static final Class<?>[] BYTES_TYPES = {byte[].class};
+  private static final Class<?>[] LONG_TYPES = {Long.class, Byte.class, Short.class, Integer.class, BigInteger.class};
+  private static final Class<?>[] STRING_TYPES = {String.class, UUID.class, Calendar.class, Timestamp.class,
+    BigDecimal.class};
+  private static final Class<?>[] RECORD_TYPES = {Geospatial.class, StreamProperty.class};
+
   private final Schema schema;
+  private final String[] fieldNames;
+  private final FieldConverter[] converters;
+  /**
+   * Name of the field, which is set to the change type of the entity, or {@code null} if there is no such field.
+   */
+  @Nullable
+  private final String changeTypeFieldName;
+
+  /**
+   * Ordinals of the fields in the property index of the last transformed array-backed entity. All entities of an
+   * entity set share the same index, so ordinals are resolved once.
+   */
+  @Nullable
+  private ODataPropertyIndex lastIndex;
+  private int[] ordinals;
 
   public ODataEntryToRecordTransformer(Schema schema) {
+    this(schema, null);
+  }
+
+  /**
+   * @param schema              output schema.
+   * @param changeTypeFieldName optional name of the string field, which is set to the
+   *                            {@link io.cdap.plugin.sap.odata.ODataChangeType} name of the entity.
+   */
+  public ODataEntryToRecordTransformer(Schema schema, @Nullable String changeTypeFieldName) {
     this.schema = schema;
+    this.changeTypeFieldName = changeTypeFieldName;
+    List<Schema.Field> fields = schema.getFields();
+    this.fieldNames = new String[fields.size()];
+    this.converters = new FieldConverter[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      Schema.Field field = fields.get(i);
+      Schema nonNullableSchema = field.getSchema().isNullable() ?
+        field.getSchema().getNonNullable() : field.getSchema();
+      fieldNames[i] = field.getName();
+      converters[i] = compileConverter(field.getName(), nonNullableSchema);
+    }
   }
 
   /**
@@ -72,97 +129,138 @@ public class ODataEntryToRecordTransformer {
    */
   public StructuredRecord transform(ODataEntity oDataEntity) {
     StructuredRecord.Builder builder = StructuredRecord.builder(schema);
-    for (Schema.Field field : schema.getFields()) {
-      Schema nonNullableSchema = field.getSchema().isNullable() ?
-        field.getSchema().getNonNullable() : field.getSchema();
-      String fieldName = field.getName();
-      Object value = oDataEntity.getProperties().get(fieldName);
-      builder.set(fieldName, extractValue(fieldName, value, nonNullableSchema));
+    ODataPropertyIndex index = oDataEntity.getIndex();
+    if (index == null) {
+      Map<String, Object> properties = oDataEntity.getProperties();
+      for (int i = 0; i < fieldNames.length; i++) {
+        Object value = properties.get(fieldNames[i]);
+        builder.set(fieldNames[i], value == null ? null : converters[i].convert(value));
+      }
+      return setChangeType(builder, oDataEntity).build();
+    }
+
+    int[] fieldOrdinals = getOrdinals(index);
+    for (int i = 0; i < fieldNames.length; i++) {
+      Object value = fieldOrdinals[i] < 0 ? null : oDataEntity.get(fieldOrdinals[i]);
+      builder.set(fieldNames[i], value == null ? null : converters[i].convert(value));
     }
-    return builder.build();
+    return setChangeType(builder, oDataEntity).build();
+  }
+
+  private StructuredRecord.Builder setChangeType(StructuredRecord.Builder builder, ODataEntity oDataEntity) {
+    if (changeTypeFieldName != null) {
+      builder.set(changeTypeFieldName, oDataEntity.getChangeType().getName());
+    }
+    return builder;
+  }
+
+  private int[] getOrdinals(ODataPropertyIndex index) {
+    if (index != lastIndex) {
+      int[] fieldOrdinals = new int[fieldNames.length];
+      for (int i = 0; i < fieldNames.length; i++) {
+        fieldOrdinals[i] = index.ordinalOf(fieldNames[i]);
+      }
+      ordinals = fieldOrdinals;
+      lastIndex = index;
+    }
+    return ordinals;
+  }
+
+  /**
+   * Converts non-null value of a single field.
+   */
+  @FunctionalInterface
+  private interface FieldConverter {
+    Object convert(Object value);
   }
 
   /**
-   * Extract value of EDM types according to the provided schema. Some of the EDM types can be represented by multiple
-   * Java types. For more information see:
+   * Creates converter of EDM type values according to the provided schema. Some of the EDM types can be represented
+   * by multiple Java types, so the converter still checks the value class. For more information see:
    * <a href="https://olingo.apache.org/javadoc/odata2/org/apache/olingo/odata2/api/edm/EdmSimpleType.html">
    * EdmSimpleType
    * </a>
    */
-  private Object extractValue(String fieldName, Object value, Schema schema) {
-    if (value == null) {
-      return null;
-    }
-
+  private FieldConverter compileConverter(String fieldName, Schema schema) {
     Schema.LogicalType fieldLogicalType = schema.getLogicalType();
     if (fieldLogicalType != null) {
       switch (fieldLogicalType) {
         case TIMESTAMP_MILLIS:
-          ensureTypeValid(fieldName, value, Calendar.class, Timestamp.class);
-          return extractTimestampMillis(value);
+          return checked(fieldName, TIMESTAMP_TYPES, this::extractTimestampMillis);
         case TIMESTAMP_MICROS:
-          ensureTypeValid(fieldName, value, Calendar.class, Timestamp.class);
-          return extractTimestampMicros(value);
+          return checked(fieldName, TIMESTAMP_TYPES, this::extractTimestampMicros);
         case TIME_MILLIS:
-          ensureTypeValid(fieldName, value, GregorianCalendar.class, Timestamp.class);
-          return extractTimeMillis(value);
+          return checked(fieldName, TIME_TYPES, this::extractTimeMillis);
         case TIME_MICROS:
-          ensureTypeValid(fieldName, value, GregorianCalendar.class, Timestamp.class);
-          return extractTimeMicros(value);
+          return checked(fieldName, TIME_TYPES, this::extractTimeMicros);
         case DECIMAL:
-          ensureTypeValid(fieldName, value, BigDecimal.class, BigInteger.class, Double.class, Float.class, Byte.class,
-                          Short.class, Integer.class, Long.class);
-          return extractDecimal(fieldName, value, schema);
+          int precision = schema.getPrecision();
+          int scale = schema.getScale();
+          MathContext mathContext = new MathContext(precision);
+          return checked(fieldName, DECIMAL_TYPES,
+                         value -> extractDecimal(fieldName, value, precision, scale, mathContext));
         default:
-          throw new UnexpectedFormatException(String.format("Field '%s' is of unsupported type '%s'", fieldName,
-                                                            fieldLogicalType.getToken()));
+          return unsupported(fieldName, fieldLogicalType.getToken());
       }
     }
 
     Schema.Type fieldType = schema.getType();
     switch (fieldType) {
       case BOOLEAN:
-        ensureTypeValid(fieldName, value, Boolean.class);
-        return value;
+        return checked(fieldName, BOOLEAN_TYPES, value -> value);
       case INT:
-        ensureTypeValid(fieldName, value, Short.class, Byte.class, Integer.class, Long.class, BigInteger.class);
-        return ((Number) value).intValue();
+        return checked(fieldName, INT_TYPES, value -> ((Number) value).intValue());
       case FLOAT:
-        ensureTypeValid(fieldName, value, Float.class, Double.class, BigDecimal.class, Byte.class, Short.class,
-                        Integer.class, Long.class);
-        return ((Number) value).floatValue();
+        return checked(fieldName, FLOAT_TYPES, value -> ((Number) value).floatValue());
       case DOUBLE:
-        ensureTypeValid(fieldName, value, Double.class, Float.class, BigDecimal.class, Byte.class, Short.class,
-                        Integer.class, Long.class);
-        return ((Number) value).doubleValue();
+        return checked(fieldName, DOUBLE_TYPES, value -> ((Number) value).doubleValue());
       case BYTES:
-        ensureTypeValid(fieldName, value, byte[].class);
-        return value;
+        return checked(fieldName, BYTES_TYPES, value -> value);
       case LONG:
-        ensureTypeValid(fieldName, value, Long.class, Byte.class, Short.class, Integer.class, BigInteger.class);
-        return ((Number) value).longValue();
+        return checked(fieldName, LONG_TYPES, value -> ((Number) value).longValue());
       case STRING:
-        ensureTypeValid(fieldName, value, String.class, UUID.class, Calendar.class, Timestamp.class, BigDecimal.class);
-        if (value instanceof Calendar || value instanceof Timestamp) {
-          // Olingo V4 uses Timestamp for 'Edm.DateTimeOffset'
-          return extractDateTimeOffset(fieldName, value);
-        }
-        if (value instanceof BigDecimal) {
-          return extractDuration(fieldName, (BigDecimal) value);
-        }
-        return value.toString();
+        return checked(fieldName, STRING_TYPES, value -> {
+          if (value instanceof String) {
+            return value;
+          }
+          if (value instanceof Calendar || value instanceof Timestamp) {
+            // Olingo V4 uses Timestamp for 'Edm.DateTimeOffset'
+            return extractDateTimeOffset(fieldName, value);
+          }
+          if (value instanceof BigDecimal) {
+            return extractDuration(fieldName, (BigDecimal) value);
+          }
+          return value.toString();
+        });
       case RECORD:
-        ensureTypeValid(fieldName, value, Geospatial.class, StreamProperty.class);
-        if (value instanceof StreamProperty) {
-          return extractStream((StreamProperty) value);
-        }
-        return extractGeospatial(fieldName, (Geospatial) value);
+        return checked(fieldName, RECORD_TYPES, value -> {
+          if (value instanceof StreamProperty) {
+            return extractStream((StreamProperty) value);
+          }
+          return extractGeospatial(fieldName, (Geospatial) value);
+        });
       default:
-        throw new UnexpectedFormatException(String.format("Field '%s' is of unsupported type '%s'", fieldName,
-                                                          fieldType.name().toLowerCase()));
+        return unsupported(fieldName, fieldType.name().toLowerCase());
     }
   }
 
+  private FieldConverter checked(String fieldName, Class<?>[] expectedTypes, FieldConverter converter) {
+    return value -> {
+      ensureTypeValid(fieldName, value, expectedTypes);
+      return converter.convert(value);
+    };
+  }
+
+  /**
+   * Unsupported types are reported only once a value is actually read, since the field can be always empty.
+   */
+  private FieldConverter unsupported(String fieldName, String typeName) {
+    return value -> {
+      throw new UnexpectedFormatException(String.format("Field '%s' is of unsupported type '%s'", fieldName,
+                                                        typeName));
+    };
+  }
+
   private StructuredRecord extractStream(StreamProperty streamProperty) {
     return StructuredRecord.builder(SapODataConstants.Stream.SCHEMA)
       .set(SapODataConstants.Stream.ETAG_FIELD_NAME, streamProperty.getMediaEtag())
@@ -367,10 +465,9 @@ public class ODataEntryToRecordTransformer {
     return Math.addExact(micros, TimeUnit.NANOSECONDS.toMicros(instant.getNano()));
   }
 
-  private byte[] extractDecimal(String fieldName, Object value, Schema schema) {
-    int schemaPrecision = schema.getPrecision();
-    int schemaScale = schema.getScale();
-    BigDecimal decimal = extractBigDecimal(value, schema);
+  private byte[] extractDecimal(String fieldName, Object value, int schemaPrecision, int schemaScale,
+                                MathContext mathContext) {
+    BigDecimal decimal = extractBigDecimal(value, schemaScale, mathContext);
     if (decimal.precision() > schemaPrecision) {
       throw new UnexpectedFormatException(
         String.format("Field '%s' has precision '%s' which is higher than schema precision '%s'.",
@@ -396,12 +493,13 @@ public class ODataEntryToRecordTransformer {
    * EdmPrimitiveType
    * </a>
    *
-   * @param value  'EDM.Decimal' value of one of the following Java types {@link BigDecimal}, {@link BigInteger},
-   *               {@link Double}, {@link Float}, {@link Byte}, {@link Short}, {@link Integer}, {@link Long}.
-   * @param schema field schema.
+   * @param value       'EDM.Decimal' value of one of the following Java types {@link BigDecimal}, {@link BigInteger},
+   *                    {@link Double}, {@link Float}, {@link Byte}, {@link Short}, {@link Integer}, {@link Long}.
+   * @param scale       schema scale.
+   * @param mathContext schema precision context.
    * @return {@link BigDecimal} representation of the provided 'EDM.Decimal' value.
    */
-  private BigDecimal extractBigDecimal(Object value, Schema schema) {
+  private BigDecimal extractBigDecimal(Object value, int scale, MathContext mathContext) {
     if (value instanceof BigDecimal) {
       return (BigDecimal) value;
     }
@@ -410,9 +508,7 @@ public class ODataEntryToRecordTransformer {
     }
     if (value instanceof Double || value instanceof Float) {
       double doubleValue = ((Number) value).doubleValue();
-      int precision = schema.getPrecision();
-      int scale = schema.getScale();
-      return new BigDecimal(doubleValue, new MathContext(precision)).setScale(scale, BigDecimal.ROUND_HALF_EVEN);
+      return new BigDecimal(doubleValue, mathContext).setScale(scale, BigDecimal.ROUND_HALF_EVEN);
     }
 
     // Byte, Short, Integer, Long
@@ -420,8 +516,8 @@ public class ODataEntryToRecordTransformer {
     return new BigDecimal(longValue);
   }
 
-  private void ensureTypeValid(String fieldName, Object value, Class... expectedTypes) {
-    for (Class expectedType : expectedTypes) {
+  private void ensureTypeValid(String fieldName, Object value, Class<?>[] expectedTypes) {
+    for (Class<?> expectedType : expectedTypes) {
       if (expectedType.isInstance(value)) {
         return;
       }
@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap;
+
+import io.cdap.plugin.sap.odata.EdmxReader;
+import io.cdap.plugin.sap.odata.EntityType;
+import io.cdap.plugin.sap.odata.PropertyMetadata;
+import io.cdap.plugin.sap.odata.exception.ODataException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * {@link EdmxReader} test.
+ */
+public class EdmxReaderTest {
+
+  @Test
+  public void testReadEdmVersion() throws Exception {
+    Assert.assertEquals("1.0", EdmxReader.readEdmVersion(readResourceFile("odata2/metadata.xml")));
+    Assert.assertEquals("4.0", EdmxReader.readEdmVersion(readResourceFile("odata4/metadata.xml")));
+  }
+
+  @Test
+  public void testReadEdmVersionStopsAtRootElement() {
+    // the rest of the document is not read, so that malformed content after the root element is not reported
+    byte[] document = "<edmx:Edmx Version=\"4.0\" xmlns:edmx=\"http://docs.oasis-open.org/odata/ns/edmx\"><</"
+      .getBytes(StandardCharsets.UTF_8);
+    Assert.assertEquals("4.0", EdmxReader.readEdmVersion(document));
+  }
+
+  @Test(expected = ODataException.class)
+  public void testReadEdmVersionOfNonEdmxDocument() {
+    EdmxReader.readEdmVersion("<html><body>Logon failed</body></html>".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testReadEntitySetType() throws Exception {
+    EntityType entityType = EdmxReader.readEntitySetType(readResourceFile("odata2/metadata.xml"),
+                                                         "SalesOrderItemCollection");
+
+    Assert.assertEquals("SalesOrderItem", entityType.getName());
+    Assert.assertEquals(Arrays.asList("SoId", "SoItemPos"), entityType.getKeyPropertyNames());
+    Assert.assertEquals(Arrays.asList("SoId", "SoItemPos", "ProductId", "Note", "CurrencyCode", "GrossAmount",
+                                      "NetAmount", "TaxAmount", "Quantity", "QuantityUnit"),
+                        getPropertyNames(entityType));
+    PropertyMetadata quantity = entityType.getProperties().get(8);
+    Assert.assertEquals("Decimal", quantity.getEdmTypeName());
+    Assert.assertFalse(quantity.isNullable());
+    Assert.assertEquals(Integer.valueOf(13), quantity.getPrecision());
+    Assert.assertEquals(Integer.valueOf(3), quantity.getScale());
+  }
+
+  @Test
+  public void testReadEntitySetTypeV4() throws Exception {
+    EntityType entityType = EdmxReader.readEntitySetType(readResourceFile("odata4/metadata.xml"), "AllDataTypes");
+
+    Assert.assertEquals("AllDataTypesEntity", entityType.getName());
+    Assert.assertEquals(Collections.singletonList("Int32"), entityType.getKeyPropertyNames());
+    Assert.assertEquals(31, entityType.getProperties().size());
+    PropertyMetadata stream = entityType.getProperties().get(14);
+    Assert.assertEquals("Stream", stream.getEdmTypeName());
+    Assert.assertTrue(stream.isNullable());
+  }
+
+  @Test
+  public void testReadEntitySetTypeWithBaseTypeAndAlias() {
+    String document = "<edmx:Edmx Version=\"4.0\" xmlns:edmx=\"http://docs.oasis-open.org/odata/ns/edmx\">" +
+      "<edmx:DataServices>" +
+      "<Schema Namespace=\"Sales\" Alias=\"S\" xmlns=\"http://docs.oasis-open.org/odata/ns/edm\">" +
+      "<EntityType Name=\"Unrelated\"><Key><PropertyRef Name=\"Other\"/></Key>" +
+      "<Property Name=\"Other\" Type=\"Edm.String\"/></EntityType>" +
+      "<EntityType Name=\"Document\"><Key><PropertyRef Name=\"Id\"/></Key>" +
+      "<Property Name=\"Id\" Type=\"Edm.Int64\" Nullable=\"false\"/></EntityType>" +
+      "<EntityType Name=\"Invoice\" BaseType=\"S.Document\">" +
+      "<Property Name=\"Tags\" Type=\"Collection(Edm.String)\"/>" +
+      "<Property Name=\"Amount\" Type=\"Edm.Decimal\" Precision=\"16\" Scale=\"variable\"/></EntityType>" +
+      "<EntityContainer Name=\"Container\"><EntitySet Name=\"Invoices\" EntityType=\"S.Invoice\"/>" +
+      "</EntityContainer></Schema></edmx:DataServices></edmx:Edmx>";
+
+    EntityType entityType = EdmxReader.readEntitySetType(document.getBytes(StandardCharsets.UTF_8), "Invoices");
+
+    Assert.assertEquals("Invoice", entityType.getName());
+    Assert.assertEquals(Collections.singletonList("Id"), entityType.getKeyPropertyNames());
+    Assert.assertEquals(Arrays.asList("Id", "Tags", "Amount"), getPropertyNames(entityType));
+    Assert.assertEquals("String", entityType.getProperties().get(1).getEdmTypeName());
+    Assert.assertNull(entityType.getProperties().get(2).getScale());
+  }
+
+  @Test(expected = ODataException.class)
+  public void testReadEntitySetTypeOfMissingEntitySet() throws Exception {
+    EdmxReader.readEntitySetType(readResourceFile("odata2/metadata.xml"), "Missing");
+  }
+
+  private List<String> getPropertyNames(EntityType entityType) {
+    return entityType.getProperties().stream().map(PropertyMetadata::getName).collect(Collectors.toList());
+  }
+
+  private byte[] readResourceFile(String filename) throws Exception {
+    return Files.readAllBytes(Paths.get(getClass().getClassLoader().getResource(filename).toURI()));
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * {@link ODataDeltaState} test.
+ */
+public class ODataDeltaStateTest {
+
+  private static final String SOURCE = "http://localhost/sap/opu/odata/SAP/ZGW100_SRV/SalesOrderCollection?";
+  private static final String DELTA_LINK = "http://localhost/sap/opu/odata/SAP/ZGW100_SRV/" +
+    "SalesOrderCollection?!deltatoken='D20191030'";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testDeltaLinkCommitted() throws IOException {
+    ODataDeltaState state = newState(SOURCE);
+    Assert.assertNull(state.readDeltaLink());
+    Assert.assertFalse(state.commit());
+
+    state.writePending("attempt_0", DELTA_LINK);
+    Assert.assertNull(state.readDeltaLink());
+    Assert.assertTrue(state.commit());
+
+    Assert.assertEquals(DELTA_LINK, state.readDeltaLink());
+    Assert.assertNull(newState(SOURCE + "$filter=BuyerName eq 'TECUM'").readDeltaLink());
+  }
+
+  @Test
+  public void testPendingDeltaLinkAborted() throws IOException {
+    ODataDeltaState state = newState(SOURCE);
+    state.writePending("attempt_0", DELTA_LINK);
+    state.abort();
+
+    Assert.assertFalse(state.commit());
+    Assert.assertNull(state.readDeltaLink());
+  }
+
+  @Test
+  public void testHighestWatermarkCommitted() throws IOException {
+    ODataDeltaState state = newState(SOURCE);
+    state.writePendingWatermark("attempt_0", "ChangedAt", Instant.parse("2019-08-29T14:52:08.155Z"));
+    state.writePendingWatermark("attempt_1", "ChangedAt", Instant.parse("2019-10-30T00:00:00Z"));
+    state.writePendingWatermark("attempt_2", "ChangedAt", Instant.parse("2019-01-01T00:00:00Z"));
+    Assert.assertTrue(state.commit());
+
+    Assert.assertEquals(Instant.parse("2019-10-30T00:00:00Z"), state.readWatermark("ChangedAt"));
+    Assert.assertNull(state.readWatermark("CreatedAt"));
+    Assert.assertNull(state.readDeltaLink());
+  }
+
+  private ODataDeltaState newState(String source) throws IOException {
+    return new ODataDeltaState(temporaryFolder.getRoot().getAbsolutePath(), source, new Configuration());
+  }
+}
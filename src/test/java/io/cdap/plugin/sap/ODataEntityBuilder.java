@@ -17,6 +17,7 @@
 package io.cdap.plugin.sap;
 
 import io.cdap.plugin.sap.odata.ODataEntity;
+import io.cdap.plugin.sap.odata.StreamProperty;
 import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeException;
 import org.apache.olingo.commons.api.edm.geo.Geospatial;
 import org.apache.olingo.commons.api.edm.geo.GeospatialCollection;
@@ -366,6 +367,12 @@ public final class ODataEntityBuilder {
     return set(name, collection, EdmGeographyCollection.getInstance());
   }
 
+  public ODataEntityBuilder setStream(String name, StreamProperty value) {
+    // 'Edm.Stream' values are assembled from media links rather than parsed from a literal, nothing to validate
+    this.properties.put(name, value);
+    return this;
+  }
+
   private Point pointOf(Geospatial.Dimension dimension, double x, double y) {
     Point point = new Point(dimension, TEST_SRID);
     point.setX(x);
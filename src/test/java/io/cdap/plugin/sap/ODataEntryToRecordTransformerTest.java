@@ -19,6 +19,7 @@ package io.cdap.plugin.sap;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.sap.odata.ODataEntity;
+import io.cdap.plugin.sap.odata.ODataPropertyIndex;
 import io.cdap.plugin.sap.transformer.ODataEntryToRecordTransformer;
 import org.apache.olingo.client.api.domain.ClientLink;
 import org.apache.olingo.client.api.domain.ClientLinkType;
@@ -654,6 +655,24 @@ public class ODataEntryToRecordTransformerTest {
                         actualStream.get(SapODataConstants.Stream.EDIT_LINK_FIELD_NAME));
   }
 
+  @Test
+  public void testTransformArrayBackedEntity() {
+    Schema schema = Schema.recordOf("schema",
+                                    Schema.Field.of("SoId", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("Quantity", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+                                    Schema.Field.of("Note", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    ODataPropertyIndex index = ODataPropertyIndex.of(Arrays.asList("Quantity", "Delivered", "SoId"));
+
+    ODataEntryToRecordTransformer transformer = new ODataEntryToRecordTransformer(schema);
+    StructuredRecord first = transformer.transform(new ODataEntity(index, new Object[]{4L, true, "0500000001"}));
+    StructuredRecord second = transformer.transform(new ODataEntity(index, new Object[]{null, false, "0500000002"}));
+
+    Assert.assertEquals("0500000001", first.get("SoId"));
+    Assert.assertEquals(4L, (long) first.get("Quantity"));
+    Assert.assertNull(first.get("Note"));
+    Assert.assertEquals("0500000002", second.get("SoId"));
+    Assert.assertNull(second.get("Quantity"));
+  }
 
   private GeospatialCollection geospatialCollection(Geospatial.Dimension dimension) {
     SRID srid = SRID.valueOf("4326");
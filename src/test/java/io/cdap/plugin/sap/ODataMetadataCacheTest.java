@@ -0,0 +1,182 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap;
+
+import io.cdap.plugin.sap.odata.ODataMetadataCache;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link ODataMetadataCache} test.
+ */
+public class ODataMetadataCacheTest {
+
+  private static final String URL = "http://vhcalnplci.dummy.nodomain:8000/sap/opu/odata/SAP/ZGW100_SRV/$metadata";
+  private static final byte[] DOCUMENT = "<edmx:Edmx Version=\"1.0\"/>".getBytes(StandardCharsets.UTF_8);
+  private static final String ETAG = "\"v1\"";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testDocumentReusedWithinTimeToLive() {
+    ODataMetadataCache cache = new ODataMetadataCache(null, Long.MAX_VALUE, 10, Long.MAX_VALUE);
+    RecordingFetcher fetcher = new RecordingFetcher(ODataMetadataCache.Response.of(DOCUMENT, ETAG, null));
+
+    ODataMetadataCache.Entry first = cache.get(URL, "user", "password", fetcher);
+    ODataMetadataCache.Entry second = cache.get(URL, "user", "password", fetcher);
+
+    Assert.assertSame(first, second);
+    Assert.assertArrayEquals(DOCUMENT, second.getDocument());
+    Assert.assertEquals(1, fetcher.requests.size());
+  }
+
+  @Test
+  public void testDocumentRevalidatedAfterTimeToLive() {
+    ODataMetadataCache cache = new ODataMetadataCache(null, 0, 10, Long.MAX_VALUE);
+    cache.get(URL, "user", "password", new RecordingFetcher(ODataMetadataCache.Response.of(DOCUMENT, ETAG, null)));
+
+    RecordingFetcher fetcher = new RecordingFetcher(ODataMetadataCache.Response.notModified());
+    ODataMetadataCache.Entry entry = cache.get(URL, "user", "password", fetcher);
+
+    Assert.assertArrayEquals(DOCUMENT, entry.getDocument());
+    Assert.assertEquals(ETAG, fetcher.requests.get(0));
+  }
+
+  @Test
+  public void testDocumentLoadedFromDisk() throws Exception {
+    Path directory = temporaryFolder.newFolder().toPath();
+    new ODataMetadataCache(directory, Long.MAX_VALUE, 10, Long.MAX_VALUE)
+      .get(URL, "user", "password", new RecordingFetcher(ODataMetadataCache.Response.of(DOCUMENT, ETAG, null)));
+
+    // new cache has nothing in memory, so that the document stored on disk is revalidated
+    RecordingFetcher fetcher = new RecordingFetcher(ODataMetadataCache.Response.notModified());
+    ODataMetadataCache.Entry entry = new ODataMetadataCache(directory, Long.MAX_VALUE, 10, Long.MAX_VALUE)
+      .get(URL, "user", "password", fetcher);
+
+    Assert.assertArrayEquals(DOCUMENT, entry.getDocument());
+    Assert.assertEquals(ETAG, fetcher.requests.get(0));
+  }
+
+  @Test
+  public void testDocumentsKeyedByCredentials() {
+    ODataMetadataCache cache = new ODataMetadataCache(null, Long.MAX_VALUE, 10, Long.MAX_VALUE);
+    RecordingFetcher fetcher = new RecordingFetcher(ODataMetadataCache.Response.of(DOCUMENT, ETAG, null));
+
+    cache.get(URL, "user", "password", fetcher);
+    cache.get(URL, "another", "password", fetcher);
+
+    Assert.assertEquals(2, fetcher.requests.size());
+    Assert.assertNull(fetcher.requests.get(1));
+  }
+
+  @Test
+  public void testDocumentsKeyedByPasswordInMemoryOnly() throws Exception {
+    Path directory = temporaryFolder.newFolder().toPath();
+    ODataMetadataCache cache = new ODataMetadataCache(directory, Long.MAX_VALUE, 10, Long.MAX_VALUE);
+    RecordingFetcher fetcher = new RecordingFetcher(ODataMetadataCache.Response.of(DOCUMENT, ETAG, null));
+
+    cache.get(URL, "user", "password", fetcher);
+    Set<Path> files = listFiles(directory);
+    cache.get(URL, "user", "another", fetcher);
+
+    // the document is revalidated using the other password, but is stored in the same files
+    Assert.assertEquals(2, fetcher.requests.size());
+    Assert.assertEquals(ETAG, fetcher.requests.get(1));
+    Assert.assertEquals(2, files.size());
+    Assert.assertEquals(files, listFiles(directory));
+  }
+
+  @Test
+  public void testDirectoryReadableByOwnerOnly() throws Exception {
+    Path directory = temporaryFolder.getRoot().toPath().resolve("metadata");
+    Assume.assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+
+    new ODataMetadataCache(directory, Long.MAX_VALUE, 10, Long.MAX_VALUE)
+      .get(URL, "user", "password", new RecordingFetcher(ODataMetadataCache.Response.of(DOCUMENT, ETAG, null)));
+
+    Assert.assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(directory));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedDocumentEvicted() {
+    ODataMetadataCache cache = new ODataMetadataCache(null, Long.MAX_VALUE, 2, Long.MAX_VALUE);
+    RecordingFetcher fetcher = new RecordingFetcher(ODataMetadataCache.Response.of(DOCUMENT, ETAG, null));
+
+    cache.get(URL + "?1", null, null, fetcher);
+    cache.get(URL + "?2", null, null, fetcher);
+    cache.get(URL + "?1", null, null, fetcher);
+    cache.get(URL + "?3", null, null, fetcher);
+    Assert.assertEquals(3, fetcher.requests.size());
+
+    cache.get(URL + "?1", null, null, fetcher);
+    Assert.assertEquals(3, fetcher.requests.size());
+    cache.get(URL + "?2", null, null, fetcher);
+    Assert.assertEquals(4, fetcher.requests.size());
+  }
+
+  @Test
+  public void testParsedObjectsReused() {
+    ODataMetadataCache cache = new ODataMetadataCache(null, Long.MAX_VALUE, 10, Long.MAX_VALUE);
+    RecordingFetcher fetcher = new RecordingFetcher(ODataMetadataCache.Response.of(DOCUMENT, ETAG, null));
+
+    String first = cache.get(URL, null, null, fetcher).getParsed("Document", String::new);
+    String second = cache.get(URL, null, null, fetcher).getParsed("Document", String::new);
+
+    Assert.assertSame(first, second);
+  }
+
+  private static Set<Path> listFiles(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.collect(Collectors.toSet());
+    }
+  }
+
+  /**
+   * Returns the same response and records 'ETag' of each request.
+   */
+  private static class RecordingFetcher implements ODataMetadataCache.Fetcher {
+
+    private final ODataMetadataCache.Response response;
+    private final List<String> requests = new ArrayList<>();
+
+    RecordingFetcher(ODataMetadataCache.Response response) {
+      this.response = response;
+    }
+
+    @Override
+    public ODataMetadataCache.Response fetch(String etag, String lastModified) {
+      requests.add(etag);
+      return response;
+    }
+  }
+}
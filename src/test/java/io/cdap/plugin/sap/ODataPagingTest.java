@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sap;
+
+import io.cdap.plugin.sap.odata.ODataClientOptions;
+import io.cdap.plugin.sap.odata.ODataPaging;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * {@link ODataPaging} test.
+ */
+public class ODataPagingTest {
+
+  @Test
+  public void testQueryUnchangedWithoutPaging() {
+    ODataPaging paging = new ODataPaging("$filter=BuyerName eq 'TECUM'", ODataClientOptions.NO_PAGING,
+                                         Collections::emptyList);
+    Assert.assertEquals("$filter=BuyerName eq 'TECUM'", paging.firstQuery());
+    read(paging, 10);
+    Assert.assertNull(paging.nextQuery());
+  }
+
+  @Test
+  public void testPagesOrderedByKey() {
+    ODataPaging paging = new ODataPaging(null, 10, () -> Arrays.asList("SoId", "SoItemPos"));
+    Assert.assertEquals("$orderby=SoId,SoItemPos&$top=10", paging.firstQuery());
+    read(paging, 10);
+    Assert.assertEquals("$orderby=SoId,SoItemPos&$skip=10&$top=10", paging.nextQuery());
+    // the last page is smaller than requested
+    read(paging, 3);
+    Assert.assertNull(paging.nextQuery());
+  }
+
+  @Test
+  public void testPagesWithinUserSkipAndTop() {
+    ODataPaging paging = new ODataPaging("$skip=5&$top=25&$orderby=BuyerName", 10, Collections::emptyList);
+    Assert.assertEquals("$skip=5&$top=10&$orderby=BuyerName", paging.firstQuery());
+    read(paging, 10);
+    Assert.assertEquals("$skip=15&$top=10&$orderby=BuyerName", paging.nextQuery());
+    read(paging, 10);
+    Assert.assertEquals("$skip=25&$top=5&$orderby=BuyerName", paging.nextQuery());
+    read(paging, 5);
+    Assert.assertNull(paging.nextQuery());
+  }
+
+  @Test
+  public void testLookaheadQueries() {
+    ODataPaging paging = new ODataPaging("$skip=5&$top=25&$orderby=BuyerName", 10, Collections::emptyList);
+    Assert.assertEquals("$skip=5&$top=10&$orderby=BuyerName", paging.firstQuery());
+    Assert.assertEquals(Arrays.asList("$skip=15&$top=10&$orderby=BuyerName", "$skip=25&$top=5&$orderby=BuyerName"),
+                        paging.lookaheadQueries(3));
+    read(paging, 4);
+    Assert.assertEquals(Collections.singletonList("$skip=15&$top=10&$orderby=BuyerName"), paging.lookaheadQueries(1));
+    read(paging, 6);
+    Assert.assertEquals("$skip=15&$top=10&$orderby=BuyerName", paging.nextQuery());
+    Assert.assertEquals(Collections.singletonList("$skip=25&$top=5&$orderby=BuyerName"), paging.lookaheadQueries(3));
+  }
+
+  @Test
+  public void testNoLookaheadWithoutPaging() {
+    ODataPaging paging = new ODataPaging(null, ODataClientOptions.NO_PAGING, Collections::emptyList);
+    Assert.assertNull(paging.firstQuery());
+    Assert.assertTrue(paging.lookaheadQueries(3).isEmpty());
+  }
+
+  private static void read(ODataPaging paging, int entities) {
+    for (int i = 0; i < entities; i++) {
+      paging.onEntity();
+    }
+  }
+}
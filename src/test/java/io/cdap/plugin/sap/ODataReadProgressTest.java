@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link ODataReadProgress} test.
+ */
+public class ODataReadProgressTest {
+
+  private final AtomicLong nanos = new AtomicLong();
+
+  @Test
+  public void testProgressOfExpectedEntities() {
+    ODataReadProgress progress = new ODataReadProgress(400, nanos::get);
+    advance(progress, 100);
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(2));
+
+    Assert.assertEquals(0.25f, progress.getProgress(), 0.0f);
+    Assert.assertEquals(50.0, progress.getEntitiesPerSecond(), 0.0);
+    Assert.assertEquals(TimeUnit.SECONDS.toMillis(6), progress.getRemainingMillis());
+    Assert.assertTrue(progress.getStatus(), progress.getStatus().startsWith("Read 100 of 400 entities"));
+
+    // entities inserted after the split was counted
+    advance(progress, 500);
+    Assert.assertEquals(1.0f, progress.getProgress(), 0.0f);
+    Assert.assertEquals(0, progress.getRemainingMillis());
+  }
+
+  @Test
+  public void testUnknownExpectedEntities() {
+    ODataReadProgress progress = new ODataReadProgress(ODataReadProgress.UNKNOWN, nanos::get);
+    advance(progress, 100);
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+    Assert.assertEquals(0.0f, progress.getProgress(), 0.0f);
+    Assert.assertEquals(ODataReadProgress.UNKNOWN, progress.getRemainingMillis());
+    Assert.assertEquals(100.0, progress.getEntitiesPerSecond(), 0.0);
+
+    progress.finish();
+    Assert.assertEquals(1.0f, progress.getProgress(), 0.0f);
+    Assert.assertEquals(0, progress.getRemainingMillis());
+  }
+
+  @Test
+  public void testReportedOncePerSecond() {
+    ODataReadProgress progress = new ODataReadProgress(10, nanos::get);
+    Assert.assertFalse(progress.isReportDue());
+
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+    Assert.assertTrue(progress.isReportDue());
+    Assert.assertFalse(progress.isReportDue());
+
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    Assert.assertTrue(progress.isReportDue());
+  }
+
+  private static void advance(ODataReadProgress progress, int entities) {
+    for (int i = 0; i < entities; i++) {
+      progress.advance();
+    }
+  }
+}
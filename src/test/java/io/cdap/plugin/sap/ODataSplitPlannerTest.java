@@ -0,0 +1,248 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sap;
+
+import io.cdap.plugin.sap.odata.EntityType;
+import io.cdap.plugin.sap.odata.ODataClient;
+import io.cdap.plugin.sap.odata.ODataEntity;
+import io.cdap.plugin.sap.odata.ODataVersion;
+import io.cdap.plugin.sap.odata.PropertyMetadata;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * {@link ODataSplitPlanner} test.
+ */
+public class ODataSplitPlannerTest {
+
+  private static final String ENTITY_SET = "SalesOrderCollection";
+
+  private static final SapODataConfig CONFIG = SapODataConfigBuilder.builder()
+    .setReferenceName("SapODataSource")
+    .setUrl("http://vhcalnplci.dummy.nodomain:8000/sap/opu/odata/SAP/ZGW100_XX_S2_SRV/")
+    .setResourcePath(ENTITY_SET)
+    .build();
+
+  @Test
+  public void testSingleSplitByDefault() {
+    ODataClient client = mockClient(1000);
+    List<ODataSplit> splits = new ODataSplitPlanner(CONFIG, client).plan();
+
+    Assert.assertEquals(1, splits.size());
+    Assert.assertNull(splits.get(0).toQuery(null));
+    Assert.assertEquals(1000, splits.get(0).getExpectedSize());
+    Mockito.verify(client, Mockito.times(1)).countEntitySet(Mockito.anyString(), Mockito.anyString());
+  }
+
+  @Test
+  public void testDeltaSplitNotCounted() {
+    SapODataConfig config = SapODataConfigBuilder.builder(CONFIG)
+      .setDeltaStateLocation("/tmp/sap/state")
+      .build();
+    ODataClient client = mockClient(1000);
+    List<ODataSplit> splits = new ODataSplitPlanner(config, client).plan();
+
+    Assert.assertEquals(1, splits.size());
+    Assert.assertEquals(ODataReadProgress.UNKNOWN, splits.get(0).getExpectedSize());
+    Mockito.verify(client, Mockito.never()).countEntitySet(Mockito.anyString(), Mockito.anyString());
+  }
+
+  @Test
+  public void testFixedNumberOfSplits() {
+    SapODataConfig config = SapODataConfigBuilder.builder(CONFIG)
+      .setNumSplits(3)
+      .setQuery("$filter=BuyerName eq %27TECUM%27")
+      .build();
+    List<ODataSplit> splits = new ODataSplitPlanner(config, mockClient(10)).plan();
+
+    Assert.assertEquals(3, splits.size());
+    Assert.assertEquals("$filter=BuyerName eq %27TECUM%27&$orderby=SoId,SoItemPos&$skip=0&$top=4",
+                        splits.get(0).toQuery(config.getQuery()));
+    Assert.assertEquals("$filter=BuyerName eq %27TECUM%27&$orderby=SoId,SoItemPos&$skip=4&$top=4",
+                        splits.get(1).toQuery(config.getQuery()));
+    Assert.assertEquals("$filter=BuyerName eq %27TECUM%27&$orderby=SoId,SoItemPos&$skip=8&$top=2",
+                        splits.get(2).toQuery(config.getQuery()));
+  }
+
+  @Test
+  public void testAutoNumberOfSplits() {
+    SapODataConfig config = SapODataConfigBuilder.builder(CONFIG)
+      .setNumSplits(SapODataConfig.AUTO_NUM_SPLITS)
+      .setRowsPerSplit(100L)
+      .build();
+    ODataClient client = mockClient(1050);
+    List<ODataSplit> splits = new ODataSplitPlanner(config, client).plan();
+
+    Assert.assertEquals(11, splits.size());
+    Assert.assertEquals(1050, splits.stream().mapToLong(ODataSplit::getLength).sum());
+    Assert.assertEquals(1050, splits.stream().mapToLong(ODataSplit::getExpectedSize).sum());
+    // windows are not counted one by one
+    Mockito.verify(client, Mockito.times(1)).countEntitySet(Mockito.anyString(), Mockito.anyString());
+  }
+
+  @Test
+  public void testRequestLimitsDividedBetweenSplits() {
+    SapODataConfig config = SapODataConfigBuilder.builder(CONFIG)
+      .setNumSplits(4)
+      .build();
+    List<ODataSplit> splits = new ODataSplitPlanner(config, mockClient(1000)).plan();
+
+    Assert.assertEquals(4, splits.size());
+    for (ODataSplit split : splits) {
+      Assert.assertEquals(0.25, split.getLimitShare(), 0.0);
+    }
+    Assert.assertEquals(1.0, new ODataSplitPlanner(CONFIG, mockClient(1000)).plan().get(0).getLimitShare(), 0.0);
+  }
+
+  @Test
+  public void testRequestLimitsDividedBetweenConcurrentSplits() {
+    SapODataConfig config = SapODataConfigBuilder.builder(CONFIG)
+      .setNumSplits(100)
+      .setConcurrentSplits(8)
+      .build();
+    List<ODataSplit> splits = new ODataSplitPlanner(config, mockClient(1000)).plan();
+
+    Assert.assertEquals(100, splits.size());
+    for (ODataSplit split : splits) {
+      Assert.assertEquals(0.125, split.getLimitShare(), 0.0);
+    }
+    Assert.assertEquals(0.5, ODataSplitPlanner.getLimitShare(2, 8), 0.0);
+    Assert.assertEquals(0.01, ODataSplitPlanner.getLimitShare(100, null), 0.0);
+  }
+
+  @Test
+  public void testUserSkipAndTopRespected() {
+    SapODataConfig config = SapODataConfigBuilder.builder(CONFIG)
+      .setNumSplits(2)
+      .setQuery("$skip=10&$top=50&$orderby=BuyerName")
+      .build();
+    List<ODataSplit> splits = new ODataSplitPlanner(config, mockClient(1000)).plan();
+
+    Assert.assertEquals(2, splits.size());
+    Assert.assertEquals("$skip=10&$top=25&$orderby=BuyerName", splits.get(0).toQuery(config.getQuery()));
+    Assert.assertEquals("$skip=35&$top=25&$orderby=BuyerName", splits.get(1).toQuery(config.getQuery()));
+  }
+
+  @Test
+  public void testNumberOfSplitsLimitedByCount() {
+    SapODataConfig config = SapODataConfigBuilder.builder(CONFIG)
+      .setNumSplits(10)
+      .build();
+    List<ODataSplit> splits = new ODataSplitPlanner(config, mockClient(3)).plan();
+
+    Assert.assertEquals(3, splits.size());
+  }
+
+  @Test
+  public void testRangesOnNumericStringProperty() {
+    SapODataConfig config = SapODataConfigBuilder.builder(CONFIG)
+      .setNumSplits(3)
+      .setPartitionProperty("Belnr")
+      .setPartitionLowerBound("0100000000")
+      .setPartitionUpperBound("0100000299")
+      .build();
+    List<ODataSplit> splits = new ODataSplitPlanner(config, mockClient(1000)).plan();
+
+    Assert.assertEquals(3, splits.size());
+    Assert.assertEquals("$filter=(Belnr lt '0100000100' or Belnr eq null)", splits.get(0).toQuery(null));
+    Assert.assertEquals("$filter=Belnr ge '0100000100' and Belnr lt '0100000200'", splits.get(1).toQuery(null));
+    Assert.assertEquals("$filter=Belnr ge '0100000200'", splits.get(2).toQuery(null));
+    for (ODataSplit split : splits) {
+      Assert.assertEquals(1000, split.getExpectedSize());
+    }
+  }
+
+  @Test
+  public void testRangesWithDiscoveredBounds() {
+    ODataClient client = mockClient(1000);
+    Mockito.when(client.queryEntitySet(ENTITY_SET, "$filter=PostingDate ne null&$orderby=PostingDate asc&$top=1" +
+      "&$select=PostingDate"))
+      .thenReturn(entityIterator("PostingDate", "2019-01-01T00:00:00Z"));
+    Mockito.when(client.queryEntitySet(ENTITY_SET, "$filter=PostingDate ne null&$orderby=PostingDate desc&$top=1" +
+      "&$select=PostingDate"))
+      .thenReturn(entityIterator("PostingDate", "2019-01-02T23:59:59.999Z"));
+
+    SapODataConfig config = SapODataConfigBuilder.builder(CONFIG)
+      .setNumSplits(2)
+      .setPartitionProperty("PostingDate")
+      .build();
+    List<ODataSplit> splits = new ODataSplitPlanner(config, client).plan();
+
+    Assert.assertEquals(2, splits.size());
+    String filter = "$filter=(%s) and (%s)";
+    Assert.assertEquals(String.format(filter, "Amount gt 0",
+                                      "(PostingDate lt datetime'2019-01-02T00:00:00.000' or PostingDate eq null)"),
+                        splits.get(0).toQuery("$filter=Amount gt 0"));
+    Assert.assertEquals(String.format(filter, "Amount gt 0", "PostingDate ge datetime'2019-01-02T00:00:00.000'"),
+                        splits.get(1).toQuery("$filter=Amount gt 0"));
+  }
+
+  @Test
+  public void testWatermarkQuerySplit() {
+    String query = "$filter=ChangedAt gt datetime'2019-08-29T14:52:08.155'";
+    ODataClient client = mockClient(10);
+    SapODataConfig config = SapODataConfigBuilder.builder(CONFIG)
+      .setNumSplits(2)
+      .build();
+    List<ODataSplit> splits = new ODataSplitPlanner(config, client, query).plan();
+
+    Assert.assertEquals(2, splits.size());
+    Assert.assertEquals(query + "&$orderby=SoId,SoItemPos&$skip=0&$top=5", splits.get(0).toQuery(query));
+    Assert.assertEquals(query + "&$orderby=SoId,SoItemPos&$skip=5&$top=5", splits.get(1).toQuery(query));
+    Mockito.verify(client).countEntitySet(ENTITY_SET, query);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRangesOnUnsupportedProperty() {
+    SapODataConfig config = SapODataConfigBuilder.builder(CONFIG)
+      .setNumSplits(2)
+      .setPartitionProperty("Active")
+      .build();
+    new ODataSplitPlanner(config, mockClient(1000)).plan();
+  }
+
+  private ODataClient mockClient(long count) {
+    List<PropertyMetadata> properties = Arrays.asList(
+      new PropertyMetadata("SoId", "String", false, null, null, null),
+      new PropertyMetadata("SoItemPos", "String", false, null, null, null),
+      new PropertyMetadata("Belnr", "String", true, null, null, null),
+      new PropertyMetadata("PostingDate", "DateTime", true, null, null, null),
+      new PropertyMetadata("Amount", "Decimal", true, 16, 3, null),
+      new PropertyMetadata("Active", "Boolean", true, null, null, null));
+    ODataClient client = Mockito.mock(ODataClient.class);
+    Mockito.when(client.getVersion()).thenReturn(ODataVersion.V2);
+    Mockito.when(client.countEntitySet(Mockito.eq(ENTITY_SET), Mockito.anyString())).thenReturn(count);
+    Mockito.when(client.getEntitySetType(ENTITY_SET))
+      .thenReturn(new EntityType("SalesOrderItem", properties, Arrays.asList("SoId", "SoItemPos")));
+    return client;
+  }
+
+  private Iterator<ODataEntity> entityIterator(String name, String instant) {
+    Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    calendar.setTimeInMillis(Instant.parse(instant).toEpochMilli());
+    return Collections.singletonList(new ODataEntity(Collections.singletonMap(name, calendar))).iterator();
+  }
+}
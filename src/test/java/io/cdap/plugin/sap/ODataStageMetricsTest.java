@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap;
+
+import io.cdap.cdap.etl.api.StageMetrics;
+import io.cdap.plugin.sap.odata.ODataTransferStats;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link ODataStageMetrics} test.
+ */
+public class ODataStageMetricsTest {
+
+  private static final String REFERENCE_NAME = "SapODataSource";
+
+  private final AtomicLong readNanos = new AtomicLong();
+  private final ODataReadMetrics readMetrics = new ODataReadMetrics(ODataTransferStats::new, readNanos::get);
+
+  @After
+  public void tearDown() {
+    ODataReadMetrics.getRegistered(REFERENCE_NAME).clear();
+  }
+
+  @Test
+  public void testEmittedOncePerBatch() {
+    StageMetrics metrics = Mockito.mock(StageMetrics.class);
+    ODataStageMetrics stageMetrics = new ODataStageMetrics(metrics, REFERENCE_NAME);
+    ODataReadMetrics.register(REFERENCE_NAME, readMetrics);
+    readNanos.set(TimeUnit.MILLISECONDS.toNanos(30));
+
+    for (int i = 0; i < ODataStageMetrics.BATCH_SIZE - 1; i++) {
+      stageMetrics.recordTransform(TimeUnit.MICROSECONDS.toNanos(10));
+    }
+    Mockito.verifyZeroInteractions(metrics);
+
+    stageMetrics.recordTransform(TimeUnit.MICROSECONDS.toNanos(10));
+    Mockito.verify(metrics).count(ODataStageMetrics.TRANSFORM_MILLIS, 10);
+    Mockito.verify(metrics).count(ODataReadMetrics.Metric.PARSE_MILLIS.getMetricName(), 30);
+    // metrics without increments are not emitted
+    Mockito.verify(metrics, Mockito.never()).count(ODataReadMetrics.Metric.REQUESTS.getMetricName(), 0);
+  }
+
+  @Test
+  public void testIncrementsEmitted() {
+    StageMetrics metrics = Mockito.mock(StageMetrics.class);
+    ODataStageMetrics stageMetrics = new ODataStageMetrics(metrics, REFERENCE_NAME);
+    ODataReadMetrics.register(REFERENCE_NAME, readMetrics);
+
+    readNanos.set(TimeUnit.MILLISECONDS.toNanos(30));
+    stageMetrics.emit();
+    readNanos.set(TimeUnit.MILLISECONDS.toNanos(50));
+    stageMetrics.emit();
+    stageMetrics.emit();
+
+    String parseMillis = ODataReadMetrics.Metric.PARSE_MILLIS.getMetricName();
+    Mockito.verify(metrics).count(parseMillis, 30);
+    Mockito.verify(metrics).count(parseMillis, 20);
+    Mockito.verify(metrics, Mockito.times(2)).count(Mockito.eq(parseMillis), Mockito.anyInt());
+  }
+
+  @Test
+  public void testClosedReaderEmittedOnceStageDestroyed() {
+    StageMetrics metrics = Mockito.mock(StageMetrics.class);
+    ODataStageMetrics stageMetrics = new ODataStageMetrics(metrics, REFERENCE_NAME);
+    ODataReadMetrics.register(REFERENCE_NAME, readMetrics);
+
+    // the split is read and closed before a batch of records is transformed
+    for (int i = 0; i < 10; i++) {
+      stageMetrics.recordTransform(TimeUnit.MICROSECONDS.toNanos(10));
+    }
+    readNanos.set(TimeUnit.MILLISECONDS.toNanos(30));
+    readMetrics.close();
+    Mockito.verifyZeroInteractions(metrics);
+
+    stageMetrics.emit();
+    Mockito.verify(metrics).count(ODataReadMetrics.Metric.PARSE_MILLIS.getMetricName(), 30);
+    Assert.assertTrue(ODataReadMetrics.getRegistered(REFERENCE_NAME).isEmpty());
+  }
+
+  @Test
+  public void testIncrementsTakenOncePerReader() {
+    StageMetrics metrics = Mockito.mock(StageMetrics.class);
+    StageMetrics otherMetrics = Mockito.mock(StageMetrics.class);
+    ODataStageMetrics stageMetrics = new ODataStageMetrics(metrics, REFERENCE_NAME);
+    ODataStageMetrics otherStageMetrics = new ODataStageMetrics(otherMetrics, REFERENCE_NAME);
+    ODataReadMetrics.register(REFERENCE_NAME, readMetrics);
+
+    readNanos.set(TimeUnit.MILLISECONDS.toNanos(30));
+    stageMetrics.emit();
+    otherStageMetrics.emit();
+
+    Mockito.verify(metrics).count(ODataReadMetrics.Metric.PARSE_MILLIS.getMetricName(), 30);
+    Mockito.verify(otherMetrics, Mockito.never())
+      .count(Mockito.eq(ODataReadMetrics.Metric.PARSE_MILLIS.getMetricName()), Mockito.anyInt());
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap;
+
+import io.cdap.plugin.sap.odata.ODataEntity;
+import io.cdap.plugin.sap.odata.ODataVersion;
+import io.cdap.plugin.sap.odata.PropertyMetadata;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.TimeZone;
+
+/**
+ * {@link ODataWatermark} test.
+ */
+public class ODataWatermarkTest {
+
+  private static final String PROPERTY = "ChangedAt";
+  private static final Instant WATERMARK = Instant.parse("2019-08-29T14:52:08.155Z");
+
+  @Test
+  public void testHighestValueTracked() {
+    ODataWatermark watermark = new ODataWatermark(PROPERTY);
+    watermark.update(entity(calendar("2019-08-29T14:52:08.155Z")));
+    watermark.update(entity(null));
+    watermark.update(entity(calendar("2019-08-28T00:00:00Z")));
+    watermark.update(entity(Timestamp.from(Instant.parse("2019-08-29T14:52:08.155000001Z"))));
+
+    Assert.assertEquals(Instant.parse("2019-08-29T14:52:08.155000001Z"), watermark.get());
+  }
+
+  @Test
+  public void testNoValues() {
+    ODataWatermark watermark = new ODataWatermark(PROPERTY);
+    watermark.update(entity(null));
+
+    Assert.assertNull(watermark.get());
+  }
+
+  @Test
+  public void testFilter() {
+    Assert.assertEquals("ChangedAt gt datetime'2019-08-29T14:52:08.155'",
+                        ODataWatermark.toFilter(ODataVersion.V2, property("DateTime"), WATERMARK));
+    Assert.assertEquals("ChangedAt gt datetimeoffset'2019-08-29T14:52:08.155Z'",
+                        ODataWatermark.toFilter(ODataVersion.V2, property("DateTimeOffset"), WATERMARK));
+    Assert.assertEquals("ChangedAt gt 2019-08-29T14:52:08.155Z",
+                        ODataWatermark.toFilter(ODataVersion.V4, property("DateTimeOffset"), WATERMARK));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedType() {
+    ODataWatermark.toFilter(ODataVersion.V2, property("Date"), WATERMARK);
+  }
+
+  private static PropertyMetadata property(String edmTypeName) {
+    return new PropertyMetadata(PROPERTY, edmTypeName, true, null, null, null);
+  }
+
+  private static ODataEntity entity(Object value) {
+    return new ODataEntity(Collections.singletonMap(PROPERTY, value));
+  }
+
+  private static Calendar calendar(String instant) {
+    Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    calendar.setTimeInMillis(Instant.parse(instant).toEpochMilli());
+    return calendar;
+  }
+}
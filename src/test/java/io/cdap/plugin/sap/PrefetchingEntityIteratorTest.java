@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sap;
+
+import io.cdap.plugin.sap.odata.ODataEntity;
+import io.cdap.plugin.sap.odata.exception.ODataException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * {@link PrefetchingEntityIterator} test.
+ */
+public class PrefetchingEntityIteratorTest {
+
+  @Test
+  public void testEntitiesOrderPreserved() {
+    List<ODataEntity> entities = IntStream.range(0, 2500)
+      .mapToObj(i -> new ODataEntity(Collections.singletonMap("Id", String.valueOf(i))))
+      .collect(Collectors.toList());
+
+    // budget is smaller than a single batch, so that batches are passed one by one
+    try (PrefetchingEntityIterator iterator = new PrefetchingEntityIterator(entities.iterator(), 2, 1024, "test")) {
+      for (int i = 0; i < entities.size(); i++) {
+        Assert.assertTrue(iterator.hasNext());
+        Assert.assertEquals(String.valueOf(i), iterator.next().getProperties().get("Id"));
+      }
+      Assert.assertFalse(iterator.hasNext());
+      Assert.assertEquals(3, iterator.getCounter(PrefetchingEntityIterator.Counter.PREFETCHED_BATCHES));
+      Assert.assertTrue(iterator.getCounter(PrefetchingEntityIterator.Counter.PEAK_BUFFERED_BYTES) > 0);
+    }
+  }
+
+  @Test
+  public void testFailurePropagated() {
+    Iterator<ODataEntity> failing = new Iterator<ODataEntity>() {
+      private int read;
+
+      @Override
+      public boolean hasNext() {
+        if (read == 10) {
+          throw new ODataException("Unable to read 'AllDataTypes' entity set.");
+        }
+        return true;
+      }
+
+      @Override
+      public ODataEntity next() {
+        read++;
+        return new ODataEntity();
+      }
+    };
+
+    try (PrefetchingEntityIterator iterator = new PrefetchingEntityIterator(failing, 1, 1024 * 1024, "test")) {
+      for (int i = 0; i < 10; i++) {
+        iterator.next();
+      }
+      iterator.hasNext();
+      Assert.fail("Failure of the fetcher must be propagated to the consumer");
+    } catch (ODataException e) {
+      Assert.assertEquals("Unable to read 'AllDataTypes' entity set.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testCloseWaitsForFetcher() throws Exception {
+    BlockingSource source = new BlockingSource();
+    PrefetchingEntityIterator iterator = new PrefetchingEntityIterator(source, 1, 1024 * 1024, "test");
+    source.reading.await();
+
+    iterator.close();
+
+    Assert.assertEquals("The request in progress must be aborted", 0, source.closed.getCount());
+    Assert.assertTrue("The fetcher must stop before the iterator is closed", source.readFinished);
+  }
+
+  /**
+   * Source, which blocks in a read until it is closed, like a socket read, which ignores interrupts.
+   */
+  private static class BlockingSource implements Iterator<ODataEntity>, Closeable {
+
+    private final CountDownLatch reading = new CountDownLatch(1);
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private volatile boolean readFinished;
+
+    @Override
+    public boolean hasNext() {
+      reading.countDown();
+      while (closed.getCount() > 0) {
+        try {
+          closed.await();
+        } catch (InterruptedException e) {
+          // ignored, like by a blocking socket read
+        }
+      }
+      try {
+        // the aborted read takes a while to fail
+        TimeUnit.MILLISECONDS.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      readFinished = true;
+      throw new ODataException("Connection closed.");
+    }
+
+    @Override
+    public ODataEntity next() {
+      throw new NoSuchElementException();
+    }
+
+    @Override
+    public void close() {
+      closed.countDown();
+    }
+  }
+}
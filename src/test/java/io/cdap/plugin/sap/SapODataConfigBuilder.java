@@ -16,6 +16,9 @@
 
 package io.cdap.plugin.sap;
 
+import io.cdap.plugin.sap.odata.ODataClientOptions;
+import io.cdap.plugin.sap.odata.ODataRequestGovernor;
+
 /**
  * Provides handy methods to construct a {@link SapODataConfig} instance for testing.
  */
@@ -28,6 +31,27 @@ public final class SapODataConfigBuilder {
   private String user;
   private String password;
   private String schema;
+  private Integer numSplits;
+  private Long rowsPerSplit;
+  private String partitionProperty;
+  private String partitionLowerBound;
+  private String partitionUpperBound;
+  private Integer pageSize;
+  private String wireFormat;
+  private Integer prefetchDepth;
+  private Integer prefetchMemoryBudget;
+  private Integer maxConnectionsPerHost;
+  private Integer idleConnectionTimeout;
+  private Integer maxRetries;
+  private Integer maxRetryDelay;
+  private Integer maxConcurrentRequests;
+  private Double maxRequestsPerSecond;
+  private String throttlingMode;
+  private Integer pagesPerBatch;
+  private Double hedgingPercentile;
+  private String deltaStateLocation;
+  private String watermarkProperty;
+  private Integer concurrentSplits;
 
   private SapODataConfigBuilder() {
   }
@@ -44,7 +68,31 @@ public final class SapODataConfigBuilder {
       .setQuery(original.getQuery())
       .setUser(original.getUser())
       .setPassword(original.getPassword())
-      .setSchema(original.getSchema());
+      .setSchema(original.getSchema())
+      .setNumSplits(original.getNumSplits())
+      .setRowsPerSplit(original.getRowsPerSplit())
+      .setPartitionProperty(original.getPartitionProperty())
+      .setPartitionLowerBound(original.getPartitionLowerBound())
+      .setPartitionUpperBound(original.getPartitionUpperBound())
+      .setPageSize(original.getPageSize())
+      .setWireFormat(original.getWireFormat().getName())
+      .setPrefetchDepth(original.getPrefetchDepth())
+      .setPrefetchMemoryBudget(original.getPrefetchMemoryBudget())
+      .setMaxConnectionsPerHost(original.getMaxConnectionsPerHost())
+      .setIdleConnectionTimeout(original.getIdleConnectionTimeout())
+      .setMaxRetries(original.getMaxRetries())
+      .setMaxRetryDelay(original.getMaxRetryDelay())
+      .setMaxConcurrentRequests(original.getMaxConcurrentRequests() == ODataRequestGovernor.UNLIMITED
+                                  ? null : original.getMaxConcurrentRequests())
+      .setMaxRequestsPerSecond(original.getMaxRequestsPerSecond() == ODataRequestGovernor.UNLIMITED
+                                 ? null : original.getMaxRequestsPerSecond())
+      .setThrottlingMode(original.getThrottlingMode().getName())
+      .setPagesPerBatch(original.getPagesPerBatch())
+      .setHedgingPercentile(original.getHedgingPercentile() == ODataClientOptions.NO_HEDGING
+                              ? null : original.getHedgingPercentile())
+      .setDeltaStateLocation(original.getDeltaStateLocation())
+      .setWatermarkProperty(original.getWatermarkProperty())
+      .setConcurrentSplits(original.getConcurrentSplits());
   }
 
   public SapODataConfigBuilder setReferenceName(String referenceName) {
@@ -82,7 +130,117 @@ public final class SapODataConfigBuilder {
     return this;
   }
 
+  public SapODataConfigBuilder setNumSplits(Integer numSplits) {
+    this.numSplits = numSplits;
+    return this;
+  }
+
+  public SapODataConfigBuilder setRowsPerSplit(Long rowsPerSplit) {
+    this.rowsPerSplit = rowsPerSplit;
+    return this;
+  }
+
+  public SapODataConfigBuilder setPartitionProperty(String partitionProperty) {
+    this.partitionProperty = partitionProperty;
+    return this;
+  }
+
+  public SapODataConfigBuilder setPartitionLowerBound(String partitionLowerBound) {
+    this.partitionLowerBound = partitionLowerBound;
+    return this;
+  }
+
+  public SapODataConfigBuilder setPartitionUpperBound(String partitionUpperBound) {
+    this.partitionUpperBound = partitionUpperBound;
+    return this;
+  }
+
+  public SapODataConfigBuilder setPageSize(Integer pageSize) {
+    this.pageSize = pageSize;
+    return this;
+  }
+
+  public SapODataConfigBuilder setWireFormat(String wireFormat) {
+    this.wireFormat = wireFormat;
+    return this;
+  }
+
+  public SapODataConfigBuilder setPrefetchDepth(Integer prefetchDepth) {
+    this.prefetchDepth = prefetchDepth;
+    return this;
+  }
+
+  public SapODataConfigBuilder setPrefetchMemoryBudget(Integer prefetchMemoryBudget) {
+    this.prefetchMemoryBudget = prefetchMemoryBudget;
+    return this;
+  }
+
+  public SapODataConfigBuilder setMaxConnectionsPerHost(Integer maxConnectionsPerHost) {
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+    return this;
+  }
+
+  public SapODataConfigBuilder setIdleConnectionTimeout(Integer idleConnectionTimeout) {
+    this.idleConnectionTimeout = idleConnectionTimeout;
+    return this;
+  }
+
+  public SapODataConfigBuilder setMaxRetries(Integer maxRetries) {
+    this.maxRetries = maxRetries;
+    return this;
+  }
+
+  public SapODataConfigBuilder setMaxRetryDelay(Integer maxRetryDelay) {
+    this.maxRetryDelay = maxRetryDelay;
+    return this;
+  }
+
+  public SapODataConfigBuilder setMaxConcurrentRequests(Integer maxConcurrentRequests) {
+    this.maxConcurrentRequests = maxConcurrentRequests;
+    return this;
+  }
+
+  public SapODataConfigBuilder setMaxRequestsPerSecond(Double maxRequestsPerSecond) {
+    this.maxRequestsPerSecond = maxRequestsPerSecond;
+    return this;
+  }
+
+  public SapODataConfigBuilder setThrottlingMode(String throttlingMode) {
+    this.throttlingMode = throttlingMode;
+    return this;
+  }
+
+  public SapODataConfigBuilder setPagesPerBatch(Integer pagesPerBatch) {
+    this.pagesPerBatch = pagesPerBatch;
+    return this;
+  }
+
+  public SapODataConfigBuilder setHedgingPercentile(Double hedgingPercentile) {
+    this.hedgingPercentile = hedgingPercentile;
+    return this;
+  }
+
+  public SapODataConfigBuilder setDeltaStateLocation(String deltaStateLocation) {
+    this.deltaStateLocation = deltaStateLocation;
+    return this;
+  }
+
+  public SapODataConfigBuilder setWatermarkProperty(String watermarkProperty) {
+    this.watermarkProperty = watermarkProperty;
+    return this;
+  }
+
+  public SapODataConfigBuilder setConcurrentSplits(Integer concurrentSplits) {
+    this.concurrentSplits = concurrentSplits;
+    return this;
+  }
+
   public SapODataConfig build() {
-    return new SapODataConfig(referenceName, url, resourcePath, query, user, password, schema);
+    return new SapODataConfig(referenceName, url, resourcePath, query, user, password, schema, numSplits,
+                              rowsPerSplit, partitionProperty, partitionLowerBound, partitionUpperBound, pageSize,
+                              wireFormat, prefetchDepth, prefetchMemoryBudget, maxConnectionsPerHost,
+                              idleConnectionTimeout, maxRetries, maxRetryDelay, maxConcurrentRequests,
+                              maxRequestsPerSecond, throttlingMode, pagesPerBatch, hedgingPercentile,
+                              deltaStateLocation, watermarkProperty, concurrentSplits);
   }
 }
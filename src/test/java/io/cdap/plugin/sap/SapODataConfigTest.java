@@ -288,4 +288,187 @@ public class SapODataConfigTest {
 
     Assert.assertEquals("$top=2&$select=By?yerName,Surnam?", query);
   }
+
+  @Test
+  public void testValidateNegativeNumSplits() {
+    try {
+      SapODataConfigBuilder.builder(VALID_CONFIG)
+        .setNumSplits(-1)
+        .build()
+        .validate(new MockFailureCollector(MOCK_STAGE_NAME));
+    } catch (ValidationException e) {
+      Assert.assertEquals(1, e.getFailures().size());
+      ValidationFailure validationFailure = e.getFailures().get(0);
+      Assert.assertEquals("Number of splits must not be negative", validationFailure.getMessage());
+      Assert.assertEquals(1, validationFailure.getCauses().size());
+      ValidationFailure.Cause cause = validationFailure.getCauses().get(0);
+      Assert.assertEquals(SapODataConstants.NUM_SPLITS, cause.getAttribute(CauseAttributes.STAGE_CONFIG));
+      Assert.assertEquals(MOCK_STAGE_NAME, cause.getAttribute(STAGE));
+    }
+  }
+
+  @Test
+  public void testValidateNonPositiveRowsPerSplit() {
+    try {
+      SapODataConfigBuilder.builder(VALID_CONFIG)
+        .setRowsPerSplit(0L)
+        .build()
+        .validate(new MockFailureCollector(MOCK_STAGE_NAME));
+    } catch (ValidationException e) {
+      Assert.assertEquals(1, e.getFailures().size());
+      ValidationFailure validationFailure = e.getFailures().get(0);
+      Assert.assertEquals("Rows per split must be positive", validationFailure.getMessage());
+      Assert.assertEquals(1, validationFailure.getCauses().size());
+      ValidationFailure.Cause cause = validationFailure.getCauses().get(0);
+      Assert.assertEquals(SapODataConstants.ROWS_PER_SPLIT, cause.getAttribute(CauseAttributes.STAGE_CONFIG));
+      Assert.assertEquals(MOCK_STAGE_NAME, cause.getAttribute(STAGE));
+    }
+  }
+
+  @Test
+  public void testValidateNonPositiveMaxConnectionsPerHost() {
+    try {
+      SapODataConfigBuilder.builder(VALID_CONFIG)
+        .setMaxConnectionsPerHost(0)
+        .build()
+        .validate(new MockFailureCollector(MOCK_STAGE_NAME));
+    } catch (ValidationException e) {
+      Assert.assertEquals(1, e.getFailures().size());
+      ValidationFailure validationFailure = e.getFailures().get(0);
+      Assert.assertEquals("Maximum number of connections per host must be positive", validationFailure.getMessage());
+      Assert.assertEquals(1, validationFailure.getCauses().size());
+      ValidationFailure.Cause cause = validationFailure.getCauses().get(0);
+      Assert.assertEquals(SapODataConstants.MAX_CONNECTIONS_PER_HOST,
+                          cause.getAttribute(CauseAttributes.STAGE_CONFIG));
+      Assert.assertEquals(MOCK_STAGE_NAME, cause.getAttribute(STAGE));
+    }
+  }
+
+  @Test
+  public void testValidateNegativeMaxRetries() {
+    try {
+      SapODataConfigBuilder.builder(VALID_CONFIG)
+        .setMaxRetries(-1)
+        .build()
+        .validate(new MockFailureCollector(MOCK_STAGE_NAME));
+    } catch (ValidationException e) {
+      Assert.assertEquals(1, e.getFailures().size());
+      ValidationFailure validationFailure = e.getFailures().get(0);
+      Assert.assertEquals("Maximum number of retries must not be negative", validationFailure.getMessage());
+      Assert.assertEquals(1, validationFailure.getCauses().size());
+      ValidationFailure.Cause cause = validationFailure.getCauses().get(0);
+      Assert.assertEquals(SapODataConstants.MAX_RETRIES, cause.getAttribute(CauseAttributes.STAGE_CONFIG));
+      Assert.assertEquals(MOCK_STAGE_NAME, cause.getAttribute(STAGE));
+    }
+  }
+
+  @Test
+  public void testValidateNonPositiveConcurrentSplits() {
+    try {
+      SapODataConfigBuilder.builder(VALID_CONFIG)
+        .setConcurrentSplits(0)
+        .build()
+        .validate(new MockFailureCollector(MOCK_STAGE_NAME));
+    } catch (ValidationException e) {
+      Assert.assertEquals(1, e.getFailures().size());
+      ValidationFailure validationFailure = e.getFailures().get(0);
+      Assert.assertEquals("Number of concurrent splits must be positive", validationFailure.getMessage());
+      Assert.assertEquals(1, validationFailure.getCauses().size());
+      ValidationFailure.Cause cause = validationFailure.getCauses().get(0);
+      Assert.assertEquals(SapODataConstants.CONCURRENT_SPLITS, cause.getAttribute(CauseAttributes.STAGE_CONFIG));
+      Assert.assertEquals(MOCK_STAGE_NAME, cause.getAttribute(STAGE));
+    }
+  }
+
+  @Test
+  public void testValidateBatchWithoutPaging() {
+    try {
+      SapODataConfigBuilder.builder(VALID_CONFIG)
+        .setPagesPerBatch(10)
+        .build()
+        .validate(new MockFailureCollector(MOCK_STAGE_NAME));
+    } catch (ValidationException e) {
+      Assert.assertEquals(1, e.getFailures().size());
+      ValidationFailure validationFailure = e.getFailures().get(0);
+      Assert.assertEquals("Batch requests require client-side paging", validationFailure.getMessage());
+      Assert.assertEquals(1, validationFailure.getCauses().size());
+      ValidationFailure.Cause cause = validationFailure.getCauses().get(0);
+      Assert.assertEquals(SapODataConstants.PAGES_PER_BATCH, cause.getAttribute(CauseAttributes.STAGE_CONFIG));
+      Assert.assertEquals(MOCK_STAGE_NAME, cause.getAttribute(STAGE));
+    }
+  }
+
+  @Test
+  public void testValidateDeltaWithMultipleSplits() {
+    try {
+      SapODataConfigBuilder.builder(VALID_CONFIG)
+        .setNumSplits(4)
+        .setDeltaStateLocation("/tmp/sap/state")
+        .build()
+        .validate(new MockFailureCollector(MOCK_STAGE_NAME));
+      Assert.fail("Delta extraction with multiple splits must be rejected");
+    } catch (ValidationException e) {
+      Assert.assertEquals(1, e.getFailures().size());
+      ValidationFailure validationFailure = e.getFailures().get(0);
+      Assert.assertEquals("Delta extraction requires a single split", validationFailure.getMessage());
+      Assert.assertEquals(1, validationFailure.getCauses().size());
+      ValidationFailure.Cause cause = validationFailure.getCauses().get(0);
+      Assert.assertEquals(SapODataConstants.NUM_SPLITS, cause.getAttribute(CauseAttributes.STAGE_CONFIG));
+      Assert.assertEquals(MOCK_STAGE_NAME, cause.getAttribute(STAGE));
+    }
+  }
+
+  @Test
+  public void testValidateWatermarkWithoutStateLocation() {
+    try {
+      SapODataConfigBuilder.builder(VALID_CONFIG)
+        .setQuery(null)
+        .setWatermarkProperty("ChangedAt")
+        .build()
+        .validate(new MockFailureCollector(MOCK_STAGE_NAME));
+      Assert.fail("Watermark property without delta state location must be rejected");
+    } catch (ValidationException e) {
+      Assert.assertEquals(1, e.getFailures().size());
+      ValidationFailure validationFailure = e.getFailures().get(0);
+      Assert.assertEquals("Watermark property is specified without delta state location",
+                          validationFailure.getMessage());
+      Assert.assertEquals(1, validationFailure.getCauses().size());
+      ValidationFailure.Cause cause = validationFailure.getCauses().get(0);
+      Assert.assertEquals(SapODataConstants.DELTA_STATE_LOCATION, cause.getAttribute(CauseAttributes.STAGE_CONFIG));
+      Assert.assertEquals(MOCK_STAGE_NAME, cause.getAttribute(STAGE));
+    }
+  }
+
+  @Test
+  public void testValidateWatermarkWithMultipleSplits() {
+    SapODataConfig config = SapODataConfigBuilder.builder(VALID_CONFIG)
+      .setQuery(null)
+      .setNumSplits(4)
+      .setDeltaStateLocation("/tmp/sap/state")
+      .setWatermarkProperty("ChangedAt")
+      .build();
+    config.validate(new MockFailureCollector(MOCK_STAGE_NAME));
+
+    Assert.assertTrue(config.isWatermarkEnabled());
+    Assert.assertFalse(config.isDeltaEnabled());
+  }
+
+  @Test
+  public void testValidatePartitionBoundWithoutProperty() {
+    try {
+      SapODataConfigBuilder.builder(VALID_CONFIG)
+        .setPartitionLowerBound("0100000000")
+        .build()
+        .validate(new MockFailureCollector(MOCK_STAGE_NAME));
+    } catch (ValidationException e) {
+      Assert.assertEquals(1, e.getFailures().size());
+      ValidationFailure validationFailure = e.getFailures().get(0);
+      Assert.assertEquals("Partition lower bound is specified without partition property",
+                          validationFailure.getMessage());
+      Assert.assertEquals(1, validationFailure.getCauses().size());
+      ValidationFailure.Cause cause = validationFailure.getCauses().get(0);
+      Assert.assertEquals(SapODataConstants.PARTITION_LOWER_BOUND, cause.getAttribute(CauseAttributes.STAGE_CONFIG));
+      Assert.assertEquals(MOCK_STAGE_NAME, cause.getAttribute(STAGE));
+    }
+  }
 }
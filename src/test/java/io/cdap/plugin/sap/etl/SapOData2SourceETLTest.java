@@ -146,4 +146,89 @@ public class SapOData2SourceETLTest extends BaseSapODataSourceETLTest {
     List<StructuredRecord> records = getPipelineResults(properties);
     Assert.assertEquals(3, records.size());
   }
+
+  @Test
+  public void testSourceSelectPushedDown() throws Exception {
+    String selectUrl = SERVICE_PATH + "/" + ENTITY_SET + "?$select=Id,String";
+    wireMockRule.stubFor(WireMock.get(WireMock.urlEqualTo(selectUrl))
+                           .willReturn(WireMock.aResponse()
+                                         .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_ATOM_XML)
+                                         .withBody(readResourceFile("odata2/AllDataTypes.xml"))));
+    Schema schema = Schema.recordOf("schema",
+                                    Schema.Field.of("String", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("Id", Schema.of(Schema.Type.STRING)));
+
+    Map<String, String> properties = new ImmutableMap.Builder<String, String>()
+      .put(SapODataConstants.ODATA_SERVICE_URL, getServerAddress() + SERVICE_PATH)
+      .put(SapODataConstants.RESOURCE_PATH, ENTITY_SET)
+      .put(SapODataConstants.SCHEMA, schema.toString())
+      .build();
+
+    List<StructuredRecord> records = getPipelineResults(properties);
+    Assert.assertEquals(3, records.size());
+    wireMockRule.verify(WireMock.getRequestedFor(WireMock.urlEqualTo(selectUrl)));
+  }
+
+  @Test
+  public void testSourceServerDrivenPaging() throws Exception {
+    String entitySetPath = SERVICE_PATH + "/" + ENTITY_SET;
+    String nextLink = getServerAddress() + entitySetPath + "?sap-client=001&amp;$skiptoken=3";
+    String firstPage = readResourceFile("odata2/AllDataTypes.xml")
+      .replace("</feed>", String.format("<link href=\"%s\" rel=\"next\"/></feed>", nextLink));
+    wireMockRule.stubFor(WireMock.get(WireMock.urlEqualTo(entitySetPath + "?sap-client=001"))
+                           .willReturn(WireMock.aResponse()
+                                         .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_ATOM_XML)
+                                         .withBody(firstPage)));
+    wireMockRule.stubFor(WireMock.get(WireMock.urlEqualTo(entitySetPath + "?sap-client=001&$skiptoken=3"))
+                           .willReturn(WireMock.aResponse()
+                                         .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_ATOM_XML)
+                                         .withBody(readResourceFile("odata2/AllDataTypes.xml"))));
+
+    Map<String, String> properties = new ImmutableMap.Builder<String, String>()
+      .put(SapODataConstants.ODATA_SERVICE_URL, getServerAddress() + SERVICE_PATH)
+      .put(SapODataConstants.RESOURCE_PATH, ENTITY_SET)
+      .put(SapODataConstants.QUERY, "sap-client=001")
+      .put(SapODataConstants.SCHEMA, SCHEMA.toString())
+      .build();
+
+    List<StructuredRecord> records = getPipelineResults(properties);
+    Assert.assertEquals(6, records.size());
+  }
+
+  @Test
+  public void testSourceJsonWireFormat() throws Exception {
+    Map<String, String> properties = new ImmutableMap.Builder<String, String>()
+      .put(SapODataConstants.ODATA_SERVICE_URL, getServerAddress() + SERVICE_PATH)
+      .put(SapODataConstants.RESOURCE_PATH, ENTITY_SET)
+      .put(SapODataConstants.SCHEMA, SCHEMA.toString())
+      .put(SapODataConstants.WIRE_FORMAT, "json")
+      .build();
+
+    List<StructuredRecord> records = getPipelineResults(properties);
+    Assert.assertEquals(3, records.size());
+    String jsonUrl = SERVICE_PATH + "/" + ENTITY_SET + "?$format=json";
+    wireMockRule.verify(WireMock.getRequestedFor(WireMock.urlEqualTo(jsonUrl)));
+  }
+
+  @Test
+  public void testSourceJsonWireFormatRejected() throws Exception {
+    String entitySetPath = SERVICE_PATH + "/" + ENTITY_SET;
+    wireMockRule.stubFor(WireMock.get(WireMock.urlEqualTo(entitySetPath + "?sap-client=001&$format=json"))
+                           .willReturn(WireMock.aResponse().withStatus(415)));
+    wireMockRule.stubFor(WireMock.get(WireMock.urlEqualTo(entitySetPath + "?sap-client=001"))
+                           .willReturn(WireMock.aResponse()
+                                         .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_ATOM_XML)
+                                         .withBody(readResourceFile("odata2/AllDataTypes.xml"))));
+
+    Map<String, String> properties = new ImmutableMap.Builder<String, String>()
+      .put(SapODataConstants.ODATA_SERVICE_URL, getServerAddress() + SERVICE_PATH)
+      .put(SapODataConstants.RESOURCE_PATH, ENTITY_SET)
+      .put(SapODataConstants.QUERY, "sap-client=001")
+      .put(SapODataConstants.SCHEMA, SCHEMA.toString())
+      .put(SapODataConstants.WIRE_FORMAT, "json")
+      .build();
+
+    List<StructuredRecord> records = getPipelineResults(properties);
+    Assert.assertEquals(3, records.size());
+  }
 }
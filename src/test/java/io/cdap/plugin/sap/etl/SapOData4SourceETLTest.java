@@ -32,7 +32,7 @@ import javax.ws.rs.core.MediaType;
 
 public class SapOData4SourceETLTest extends BaseSapODataSourceETLTest {
 
-  private static final String SERVICE_PATH = "/sap/opu/odata/SAP/ZGW100_XX_S2_SRV";
+  private static final String SERVICE_PATH = "/sap/opu/odata/SAP/ZGW100_XX_S4_SRV";
   private static final String ENTITY_SET = "AllDataTypes";
 
   private static final Schema SCHEMA = Schema.recordOf(
@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import com.google.common.io.ByteStreams;
+import org.apache.http.entity.ByteArrayEntity;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+/**
+ * {@link DecodingEntity} test.
+ */
+public class DecodingEntityTest {
+
+  private static final byte[] CONTENT = createContent();
+
+  @Test
+  public void testGzip() throws IOException {
+    ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    try (OutputStream out = new GZIPOutputStream(encoded)) {
+      out.write(CONTENT);
+    }
+    assertDecoded(encoded.toByteArray(), DecodingEntity.GZIP);
+  }
+
+  @Test
+  public void testZlibDeflate() throws IOException {
+    ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    try (OutputStream out = new DeflaterOutputStream(encoded)) {
+      out.write(CONTENT);
+    }
+    assertDecoded(encoded.toByteArray(), DecodingEntity.DEFLATE);
+  }
+
+  @Test
+  public void testRawDeflate() throws IOException {
+    ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    try (OutputStream out = new DeflaterOutputStream(encoded, new Deflater(Deflater.DEFAULT_COMPRESSION, true))) {
+      out.write(CONTENT);
+    }
+    assertDecoded(encoded.toByteArray(), DecodingEntity.DEFLATE);
+  }
+
+  @Test
+  public void testIdentity() throws IOException {
+    assertDecoded(CONTENT, null);
+  }
+
+  @Test(expected = ZipException.class)
+  public void testCorruptGzipTrailer() throws IOException {
+    ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    try (OutputStream out = new GZIPOutputStream(encoded)) {
+      out.write(CONTENT);
+    }
+    byte[] corrupt = encoded.toByteArray();
+    // last byte of CRC32
+    corrupt[corrupt.length - 5] ^= 1;
+    DecodingEntity entity = new DecodingEntity(new ByteArrayEntity(corrupt), DecodingEntity.GZIP,
+                                               new ODataTransferStats());
+    try (InputStream content = entity.getContent()) {
+      ByteStreams.toByteArray(content);
+    }
+  }
+
+  private static void assertDecoded(byte[] encoded, String encoding) throws IOException {
+    ODataTransferStats stats = new ODataTransferStats();
+    DecodingEntity entity = new DecodingEntity(new ByteArrayEntity(encoded), encoding, stats);
+    byte[] decoded;
+    try (InputStream content = entity.getContent()) {
+      decoded = ByteStreams.toByteArray(content);
+    }
+    Assert.assertArrayEquals(CONTENT, decoded);
+    Assert.assertEquals(encoded.length, stats.getCounter(ODataTransferStats.Counter.RESPONSE_WIRE_BYTES));
+    Assert.assertEquals(CONTENT.length, stats.getCounter(ODataTransferStats.Counter.RESPONSE_DECODED_BYTES));
+  }
+
+  private static byte[] createContent() {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      builder.append("{\"SalesOrderID\":\"").append(i).append("\",\"BuyerName\":\"TECUM\"},");
+    }
+    return builder.toString().getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.protocol.HttpContext;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link HedgingHttpClient} test.
+ */
+public class HedgingHttpClientTest {
+
+  private static final String URL = "http://vhcalnplci.dummy.nodomain:8000/sap/opu/odata/SAP/ZGW100_XX_S2_SRV/" +
+    "SalesOrderCollection";
+
+  private final ODataTransferStats stats = new ODataTransferStats();
+
+  @Test
+  public void testSlowRequestHedged() throws Exception {
+    CloseableHttpResponse slow = Mockito.mock(CloseableHttpResponse.class);
+    CloseableHttpResponse fast = Mockito.mock(CloseableHttpResponse.class);
+    AtomicInteger calls = new AtomicInteger();
+    HedgingHttpClient client = hedgingClient(10, (target, request, context) -> {
+      if (calls.incrementAndGet() == 1) {
+        Thread.sleep(5000);
+        return slow;
+      }
+      return fast;
+    });
+
+    Assert.assertSame(fast, client.execute(new HttpGet(URL)));
+    Assert.assertEquals(2, calls.get());
+    Assert.assertEquals(1, stats.getCounter(ODataTransferStats.Counter.HEDGES));
+    Assert.assertEquals(1, stats.getCounter(ODataTransferStats.Counter.HEDGE_WINS));
+  }
+
+  @Test
+  public void testFailedRequestReplacedByHedge() throws Exception {
+    CloseableHttpResponse response = Mockito.mock(CloseableHttpResponse.class);
+    AtomicInteger calls = new AtomicInteger();
+    HedgingHttpClient client = hedgingClient(10, (target, request, context) -> {
+      if (calls.incrementAndGet() == 1) {
+        Thread.sleep(50);
+        throw new SocketException("Connection reset");
+      }
+      // the hedge responds after the original request failed
+      Thread.sleep(500);
+      return response;
+    });
+
+    Assert.assertSame(response, client.execute(new HttpGet(URL)));
+  }
+
+  @Test
+  public void testFastRequestNotHedged() throws Exception {
+    CloseableHttpResponse response = Mockito.mock(CloseableHttpResponse.class);
+    AtomicInteger calls = new AtomicInteger();
+    HedgingHttpClient client = hedgingClient(5000, (target, request, context) -> {
+      calls.incrementAndGet();
+      return response;
+    });
+
+    Assert.assertSame(response, client.execute(new HttpGet(URL)));
+    Assert.assertEquals(1, calls.get());
+    Assert.assertEquals(0, stats.getCounter(ODataTransferStats.Counter.HEDGES));
+  }
+
+  @Test
+  public void testHedgeRateLimited() throws Exception {
+    CloseableHttpResponse response = Mockito.mock(CloseableHttpResponse.class);
+    AtomicInteger calls = new AtomicInteger();
+    HedgingHttpClient client = hedgingClient(10, (target, request, context) -> {
+      calls.incrementAndGet();
+      Thread.sleep(200);
+      return response;
+    });
+
+    // the observed requests earned a single hedge
+    client.execute(new HttpGet(URL));
+    client.execute(new HttpGet(URL));
+    Assert.assertEquals(3, calls.get());
+    Assert.assertEquals(1, stats.getCounter(ODataTransferStats.Counter.HEDGES));
+  }
+
+  @Test
+  public void testTimeToFirstByteObserved() throws Exception {
+    CloseableHttpResponse response = Mockito.mock(CloseableHttpResponse.class);
+    ODataHedgingPolicy policy = new ODataHedgingPolicy(95);
+    HedgingHttpClient client = new HedgingHttpClient(delegate((target, request, context) -> {
+      // time spent waiting for a permit is not a part of the latency
+      Thread.sleep(20);
+      context.setAttribute(GovernedRequestExecutor.FIRST_BYTE_NANOS, TimeUnit.MILLISECONDS.toNanos(1));
+      return response;
+    }), policy, stats);
+
+    for (int i = 0; i < ODataHedgingPolicy.MIN_SAMPLES; i++) {
+      client.execute(new HttpGet(URL));
+    }
+    Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(1), policy.getDelayNanos());
+  }
+
+  /**
+   * Creates a client, which already observed the given latency.
+   */
+  private HedgingHttpClient hedgingClient(long latencyMillis, Executor executor) throws IOException {
+    ODataHedgingPolicy policy = new ODataHedgingPolicy(95);
+    for (int i = 0; i < ODataHedgingPolicy.MIN_SAMPLES; i++) {
+      policy.record(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+    }
+    return new HedgingHttpClient(delegate(executor), policy, stats);
+  }
+
+  private CloseableHttpClient delegate(Executor executor) throws IOException {
+    CloseableHttpClient delegate = Mockito.mock(CloseableHttpClient.class);
+    Mockito.when(delegate.execute(Mockito.any(HttpHost.class), Mockito.any(HttpRequest.class),
+                                  Mockito.any(HttpContext.class)))
+      .thenAnswer(invocation -> executor.execute((HttpHost) invocation.getArguments()[0],
+                                                 (HttpRequest) invocation.getArguments()[1],
+                                                 (HttpContext) invocation.getArguments()[2]));
+    return delegate;
+  }
+
+  private interface Executor {
+    CloseableHttpResponse execute(HttpHost target, HttpRequest request, HttpContext context) throws Exception;
+  }
+}
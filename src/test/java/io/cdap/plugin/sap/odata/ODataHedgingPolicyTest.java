@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link ODataHedgingPolicy} test.
+ */
+public class ODataHedgingPolicyTest {
+
+  @Test
+  public void testNoHedgingUntilEnoughSamples() {
+    ODataHedgingPolicy policy = new ODataHedgingPolicy(95);
+    for (int i = 1; i < ODataHedgingPolicy.MIN_SAMPLES; i++) {
+      policy.record(i);
+      Assert.assertEquals(-1, policy.getDelayNanos());
+    }
+    policy.record(ODataHedgingPolicy.MIN_SAMPLES);
+    Assert.assertEquals(19, policy.getDelayNanos());
+  }
+
+  @Test
+  public void testPercentileOfRecentLatencies() {
+    ODataHedgingPolicy policy = new ODataHedgingPolicy(90);
+    for (int i = 1; i <= 100; i++) {
+      policy.record(i);
+    }
+    Assert.assertEquals(90, policy.getDelayNanos());
+
+    // older latencies are replaced once the window is full
+    for (int i = 0; i < ODataHedgingPolicy.WINDOW; i++) {
+      policy.record(1000);
+    }
+    Assert.assertEquals(1000, policy.getDelayNanos());
+  }
+
+  @Test
+  public void testHedgeRateLimitedByPercentile() {
+    ODataHedgingPolicy policy = new ODataHedgingPolicy(90);
+    for (int i = 0; i < 9; i++) {
+      policy.record(1);
+    }
+    Assert.assertFalse(policy.tryHedge());
+    policy.record(1);
+    Assert.assertTrue(policy.tryHedge());
+    Assert.assertFalse(policy.tryHedge());
+
+    // abandoned requests do not earn hedges
+    for (int i = 0; i < 10; i++) {
+      policy.recordCensored(1000);
+    }
+    Assert.assertFalse(policy.tryHedge());
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import io.cdap.plugin.sap.odata.exception.ODataException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * {@link ODataKeyPredicate} test.
+ */
+public class ODataKeyPredicateTest {
+
+  @Test
+  public void testSinglePropertyKey() {
+    Map<String, String> literals = ODataKeyPredicate.parse(
+      "http://localhost/sap/opu/odata/SAP/ZGW100_XX_S2_SRV/SalesOrderCollection('0500000001')",
+      Collections.singletonList("SoId"));
+
+    Assert.assertEquals(Collections.singletonMap("SoId", "'0500000001'"), literals);
+  }
+
+  @Test
+  public void testCompositeKey() {
+    Map<String, String> literals = ODataKeyPredicate.parse(
+      "SalesOrderItemCollection(SoId='0500000001',SoItemPos=10L)?$format=json", Arrays.asList("SoId", "SoItemPos"));
+
+    Assert.assertEquals(2, literals.size());
+    Assert.assertEquals("'0500000001'", literals.get("SoId"));
+    Assert.assertEquals("10L", literals.get("SoItemPos"));
+  }
+
+  @Test
+  public void testEncodedAndQuotedSeparators() {
+    Map<String, String> literals = ODataKeyPredicate.parse(
+      "Customers(Name='O''Neil%2C%20J.',City='A=B+C')", Arrays.asList("Name", "City"));
+
+    Assert.assertEquals("'O''Neil, J.'", literals.get("Name"));
+    Assert.assertEquals("'A=B+C'", literals.get("City"));
+  }
+
+  @Test(expected = ODataException.class)
+  public void testUnnamedCompositeKey() {
+    ODataKeyPredicate.parse("SalesOrderItemCollection('0500000001',10L)", Arrays.asList("SoId", "SoItemPos"));
+  }
+
+  @Test(expected = ODataException.class)
+  public void testMissingKeyPredicate() {
+    ODataKeyPredicate.parse("SalesOrderCollection", Collections.singletonList("SoId"));
+  }
+}
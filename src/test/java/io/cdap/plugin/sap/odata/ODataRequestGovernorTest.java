@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ODataRequestGovernor} test.
+ */
+public class ODataRequestGovernorTest {
+
+  @Test
+  public void testNotLimitedWithoutLeases() throws InterruptedIOException {
+    ODataRequestGovernor governor = new ODataRequestGovernor();
+    for (int i = 0; i < 100; i++) {
+      governor.acquire();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testConcurrencyLimited() throws Exception {
+    ODataRequestGovernor governor = new ODataRequestGovernor();
+    // two splits of the process, half a request each
+    governor.register(0.5, ODataRequestGovernor.UNLIMITED, ODataThrottlingMode.FIXED);
+    governor.register(0.5, ODataRequestGovernor.UNLIMITED, ODataThrottlingMode.FIXED);
+    governor.acquire();
+
+    CountDownLatch acquired = new CountDownLatch(1);
+    Thread thread = new Thread(() -> {
+      try {
+        governor.acquire();
+        acquired.countDown();
+      } catch (InterruptedIOException e) {
+        // test fails by timeout
+      }
+    });
+    thread.start();
+    Assert.assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+
+    governor.release(0, 200);
+    Assert.assertTrue(acquired.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testRateLimited() throws InterruptedIOException {
+    ODataRequestGovernor governor = new ODataRequestGovernor();
+    governor.register(ODataRequestGovernor.UNLIMITED, 20, ODataThrottlingMode.FIXED);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 5; i++) {
+      governor.acquire();
+      governor.release(0, 200);
+    }
+    // the first request starts immediately, the rest are 50 milliseconds apart
+    Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+  }
+
+  @Test
+  public void testLeaseClosed() throws InterruptedIOException {
+    ODataRequestGovernor governor = new ODataRequestGovernor();
+    ODataRequestGovernor.Lease lease = governor.register(1, ODataRequestGovernor.UNLIMITED,
+                                                         ODataThrottlingMode.FIXED);
+    governor.acquire();
+    lease.close();
+    // not limited once the split is read
+    governor.acquire();
+  }
+
+  @Test
+  public void testAdaptiveThrottling() throws InterruptedIOException {
+    ODataRequestGovernor governor = new ODataRequestGovernor();
+    governor.register(8, ODataRequestGovernor.UNLIMITED, ODataThrottlingMode.ADAPTIVE);
+    long latency = TimeUnit.MILLISECONDS.toNanos(100);
+    for (int i = 0; i < 10; i++) {
+      governor.acquire();
+      governor.release(latency, 200);
+    }
+    Assert.assertEquals(1.0, governor.getThrottle(), 0.0);
+
+    governor.acquire();
+    governor.release(latency, 503);
+    Assert.assertEquals(0.5, governor.getThrottle(), 0.0);
+
+    // normal responses restore the limits gradually
+    governor.acquire();
+    governor.release(latency, 200);
+    Assert.assertTrue(governor.getThrottle() > 0.5 && governor.getThrottle() < 1.0);
+  }
+
+  @Test
+  public void testFixedNotThrottled() throws InterruptedIOException {
+    ODataRequestGovernor governor = new ODataRequestGovernor();
+    governor.register(8, ODataRequestGovernor.UNLIMITED, ODataThrottlingMode.FIXED);
+    governor.acquire();
+    governor.release(TimeUnit.MILLISECONDS.toNanos(100), 503);
+    Assert.assertEquals(1.0, governor.getThrottle(), 0.0);
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import io.cdap.plugin.sap.odata.exception.ODataException;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.utils.DateUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.SocketException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ODataRetryPolicy} test.
+ */
+public class ODataRetryPolicyTest {
+
+  @Test
+  public void testDelayGrowsExponentiallyUpToMax() {
+    ODataRetryPolicy policy = new ODataRetryPolicy(10, 5000, new ODataTransferStats());
+    for (int i = 0; i < 100; i++) {
+      Assert.assertTrue(policy.getDelayMillis(0, null) <= ODataRetryPolicy.INITIAL_DELAY_MILLIS);
+      Assert.assertTrue(policy.getDelayMillis(1, null) <= 2 * ODataRetryPolicy.INITIAL_DELAY_MILLIS);
+      Assert.assertTrue(policy.getDelayMillis(62, null) <= 5000);
+    }
+  }
+
+  @Test
+  public void testRetryAfterHonored() {
+    ODataRetryPolicy policy = new ODataRetryPolicy(10, 5000, new ODataTransferStats());
+    Assert.assertEquals(120000, policy.getDelayMillis(0, ODataRetryPolicy.parseRetryAfter("120")));
+
+    Date date = new Date(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1));
+    Long retryAfter = ODataRetryPolicy.parseRetryAfter(DateUtils.formatDate(date));
+    Assert.assertNotNull(retryAfter);
+    Assert.assertTrue(retryAfter > 0 && retryAfter <= TimeUnit.MINUTES.toMillis(1));
+
+    Assert.assertNull(ODataRetryPolicy.parseRetryAfter("soon"));
+    Assert.assertNull(ODataRetryPolicy.parseRetryAfter(null));
+  }
+
+  @Test
+  public void testShouldRetry() {
+    ODataRetryPolicy policy = new ODataRetryPolicy(2, 5000, new ODataTransferStats());
+    ODataException networkFailure = new ODataException("Unable to read", new SocketException("Connection reset"));
+
+    Assert.assertTrue(policy.shouldRetry(0, networkFailure));
+    Assert.assertTrue(policy.shouldRetry(1, networkFailure));
+    Assert.assertFalse(policy.shouldRetry(2, networkFailure));
+    Assert.assertFalse(policy.shouldRetry(0, new ODataException("Invalid metadata")));
+    Assert.assertFalse(policy.shouldRetry(0, new ODataException("Not found", new HttpResponseException(404, ""))));
+  }
+
+  @Test
+  public void testBackoffCounted() {
+    ODataTransferStats stats = new ODataTransferStats();
+    ODataRetryPolicy policy = new ODataRetryPolicy(2, 1, stats);
+    policy.backoff(0);
+    policy.backoff(1);
+
+    Assert.assertEquals(2, stats.getCounter(ODataTransferStats.Counter.RETRIES));
+    Assert.assertTrue(stats.getCounter(ODataTransferStats.Counter.RETRY_WAIT_MILLIS) <= 2);
+  }
+
+  @Test
+  public void testRetryableStatuses() {
+    Assert.assertTrue(ODataRetryPolicy.isRetryableStatus(429));
+    Assert.assertTrue(ODataRetryPolicy.isRetryableStatus(503));
+    Assert.assertFalse(ODataRetryPolicy.isRetryableStatus(500));
+    Assert.assertFalse(ODataRetryPolicy.isRetryableStatus(404));
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.impl.cookie.BasicClientCookie;
+import org.apache.http.message.BasicHttpRequest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+
+/**
+ * {@link ODataSession} test.
+ */
+public class ODataSessionTest {
+
+  @Test
+  public void testCredentialsSentUntilSessionEstablished() {
+    ODataSession session = new ODataSession("user", "secret");
+    HttpRequest first = new BasicHttpRequest("GET", "/sap/opu/odata/SAP/ZGW100_XX_S2_SRV/$metadata");
+    session.authenticate(first);
+    Assert.assertEquals("Basic dXNlcjpzZWNyZXQ=", first.getFirstHeader(HttpHeaders.AUTHORIZATION).getValue());
+
+    session.getCookieStore().addCookie(new BasicClientCookie("SAP_SESSIONID_NPL_001", "abc"));
+    HttpRequest next = new BasicHttpRequest("GET", "/sap/opu/odata/SAP/ZGW100_XX_S2_SRV/SalesOrderCollection");
+    session.authenticate(next);
+    Assert.assertFalse(next.containsHeader(HttpHeaders.AUTHORIZATION));
+  }
+
+  @Test
+  public void testCredentialsSentOnceSessionExpired() {
+    ODataSession session = new ODataSession("user", "secret");
+    BasicClientCookie ticket = new BasicClientCookie("MYSAPSSO2", "abc");
+    ticket.setExpiryDate(new Date(System.currentTimeMillis() - 1000));
+    session.getCookieStore().addCookie(ticket);
+    Assert.assertFalse(session.isEstablished());
+
+    HttpRequest request = new BasicHttpRequest("GET", "/sap/opu/odata/SAP/ZGW100_XX_S2_SRV/SalesOrderCollection");
+    session.authenticate(request);
+    Assert.assertTrue(request.containsHeader(HttpHeaders.AUTHORIZATION));
+  }
+
+  @Test
+  public void testNoCredentialsWithoutAuth() {
+    ODataSession session = new ODataSession(null, "");
+    HttpRequest request = new BasicHttpRequest("GET", "/sap/opu/odata/SAP/ZGW100_XX_S2_SRV/$metadata");
+    session.authenticate(request);
+    Assert.assertFalse(request.containsHeader(HttpHeaders.AUTHORIZATION));
+    Assert.assertNull(session.getCredentialsProvider());
+  }
+
+  @Test
+  public void testCsrfTokenSentWithModifyingRequests() {
+    ODataSession session = new ODataSession("user", "secret");
+    session.setCsrfToken("token");
+    HttpRequest get = new BasicHttpRequest("GET", "/sap/opu/odata/SAP/ZGW100_XX_S2_SRV/SalesOrderCollection");
+    HttpRequest post = new BasicHttpRequest("POST", "/sap/opu/odata/SAP/ZGW100_XX_S2_SRV/$batch");
+    session.authenticate(get);
+    session.authenticate(post);
+    Assert.assertFalse(get.containsHeader(ODataSession.CSRF_TOKEN_HEADER));
+    Assert.assertEquals("token", post.getFirstHeader(ODataSession.CSRF_TOKEN_HEADER).getValue());
+  }
+
+  @Test
+  public void testSessionSharedByService() {
+    String url = "http://vhcalnplci.dummy.nodomain:8000/sap/opu/odata/SAP/ZGW100_XX_S2_SRV/";
+    Assert.assertSame(ODataSession.forService(url, "user", "secret"), ODataSession.forService(url, "user", "secret"));
+    Assert.assertNotSame(ODataSession.forService(url, "user", "secret"), ODataSession.forService(url, "user", "other"));
+  }
+}
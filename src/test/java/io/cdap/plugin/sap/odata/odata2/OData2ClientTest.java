@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sap.odata.odata2;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link OData2Client} test.
+ */
+public class OData2ClientTest {
+
+  @Test
+  public void testFormatRejected() {
+    Assert.assertTrue(OData2Client.isFormatRejected(406, null));
+    Assert.assertTrue(OData2Client.isFormatRejected(415, null));
+    Assert.assertTrue(OData2Client.isFormatRejected(501, null));
+    Assert.assertTrue(OData2Client.isFormatRejected(
+      400, "<error><message>Invalid system query option value: $format=json</message></error>"));
+  }
+
+  @Test
+  public void testInvalidQueryNotFormatRejected() {
+    Assert.assertFalse(OData2Client.isFormatRejected(400, null));
+    Assert.assertFalse(OData2Client.isFormatRejected(
+      400, "<error><message>Invalid filter expression: 'BuyerName eq'</message></error>"));
+    Assert.assertFalse(OData2Client.isFormatRejected(404, null));
+    Assert.assertFalse(OData2Client.isFormatRejected(200, null));
+  }
+}
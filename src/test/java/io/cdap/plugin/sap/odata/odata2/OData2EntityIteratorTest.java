@@ -0,0 +1,194 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.sap.odata.odata2;
+
+import io.cdap.plugin.sap.odata.ODataClientOptions;
+import io.cdap.plugin.sap.odata.ODataEntity;
+import io.cdap.plugin.sap.odata.ODataPaging;
+import io.cdap.plugin.sap.odata.ODataRetryPolicy;
+import io.cdap.plugin.sap.odata.ODataTransferStats;
+import io.cdap.plugin.sap.odata.exception.ODataException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.net.SocketException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * {@link OData2EntityIterator} test.
+ */
+public class OData2EntityIteratorTest {
+
+  private static final String ENTITY_SET = "SalesOrderCollection";
+  private static final String NEXT_LINK = "http://localhost/SalesOrderCollection?$skiptoken=3";
+  private static final String DELTA_LINK = "http://localhost/SalesOrderCollection?!deltatoken='D20191030'";
+
+  @Test
+  public void testFailedPageResumed() {
+    ODataTransferStats stats = new ODataTransferStats();
+    OData2Client client = mockClient(new ODataRetryPolicy(3, 1, stats));
+    Mockito.when(client.openFeed(ENTITY_SET, (String) null))
+      .thenReturn(new ListFeedReader(0, 3, NEXT_LINK, 3));
+    // the second page fails twice, after the second and the first entity
+    Mockito.when(client.openFeed(ENTITY_SET, URI.create(NEXT_LINK)))
+      .thenReturn(new ListFeedReader(3, 6, null, 2))
+      .thenReturn(new ListFeedReader(3, 6, null, 1))
+      .thenReturn(new ListFeedReader(3, 6, null, 3));
+
+    List<String> ids = readIds(new OData2EntityIterator(client, ENTITY_SET, paging()));
+
+    Assert.assertEquals(ids.toString(), 6, ids.size());
+    for (int i = 0; i < ids.size(); i++) {
+      Assert.assertEquals(String.valueOf(i), ids.get(i));
+    }
+    Mockito.verify(client, Mockito.times(1)).openFeed(ENTITY_SET, (String) null);
+    Mockito.verify(client, Mockito.times(3)).openFeed(ENTITY_SET, URI.create(NEXT_LINK));
+    Assert.assertEquals(2, stats.getCounter(ODataTransferStats.Counter.RETRIES));
+  }
+
+  @Test(expected = ODataException.class)
+  public void testRetriesExhausted() {
+    OData2Client client = mockClient(new ODataRetryPolicy(1, 1, new ODataTransferStats()));
+    Mockito.when(client.openFeed(ENTITY_SET, (String) null))
+      .thenReturn(new ListFeedReader(0, 3, null, 1))
+      .thenReturn(new ListFeedReader(0, 3, null, 1));
+
+    readIds(new OData2EntityIterator(client, ENTITY_SET, paging()));
+  }
+
+  @Test
+  public void testPagesRequestedInBatches() {
+    OData2Client client = mockClient(new ODataRetryPolicy(0, 1, new ODataTransferStats()));
+    List<String> firstBatch = Arrays.asList("$orderby=Id&$top=2", "$orderby=Id&$skip=2&$top=2",
+                                            "$orderby=Id&$skip=4&$top=2");
+    List<String> secondBatch = Arrays.asList("$orderby=Id&$skip=6&$top=2", "$orderby=Id&$skip=8&$top=2",
+                                             "$orderby=Id&$skip=10&$top=2");
+    Mockito.when(client.openFeeds(ENTITY_SET, firstBatch))
+      .thenReturn(Arrays.asList(new ListFeedReader(0, 2, null, Integer.MAX_VALUE),
+                                new ListFeedReader(2, 4, null, Integer.MAX_VALUE),
+                                new ListFeedReader(4, 6, null, Integer.MAX_VALUE)));
+    // the second page of the second batch is the last one, so that the third page is discarded
+    Mockito.when(client.openFeeds(ENTITY_SET, secondBatch))
+      .thenReturn(Arrays.asList(new ListFeedReader(6, 8, null, Integer.MAX_VALUE),
+                                new ListFeedReader(8, 9, null, Integer.MAX_VALUE),
+                                new ListFeedReader(9, 9, null, Integer.MAX_VALUE)));
+
+    ODataPaging paging = new ODataPaging(null, 2, () -> Collections.singletonList("Id"));
+    List<String> ids = readIds(new OData2EntityIterator(client, ENTITY_SET, paging, 3));
+
+    Assert.assertEquals(9, ids.size());
+    Assert.assertEquals("8", ids.get(8));
+    Mockito.verify(client, Mockito.times(2)).openFeeds(Mockito.eq(ENTITY_SET), Mockito.anyList());
+    Mockito.verify(client, Mockito.never()).openFeed(Mockito.eq(ENTITY_SET), Mockito.anyString());
+  }
+
+  @Test
+  public void testDeltaLinkOfLastPage() {
+    OData2Client client = mockClient(new ODataRetryPolicy(0, 1, new ODataTransferStats()));
+    Mockito.when(client.openFeed(ENTITY_SET, URI.create(DELTA_LINK)))
+      .thenReturn(new ListFeedReader(0, 3, NEXT_LINK, Integer.MAX_VALUE, null));
+    Mockito.when(client.openFeed(ENTITY_SET, URI.create(NEXT_LINK)))
+      .thenReturn(new ListFeedReader(3, 5, null, Integer.MAX_VALUE, DELTA_LINK + "2"));
+
+    OData2EntityIterator iterator = new OData2EntityIterator(client, ENTITY_SET, paging(),
+                                                             ODataClientOptions.NO_BATCHING, DELTA_LINK);
+    List<String> ids = readIds(iterator);
+
+    Assert.assertEquals(5, ids.size());
+    Assert.assertEquals(DELTA_LINK + "2", iterator.getDeltaLink());
+    Mockito.verify(client, Mockito.never()).openFeed(Mockito.eq(ENTITY_SET), Mockito.anyString());
+  }
+
+  private static OData2Client mockClient(ODataRetryPolicy retryPolicy) {
+    OData2Client client = Mockito.mock(OData2Client.class);
+    Mockito.when(client.getRetryPolicy()).thenReturn(retryPolicy);
+    return client;
+  }
+
+  private static ODataPaging paging() {
+    return new ODataPaging(null, ODataClientOptions.NO_PAGING, Collections::emptyList);
+  }
+
+  private static List<String> readIds(OData2EntityIterator iterator) {
+    List<String> ids = new ArrayList<>();
+    iterator.forEachRemaining(entity -> ids.add((String) entity.getProperties().get("Id")));
+    return ids;
+  }
+
+  /**
+   * Returns entities with the given range of ids and fails with a network failure once the given number of entities
+   * is read, unless the range is read completely.
+   */
+  private static class ListFeedReader implements OData2FeedReader {
+
+    private final int to;
+    private final String nextLink;
+    private final int failAfter;
+    private final String deltaLink;
+    private int next;
+    private int read;
+
+    ListFeedReader(int from, int to, @Nullable String nextLink, int failAfter) {
+      this(from, to, nextLink, failAfter, null);
+    }
+
+    ListFeedReader(int from, int to, @Nullable String nextLink, int failAfter, @Nullable String deltaLink) {
+      this.next = from;
+      this.to = to;
+      this.nextLink = nextLink;
+      this.failAfter = failAfter;
+      this.deltaLink = deltaLink;
+    }
+
+    @Nullable
+    @Override
+    public ODataEntity read() {
+      if (next == to) {
+        return null;
+      }
+      if (read == failAfter) {
+        throw new ODataException("Unable to read entity set", new SocketException("Connection reset"));
+      }
+      read++;
+      return new ODataEntity(Collections.singletonMap("Id", String.valueOf(next++)));
+    }
+
+    @Nullable
+    @Override
+    public String getNextLink() {
+      return nextLink;
+    }
+
+    @Nullable
+    @Override
+    public String getDeltaLink() {
+      return deltaLink;
+    }
+
+    @Override
+    public void close() {
+      // nothing to close
+    }
+  }
+}